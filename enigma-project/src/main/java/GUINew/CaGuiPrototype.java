@@ -10,8 +10,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,6 +31,7 @@ import javax.swing.SpinnerNumberModel;
 import javax.swing.border.TitledBorder;
 
 import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
 import main.java.cryptanalysis.quadbomb.QuadBombSettings;
 import main.java.cryptanalysis.quadbomb.QuadbombManager;
 
@@ -45,6 +47,10 @@ import main.java.cryptanalysis.quadbomb.QuadbombManager;
  * time. The user is warned about this in the instructions, and an abort option
  * is provided. 
  * 
+ * N-gram tables written by NgramTable to the directory named by the
+ * enigma.tables system property (by default "tables") are memory mapped
+ * rather than built from the corpus.
+ * 
  * @author Walter Adolph
  * @author Team Enigma
  * @version 0.5
@@ -53,12 +59,17 @@ import main.java.cryptanalysis.quadbomb.QuadbombManager;
 
 @SuppressWarnings("serial")
 public class CaGuiPrototype extends JPanel {
+	// Directory of precomputed n-gram table files, if any.
+	private static final File TABLE_DIRECTORY = new File(System.getProperty("enigma.tables", "tables"));
+	
 	private Corpus database;
 	private QuadbombManager analyzer;
 	
 	private JTextField plugboardTextField;
 	private JSpinner threadCountSpinner;
 	private JSpinner candidateSizeSpinner;
+	private JSpinner coarsePrefixSpinner;
+	private JComboBox<String> plugboardSolverComboBox;
 	private ResultsPanel resultsPanel;
 	private JProgressBar decryptProgressBar;
 	private JTextArea cipherTextInputTextArea;
@@ -91,21 +102,28 @@ public class CaGuiPrototype extends JPanel {
 	 * functions. 
 	 */
 	public CaGuiPrototype() {
-		String resourceLoc = "/main/resources/training.corpus";
-		ObjectInputStream is = null;
-		try{
-			is = new ObjectInputStream(getClass().getResourceAsStream(resourceLoc));
-			database = (Corpus)is.readObject();
-		} catch(NullPointerException e){
-			resourceLoc = "/training.corpus";
+		// Binary corpus, converted from the serialized training corpus by CorpusFile.
+		InputStream is = getClass().getResourceAsStream("/main/resources/training.ngrams");
+		
+		if (is == null) {
+			is = getClass().getResourceAsStream("/training.ngrams");
+		}
+		
+		if (is == null) {
+			JOptionPane.showMessageDialog(null, "Corpus not found");
+		}
+		else {
 			try {
-				is = new ObjectInputStream(getClass().getResourceAsStream(resourceLoc));
-				database = (Corpus)is.readObject();
-			} catch (IOException | ClassNotFoundException e1) {
-				JOptionPane.showMessageDialog(null, "Corpus not found");
+				database = CorpusFile.read(is);
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(null, "Corpus corrupt");
+			} finally {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// Nothing left to read.
+				}
 			}
-		} catch (IOException | ClassNotFoundException e) {
-			JOptionPane.showMessageDialog(null, "Corpus corrupt");
 		}
 		
 		// Automatically generated code.
@@ -202,6 +220,26 @@ public class CaGuiPrototype extends JPanel {
 		spinnerInputPanel.add(candidateSizeSpinner);
 		candidateSizeSpinner.setModel(new SpinnerNumberModel(100, 100, 5000, 100));
 		
+		JLabel label_6 = new JLabel("Coarse Prefix:");
+		spinnerInputPanel.add(label_6);
+		label_6.setBackground(Color.black);
+		label_6.setForeground(Color.white);
+		label_6.setToolTipText("Letters scored before the full message in the indicator search, 0 for off");
+		
+		coarsePrefixSpinner = new JSpinner();
+		spinnerInputPanel.add(coarsePrefixSpinner);
+		coarsePrefixSpinner.setModel(new SpinnerNumberModel(0, 0, 1000, 50));
+		
+		JLabel label_8 = new JLabel("Plugboard Solver:");
+		spinnerInputPanel.add(label_8);
+		label_8.setBackground(Color.black);
+		label_8.setForeground(Color.white);
+		label_8.setToolTipText("Annealing is slower, but recovers plugboards with many pairs");
+		
+		plugboardSolverComboBox = new JComboBox<String>();
+		plugboardSolverComboBox.setModel(new DefaultComboBoxModel<String>(new String[] {"Greedy", "Annealing"}));
+		spinnerInputPanel.add(plugboardSolverComboBox);
+		
 		statusInputPanel = new JPanel();
 		statusInputPanel.setBackground(Color.BLACK);
 		inputFlowPanel.add(statusInputPanel);
@@ -265,6 +303,15 @@ public class CaGuiPrototype extends JPanel {
 					
 					analyzer = new QuadbombManager(database, cipher, getSettings(), statusTextField, decryptButton, resultsPanel);
 					
+					// Map precomputed n-gram tables if present; tables not mapped are built from the corpus.
+					if (TABLE_DIRECTORY.isDirectory()) {
+						try {
+							analyzer.mapNgramTables(TABLE_DIRECTORY);
+						} catch (IOException e) {
+							JOptionPane.showMessageDialog(null, "N-gram tables unreadable, building from corpus");
+						}
+					}
+					
 					analyzer.addPropertyChangeListener(new PropertyChangeListener() {
 						public void propertyChange(PropertyChangeEvent event) {
 							if (event.getPropertyName().equals("progress")) {
@@ -444,7 +491,15 @@ public class CaGuiPrototype extends JPanel {
 		
 		int threadLimit = (int)(threadCountSpinner.getValue());
 		int candidateSize = (int)(candidateSizeSpinner.getValue());
+		int coarsePrefix = (int)(coarsePrefixSpinner.getValue());
+		
+		QuadBombSettings settings = new QuadBombSettings(rotors, reflectorComboBox.getSelectedIndex(), ringSettings, indicatorSettings, plugboardTextField.getText(), threadLimit, candidateSize);
+		settings.setCoarseIndicatorSearch(coarsePrefix, QuadBombSettings.COARSE_SHORTLIST_FACTOR);
+		
+		if (plugboardSolverComboBox.getSelectedIndex() == QuadBombSettings.ANNEALING_SOLVER) {
+			settings.setAnnealingSolver(QuadBombSettings.ANNEALING_CHAINS, QuadBombSettings.ANNEALING_RESTARTS);
+		}
 		
-		return new QuadBombSettings(rotors, reflectorComboBox.getSelectedIndex(), ringSettings, indicatorSettings, plugboardTextField.getText(), threadLimit, candidateSize);
+		return settings;
 	}
 }
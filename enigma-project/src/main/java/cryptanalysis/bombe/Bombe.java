@@ -0,0 +1,371 @@
+package main.java.cryptanalysis.bombe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import main.java.cryptanalysis.quadbomb.QuadBombSettings;
+import main.java.enigma.EnigmaSettings;
+import main.java.enigma.Rotor;
+import main.java.enigma.Rotors;
+
+/**
+ * Bombe.java
+ *
+ * Crib attack in the manner of the Turing-Welchman bombe. Given a Menu built from a crib aligned with the cipher text,
+ * every rotor position of every wheel order and reflector is tested for consistency with the menu, and the positions
+ * that survive are reported as stops.
+ *
+ * At each position the test letter is assumed steckered to each letter in turn. A stecker implies others: across an
+ * edge through the machine permutation at the edge's position, and by symmetry (the diagonal board). Every
+ * implication can be reversed, so the steckers a hypothesis implies form a connected component of the implication
+ * graph, and hypotheses in the same component imply the same steckers. The components holding the test letter's
+ * hypotheses are found in turn, with the partners implied for each letter kept as a 26 bit mask. In most positions
+ * the first component already holds all 26 hypotheses, which rules them all out, and the search moves on. Otherwise
+ * each component is a stop, giving the steckers of every letter it implies a single partner for, unless those
+ * steckers contradict each other.
+ *
+ * Like the original, the search assumes the middle rotor does not step between the start of the message and the end
+ * of the crib. Stops are reported as EnigmaSettings with all rings at A, the rotor positions at the start of the
+ * message as indicators, and the steckers found as the plugboard. Ring settings that keep these rotor positions are
+ * equivalent up to the first middle rotor step, and can be found by the QuadBomb ring step.
+ *
+ * The wheel orders and reflectors searched are those of a QuadBombSettings, and are searched in parallel, one task
+ * per wheel order.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 11, 2013
+ */
+public class Bombe {
+	private static final int ALL_PARTNERS = (1 << 26) - 1;
+	
+	private final QuadBombSettings settings;
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param settings
+	 * 				QuadBombSettings giving the wheel orders and reflectors to search, and the number of threads
+	 */
+	public Bombe(QuadBombSettings settings) {
+		this.settings = settings;
+	}
+	
+	/**
+	 * Runs the menu on every wheel order and reflector.
+	 *
+	 * @param menu
+	 * 				Menu of the crib
+	 * @return the stops, as EnigmaSettings
+	 * @throws InterruptedException
+	 * 				if interrupted while waiting for the search
+	 */
+	public List<EnigmaSettings> findStops(Menu menu) throws InterruptedException {
+		Queue<EnigmaSettings> candidates = settings.getRotorReflectorCandidateList();
+		List<Callable<List<EnigmaSettings>>> tasks = new ArrayList<Callable<List<EnigmaSettings>>>();
+		
+		while (!candidates.isEmpty()) {
+			tasks.add(new WheelOrderSearch(menu, candidates.poll()));
+		}
+		
+		ForkJoinPool threadManager = new ForkJoinPool(settings.getThreadCount());
+		List<EnigmaSettings> stops = new ArrayList<EnigmaSettings>();
+		
+		try {
+			for (Future<List<EnigmaSettings>> result : threadManager.invokeAll(tasks)) {
+				stops.addAll(result.get());
+			}
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException(e.getCause());
+		}
+		finally {
+			threadManager.shutdownNow();
+		}
+		
+		return stops;
+	}
+	
+	/**
+	 * @param choice
+	 * 				Rotor choice, numbered 0-9
+	 * @return a new Rotor
+	 */
+	private static Rotor createRotor(int choice) {
+		return new Rotor(Rotors.rotorWirings[choice], Rotors.rotorNotches[choice]);
+	}
+	
+	/**
+	 * Searches every rotor position of a single wheel order and reflector. Not thread safe; each task is run by a
+	 * single worker.
+	 */
+	private static class WheelOrderSearch implements Callable<List<EnigmaSettings>> {
+		private final Menu menu;
+		private final EnigmaSettings candidate;
+		
+		private final Rotor fourth;		// Null for a 3-rotor machine.
+		private final Rotor left;
+		private final Rotor middle;
+		private final Rotor right;
+		private final Rotor reflector;
+		
+		// Edges of each letter: the letter at the other end, and the edge index.
+		private final int[][] neighbours = new int[26][];
+		private final int[][] neighbourEdges = new int[26][];
+		
+		// Machine permutation at each edge's position, for the position under test.
+		private final int[][] permutations;
+		private final int[] inner = new int[26];	// Permutation of the rotors left of the right rotor and the reflector.
+		
+		// Stecker partners implied for each letter, as 26 bit masks, and the steckers in the order implied.
+		private final int[] partners = new int[26];
+		private final int[] queueLetters = new int[26 * 26];
+		private final int[] queuePartners = new int[26 * 26];
+		private final int[] componentStarts = new int[27];	// Queue index where each component starts.
+		
+		WheelOrderSearch(Menu menu, EnigmaSettings candidate) {
+			this.menu = menu;
+			this.candidate = candidate;
+			
+			int[] rotors = candidate.getRotors();
+			int first = rotors.length - 3;
+			
+			fourth = (first > 0) ? createRotor(rotors[0]) : null;
+			left = createRotor(rotors[first]);
+			middle = createRotor(rotors[first + 1]);
+			right = createRotor(rotors[first + 2]);
+			reflector = new Rotor(Rotors.reflectors[candidate.getReflector()], new char[] {'!', '!'});
+			
+			int edges = menu.getEdgeCount();
+			int[] degrees = new int[26];
+			
+			permutations = new int[edges][26];
+			
+			for (int edge = 0; edge < edges; edge++) {
+				degrees[menu.getFirstLetter(edge)]++;
+				degrees[menu.getSecondLetter(edge)]++;
+			}
+			
+			for (int letter = 0; letter < 26; letter++) {
+				neighbours[letter] = new int[degrees[letter]];
+				neighbourEdges[letter] = new int[degrees[letter]];
+				degrees[letter] = 0;
+			}
+			
+			for (int edge = 0; edge < edges; edge++) {
+				int firstLetter = menu.getFirstLetter(edge);
+				int secondLetter = menu.getSecondLetter(edge);
+				
+				neighbours[firstLetter][degrees[firstLetter]] = secondLetter;
+				neighbourEdges[firstLetter][degrees[firstLetter]++] = edge;
+				neighbours[secondLetter][degrees[secondLetter]] = firstLetter;
+				neighbourEdges[secondLetter][degrees[secondLetter]++] = edge;
+			}
+		}
+		
+		/**
+		 * Required by Callable. Workhorse method.
+		 */
+		public List<EnigmaSettings> call() {
+			List<EnigmaSettings> stops = new ArrayList<EnigmaSettings>();
+			int fourthPositions = (fourth != null) ? 26 : 1;
+			
+			for (int fourthShift = 0; fourthShift < fourthPositions; fourthShift++) {
+				for (int leftShift = 0; leftShift < 26; leftShift++) {
+					for (int middleShift = 0; middleShift < 26; middleShift++) {
+						if (Thread.currentThread().isInterrupted()) {	// Allows interrupted thread to terminate.
+							return stops;
+						}
+						
+						setInner(fourthShift, leftShift, middleShift);
+						
+						for (int rightShift = 0; rightShift < 26; rightShift++) {
+							setPermutations(rightShift);
+							
+							int count = propagate();
+							
+							if (count > 0) {
+								addStops(stops, new int[] {fourthShift, leftShift, middleShift, rightShift}, count);
+							}
+						}
+					}
+				}
+			}
+			
+			return stops;
+		}
+		
+		/**
+		 * Computes the permutation of the rotors left of the right rotor and the reflector at the given shifts.
+		 */
+		private void setInner(int fourthShift, int leftShift, int middleShift) {
+			for (int letter = 0; letter < 26; letter++) {
+				int index = middle.forwardEncrypt(letter, middleShift);
+				index = left.forwardEncrypt(index, leftShift);
+				
+				if (fourth != null) {
+					index = fourth.forwardEncrypt(index, fourthShift);
+				}
+				
+				index = reflector.forwardEncrypt(index);
+				
+				if (fourth != null) {
+					index = fourth.reverseEncrypt(index, fourthShift);
+				}
+				
+				index = left.reverseEncrypt(index, leftShift);
+				inner[letter] = middle.reverseEncrypt(index, middleShift);
+			}
+		}
+		
+		/**
+		 * Computes the machine permutation at each edge's position, the right rotor having stepped once per letter
+		 * from its shift at the start of the message.
+		 */
+		private void setPermutations(int rightShift) {
+			for (int edge = 0; edge < permutations.length; edge++) {
+				int shift = (rightShift + menu.getPosition(edge) + 1) % 26;
+				int[] permutation = permutations[edge];
+				
+				for (int letter = 0; letter < 26; letter++) {
+					permutation[letter] = right.reverseEncrypt(inner[right.forwardEncrypt(letter, shift)], shift);
+				}
+			}
+		}
+		
+		/**
+		 * Finds the components of the implication graph holding the test letter's hypotheses, stopping early once one
+		 * holds all 26 of them. Each component is recorded as a slice of the queue.
+		 *
+		 * @return the number of components found, or 0 if every hypothesis is ruled out
+		 */
+		private int propagate() {
+			int testLetter = menu.getTestLetter();
+			int tail = 0;
+			int count = 0;
+			
+			Arrays.fill(partners, 0);
+			
+			for (int hypothesis = 0; hypothesis < 26; hypothesis++) {
+				if ((partners[testLetter] & 1 << hypothesis) != 0) {
+					continue;	// Already in an earlier hypothesis' component.
+				}
+				
+				int head = tail;
+				componentStarts[count++] = tail;
+				tail = visit(testLetter, hypothesis, tail);
+				
+				while (head < tail) {
+					int letter = queueLetters[head];
+					int partner = queuePartners[head++];
+					
+					// Diagonal board: steckering is symmetric.
+					tail = visit(partner, letter, tail);
+					
+					// Each edge maps the letter's partner to the partner of the letter at the other end.
+					for (int index = 0; index < neighbours[letter].length; index++) {
+						int edge = neighbourEdges[letter][index];
+						tail = visit(neighbours[letter][index], permutations[edge][partner], tail);
+					}
+					
+					if (partners[testLetter] == ALL_PARTNERS && count == 1) {
+						return 0;	// The first hypothesis implies every other one, so all are ruled out.
+					}
+				}
+			}
+			
+			componentStarts[count] = tail;
+			
+			return count;
+		}
+		
+		/**
+		 * Marks a stecker as implied, queueing it if new.
+		 *
+		 * @return the new queue tail
+		 */
+		private int visit(int letter, int partner, int tail) {
+			int bit = 1 << partner;
+			
+			if ((partners[letter] & bit) == 0) {
+				partners[letter] |= bit;
+				queueLetters[tail] = letter;
+				queuePartners[tail++] = partner;
+			}
+			
+			return tail;
+		}
+		
+		/**
+		 * Adds a stop for each component that does not rule out its hypotheses and implies consistent steckers. A
+		 * component implying all the test letter's partners but one adds nothing, as the one left out forms a
+		 * component of its own.
+		 */
+		private void addStops(List<EnigmaSettings> stops, int[] shifts, int count) {
+			int testLetter = menu.getTestLetter();
+			
+			for (int component = 0; component < count; component++) {
+				int start = componentStarts[component];
+				int end = componentStarts[component + 1];
+				int[] counts = new int[26];
+				int[] singles = new int[26];
+				
+				for (int index = start; index < end; index++) {
+					counts[queueLetters[index]]++;
+					singles[queueLetters[index]] = queuePartners[index];
+				}
+				
+				if (counts[testLetter] >= 25) {
+					continue;
+				}
+				
+				// Take the steckers of every letter implied to have a single partner. As on the checking machine, the
+				// stop is rejected if the partner of such a letter is implied to have others as well.
+				StringBuilder plugboard = new StringBuilder();
+				boolean consistent = true;
+				
+				for (int letter = 0; letter < 26 && consistent; letter++) {
+					if (counts[letter] == 1) {
+						consistent = counts[singles[letter]] == 1;
+						
+						if (singles[letter] > letter) {
+							plugboard.append((char) ('A' + letter)).append((char) ('A' + singles[letter]));
+						}
+					}
+				}
+				
+				if (consistent) {
+					stops.add(createStop(shifts, plugboard.toString()));
+				}
+			}
+		}
+		
+		/**
+		 * @return EnigmaSettings of a stop, with all rings at A
+		 */
+		private EnigmaSettings createStop(int[] shifts, String plugboard) {
+			int[] rotors = candidate.getRotors().clone();
+			int first = 4 - rotors.length;
+			char[] rings = new char[rotors.length];
+			char[] indicators = new char[rotors.length];
+			
+			for (int wheel = 0; wheel < rotors.length; wheel++) {
+				rings[wheel] = 'A';
+				indicators[wheel] = (char) ('A' + shifts[first + wheel]);
+			}
+			
+			return new EnigmaSettings(rotors, rings, indicators, candidate.getReflector(), plugboard);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package main.java.cryptanalysis.bombe;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CribScanner.java
+ *
+ * Finds the offsets a crib can be aligned at in a cipher text. An Enigma never encrypts a letter to itself, so an
+ * alignment is only admissible if no crib letter matches the cipher letter it is aligned with (see Menu).
+ *
+ * The cipher text is indexed once, as a bit set of its positions for each letter, packed 64 positions to a long.
+ * Crib letter i rules out offset o if the cipher letter at o + i is the same letter, so shifting that letter's bit set
+ * down by i gives every offset the crib letter rules out at once. The offsets ruled out by a crib are the union of
+ * these over its letters, found a word at a time, and the admissible offsets are the rest. A crib costs its length
+ * times the cipher text length over 64 word operations, so one scanner can test many cribs, such as the corpus words
+ * from CribDetector.getCommonWords, against a message cheaply.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 11, 2013
+ */
+public class CribScanner {
+	private final int length;
+	private final long[][] letterPositions = new long[26][];	// Bit set of the cipher text positions of each letter.
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param cipherText
+	 * 				Cipher text, upper case letters only
+	 * @throws IllegalArgumentException
+	 * 				if the cipher text holds anything but upper case letters
+	 */
+	public CribScanner(String cipherText) {
+		length = cipherText.length();
+		
+		int words = (length + 63) >>> 6;
+		
+		for (int letter = 0; letter < 26; letter++) {
+			letterPositions[letter] = new long[words];
+		}
+		
+		for (int position = 0; position < length; position++) {
+			int letter = toLetterIndex(cipherText.charAt(position));
+			
+			letterPositions[letter][position >>> 6] |= 1L << position;
+		}
+	}
+	
+	/**
+	 * Finds the offsets a crib can be aligned at.
+	 *
+	 * @param crib
+	 * 				Known plain text, upper case letters only
+	 * @return the admissible offsets in ascending order, empty if the crib is empty or longer than the cipher text
+	 * @throws IllegalArgumentException
+	 * 				if the crib holds anything but upper case letters
+	 */
+	public int[] findOffsets(String crib) {
+		int cribLength = crib.length();
+		
+		if (cribLength == 0 || cribLength > length) {
+			return new int[0];
+		}
+		
+		int lastOffset = length - cribLength;
+		int words = (lastOffset >>> 6) + 1;	// Only the words holding possible offsets.
+		long[] ruledOut = new long[words];
+		
+		for (int index = 0; index < cribLength; index++) {
+			long[] positions = letterPositions[toLetterIndex(crib.charAt(index))];
+			int wordShift = index >>> 6;
+			int bitShift = index & 63;
+			
+			// OR in the letter's positions shifted down by the crib index, so each bit marks an offset ruled out.
+			for (int word = 0; word < words && word + wordShift < positions.length; word++) {
+				long shifted = positions[word + wordShift] >>> bitShift;
+				
+				if (bitShift != 0 && word + wordShift + 1 < positions.length) {
+					shifted |= positions[word + wordShift + 1] << (64 - bitShift);
+				}
+				
+				ruledOut[word] |= shifted;
+			}
+		}
+		
+		// Offsets past the last one don't fit.
+		if ((lastOffset & 63) != 63) {
+			ruledOut[words - 1] |= -1L << (lastOffset + 1);
+		}
+		
+		int count = 0;
+		
+		for (int word = 0; word < words; word++) {
+			count += Long.bitCount(~ruledOut[word]);
+		}
+		
+		int[] offsets = new int[count];
+		int next = 0;
+		
+		for (int word = 0; word < words; word++) {
+			long admissible = ~ruledOut[word];
+			
+			while (admissible != 0) {
+				offsets[next++] = (word << 6) + Long.numberOfTrailingZeros(admissible);
+				admissible &= admissible - 1;
+			}
+		}
+		
+		return offsets;
+	}
+	
+	/**
+	 * Finds the offsets each of a set of cribs can be aligned at.
+	 *
+	 * @param cribs
+	 * 				Known plain texts, upper case letters only
+	 * @return the admissible offsets of each crib that has any, in the order of the cribs given
+	 * @throws IllegalArgumentException
+	 * 				if a crib holds anything but upper case letters
+	 */
+	public Map<String, int[]> findOffsets(Collection<String> cribs) {
+		Map<String, int[]> results = new LinkedHashMap<String, int[]>();
+		
+		for (String crib : cribs) {
+			int[] offsets = findOffsets(crib);
+			
+			if (offsets.length > 0) {
+				results.put(crib, offsets);
+			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * @return the length of the cipher text
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @param letter
+	 * 				Upper case letter
+	 * @return the letter's index, 0-25
+	 */
+	private static int toLetterIndex(char letter) {
+		if (letter < 'A' || letter > 'Z') {
+			throw new IllegalArgumentException("Invalid letter: " + letter);
+		}
+		
+		return letter - 'A';
+	}
+}
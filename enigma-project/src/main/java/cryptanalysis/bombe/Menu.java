@@ -0,0 +1,200 @@
+package main.java.cryptanalysis.bombe;
+
+/**
+ * Menu.java
+ *
+ * The menu of a crib: a graph with a node for each letter, and an edge for each crib letter joining it to the cipher
+ * letter it is aligned with, labelled with the position of that letter in the message. If a letter is steckered to
+ * some letter at one end of an edge, the machine at that position maps that letter to the stecker partner of the
+ * letter at the other end, which is what the Bombe propagates.
+ *
+ * An Enigma never encrypts a letter to itself, so an alignment where a crib letter matches its cipher letter is
+ * impossible, and is rejected. The test letter, where the Bombe makes its stecker hypotheses, is the letter with the
+ * most edges. Closed loops in the menu are what rule hypotheses out, so menus with few loops give many false stops.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 11, 2013
+ */
+public class Menu {
+	private final String crib;
+	private final int offset;
+	
+	// Edges, one per crib letter.
+	private final int[] firstLetters;
+	private final int[] secondLetters;
+	private final int[] positions;
+	
+	private final int testLetter;
+	private final int loopCount;
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param crib
+	 * 				Known plain text, upper case letters only
+	 * @param cipherText
+	 * 				Cipher text, upper case letters only
+	 * @param offset
+	 * 				Position of the crib's first letter in the cipher text
+	 * @throws IllegalArgumentException
+	 * 				if the crib does not fit in the cipher text at the offset, or a crib letter would encrypt to itself
+	 */
+	public Menu(String crib, String cipherText, int offset) {
+		if (!isAdmissible(crib, cipherText, offset)) {
+			throw new IllegalArgumentException("Inadmissible crib position: " + offset);
+		}
+		
+		this.crib = crib;
+		this.offset = offset;
+		
+		int length = crib.length();
+		int[] degrees = new int[26];
+		
+		firstLetters = new int[length];
+		secondLetters = new int[length];
+		positions = new int[length];
+		
+		for (int index = 0; index < length; index++) {
+			firstLetters[index] = crib.charAt(index) - 'A';
+			secondLetters[index] = cipherText.charAt(offset + index) - 'A';
+			positions[index] = offset + index;
+			
+			degrees[firstLetters[index]]++;
+			degrees[secondLetters[index]]++;
+		}
+		
+		int best = 0;
+		
+		for (int letter = 1; letter < 26; letter++) {
+			if (degrees[letter] > degrees[best]) {
+				best = letter;
+			}
+		}
+		
+		testLetter = best;
+		loopCount = countLoops(degrees);
+	}
+	
+	/**
+	 * Checks whether a crib can be aligned at an offset: it must fit in the cipher text, and no crib letter may
+	 * match the cipher letter it is aligned with.
+	 *
+	 * @param crib
+	 * 				Known plain text, upper case letters only
+	 * @param cipherText
+	 * 				Cipher text, upper case letters only
+	 * @param offset
+	 * 				Position of the crib's first letter in the cipher text
+	 * @return true if the alignment is possible
+	 */
+	public static boolean isAdmissible(String crib, String cipherText, int offset) {
+		if (crib.isEmpty() || offset < 0 || offset + crib.length() > cipherText.length()) {
+			return false;
+		}
+		
+		for (int index = 0; index < crib.length(); index++) {
+			if (crib.charAt(index) == cipherText.charAt(offset + index)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Counts the independent closed loops of the menu: edges, less letters, plus connected components.
+	 */
+	private int countLoops(int[] degrees) {
+		int[] parents = new int[26];
+		int letters = 0;
+		int components = 0;
+		
+		for (int letter = 0; letter < 26; letter++) {
+			parents[letter] = letter;
+			
+			if (degrees[letter] > 0) {
+				letters++;
+				components++;
+			}
+		}
+		
+		// Join the components of each edge's letters.
+		for (int index = 0; index < firstLetters.length; index++) {
+			int first = findRoot(parents, firstLetters[index]);
+			int second = findRoot(parents, secondLetters[index]);
+			
+			if (first != second) {
+				parents[first] = second;
+				components--;
+			}
+		}
+		
+		return firstLetters.length - letters + components;
+	}
+	
+	private static int findRoot(int[] parents, int letter) {
+		while (parents[letter] != letter) {
+			letter = parents[letter];
+		}
+		
+		return letter;
+	}
+	
+	/**
+	 * @return the crib, a String
+	 */
+	public String getCrib() {
+		return crib;
+	}
+	
+	/**
+	 * @return the position of the crib's first letter in the cipher text, an integer
+	 */
+	public int getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * @return the number of edges, one per crib letter
+	 */
+	public int getEdgeCount() {
+		return positions.length;
+	}
+	
+	/**
+	 * @return the letter index of the test letter, the letter with the most edges
+	 */
+	public int getTestLetter() {
+		return testLetter;
+	}
+	
+	/**
+	 * @return the number of independent closed loops in the menu
+	 */
+	public int getLoopCount() {
+		return loopCount;
+	}
+	
+	/**
+	 * @return the letter index of the crib letter of an edge
+	 */
+	int getFirstLetter(int edge) {
+		return firstLetters[edge];
+	}
+	
+	/**
+	 * @return the letter index of the cipher letter of an edge
+	 */
+	int getSecondLetter(int edge) {
+		return secondLetters[edge];
+	}
+	
+	/**
+	 * @return the position in the message of an edge
+	 */
+	int getPosition(int edge) {
+		return positions[edge];
+	}
+}
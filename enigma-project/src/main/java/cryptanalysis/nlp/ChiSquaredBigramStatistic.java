@@ -0,0 +1,75 @@
+package main.java.cryptanalysis.nlp;
+
+/**
+ * ChiSquaredBigramStatistic.java
+ * 
+ * Negated Chi-Squared Statistic of a message's bigram frequencies against those of a corpus, so that higher scores
+ * are better. Each bigram's frequency is taken relative to its first letter, and weighted by that letter's count.
+ * Only bigrams present in the corpus contribute.
+ * 
+ * The corpus frequencies are copied in on construction and never modified, and grams are counted into the calling
+ * thread's GramCounter, so instances are safe to share between threads.
+ * 
+ * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic/">Practical Cryptography: Chi-Squared Statistic</a>
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+public class ChiSquaredBigramStatistic implements FitnessFunction {
+	private final double[] expectedFreqs = new double[26 * 26];	// Corpus frequency of each bigram, 0 if absent.
+	
+	/**
+	 * Constructor.
+	 * @param corpusCounts
+	 * 				Dense bigram counts of the corpus, 26^2 entries
+	 * @param totalCount
+	 * 				Total bigram count of the corpus
+	 */
+	public ChiSquaredBigramStatistic(int[] corpusCounts, long totalCount) {
+		for (int gram = 0; gram < expectedFreqs.length; gram++) {
+			expectedFreqs[gram] = (double) corpusCounts[gram] / totalCount;
+		}
+	}
+	
+	/**
+	 * Computes the statistic of a message.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param length
+	 * 				Number of letters of the message to score
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int length) {
+		GramCounter counter = GramCounter.get();
+		int[] unigramCounts = counter.count(message, length, 1);
+		int[] bigramCounts = counter.count(message, length, 2);
+		
+		int lastLetter = message[length - 1];
+		double result = 0.0;
+		
+		for (int first = 0; first < 26; first++) {
+			// Bigrams starting with this letter; every occurrence but a final one starts a bigram.
+			double bigramLetterCount = unigramCounts[first] - ((first == lastLetter) ? 1 : 0);
+			
+			if (bigramLetterCount > 0) {
+				for (int second = 0; second < 26; second++) {
+					int gram = first * 26 + second;
+					double absoluteFreq = expectedFreqs[gram];
+					
+					if (absoluteFreq > 0) {
+						double relativeFreq = bigramCounts[gram] / bigramLetterCount;
+						
+						result += -unigramCounts[first] * (relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
+					}
+				}
+			}
+		}
+		
+		counter.clear(message, length, 1);
+		counter.clear(message, length, 2);
+		
+		return result;
+	}
+}
@@ -0,0 +1,62 @@
+package main.java.cryptanalysis.nlp;
+
+/**
+ * ChiSquaredUnigramStatistic.java
+ * 
+ * Negated Chi-Squared Statistic of a message's letter frequencies against those of a corpus, so that higher scores
+ * are better. Only letters present in the message contribute.
+ * 
+ * The corpus frequencies are copied in on construction and never modified, and letters are counted into the calling
+ * thread's GramCounter, so instances are safe to share between threads.
+ * 
+ * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/chi-squared-statistic/">Practical Cryptography: Chi-Squared Statistic</a>
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+public class ChiSquaredUnigramStatistic implements FitnessFunction {
+	private final double[] expectedFreqs = new double[26];	// Corpus frequency of each letter.
+	
+	/**
+	 * Constructor.
+	 * @param corpusCounts
+	 * 				Dense unigram counts of the corpus, 26 entries
+	 * @param totalCount
+	 * 				Total unigram count of the corpus
+	 */
+	public ChiSquaredUnigramStatistic(int[] corpusCounts, long totalCount) {
+		for (int letter = 0; letter < expectedFreqs.length; letter++) {
+			expectedFreqs[letter] = (double) corpusCounts[letter] / totalCount;
+		}
+	}
+	
+	/**
+	 * Computes the statistic of a message.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param length
+	 * 				Number of letters of the message to score
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int length) {
+		GramCounter counter = GramCounter.get();
+		int[] counts = counter.count(message, length, 1);
+		
+		double result = 0.0;
+		
+		for (int gram = 0; gram < counts.length; gram++) {
+			if (counts[gram] > 0) {
+				double relativeFreq = (double) counts[gram] / length;
+				double absoluteFreq = expectedFreqs[gram];
+				
+				result += -(relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
+			}
+		}
+		
+		counter.clear(message, length, 1);
+		
+		return result;
+	}
+}
@@ -1,19 +1,33 @@
 package main.java.cryptanalysis.nlp;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.PriorityQueue;
 
 /**
- * Implements a set of tables containing character unigrams, bigrams, trigrams, quadgrams, and whole words, with frequency counts of each.
+ * Implements a set of tables containing character unigrams, bigrams, trigrams, quadgrams, quintgrams, and whole words, with frequency counts of each.
  * 
  * After loading all the desired grams, it is recommended that trimCorpus() is called to remove very low frequency count occurrences.
+ * The thresholds trimmed to can be set by TrimSettings.
  * N-grams and words are added by calling the appropriate add(ngram) method.
  * Retrieving a frequency count of a n-gram or word is done by get(ngram)Count().
  * Retrieving the total count of a n-gram is done by getTotal(ngram)Count().
  * Convenience methods to get sorted priority queues of grams is via get(ngram)TestQueue().
+ * Dense count arrays of A-Z grams, indexed by packed letter indices, are available via getDenseGramCounts().
+ * Corpora trained separately can be combined by merge(), and a corpus merged in can be taken out again by subtract().
+ * 
+ * Quintgrams were added after the original training corpus was serialized; corpora without them load with an
+ * empty quintgram table.
+ * 
+ * A corpus read from a binary corpus file (see CorpusFile) holds its unigram through quadgram counts in dense arrays,
+ * and its words in a WordDictionary, instead of tables. It only builds the tables if grams or words are added, a corpus
+ * holding tables is merged in or subtracted, or the corpus is serialized.
  * 
  * This class is not thread safe if retrieving frequency counts and/or ngram queues while adding ngrams.
  * If not adding words, then concurrent calls to get frequency counts and ngram queues is safe.
@@ -28,21 +42,25 @@ import java.util.PriorityQueue;
 public class Corpus implements Serializable {
 	private static final long serialVersionUID = 3170587046915875517L;
 	
-	// Threshold setting for trimming out grams and words.
-	private static final int COUNT_THRESHOLD = 1000000;
-	
 	// Statistic tables.
 	private Map<String, Integer> unigramTable;
 	private Map<String, Integer> bigramTable;
 	private Map<String, Integer> trigramTable;
 	private Map<String, Integer> quadgramTable;
+	private Map<String, Integer> quintgramTable;
 	private Map<String, Integer> wordTable;
+	
+	// Dense unigram through quadgram counts, indexed by gram length, and word counts, replacing those tables until
+	// grams or words are added. Null unless read from a binary corpus file.
+	private transient int[][] denseCounts;
+	private transient WordDictionary denseWords;
 
 	// n-gram and word counters.
 	private int unigramCount;
 	private int bigramCount;
 	private int trigramCount;
 	private int quadgramCount;
+	private int quintgramCount;
 	private int wordCount;
 	
 	public Corpus() {
@@ -50,9 +68,28 @@ public class Corpus implements Serializable {
 		bigramTable = new HashMap<String, Integer>();
 		trigramTable = new HashMap<String, Integer>();
 		quadgramTable = new HashMap<String, Integer>();
+		quintgramTable = new HashMap<String, Integer>();
 		wordTable = new HashMap<String, Integer>();
 	}
 	
+	/**
+	 * Constructor for a corpus read from a binary corpus file.
+	 * @param counts - dense unigram through quadgram counts, indexed by gram length.
+	 * @param totals - total unigram through quadgram counts, indexed by gram length.
+	 * @param words - word counts.
+	 * @param totalWords - total count of words.
+	 */
+	Corpus(int[][] counts, int[] totals, WordDictionary words, int totalWords) {
+		denseCounts = counts;
+		unigramCount = totals[1];
+		bigramCount = totals[2];
+		trigramCount = totals[3];
+		quadgramCount = totals[4];
+		quintgramTable = new HashMap<String, Integer>();
+		denseWords = words;
+		wordCount = totalWords;
+	}
+	
 	/**
 	 * Gets the total count of added unigrams.
 	 * @return total count of unigrams.
@@ -85,6 +122,36 @@ public class Corpus implements Serializable {
 		return quadgramCount;
 	}
 	
+	/**
+	 * Gets the total count of added quintgrams.
+	 * @return total count of quintgrams.
+	 */
+	public int getTotalQuintgramCount() {
+		return quintgramCount;
+	}
+	
+	/**
+	 * Gets the total count of added grams of the specified length.
+	 * @param length - the gram length, 1 to 5.
+	 * @return total count of grams of that length, or 0 if the length is not supported.
+	 */
+	public int getTotalGramCount(int length) {
+		switch (length) {
+			case 1:
+				return unigramCount;
+			case 2:
+				return bigramCount;
+			case 3:
+				return trigramCount;
+			case 4:
+				return quadgramCount;
+			case 5:
+				return quintgramCount;
+			default:
+				return 0;
+		}
+	}
+	
 	/**
 	 * Gets the total count of added words.
 	 * @return total count of words.
@@ -99,6 +166,10 @@ public class Corpus implements Serializable {
 	 * @return the number of occurrences of the specified unigram, or 0 if not found.
 	 */
 	public int getUnigramCount(String gram) {
+		if (denseCounts != null) {
+			return getDenseCount(gram, 1);
+		}
+		
 		if (unigramTable.containsKey(gram.toUpperCase())) {
 			return unigramTable.get(gram.toUpperCase());
 		}
@@ -112,6 +183,10 @@ public class Corpus implements Serializable {
 	 * @return the number of occurrences of the specified bigram, or 0 if not found.
 	 */
 	public int getBigramCount(String gram) {
+		if (denseCounts != null) {
+			return getDenseCount(gram, 2);
+		}
+		
 		if (bigramTable.containsKey(gram.toUpperCase())) {
 			return bigramTable.get(gram.toUpperCase());
 		}
@@ -125,6 +200,10 @@ public class Corpus implements Serializable {
 	 * @return the number of occurrences of the specified trigram, or 0 if not found.
 	 */
 	public int getTrigramCount(String gram) {
+		if (denseCounts != null) {
+			return getDenseCount(gram, 3);
+		}
+		
 		if (trigramTable.containsKey(gram.toUpperCase())) {
 			return trigramTable.get(gram.toUpperCase());
 		}
@@ -138,6 +217,10 @@ public class Corpus implements Serializable {
 	 * @return the number of occurrences of the specified quadgram, or 0 if not found.
 	 */
 	public int getQuadgramCount(String gram) {
+		if (denseCounts != null) {
+			return getDenseCount(gram, 4);
+		}
+		
 		if (quadgramTable.containsKey(gram.toUpperCase())) {
 			return quadgramTable.get(gram.toUpperCase());
 		}
@@ -145,12 +228,29 @@ public class Corpus implements Serializable {
 		return 0;
 	}
 	
+	/**
+	 * Gets the frequency count of the specified quintgram.
+	 * @param gram - the gram to look for.
+	 * @return the number of occurrences of the specified quintgram, or 0 if not found.
+	 */
+	public int getQuintgramCount(String gram) {
+		if (quintgramTable.containsKey(gram.toUpperCase())) {
+			return quintgramTable.get(gram.toUpperCase());
+		}
+		
+		return 0;
+	}
+	
 	/**
 	 * Gets the frequency count of the specified word.
 	 * @param word - the word to look for.
 	 * @return the number of occurrences of the specified word, or 0 if not found.
 	 */
 	public int getWordCount(String word) {
+		if (denseWords != null) {
+			return denseWords.getCount(word.toUpperCase());
+		}
+		
 		if (wordTable.containsKey(word.toUpperCase())) {
 			return wordTable.get(word.toUpperCase());
 		}
@@ -163,8 +263,9 @@ public class Corpus implements Serializable {
 	 * @return a new priority queue of sorted unigrams.
 	 */
 	public PriorityQueue<String> getUnigramTestQueue() {
-		PriorityQueue<String> result = new PriorityQueue<String>(unigramTable.size(), new GramComparator(unigramTable));
-		result.addAll(unigramTable.keySet());
+		Map<String, Integer> table = (denseCounts != null) ? getDenseTable(1) : unigramTable;
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, table.size()), new GramComparator(table));
+		result.addAll(table.keySet());
 		
 		return result;
 	}
@@ -174,8 +275,9 @@ public class Corpus implements Serializable {
 	 * @return a new priority queue of sorted bigrams.
 	 */
 	public PriorityQueue<String> getBigramTestQueue() {
-		PriorityQueue<String> result = new PriorityQueue<String>(bigramTable.size(), new GramComparator(bigramTable));
-		result.addAll(bigramTable.keySet());
+		Map<String, Integer> table = (denseCounts != null) ? getDenseTable(2) : bigramTable;
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, table.size()), new GramComparator(table));
+		result.addAll(table.keySet());
 		
 		return result;
 	}
@@ -185,8 +287,9 @@ public class Corpus implements Serializable {
 	 * @return a new priority queue of sorted trigrams.
 	 */
 	public PriorityQueue<String> getTrigramTestQueue() {
-		PriorityQueue<String> result = new PriorityQueue<String>(trigramTable.size(), new GramComparator(trigramTable));
-		result.addAll(trigramTable.keySet());
+		Map<String, Integer> table = (denseCounts != null) ? getDenseTable(3) : trigramTable;
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, table.size()), new GramComparator(table));
+		result.addAll(table.keySet());
 		
 		return result;
 	}
@@ -196,8 +299,20 @@ public class Corpus implements Serializable {
 	 * @return a new priority queue of sorted quadgrams.
 	 */
 	public PriorityQueue<String> getQuadgramTestQueue() {
-		PriorityQueue<String> result = new PriorityQueue<String>(quadgramTable.size(), new GramComparator(quadgramTable));
-		result.addAll(quadgramTable.keySet());
+		Map<String, Integer> table = (denseCounts != null) ? getDenseTable(4) : quadgramTable;
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, table.size()), new GramComparator(table));
+		result.addAll(table.keySet());
+		
+		return result;
+	}
+	
+	/**
+	 * Builds and gets an ordered queue of quintgrams, sorted by descending frequency counts. 
+	 * @return a new priority queue of sorted quintgrams.
+	 */
+	public PriorityQueue<String> getQuintgramTestQueue() {
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, quintgramTable.size()), new GramComparator(quintgramTable));
+		result.addAll(quintgramTable.keySet());
 		
 		return result;
 	}
@@ -207,8 +322,88 @@ public class Corpus implements Serializable {
 	 * @return a new priority queue of sorted words.
 	 */
 	public PriorityQueue<String> getWordTestQueue() {
-		PriorityQueue<String> result = new PriorityQueue<String>(wordTable.size(), new GramComparator(wordTable));
-		result.addAll(wordTable.keySet());
+		Map<String, Integer> table = getWordTable();
+		PriorityQueue<String> result = new PriorityQueue<String>(Math.max(1, table.size()), new GramComparator(table));
+		result.addAll(table.keySet());
+		
+		return result;
+	}
+	
+	/**
+	 * Gets the word counts, as a table. The table must not be modified.
+	 * @return the word table, or a new table built from the word dictionary of a corpus read from a binary corpus file.
+	 */
+	Map<String, Integer> getWordTable() {
+		return (denseWords != null) ? denseWords.toTable() : wordTable;
+	}
+	
+	/**
+	 * Builds a dense array of quadgram frequency counts, indexed by the packed
+	 * letter indices of the gram (((a * 26 + b) * 26 + c) * 26 + d, with A = 0).
+	 * Grams containing characters other than A-Z are skipped.
+	 * @return a new array of 26^4 quadgram counts.
+	 */
+	public int[] getDenseQuadgramCounts() {
+		return getDenseGramCounts(4);
+	}
+	
+	/**
+	 * Builds a dense array of frequency counts for grams of the specified length, indexed by the packed
+	 * letter indices of the gram (for example, a bigram AB is 0 * 26 + 1). Grams containing characters other
+	 * than A-Z are skipped.
+	 * @param length - the gram length, 1 to 5.
+	 * @return a new array of 26^length gram counts.
+	 */
+	public int[] getDenseGramCounts(int length) {
+		switch (length) {
+			case 1:
+				return (denseCounts != null) ? denseCounts[1].clone() : getDenseCounts(unigramTable, 1);
+			case 2:
+				return (denseCounts != null) ? denseCounts[2].clone() : getDenseCounts(bigramTable, 2);
+			case 3:
+				return (denseCounts != null) ? denseCounts[3].clone() : getDenseCounts(trigramTable, 3);
+			case 4:
+				return (denseCounts != null) ? denseCounts[4].clone() : getDenseCounts(quadgramTable, 4);
+			case 5:
+				return getDenseCounts(quintgramTable, 5);
+			default:
+				throw new IllegalArgumentException("Unsupported gram length: " + length);
+		}
+	}
+	
+	/**
+	 * Builds a dense array of frequency counts from a gram table.
+	 * @param table - the gram table to convert.
+	 * @param length - the gram length.
+	 * @return a new array of 26^length counts, indexed by packed letter indices.
+	 */
+	private static int[] getDenseCounts(Map<String, Integer> table, int length) {
+		int size = 1;
+		
+		for (int i = 0; i < length; i++) {
+			size *= 26;
+		}
+		
+		int[] result = new int[size];
+		
+		for (Map.Entry<String, Integer> entry : table.entrySet()) {
+			String gram = entry.getKey().toUpperCase();
+			
+			if (gram.length() != length) {
+				continue;
+			}
+			
+			int index = 0;
+			
+			for (int i = 0; i < length && index >= 0; i++) {
+				char character = gram.charAt(i);
+				index = (character >= 'A' && character <= 'Z') ? index * 26 + character - 'A' : -1;
+			}
+			
+			if (index >= 0) {	// Skip grams with digits or other characters.
+				result[index] += entry.getValue();
+			}
+		}
 		
 		return result;
 	}
@@ -218,6 +413,8 @@ public class Corpus implements Serializable {
 	 * @param word - a new priority queue of sorted unigrams.
 	 */
 	public void addUnigram(String word) {
+		expandDenseCounts();
+		
 		if (unigramTable.containsKey(word)) {
 			int count = unigramTable.get(word);
 			unigramTable.put(word, count + 1);
@@ -234,6 +431,8 @@ public class Corpus implements Serializable {
 	 * @param phrase - a new priority queue of sorted bigrams.
 	 */
 	public void addBigram(String phrase) {
+		expandDenseCounts();
+		
 		if (bigramTable.containsKey(phrase)) {
 			int count = bigramTable.get(phrase);
 			bigramTable.put(phrase, count + 1);
@@ -250,6 +449,8 @@ public class Corpus implements Serializable {
 	 * @param phrase - a new priority queue of sorted trigrams.
 	 */
 	public void addTrigram(String phrase) {
+		expandDenseCounts();
+		
 		if (trigramTable.containsKey(phrase)) {
 			int count = trigramTable.get(phrase);
 			trigramTable.put(phrase, count + 1);
@@ -266,6 +467,8 @@ public class Corpus implements Serializable {
 	 * @param phrase - a new priority queue of sorted quadgrams.
 	 */
 	public void addQuadgram(String phrase) {
+		expandDenseCounts();
+		
 		if (quadgramTable.containsKey(phrase)) {
 			int count = quadgramTable.get(phrase);
 			quadgramTable.put(phrase, count + 1);
@@ -277,11 +480,31 @@ public class Corpus implements Serializable {
 		quadgramCount++;
 	}
 	
+	/**
+	 * Counts and adds the specified quintgram to the appropriate table. 
+	 * @param phrase - a new priority queue of sorted quintgrams.
+	 */
+	public void addQuintgram(String phrase) {
+		expandDenseCounts();
+		
+		if (quintgramTable.containsKey(phrase)) {
+			int count = quintgramTable.get(phrase);
+			quintgramTable.put(phrase, count + 1);
+		}
+		else {
+			quintgramTable.put(phrase, 1);
+		}
+		
+		quintgramCount++;
+	}
+	
 	/**
 	 * Counts and adds the specified word to the appropriate table. 
 	 * @param word - a new priority queue of sorted words.
 	 */
 	public void addWord(String word) {
+		expandDenseCounts();
+		
 		if (wordTable.containsKey(word)) {
 			int count = wordTable.get(word);
 			wordTable.put(word, count + 1);
@@ -293,6 +516,252 @@ public class Corpus implements Serializable {
 		wordCount++;
 	}
 	
+	/**
+	 * Adds the specified count of a gram to the table for its length, as if added that many times.
+	 * @param gram - the gram, 1 to 5 characters.
+	 * @param count - the number of occurrences to add.
+	 */
+	public void addGramCount(String gram, int count) {
+		expandDenseCounts();
+		
+		switch (gram.length()) {
+			case 1:
+				addCount(unigramTable, gram, count);
+				unigramCount += count;
+				break;
+			case 2:
+				addCount(bigramTable, gram, count);
+				bigramCount += count;
+				break;
+			case 3:
+				addCount(trigramTable, gram, count);
+				trigramCount += count;
+				break;
+			case 4:
+				addCount(quadgramTable, gram, count);
+				quadgramCount += count;
+				break;
+			case 5:
+				addCount(quintgramTable, gram, count);
+				quintgramCount += count;
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported gram length: " + gram.length());
+		}
+	}
+	
+	/**
+	 * Adds the specified count of a word, as if added that many times.
+	 * @param word - the word.
+	 * @param count - the number of occurrences to add.
+	 */
+	public void addWordCount(String word, int count) {
+		expandDenseCounts();
+		
+		addCount(wordTable, word, count);
+		wordCount += count;
+	}
+	
+	/**
+	 * Adds a count to a table entry, removing the entry if its count falls to zero or below.
+	 * @param table - the table to add to.
+	 * @param key - the gram or word.
+	 * @param count - the number of occurrences to add, negative to subtract.
+	 */
+	private static void addCount(Map<String, Integer> table, String key, int count) {
+		Integer current = table.get(key);
+		int sum = (current != null) ? current + count : count;
+		
+		if (sum > 0) {
+			table.put(key, sum);
+		}
+		else {
+			table.remove(key);
+		}
+	}
+	
+	/**
+	 * Adds the gram and word counts of another corpus, as if its text had been parsed into this one, so corpora
+	 * trained on separate sources or machines can be combined without parsing them again.
+	 * If both corpora were read from binary corpus files, the counts are added in place and this corpus stays dense.
+	 * @param other - the corpus to add, left unchanged.
+	 * @throws IllegalArgumentException if other is this corpus, or a total count would overflow.
+	 */
+	public void merge(Corpus other) {
+		for (int length = 1; length <= 5; length++) {
+			if ((long) getTotalGramCount(length) + other.getTotalGramCount(length) > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Merged gram count too large: " + length);
+			}
+		}
+		
+		if ((long) wordCount + other.wordCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Merged word count too large: " + ((long) wordCount + other.wordCount));
+		}
+		
+		combine(other, 1);
+	}
+	
+	/**
+	 * Removes the gram and word counts of another corpus, such as one merged into this corpus before.
+	 * The totals are reduced by those of the other corpus, so it should be part of this one. Every gram and word
+	 * count of the other corpus must be at most that of this corpus, and all are checked before any is changed.
+	 * Counts that fall to zero are removed, along with their grams and words.
+	 * If both corpora were read from binary corpus files, the counts are subtracted in place and this corpus stays dense.
+	 * @param other - the corpus to subtract, left unchanged.
+	 * @throws IllegalArgumentException if other is this corpus, or a total, gram or word count of other exceeds that
+	 * of this corpus. This corpus is unchanged.
+	 */
+	public void subtract(Corpus other) {
+		for (int length = 1; length <= 5; length++) {
+			if (other.getTotalGramCount(length) > getTotalGramCount(length)) {
+				throw new IllegalArgumentException("Subtracted gram count too large: " + length);
+			}
+		}
+		
+		if (other.wordCount > wordCount) {
+			throw new IllegalArgumentException("Subtracted word count too large: " + other.wordCount);
+		}
+		
+		combine(other, -1);
+	}
+	
+	/**
+	 * Adds or subtracts the counts and totals of another corpus.
+	 * @param other - the corpus to combine with this one.
+	 * @param sign - 1 to add the counts of the other corpus, -1 to subtract them.
+	 */
+	private void combine(Corpus other, int sign) {
+		if (other == this) {
+			throw new IllegalArgumentException("Cannot combine a corpus with itself");
+		}
+		
+		if (denseCounts != null && other.denseCounts != null) {
+			// Check every count before changing any, so a failed subtraction leaves this corpus unchanged.
+			if (sign < 0) {
+				for (int length = 1; length <= 4; length++) {
+					int[] counts = denseCounts[length];
+					int[] otherCounts = other.denseCounts[length];
+					
+					for (int index = 0; index < counts.length; index++) {
+						if (otherCounts[index] > counts[index]) {
+							throw new IllegalArgumentException("Subtracted gram count too large: " + length);
+						}
+					}
+				}
+			}
+			
+			WordDictionary words = WordDictionary.combine(denseWords, other.denseWords, sign);
+			
+			for (int length = 1; length <= 4; length++) {
+				int[] counts = denseCounts[length];
+				int[] otherCounts = other.denseCounts[length];
+				
+				for (int index = 0; index < counts.length; index++) {
+					counts[index] += sign * otherCounts[index];
+				}
+			}
+			
+			denseWords = words;
+		}
+		else {
+			expandDenseCounts();
+			
+			Map<String, Integer> words = (other.denseWords != null) ? other.denseWords.toTable() : other.wordTable;
+			
+			// Check every count before changing any, as for dense counts.
+			if (sign < 0) {
+				for (int length = 1; length <= 5; length++) {
+					if (!isHeld(getTable(length), other.getGramTable(length))) {
+						throw new IllegalArgumentException("Subtracted gram count too large: " + length);
+					}
+				}
+				
+				for (Map.Entry<String, Integer> entry : words.entrySet()) {
+					if (!isHeld(wordTable, entry.getKey(), entry.getValue())) {
+						throw new IllegalArgumentException("Subtracted word count too large: " + entry.getKey());
+					}
+				}
+			}
+			
+			for (int length = 1; length <= 5; length++) {
+				Map<String, Integer> table = getTable(length);
+				
+				for (Map.Entry<String, Integer> entry : other.getGramTable(length).entrySet()) {
+					addCount(table, entry.getKey(), sign * entry.getValue());
+				}
+			}
+			
+			for (Map.Entry<String, Integer> entry : words.entrySet()) {
+				addCount(wordTable, entry.getKey(), sign * entry.getValue());
+			}
+		}
+		
+		unigramCount += sign * other.unigramCount;
+		bigramCount += sign * other.bigramCount;
+		trigramCount += sign * other.trigramCount;
+		quadgramCount += sign * other.quadgramCount;
+		quintgramCount += sign * other.quintgramCount;
+		wordCount += sign * other.wordCount;
+	}
+	
+	/**
+	 * Checks that a table holds at least the count of every entry of another table.
+	 * @param table - the table to check.
+	 * @param other - the counts to look for.
+	 * @return true if no count of other exceeds that in table.
+	 */
+	private static boolean isHeld(Map<String, Integer> table, Map<String, Integer> other) {
+		for (Map.Entry<String, Integer> entry : other.entrySet()) {
+			if (!isHeld(table, entry.getKey(), entry.getValue())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Checks that a table holds at least a count of a gram or word.
+	 * @param table - the table to check.
+	 * @param key - the gram or word.
+	 * @param count - the count to look for.
+	 * @return true if the count in table is at least count.
+	 */
+	private static boolean isHeld(Map<String, Integer> table, String key, int count) {
+		Integer current = table.get(key);
+		
+		return count <= ((current != null) ? current : 0);
+	}
+	
+	/**
+	 * Gets the table of grams of the specified length, once any dense counts are expanded.
+	 * @param length - the gram length, 1 to 5.
+	 * @return the gram table.
+	 */
+	private Map<String, Integer> getTable(int length) {
+		switch (length) {
+			case 1:
+				return unigramTable;
+			case 2:
+				return bigramTable;
+			case 3:
+				return trigramTable;
+			case 4:
+				return quadgramTable;
+			default:
+				return quintgramTable;
+		}
+	}
+	
+	/**
+	 * Gets the grams of the specified length, built from the dense counts if this corpus holds them.
+	 * @param length - the gram length, 1 to 5.
+	 * @return the gram table, or a new table built from the dense counts.
+	 */
+	private Map<String, Integer> getGramTable(int length) {
+		return (denseCounts != null && length <= 4) ? getDenseTable(length) : getTable(length);
+	}
+	
 	/**
 	 * Traverses each ngram and word table and attempts to remove likely bad grams and words. 
 	 * Assumes that the majority of grams discovered are likely valid, and those that occur less than a set threshold
@@ -301,56 +770,216 @@ public class Corpus implements Serializable {
 	 * 
 	 */
 	public void trimCorpus() {
-		int countThreshold = getTotalBigramCount() / COUNT_THRESHOLD + 1;
+		trimCorpus(new TrimSettings());
+	}
+	
+	/**
+	 * Traverses each ngram and word table and removes the grams and words that do not meet the thresholds of the
+	 * settings. Each table is trimmed in a single pass over its counts, after sorting a copy of the counts if the
+	 * settings keep only the most frequent grams and words.
+	 * A corpus read from a binary corpus file is trimmed in its dense counts, without building the tables.
+	 * @param settings - the thresholds to trim to.
+	 */
+	public void trimCorpus(TrimSettings settings) {
+		for (int length = settings.isTrimUnigrams() ? 1 : 2; length <= 5; length++) {
+			int total = getTotalGramCount(length);
+			int removed = 0;
+			
+			if (denseCounts != null && length <= 4) {
+				int[] counts = denseCounts[length];
+				int cutoff = getCutoff(counts, total, settings);
+				
+				for (int index = 0; index < counts.length; index++) {
+					if (counts[index] < cutoff) {
+						removed += counts[index];
+						counts[index] = 0;
+					}
+				}
+			}
+			else {
+				removed = trimTable(getTable(length), total, settings);
+			}
+			
+			switch (length) {
+				case 1:
+					unigramCount -= removed;
+					break;
+				case 2:
+					bigramCount -= removed;
+					break;
+				case 3:
+					trigramCount -= removed;
+					break;
+				case 4:
+					quadgramCount -= removed;
+					break;
+				default:
+					quintgramCount -= removed;
+					break;
+			}
+		}
+		
+		if (denseWords != null) {
+			int[] counts = denseWords.getCounts();
+			int cutoff = getCutoff(counts, wordCount, settings);
+			
+			for (int count : counts) {
+				if (count < cutoff) {
+					wordCount -= count;
+				}
+			}
+			
+			denseWords = denseWords.trim(cutoff);
+		}
+		else {
+			wordCount -= trimTable(wordTable, wordCount, settings);
+		}
+	}
+	
+	/**
+	 * Gets the lowest count kept by the thresholds of the settings.
+	 * @param counts - the counts of a table, zero for grams not found.
+	 * @param total - the total count of the table.
+	 * @param settings - the thresholds to trim to.
+	 * @return the lowest count kept.
+	 */
+	private static int getCutoff(int[] counts, int total, TrimSettings settings) {
+		int cutoff = settings.getCountCutoff(total);
 		
-		// Remove all entries with a frequency of less than 1 plus the threshold of the total gram count.
-		for (String gram: getBigramTestQueue()) {	// Use the priority queue to allow modification of the underlying table.
-			int count = bigramTable.get(gram);
+		if (settings.isRanked()) {
+			int[] ranked = new int[counts.length];
+			int size = 0;
 			
-			if (count < countThreshold) {
-				bigramTable.remove(gram);
-				bigramCount -= count;
+			for (int count : counts) {
+				if (count > 0) {
+					ranked[size++] = count;
+				}
 			}
+			
+			cutoff = Math.max(cutoff, settings.getRankCutoff(ranked, size));
 		}
 		
-		countThreshold = getTotalTrigramCount() / COUNT_THRESHOLD + 1;
+		return cutoff;
+	}
+	
+	/**
+	 * Removes the grams or words of a table that do not meet the thresholds of the settings.
+	 * @param table - the table to trim.
+	 * @param total - the total count of the table.
+	 * @param settings - the thresholds to trim to.
+	 * @return the sum of the counts removed.
+	 */
+	private static int trimTable(Map<String, Integer> table, int total, TrimSettings settings) {
+		int cutoff = settings.getCountCutoff(total);
 		
-		// Remove all entries with a frequency of less than 1 plus the threshold of the total gram count.
-		for (String gram: getTrigramTestQueue()) {	// Use the priority queue to allow modification of the underlying table.
-			int count = trigramTable.get(gram);
+		if (settings.isRanked()) {
+			int[] counts = new int[table.size()];
+			int size = 0;
 			
-			if (count < countThreshold) {
-				trigramTable.remove(gram);
-				trigramCount -= count;
+			for (int count : table.values()) {
+				counts[size++] = count;
 			}
+			
+			cutoff = Math.max(cutoff, settings.getRankCutoff(counts, size));
 		}
 		
-		countThreshold = getTotalQuadgramCount() / COUNT_THRESHOLD + 1;
+		int removed = 0;
 		
-		// Remove all entries with a frequency of less than 1 plus the threshold of the total gram count.
-		for (String gram: getQuadgramTestQueue()) {	// Use the priority queue to allow modification of the underlying table.
-			int count = quadgramTable.get(gram);
+		// Remove through the iterator, rather than a copy of the table.
+		for (Iterator<Integer> counts = table.values().iterator(); counts.hasNext();) {
+			int count = counts.next();
 			
-			if (count < countThreshold) {
-				quadgramTable.remove(gram);
-				quadgramCount -= count;
+			if (count < cutoff) {
+				counts.remove();
+				removed += count;
 			}
 		}
 		
-		countThreshold = getTotalWordCount() / COUNT_THRESHOLD + 1;
+		return removed;
+	}
+	
+	/**
+	 * Gets the frequency count of a gram from the dense counts.
+	 * @param gram - the gram to look for.
+	 * @param length - the gram length, 1 to 4.
+	 * @return the number of occurrences of the gram, or 0 if not found.
+	 */
+	private int getDenseCount(String gram, int length) {
+		if (gram.length() != length) {
+			return 0;
+		}
 		
-		HashMap<String, Integer> table = new HashMap<String, Integer>();
-		table.putAll(wordTable);
+		int index = 0;
 		
-		// Remove all entries with a frequency of less than 1 plus the threshold of the total gram count.
-		for (String gram: table.keySet()) {	// Use a shallow copy to allow modification of the underlying table.
-			int count = wordTable.get(gram);
+		for (int i = 0; i < length; i++) {
+			char character = Character.toUpperCase(gram.charAt(i));
 			
-			if (count < countThreshold) {
-				wordTable.remove(gram);
-				wordCount -= count;
+			if (character < 'A' || character > 'Z') {
+				return 0;
+			}
+			
+			index = index * 26 + character - 'A';
+		}
+		
+		return denseCounts[length][index];
+	}
+	
+	/**
+	 * Builds a gram table from the dense counts.
+	 * @param length - the gram length, 1 to 4.
+	 * @return a new table of the grams with a nonzero count.
+	 */
+	private Map<String, Integer> getDenseTable(int length) {
+		int[] counts = denseCounts[length];
+		Map<String, Integer> table = new HashMap<String, Integer>();
+		char[] gram = new char[length];
+		
+		for (int index = 0; index < counts.length; index++) {
+			if (counts[index] > 0) {
+				for (int i = length - 1, rest = index; i >= 0; i--, rest /= 26) {
+					gram[i] = (char) ('A' + rest % 26);
+				}
+				
+				table.put(new String(gram), counts[index]);
 			}
 		}
+		
+		return table;
+	}
+	
+	/**
+	 * Replaces the dense counts and word dictionary of a corpus read from a binary corpus file with tables, so grams
+	 * and words can be added.
+	 */
+	private void expandDenseCounts() {
+		if (denseCounts != null) {
+			unigramTable = getDenseTable(1);
+			bigramTable = getDenseTable(2);
+			trigramTable = getDenseTable(3);
+			quadgramTable = getDenseTable(4);
+			wordTable = denseWords.toTable();
+			denseCounts = null;
+			denseWords = null;
+		}
+	}
+	
+	/**
+	 * Serializes the corpus, building the gram tables first if it holds dense counts.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		expandDenseCounts();
+		out.defaultWriteObject();
+	}
+	
+	/**
+	 * Restores a serialized corpus, creating the quintgram table for corpora saved before it was added.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		
+		if (quintgramTable == null) {
+			quintgramTable = new HashMap<String, Integer>();
+		}
 	}
 	
 	/**
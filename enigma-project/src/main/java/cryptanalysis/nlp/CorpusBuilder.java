@@ -0,0 +1,680 @@
+package main.java.cryptanalysis.nlp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CorpusBuilder.java
+ *
+ * Counts the character grams and words of a text into a corpus, with the same rules as TextParser, but streaming and
+ * in parallel. The text is read through a channel and decoded a block at a time by the calling thread, which cuts it
+ * into chunks at whitespace, so no word is split between chunks. Worker tasks take the chunks from a bounded queue
+ * and count them into their own primitive arrays: dense counts for unigrams through quadgrams, and an open addressing
+ * table for quintgrams, all keyed by the base 36 digits of the gram (A-Z, then 0-9). Grams run on across words, so
+ * each chunk carries the last gram characters of the text before it. Once the text is read, the workers' counts are
+ * merged and added to the corpus.
+ *
+ * Words are split at whitespace, as by Scanner, and every character is upper cased alone. This matches upper casing
+ * whole words, as TextParser does, for every upper case letter or digit produced (e.g. a sharp s gives SS).
+ *
+ * The corpus totals are ints, so a text may hold at most Integer.MAX_VALUE grams of each length, and words, in all.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 12, 2013
+ */
+public class CorpusBuilder {
+	private static final int SYMBOLS = 36;			// A-Z, then 0-9.
+	private static final int DENSE_LENGTH = 4;		// Longest gram counted in a dense array.
+	private static final int QUADGRAM_SIZE = SYMBOLS * SYMBOLS * SYMBOLS * SYMBOLS;
+	private static final int CHUNK_SIZE = 1 << 20;	// Characters.
+	private static final int READ_SIZE = 1 << 16;	// Bytes.
+	private static final byte WORD_BREAK = -1;		// Marks a hyphen in a word's symbols.
+	private static final byte A_SYMBOL = 'A' - 'A';	// The single letter words.
+	private static final byte I_SYMBOL = 'I' - 'A';
+	
+	// Symbols of each character once upper cased, mostly none or one.
+	private static final byte[][] CHARACTER_SYMBOLS = new byte[Character.MAX_VALUE + 1][];
+	
+	static {
+		byte[] none = new byte[0];
+		
+		for (int character = 0; character <= Character.MAX_VALUE; character++) {
+			String upper = String.valueOf((char) character).toUpperCase();
+			byte[] symbols = new byte[upper.length()];
+			int count = 0;
+			
+			for (int index = 0; index < upper.length(); index++) {
+				char letter = upper.charAt(index);
+				
+				if (letter >= 'A' && letter <= 'Z') {
+					symbols[count++] = (byte) (letter - 'A');
+				}
+				else if (letter >= '0' && letter <= '9') {
+					symbols[count++] = (byte) (26 + letter - '0');
+				}
+			}
+			
+			CHARACTER_SYMBOLS[character] = (count == 0) ? none : Arrays.copyOf(symbols, count);
+		}
+	}
+	
+	private final int threadCount;
+	private final int chunkSize;
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param threadCount
+	 * 				Number of worker tasks counting chunks
+	 */
+	public CorpusBuilder(int threadCount) {
+		this(threadCount, CHUNK_SIZE);
+	}
+	
+	/**
+	 * Constructor with a chunk size, so tests can cut small texts into many chunks.
+	 *
+	 * @param threadCount
+	 * 				Number of worker tasks counting chunks
+	 * @param chunkSize
+	 * 				Characters read before a chunk is cut, at least 1
+	 */
+	CorpusBuilder(int threadCount, int chunkSize) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+		}
+		
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		
+		this.threadCount = threadCount;
+		this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * Counts the grams and words of a text file into a corpus.
+	 *
+	 * @param file
+	 * 				Text file
+	 * @param charset
+	 * 				Character set of the file. Malformed input is replaced
+	 * @param corpus
+	 * 				Corpus to add to
+	 * @throws IOException
+	 * 				if the file cannot be read, or the thread is interrupted
+	 * @throws IllegalArgumentException
+	 * 				if a corpus total would overflow
+	 */
+	public void parseFile(File file, Charset charset, Corpus corpus) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			parse(channel, charset, corpus);
+		}
+	}
+	
+	/**
+	 * Counts the grams and words of a text into a corpus.
+	 *
+	 * @param channel
+	 * 				Channel to read the text from, left open
+	 * @param charset
+	 * 				Character set of the text. Malformed input is replaced
+	 * @param corpus
+	 * 				Corpus to add to
+	 * @throws IOException
+	 * 				if the channel cannot be read, or the thread is interrupted
+	 * @throws IllegalArgumentException
+	 * 				if a corpus total would overflow
+	 */
+	public void parse(ReadableByteChannel channel, Charset charset, Corpus corpus) throws IOException {
+		BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<Chunk>(2 * threadCount);
+		ForkJoinPool threadManager = new ForkJoinPool(threadCount);
+		List<Future<Worker>> results = new ArrayList<Future<Worker>>();
+		AtomicLong symbolCount = new AtomicLong(corpus.getTotalUnigramCount());
+		
+		try {
+			for (int index = 0; index < threadCount; index++) {
+				results.add(threadManager.submit(new Worker(chunks, symbolCount)));
+			}
+			
+			read(channel, charset, chunks, results);
+			
+			// One end marker per worker.
+			for (int index = 0; index < threadCount; index++) {
+				put(chunks, new Chunk(null, 0, 0, 0), results);
+			}
+			
+			Worker total = null;
+			
+			for (Future<Worker> result : results) {
+				Worker worker = getWorker(result);
+				
+				if (total == null) {
+					total = worker;
+				}
+				else {
+					total.merge(worker);
+				}
+			}
+			
+			total.addTo(corpus);
+		} finally {
+			threadManager.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Reads and decodes the text, cutting it into chunks at whitespace and queueing them for the workers.
+	 */
+	private void read(ReadableByteChannel channel, Charset charset, BlockingQueue<Chunk> chunks, List<Future<Worker>> results) throws IOException {
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		
+		byte[] bytes = new byte[READ_SIZE];
+		int byteCount = 0;
+		char[] text = new char[chunkSize];
+		int textLength = 0;
+		boolean endOfInput = false;
+		boolean flushing = false;
+		
+		// Gram symbols at the end of the text queued so far, up to a quadgram, packed as base 36 digits.
+		int history = 0;
+		int historyCount = 0;
+		
+		while (true) {
+			CharBuffer out = CharBuffer.wrap(text, textLength, text.length - textLength);
+			CoderResult result = CoderResult.UNDERFLOW;
+			
+			if (!flushing) {
+				if (!endOfInput) {
+					int read = channel.read(ByteBuffer.wrap(bytes, byteCount, bytes.length - byteCount));
+					
+					if (read < 0) {
+						endOfInput = true;
+					}
+					else {
+						byteCount += read;
+					}
+				}
+				
+				ByteBuffer in = ByteBuffer.wrap(bytes, 0, byteCount);
+				result = decoder.decode(in, out, endOfInput);
+				
+				// Keep any bytes of a character split between reads.
+				byteCount = in.remaining();
+				System.arraycopy(bytes, in.position(), bytes, 0, byteCount);
+				
+				flushing = endOfInput && result.isUnderflow();
+			}
+			
+			if (flushing) {
+				result = decoder.flush(out);
+			}
+			
+			textLength = out.position();
+			
+			if (flushing && result.isUnderflow()) {
+				put(chunks, new Chunk(text, textLength, history, historyCount), results);
+				return;
+			}
+			
+			if (!result.isOverflow()) {
+				continue;
+			}
+			
+			// The buffer is full. Queue it up to the end of its last whitespace.
+			int cut = textLength;
+			
+			while (cut > 0 && !Character.isWhitespace(text[cut - 1])) {
+				cut--;
+			}
+			
+			if (cut == 0) {
+				text = Arrays.copyOf(text, 2 * text.length);	// A single word fills the buffer.
+				continue;
+			}
+			
+			put(chunks, new Chunk(text, cut, history, historyCount), results);
+			
+			// Carry the gram symbols ending the chunk into the next, found from its end.
+			byte[] last = new byte[DENSE_LENGTH];
+			int found = 0;
+			
+			for (int index = cut - 1; index >= 0 && found < DENSE_LENGTH; index--) {
+				byte[] symbols = CHARACTER_SYMBOLS[text[index]];
+				
+				for (int symbol = symbols.length - 1; symbol >= 0 && found < DENSE_LENGTH; symbol--) {
+					last[found++] = symbols[symbol];
+				}
+			}
+			
+			for (int symbol = found - 1; symbol >= 0; symbol--) {
+				history = (history * SYMBOLS + last[symbol]) % QUADGRAM_SIZE;
+			}
+			
+			historyCount = Math.min(historyCount + found, DENSE_LENGTH);
+			
+			char[] next = new char[Math.max(chunkSize, 2 * (textLength - cut))];
+			System.arraycopy(text, cut, next, 0, textLength - cut);
+			text = next;
+			textLength -= cut;
+		}
+	}
+	
+	/**
+	 * Queues a chunk, failing if a worker has stopped, so a failed worker cannot leave the queue full.
+	 */
+	private static void put(BlockingQueue<Chunk> chunks, Chunk chunk, List<Future<Worker>> results) throws IOException {
+		try {
+			while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+				for (Future<Worker> result : results) {
+					if (result.isDone()) {
+						getWorker(result);
+						throw new IllegalStateException("Corpus worker stopped early");
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted reading corpus text");
+		}
+	}
+	
+	/**
+	 * Waits for a worker, rethrowing any failure.
+	 */
+	private static Worker getWorker(Future<Worker> result) throws IOException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted counting corpus text");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	/**
+	 * @param index
+	 * 				Base 36 digits of a gram
+	 * @param length
+	 * 				Gram length
+	 * @return the gram
+	 */
+	private static String toGram(int index, int length) {
+		char[] gram = new char[length];
+		
+		for (int position = length - 1; position >= 0; position--, index /= SYMBOLS) {
+			int symbol = index % SYMBOLS;
+			gram[position] = (char) ((symbol < 26) ? 'A' + symbol : '0' + symbol - 26);
+		}
+		
+		return new String(gram);
+	}
+	
+	/**
+	 * A chunk of text, ending at whitespace, and the gram symbols before it. A null text marks the end.
+	 */
+	private static final class Chunk {
+		private final char[] text;
+		private final int length;
+		private final int history;
+		private final int historyCount;
+		
+		Chunk(char[] text, int length, int history, int historyCount) {
+			this.text = text;
+			this.length = length;
+			this.history = history;
+			this.historyCount = historyCount;
+		}
+	}
+	
+	/**
+	 * Counts chunks until the end marker, into counts of its own.
+	 * 
+	 * Every gram and word counted holds at least one symbol, so no count can exceed the number of symbols. The
+	 * workers share a running total of the symbols counted, starting from the corpus's unigram total, and fail as
+	 * soon as it passes the largest int, before any count or corpus total can wrap.
+	 */
+	private static final class Worker implements Callable<Worker> {
+		private final BlockingQueue<Chunk> chunks;
+		private final AtomicLong symbolCount;
+		
+		// Gram counts indexed by gram length, then base 36 digits.
+		private final int[][] gramCounts = new int[DENSE_LENGTH + 1][];
+		private final GramTable quintgramCounts = new GramTable();
+		private final Map<String, int[]> wordCounts = new HashMap<String, int[]>();
+		
+		// Symbols of the current word, with hyphens marked by WORD_BREAK.
+		private byte[] word = new byte[64];
+		private int wordLength;
+		private boolean alphabetic;
+		private boolean numeric;
+		
+		Worker(BlockingQueue<Chunk> chunks, AtomicLong symbolCount) {
+			this.chunks = chunks;
+			this.symbolCount = symbolCount;
+			
+			for (int length = 1, size = SYMBOLS; length <= DENSE_LENGTH; length++, size *= SYMBOLS) {
+				gramCounts[length] = new int[size];
+			}
+		}
+		
+		/**
+		 * Counts chunks until the end marker. Specified by Callable.
+		 */
+		public Worker call() throws InterruptedException {
+			Chunk chunk = chunks.take();
+			
+			while (chunk.text != null) {
+				count(chunk);
+				chunk = chunks.take();
+			}
+			
+			return this;
+		}
+		
+		private void count(Chunk chunk) {
+			int[] unigrams = gramCounts[1];
+			int[] bigrams = gramCounts[2];
+			int[] trigrams = gramCounts[3];
+			int[] quadgrams = gramCounts[4];
+			
+			int gram = chunk.history;			// Base 36 digits of the last five symbols.
+			int seen = chunk.historyCount;		// Symbols seen, up to five.
+			long symbols = 0;					// Symbols in this chunk.
+			char[] text = chunk.text;
+			
+			for (int index = 0; index < chunk.length; index++) {
+				char character = text[index];
+				
+				if (Character.isWhitespace(character)) {
+					endWord();
+					continue;
+				}
+				
+				if (character == '-') {
+					addToWord(WORD_BREAK);
+				}
+				
+				for (byte symbol : CHARACTER_SYMBOLS[character]) {
+					addToWord(symbol);
+					
+					gram = gram % QUADGRAM_SIZE * SYMBOLS + symbol;	// Drops the oldest symbol, without overflow.
+					seen = Math.min(seen + 1, 5);
+					
+					unigrams[symbol]++;
+					symbols++;
+					
+					if (seen >= 2) {
+						bigrams[gram % (SYMBOLS * SYMBOLS)]++;
+						
+						if (seen >= 3) {
+							trigrams[gram % (SYMBOLS * SYMBOLS * SYMBOLS)]++;
+							
+							if (seen >= 4) {
+								quadgrams[gram % QUADGRAM_SIZE]++;
+								
+								if (seen == 5) {
+									quintgramCounts.add(gram, 1);
+								}
+							}
+						}
+					}
+				}
+			}
+			
+			endWord();
+			checkTotal(symbolCount.addAndGet(symbols), "1-grams");
+		}
+		
+		private void addToWord(byte symbol) {
+			if (wordLength == word.length) {
+				word = Arrays.copyOf(word, 2 * word.length);
+			}
+			
+			word[wordLength++] = symbol;
+			
+			if (symbol >= 26) {
+				numeric = true;
+			}
+			else if (symbol >= 0) {
+				alphabetic = true;
+			}
+		}
+		
+		/**
+		 * Adds the words of the word just ended, with the rules of TextParser. Words holding both letters and digits,
+		 * or neither, are rejected. Hyphenated words are split into their pieces. Single letters other than A and I
+		 * are dropped, and numbers are split into their digits.
+		 */
+		private void endWord() {
+			if (alphabetic != numeric) {
+				int start = 0;
+				
+				for (int end = 0; end <= wordLength; end++) {
+					if (end < wordLength && word[end] != WORD_BREAK) {
+						continue;
+					}
+					
+					int length = end - start;
+					
+					if (numeric) {
+						for (int index = start; index < end; index++) {
+							addWord(toGram(word[index], 1));
+						}
+					}
+					else if (length > 1 || (length == 1 && (word[start] == A_SYMBOL || word[start] == I_SYMBOL))) {
+						char[] letters = new char[length];
+						
+						for (int index = 0; index < length; index++) {
+							letters[index] = (char) ('A' + word[start + index]);
+						}
+						
+						addWord(new String(letters));
+					}
+					
+					start = end + 1;
+				}
+			}
+			
+			wordLength = 0;
+			alphabetic = false;
+			numeric = false;
+		}
+		
+		private void addWord(String text) {
+			int[] count = wordCounts.get(text);
+			
+			if (count == null) {
+				wordCounts.put(text, new int[] {1});
+			}
+			else {
+				count[0]++;
+			}
+		}
+		
+		/**
+		 * Adds the counts of another worker to this one's.
+		 */
+		void merge(Worker other) {
+			for (int length = 1; length <= DENSE_LENGTH; length++) {
+				int[] counts = gramCounts[length];
+				int[] otherCounts = other.gramCounts[length];
+				
+				for (int index = 0; index < counts.length; index++) {
+					counts[index] += otherCounts[index];
+				}
+			}
+			
+			other.quintgramCounts.addTo(quintgramCounts);
+			
+			for (Map.Entry<String, int[]> entry : other.wordCounts.entrySet()) {
+				int[] count = wordCounts.get(entry.getKey());
+				
+				if (count == null) {
+					wordCounts.put(entry.getKey(), entry.getValue());
+				}
+				else {
+					count[0] += entry.getValue()[0];
+				}
+			}
+		}
+		
+		/**
+		 * Adds the counts to a corpus, after checking no corpus total would overflow.
+		 */
+		void addTo(Corpus corpus) {
+			long wordTotal = corpus.getTotalWordCount();
+			
+			for (int[] count : wordCounts.values()) {
+				wordTotal += count[0];
+			}
+			
+			checkTotal(wordTotal, "words");
+			
+			for (int length = 1; length <= DENSE_LENGTH; length++) {
+				long total = corpus.getTotalGramCount(length);
+				
+				for (int count : gramCounts[length]) {
+					total += count;
+				}
+				
+				checkTotal(total, length + "-grams");
+			}
+			
+			checkTotal(corpus.getTotalQuintgramCount() + quintgramCounts.getTotal(), "5-grams");
+			
+			for (int length = 1; length <= DENSE_LENGTH; length++) {
+				int[] counts = gramCounts[length];
+				
+				for (int index = 0; index < counts.length; index++) {
+					if (counts[index] > 0) {
+						corpus.addGramCount(toGram(index, length), counts[index]);
+					}
+				}
+			}
+			
+			for (int slot = 0; slot < quintgramCounts.keys.length; slot++) {
+				if (quintgramCounts.keys[slot] >= 0) {
+					corpus.addGramCount(toGram(quintgramCounts.keys[slot], 5), quintgramCounts.counts[slot]);
+				}
+			}
+			
+			for (Map.Entry<String, int[]> entry : wordCounts.entrySet()) {
+				corpus.addWordCount(entry.getKey(), entry.getValue()[0]);
+			}
+		}
+		
+		private static void checkTotal(long total, String name) {
+			if (total > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many " + name + " for a corpus: " + total);
+			}
+		}
+	}
+	
+	/**
+	 * Open addressing table of gram counts, keyed by the base 36 digits of the gram, with linear probing.
+	 */
+	private static final class GramTable {
+		private int[] keys = newKeys(1 << 16);	// -1 for an empty slot.
+		private int[] counts = new int[1 << 16];
+		private int size;
+		
+		void add(int key, int count) {
+			int mask = keys.length - 1;
+			int hash = key * 0x9E3779B9;
+			int slot = (hash ^ hash >>> 16) & mask;
+			
+			while (keys[slot] != key && keys[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			
+			counts[slot] += count;
+			
+			if (keys[slot] < 0) {
+				keys[slot] = key;
+				
+				if (++size * 2 > keys.length) {
+					grow();
+				}
+			}
+		}
+		
+		/**
+		 * Adds every count to another table.
+		 */
+		void addTo(GramTable other) {
+			for (int slot = 0; slot < keys.length; slot++) {
+				if (keys[slot] >= 0) {
+					other.add(keys[slot], counts[slot]);
+				}
+			}
+		}
+		
+		/**
+		 * @return the sum of the counts
+		 */
+		long getTotal() {
+			long total = 0;
+			
+			for (int count : counts) {
+				total += count;
+			}
+			
+			return total;
+		}
+		
+		private void grow() {
+			int[] oldKeys = keys;
+			int[] oldCounts = counts;
+			
+			keys = newKeys(2 * oldKeys.length);
+			counts = new int[2 * oldCounts.length];
+			size = 0;
+			
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldKeys[slot] >= 0) {
+					add(oldKeys[slot], oldCounts[slot]);
+				}
+			}
+		}
+		
+		private static int[] newKeys(int size) {
+			int[] keys = new int[size];
+			Arrays.fill(keys, -1);
+			
+			return keys;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package main.java.cryptanalysis.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * CorpusFile.java
+ *
+ * Reads and writes corpora in a versioned binary format, which loads in a few milliseconds where a serialized Corpus
+ * takes a full deserialization pass, and does not depend on the Corpus class name or serialVersionUID.
+ *
+ * All values are big-endian:
+ *
+ * Magic number "ENGC", as an int.
+ * Format version, an int, currently 1.
+ * For each gram length from 1 to 4: the total gram count, an int, then the dense count of each A-Z gram, 26^length
+ * ints indexed by packed letter indices (as returned by Corpus.getDenseGramCounts).
+ * Total word count, an int.
+ * Number of distinct words, an int, then the count of each word in ascending word order, an int apiece.
+ * Length of the word text, an int, then the words in ascending order as ISO-8859-1 text, each ended by a newline.
+ *
+ * Grams containing characters other than A-Z are not stored, as they are never scored, and neither are quintgrams,
+ * as a dense quintgram array is nearly 48 MB. The totals stored are those of the corpus, so gram probabilities are
+ * unchanged. The words are read into a WordDictionary as a single block of text, rather than a String apiece.
+ *
+ * Run as a program to convert a serialized corpus: CorpusFile serialized-corpus binary-corpus. Either format can be
+ * loaded from a file by load(). Corpus files can be merged and updated in place by CorpusUpdater.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 12, 2013
+ */
+public class CorpusFile {
+	public static final int MAGIC = 0x454E4743;		// "ENGC"
+	public static final int VERSION = 1;
+	public static final int MAX_LENGTH = 4;
+	
+	private static final int CHUNK_SIZE = 1 << 22;	// Largest block allocated before its bytes are read.
+	
+	private CorpusFile() {
+	}
+	
+	/**
+	 * Reads a binary corpus. The corpus holds its gram counts in dense arrays (see Corpus).
+	 * @param in
+	 * 				InputStream to read the corpus from, left open. Reads are buffered, so it may be read past the corpus
+	 * @return the Corpus
+	 * @throws IOException
+	 * 				if the stream cannot be read, is not a binary corpus or is corrupt, or is of a later format version
+	 */
+	public static Corpus read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not a binary corpus");
+		}
+		
+		int version = data.readInt();
+		
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported corpus format version: " + version);
+		}
+		
+		int[][] counts = new int[MAX_LENGTH + 1][];
+		int[] totals = new int[MAX_LENGTH + 1];
+		
+		for (int length = 1, size = 26; length <= MAX_LENGTH; length++, size *= 26) {
+			totals[length] = data.readInt();
+			
+			counts[length] = readInts(data, size);
+		}
+		
+		int totalWords = data.readInt();
+		int wordCount = data.readInt();
+		
+		// Every distinct word is counted at least once.
+		if (wordCount < 0 || wordCount > totalWords) {
+			throw new IOException("Corrupt binary corpus");
+		}
+		
+		int[] wordCounts = readInts(data, wordCount);
+		int textLength = data.readInt();
+		
+		// Every word is ended by a newline.
+		if (textLength < wordCount) {
+			throw new IOException("Corrupt binary corpus");
+		}
+		
+		byte[] text = readBytes(data, textLength);
+		
+		try {
+			return new Corpus(counts, totals, new WordDictionary(text, wordCounts), totalWords);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt binary corpus", e);
+		}
+	}
+	
+	/**
+	 * Writes a corpus in the binary format.
+	 * @param corpus
+	 * 				Corpus to write
+	 * @param out
+	 * 				OutputStream to write to, flushed and left open
+	 * @throws IOException
+	 * 				if the stream cannot be written
+	 * @throws IllegalArgumentException
+	 * 				if a word holds a newline or a character outside ISO-8859-1
+	 */
+	public static void write(Corpus corpus, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		
+		for (int length = 1; length <= MAX_LENGTH; length++) {
+			int[] counts = corpus.getDenseGramCounts(length);
+			ByteBuffer bytes = ByteBuffer.allocate(counts.length * 4);
+			bytes.asIntBuffer().put(counts);
+			
+			data.writeInt(corpus.getTotalGramCount(length));
+			data.write(bytes.array());
+		}
+		
+		Map<String, Integer> wordTable = corpus.getWordTable();
+		String[] words = wordTable.keySet().toArray(new String[0]);
+		Arrays.sort(words);
+		
+		data.writeInt(corpus.getTotalWordCount());
+		data.writeInt(words.length);
+		
+		StringBuilder text = new StringBuilder();
+		
+		for (String word : words) {
+			if (word.indexOf('\n') >= 0 || !StandardCharsets.ISO_8859_1.newEncoder().canEncode(word)) {
+				throw new IllegalArgumentException("Unsupported word: " + word);
+			}
+			
+			data.writeInt(wordTable.get(word));
+			text.append(word).append('\n');
+		}
+		
+		byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+		
+		data.writeInt(bytes.length);
+		data.write(bytes);
+		data.flush();
+	}
+	
+	/**
+	 * Reads a block of ints, rather than an int at a time.
+	 * @param data
+	 * 				DataInputStream to read from
+	 * @param count
+	 * 				Number of ints
+	 * @return the ints read
+	 */
+	private static int[] readInts(DataInputStream data, int count) throws IOException {
+		if (count > Integer.MAX_VALUE / 4) {
+			throw new IOException("Corrupt binary corpus");
+		}
+		
+		byte[] bytes = readBytes(data, count * 4);
+		
+		int[] values = new int[count];
+		ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+		
+		return values;
+	}
+	
+	/**
+	 * Reads a block of bytes. Large blocks are read in chunks, growing the array as they arrive, so a corrupt length
+	 * runs into the end of the stream rather than allocating its full size up front.
+	 * @param data
+	 * 				DataInputStream to read from
+	 * @param count
+	 * 				Number of bytes
+	 * @return the bytes read
+	 */
+	private static byte[] readBytes(DataInputStream data, int count) throws IOException {
+		byte[] bytes = new byte[Math.min(count, CHUNK_SIZE)];
+		int read = 0;
+		
+		while (read < count) {
+			if (read == bytes.length) {
+				bytes = Arrays.copyOf(bytes, (int) Math.min(count, 2L * bytes.length));
+			}
+			
+			data.readFully(bytes, read, bytes.length - read);
+			read = bytes.length;
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * Checks whether a file holds a binary corpus, rather than a serialized Corpus.
+	 * @param file
+	 * 				Corpus file
+	 * @return true if the file starts with the magic number of a binary corpus
+	 * @throws IOException
+	 * 				if the file cannot be read
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Loads a corpus file, either a binary corpus or a serialized Corpus.
+	 * @param file
+	 * 				Corpus file
+	 * @return the Corpus
+	 * @throws IOException
+	 * 				if the file cannot be read, or is neither format
+	 * @throws ClassNotFoundException
+	 * 				if a serialized corpus holds an unknown class
+	 */
+	public static Corpus load(File file) throws IOException, ClassNotFoundException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			// Peek at the magic number.
+			in.mark(4);
+			boolean binary = new DataInputStream(in).readInt() == MAGIC;
+			in.reset();
+			
+			if (binary) {
+				return read(in);
+			}
+			
+			return (Corpus) new ObjectInputStream(in).readObject();
+		} catch (ClassCastException e) {
+			throw new IOException("Not a corpus file: " + file, e);
+		}
+	}
+	
+	/**
+	 * Converts a serialized corpus to the binary format.
+	 * @param args
+	 * 				Corpus file name, then binary corpus file name
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		if (args.length != 2) {
+			System.err.println("Usage: CorpusFile serialized-corpus binary-corpus");
+			System.exit(1);
+		}
+		
+		Corpus corpus = load(new File(args[0]));
+		
+		try (OutputStream out = new FileOutputStream(args[1])) {
+			write(corpus, out);
+		}
+	}
+}
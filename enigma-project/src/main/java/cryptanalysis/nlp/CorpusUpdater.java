@@ -0,0 +1,152 @@
+package main.java.cryptanalysis.nlp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * CorpusUpdater.java
+ *
+ * Updates a corpus file in place, so corpora trained on separate sources (military reports, weather messages) or on
+ * separate machines can be combined without parsing their text again:
+ *
+ * merge: adds the counts of other corpus files, binary or serialized.
+ * subtract: removes the counts of other corpus files, such as ones merged in before.
+ * append: parses text files into the corpus (see CorpusBuilder), in the default character set.
+ *
+ * The corpus file is created if it does not exist, except to subtract from, and is written back in its own format,
+ * binary if new. If both corpora of a merge or subtraction are binary, the counts are combined as dense arrays,
+ * without building gram tables (see Corpus.merge).
+ *
+ * Given a table directory, the n-gram table files (see NgramTable) of each gram length whose counts changed are
+ * written again from the counts kept in the corpus file, and those of the other lengths are left as they are. A table
+ * file of a gram length left with no grams is deleted.
+ *
+ * Run as a program: CorpusUpdater merge|subtract|append corpus-file input-file... [-tables directory]
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 12, 2013
+ */
+public class CorpusUpdater {
+	private CorpusUpdater() {
+	}
+	
+	/**
+	 * Writes a corpus file, replacing it only once the corpus is written in full.
+	 * @param corpus
+	 * 				Corpus to write
+	 * @param file
+	 * 				Corpus file
+	 * @param binary
+	 * 				True to write a binary corpus (see CorpusFile), false to write a serialized Corpus
+	 * @throws IOException
+	 * 				if the file cannot be written
+	 */
+	public static void write(Corpus corpus, File file, boolean binary) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+		
+		try {
+			try (OutputStream out = new FileOutputStream(temporary)) {
+				if (binary) {
+					CorpusFile.write(corpus, out);
+				}
+				else {
+					ObjectOutputStream objects = new ObjectOutputStream(out);
+					objects.writeObject(corpus);
+					objects.flush();
+				}
+			}
+			
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+	}
+	
+	/**
+	 * Writes the n-gram table files of the gram lengths whose total count differs from before.
+	 * @param corpus
+	 * 				Updated corpus
+	 * @param previousTotals
+	 * 				Total gram counts of the corpus before the update, indexed by gram length
+	 * @param directory
+	 * 				Table directory
+	 * @throws IOException
+	 * 				if a table file cannot be written or deleted
+	 */
+	public static void updateTables(Corpus corpus, int[] previousTotals, File directory) throws IOException {
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			if (corpus.getTotalGramCount(length) == previousTotals[length]) {
+				continue;
+			}
+			
+			if (!NgramTable.writeFile(corpus, length, directory)) {
+				Files.deleteIfExists(new File(directory, NgramTable.getFileName(length)).toPath());
+			}
+		}
+	}
+	
+	/**
+	 * Updates a corpus file.
+	 * @param args
+	 * 				Command, corpus file name and input file names, then optionally -tables and the table directory
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		int inputCount = args.length - 2;
+		File tables = null;
+		
+		if (args.length >= 2 && args[args.length - 2].equals("-tables")) {
+			tables = new File(args[args.length - 1]);
+			inputCount -= 2;
+		}
+		
+		String command = (args.length > 0) ? args[0] : "";
+		
+		if (inputCount < 1 || !(command.equals("merge") || command.equals("subtract") || command.equals("append"))) {
+			System.err.println("Usage: CorpusUpdater merge|subtract|append corpus-file input-file... [-tables directory]");
+			System.exit(1);
+		}
+		
+		File file = new File(args[1]);
+		boolean exists = file.exists() || command.equals("subtract");	// Subtracting from a missing file fails to load.
+		boolean binary = !exists || CorpusFile.isBinary(file);
+		Corpus corpus = exists ? CorpusFile.load(file) : new Corpus();
+		int[] previousTotals = new int[NgramTable.MAX_LENGTH + 1];
+		
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			previousTotals[length] = corpus.getTotalGramCount(length);
+		}
+		
+		for (int index = 2; index < 2 + inputCount; index++) {
+			File input = new File(args[index]);
+			
+			if (command.equals("merge")) {
+				corpus.merge(CorpusFile.load(input));
+			}
+			else if (command.equals("subtract")) {
+				corpus.subtract(CorpusFile.load(input));
+			}
+			else {
+				new CorpusBuilder(Runtime.getRuntime().availableProcessors()).parseFile(input, Charset.defaultCharset(), corpus);
+			}
+		}
+		
+		write(corpus, file, binary);
+		
+		if (tables != null) {
+			if (binary) {
+				corpus = CorpusFile.load(file);	// Build the tables from the counts a binary corpus keeps.
+			}
+			
+			updateTables(corpus, previousTotals, tables);
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package main.java.cryptanalysis.nlp;
 
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
@@ -121,6 +123,67 @@ public class CribDetector {
 		return result;
 	}
 	
+	/**
+	 * Gets the most common corpus words of a minimum length, for use as cribs.
+	 * Short words align almost anywhere in a message, so make poor cribs. Words holding anything but the letters A-Z
+	 * (such as contractions) can never be aligned with cipher text, so are skipped.
+	 * The words are picked with a heap of at most count words, rather than by sorting the whole word table.
+	 * @param count maximum number of words to return
+	 * @param minLength shortest word length to include
+	 * @return words in descending frequency order
+	 */
+	public List<String> getCommonWords(int count, int minLength) {
+		final Map<String, Integer> table = database.getWordTable();
+		
+		// Least common word kept at the head, so it is the one replaced.
+		PriorityQueue<String> words = new PriorityQueue<String>(Math.max(1, count), new Comparator<String>() {
+			public int compare(String first, String second) {
+				return Integer.compare(table.get(first), table.get(second));
+			}
+		});
+		
+		for (Map.Entry<String, Integer> entry : table.entrySet()) {
+			String word = entry.getKey();
+			
+			if (count <= 0 || word.length() < minLength || !isLetters(word)) {
+				continue;
+			}
+			
+			if (words.size() < count) {
+				words.add(word);
+			}
+			else if (entry.getValue() > table.get(words.peek())) {
+				words.poll();
+				words.add(word);
+			}
+		}
+		
+		LinkedList<String> results = new LinkedList<String>();
+		
+		while (!words.isEmpty()) {
+			results.addFirst(words.poll());
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Checks whether a word holds only the letters A-Z.
+	 * @param word to check
+	 * @return true if every character is an upper case letter
+	 */
+	private static boolean isLetters(String word) {
+		for (int index = 0; index < word.length(); index++) {
+			char letter = word.charAt(index);
+			
+			if (letter < 'A' || letter > 'Z') {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Recursively finds the best phrase split of a specified message.
 	 * More likely phrases and phrases with fewer unknown characters are ranked higher.
@@ -0,0 +1,28 @@
+package main.java.cryptanalysis.nlp;
+
+/**
+ * FitnessFunction.java
+ * 
+ * A statistic scoring how closely a message of letter indices (0-25) resembles the language of a corpus. Higher
+ * scores are better.
+ * 
+ * Implementations are immutable once built, so a single instance may be shared between any number of threads, and
+ * each search stage may use its own statistic. See StatisticsGenerator.getFitnessFunction() for the available
+ * statistics.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+public interface FitnessFunction {
+	/**
+	 * Computes the fitness score of a message.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param length
+	 * 				Number of letters of the message to score
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int length);
+}
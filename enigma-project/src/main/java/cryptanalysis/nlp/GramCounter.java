@@ -0,0 +1,126 @@
+package main.java.cryptanalysis.nlp;
+
+/**
+ * GramCounter.java
+ * 
+ * Counts character n-grams of a message of letter indices (0-25) into dense count arrays, indexed by the packed
+ * letter indices of each gram. Used by the Index of Coincidence and Chi-Squared statistics in place of building a
+ * Corpus per message.
+ * 
+ * Each thread has its own counter (see get()), and the count arrays are reused between messages. Only the entries
+ * touched by a message are cleared afterwards, so the cost of a count is proportional to the message length rather
+ * than the table size.
+ * 
+ * This class is not thread safe; use the instance returned by get() on the calling thread only.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+class GramCounter {
+	private static final ThreadLocal<GramCounter> counters = new ThreadLocal<GramCounter>() {
+		protected GramCounter initialValue() {
+			return new GramCounter();
+		}
+	};
+	
+	// Count arrays indexed by gram length, allocated on first use.
+	private final int[][] countTables = new int[NgramTable.MAX_LENGTH + 1][];
+	
+	/**
+	 * Gets the calling thread's counter.
+	 * @return GramCounter
+	 */
+	static GramCounter get() {
+		return counters.get();
+	}
+	
+	/**
+	 * Counts the grams of a message. The returned array is reused, and must be cleared with clear() using the
+	 * same arguments once the caller is done with it.
+	 * @param message letter indices, an int array
+	 * @param length number of letters to count, an int
+	 * @param gramLength gram length, 1 to 5
+	 * @return counts indexed by packed letter indices, an int array of 26^gramLength entries
+	 */
+	int[] count(int[] message, int length, int gramLength) {
+		int[] counts = getTable(gramLength);
+		int size = counts.length;
+		int index = 0;
+		
+		for (int position = 0; position < length; position++) {
+			index = (index * 26 + message[position]) % size;
+			
+			if (position >= gramLength - 1) {
+				counts[index]++;
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Counts the grams of a message and returns the sum of count * (count - 1) over all grams, the numerator of the
+	 * Index of Coincidence. The counts are cleared before returning.
+	 * @param message letter indices, an int array
+	 * @param length number of letters to count, an int
+	 * @param gramLength gram length, 1 to 5
+	 * @return sum of count * (count - 1), a long
+	 */
+	long countCoincidences(int[] message, int length, int gramLength) {
+		int[] counts = getTable(gramLength);
+		int size = counts.length;
+		int index = 0;
+		long result = 0;
+		
+		for (int position = 0; position < length; position++) {
+			index = (index * 26 + message[position]) % size;
+			
+			if (position >= gramLength - 1) {
+				// Going from c to c + 1 adds (c + 1) * c - c * (c - 1) = 2c to the sum.
+				result += 2L * counts[index]++;
+			}
+		}
+		
+		clear(message, length, gramLength);
+		
+		return result;
+	}
+	
+	/**
+	 * Resets the counts touched by a previous count() of the same message.
+	 * @param message letter indices, an int array
+	 * @param length number of letters counted, an int
+	 * @param gramLength gram length, 1 to 5
+	 */
+	void clear(int[] message, int length, int gramLength) {
+		int[] counts = getTable(gramLength);
+		int size = counts.length;
+		int index = 0;
+		
+		for (int position = 0; position < length; position++) {
+			index = (index * 26 + message[position]) % size;
+			counts[index] = 0;
+		}
+	}
+	
+	/**
+	 * Gets the count array for a gram length, allocating it on first use.
+	 * @param gramLength gram length, 1 to 5
+	 * @return count array, an int array of 26^gramLength entries
+	 */
+	private int[] getTable(int gramLength) {
+		if (countTables[gramLength] == null) {
+			int size = 1;
+			
+			for (int i = 0; i < gramLength; i++) {
+				size *= 26;
+			}
+			
+			countTables[gramLength] = new int[size];
+		}
+		
+		return countTables[gramLength];
+	}
+}
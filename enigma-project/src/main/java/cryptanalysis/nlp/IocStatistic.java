@@ -0,0 +1,67 @@
+package main.java.cryptanalysis.nlp;
+
+/**
+ * IocStatistic.java
+ * 
+ * Index of Coincidence of a message for a single gram length from 1 to 5: the sum of c(c - 1) over the count c of
+ * each gram, normalized by n(n - 1) for a message of n letters.
+ * 
+ * Grams are counted into the calling thread's GramCounter, so instances hold no mutable state and are safe to share
+ * between threads.
+ * 
+ * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/index-coincidence/">Practical Cryptography: Index of Coincidence</a>
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+public class IocStatistic implements FitnessFunction {
+	private final int gramLength;
+	
+	/**
+	 * Constructor.
+	 * @param gramLength
+	 * 				Gram length, 1 to 5
+	 */
+	public IocStatistic(int gramLength) {
+		this.gramLength = gramLength;
+	}
+	
+	/**
+	 * @return the gram length, an int
+	 */
+	public int getGramLength() {
+		return gramLength;
+	}
+	
+	/**
+	 * Computes the Index of Coincidence of a message.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param length
+	 * 				Number of letters of the message to score
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int length) {
+		return score(message, length, gramLength, length);
+	}
+	
+	/**
+	 * Computes the Index of Coincidence, normalized by the provided message length.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param length
+	 * 				Number of letters of the message to score
+	 * @param gramLength
+	 * 				Gram length, 1 to 5
+	 * @param normalLength
+	 * 				Message length used to normalize the result
+	 * @return fitness score, a double
+	 */
+	static double score(int[] message, int length, int gramLength, int normalLength) {
+		long coincidences = GramCounter.get().countCoincidences(message, length, gramLength);
+		
+		return coincidences / ((double) normalLength * (normalLength - 1));
+	}
+}
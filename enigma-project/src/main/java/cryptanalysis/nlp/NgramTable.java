@@ -0,0 +1,351 @@
+package main.java.cryptanalysis.nlp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * NgramTable.java
+ * 
+ * Dense table of character n-gram log probabilities (Sinkov's statistic) for a single gram length from 1 to 5.
+ * Grams are indexed by their packed letter indices, e.g. a trigram ABC is (0 * 26 + 1) * 26 + 2, so a lookup is a
+ * single array load. Grams not present in the corpus hold the floor value (1 / 1000 of a single instance of a gram).
+ * 
+ * Messages are scored with a rolling index, idx = (idx * 26 + c) % 26^n, so each letter is touched once regardless
+ * of the gram length.
+ * 
+ * Tables are immutable once built and are safe to share between threads. A table is the FitnessFunction for the
+ * Sinkov statistic of its gram length.
+ * 
+ * A table can be written to a table file and memory mapped from it, rather than built from a corpus. A mapped table
+ * is read from the page cache in place, so every process mapping the same file shares a single copy, and even a
+ * quintgram table (47 MB) takes no heap. Table files are a header of big-endian values: the magic number "ENGT", the
+ * format version (currently 1), the gram length and the best log probability. The log probabilities follow as
+ * 26^length little-endian floats, the byte order of most hosts, so a mapped table is read without byte swapping.
+ * Run as a program to write the table files of a corpus: NgramTable corpus-file directory. Table files are replaced
+ * by renaming a new file over them, so processes that have the old file mapped keep reading the old table.
+ * 
+ * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams/">Practical Cryptography: Quadgram Statistics as a Fitness Measure</a>
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Nov 26, 2013
+ */
+public class NgramTable implements FitnessFunction {
+	public static final int MAX_LENGTH = 5;
+	public static final int FILE_MAGIC = 0x454E4754;		// "ENGT"
+	public static final int FILE_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	
+	private final int length;		// Gram length.
+	private final int size;			// 26^length, the number of possible grams.
+	private final float[] logTable;			// Null if mapped.
+	private final FloatBuffer mappedTable;	// Null unless mapped.
+	private final float maxLog;		// Best log probability of any gram.
+	
+	/**
+	 * Constructor building the log probabilities from dense gram counts.
+	 * @param counts
+	 * 				Dense gram counts indexed by packed letter indices, 26^length entries
+	 * @param totalCount
+	 * 				Total gram count of the corpus
+	 * @param length
+	 * 				Gram length, 1 to 5
+	 */
+	public NgramTable(int[] counts, long totalCount, int length) {
+		this.length = length;
+		this.size = counts.length;
+		
+		logTable = new float[size];
+		mappedTable = null;
+		
+		// Set floor value to 1 / 1000 of single instance of gram. See above references.
+		float floorLog = (float) (-3.0 + Math.log10(1.0 / totalCount));
+		
+		// log probabilities are used to avoid numerical underflow. See above references.
+		for (int index = 0; index < size; index++) {
+			logTable[index] = (counts[index] > 0) ? (float) Math.log10((double) counts[index] / totalCount) : floorLog;
+		}
+		
+		float best = floorLog;
+		
+		for (float log : logTable) {
+			best = Math.max(best, log);
+		}
+		
+		maxLog = best;
+	}
+	
+	/**
+	 * Constructor for a mapped table.
+	 * @param table
+	 * 				Mapped log probabilities, 26^length entries
+	 * @param length
+	 * 				Gram length, 1 to 5
+	 * @param maxLog
+	 * 				Best log probability of any gram
+	 */
+	private NgramTable(FloatBuffer table, int length, float maxLog) {
+		this.length = length;
+		this.size = table.capacity();
+		this.maxLog = maxLog;
+		
+		logTable = null;
+		mappedTable = table;
+	}
+	
+	/**
+	 * Builds a table from the gram counts of a corpus.
+	 * @param corpus
+	 * 				Corpus
+	 * @param length
+	 * 				Gram length, 1 to 5
+	 * @return the table, or null if the corpus has no grams of that length.
+	 */
+	public static NgramTable fromCorpus(Corpus corpus, int length) {
+		long totalCount = corpus.getTotalGramCount(length);
+		
+		if (totalCount <= 0) {
+			return null;
+		}
+		
+		return new NgramTable(corpus.getDenseGramCounts(length), totalCount, length);
+	}
+	
+	/**
+	 * Memory maps a table from a table file. The file should not be changed while mapped.
+	 * @param file
+	 * 				Table file
+	 * @return the mapped table
+	 * @throws IOException
+	 * 				if the file cannot be read or mapped, is not a table file, or is of a later format version
+	 */
+	public static NgramTable map(File file) throws IOException {
+		int length;
+		float maxLog;
+		
+		try (DataInputStream header = new DataInputStream(new FileInputStream(file))) {
+			if (header.readInt() != FILE_MAGIC) {
+				throw new IOException("Not an n-gram table file: " + file);
+			}
+			
+			int version = header.readInt();
+			
+			if (version < 1 || version > FILE_VERSION) {
+				throw new IOException("Unsupported n-gram table format version: " + version);
+			}
+			
+			length = header.readInt();
+			maxLog = header.readFloat();
+		}
+		
+		if (length < 1 || length > MAX_LENGTH) {
+			throw new IOException("Unsupported gram length: " + length);
+		}
+		
+		long bytes = 4L * getSize(length);
+		
+		// The mapping stays valid once the channel is closed.
+		try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			if (input.length() != HEADER_SIZE + bytes) {
+				throw new IOException("Truncated n-gram table file: " + file);
+			}
+			
+			ByteBuffer mapped = input.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, bytes);
+			
+			return new NgramTable(mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), length, maxLog);
+		}
+	}
+	
+	/**
+	 * Writes the table in the table file format.
+	 * @param out
+	 * 				OutputStream to write to, flushed and left open
+	 * @throws IOException
+	 * 				if the stream cannot be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		
+		data.writeInt(FILE_MAGIC);
+		data.writeInt(FILE_VERSION);
+		data.writeInt(length);
+		data.writeFloat(maxLog);
+		
+		ByteBuffer bytes = ByteBuffer.allocate(4 * size).order(ByteOrder.LITTLE_ENDIAN);
+		
+		for (int index = 0; index < size; index++) {
+			bytes.putFloat(getLogProbability(index));
+		}
+		
+		data.write(bytes.array());
+		data.flush();
+	}
+	
+	/**
+	 * Writes the table file of a gram length of a corpus, replacing any table file there.
+	 * @param corpus
+	 * 				Corpus
+	 * @param length
+	 * 				Gram length, 1 to 5
+	 * @param directory
+	 * 				Directory to write the table file to
+	 * @return true if the table file was written, false if the corpus has no grams of that length
+	 * @throws IOException
+	 * 				if the table file cannot be written
+	 */
+	public static boolean writeFile(Corpus corpus, int length, File directory) throws IOException {
+		NgramTable table = fromCorpus(corpus, length);
+		
+		if (table == null) {
+			return false;
+		}
+		
+		File file = new File(directory, getFileName(length));
+		File temporary = File.createTempFile(getFileName(length), ".tmp", directory);
+		
+		try {
+			try (OutputStream out = new FileOutputStream(temporary)) {
+				table.write(out);
+			}
+			
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			temporary.delete();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @param length
+	 * 				Gram length
+	 * @return the table file name for the gram length
+	 */
+	public static String getFileName(int length) {
+		return "ngrams" + length + ".table";
+	}
+	
+	/**
+	 * @param length
+	 * 				Gram length
+	 * @return 26^length, the number of possible grams
+	 */
+	private static int getSize(int length) {
+		int size = 1;
+		
+		for (int i = 0; i < length; i++) {
+			size *= 26;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * @return the gram length, an int
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Gets the log probability of a single gram.
+	 * @param index
+	 * 				Packed letter indices of the gram
+	 * @return log probability, a float
+	 */
+	public float getLogProbability(int index) {
+		return (logTable != null) ? logTable[index] : mappedTable.get(index);
+	}
+	
+	/**
+	 * Gets the best log probability of any gram, an upper bound on the score of each gram of a message.
+	 * @return log probability, a float
+	 */
+	public float getMaxLogProbability() {
+		return maxLog;
+	}
+	
+	/**
+	 * Computes the log probability of a sequence of letter indices (0-25).
+	 * @param message
+	 * 				Letter indices to score
+	 * @param messageLength
+	 * 				Number of letters of the message to score
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int messageLength) {
+		return score(message, 0, messageLength, 0.0);
+	}
+	
+	/**
+	 * Continues the log probability of a sequence of letter indices (0-25), adding the grams ending at positions
+	 * start to end - 1. Scoring a message in consecutive parts gives the same result as scoring it whole.
+	 * @param message
+	 * 				Letter indices to score
+	 * @param start
+	 * 				Position of the last letter of the first gram to add, inclusive
+	 * @param end
+	 * 				Position of the last letter of the last gram to add, exclusive
+	 * @param partial
+	 * 				Score of the grams ending before start
+	 * @return fitness score, a double
+	 */
+	public double score(int[] message, int start, int end, double partial) {
+		double result = partial;
+		int first = Math.max(start, length - 1);
+		int index = 0;
+		
+		// Prime the rolling index with the first gram, less its last letter.
+		for (int position = first - (length - 1); position < first && position < end; position++) {
+			index = index * 26 + message[position];
+		}
+		
+		// Separate loops keep the array lookup free of a per-gram check.
+		if (logTable != null) {
+			for (int position = first; position < end; position++) {
+				index = (index * 26 + message[position]) % size;
+				result += logTable[index];
+			}
+		}
+		else {
+			for (int position = first; position < end; position++) {
+				index = (index * 26 + message[position]) % size;
+				result += mappedTable.get(index);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Writes the table file of each gram length a corpus has grams of.
+	 * @param args
+	 * 				Corpus file name, binary or serialized, then the directory to write to
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		if (args.length != 2) {
+			System.err.println("Usage: NgramTable corpus-file directory");
+			System.exit(1);
+		}
+		
+		Corpus corpus = CorpusFile.load(new File(args[0]));
+		
+		for (int length = 1; length <= MAX_LENGTH; length++) {
+			writeFile(corpus, length, new File(args[1]));
+		}
+	}
+}
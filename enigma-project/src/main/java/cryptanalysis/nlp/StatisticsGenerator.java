@@ -1,6 +1,8 @@
 package main.java.cryptanalysis.nlp;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * StatisticsGenerator.java
@@ -19,6 +21,13 @@ import java.util.HashMap;
  * 7 - Quadgram character probability. (Index of Coincidence)
  * 8 - Unigram character probability. (Chi-Squared Statistic)
  * 9 - Bigram character probability. (Chi-Squared Statistic)
+ * 10 - Quintgram character probability. (Sinkov's statistic)
+ * 
+ * Sinkov statistics on letter indices (0-25) are computed from dense NgramTables, which are built from the corpus the
+ * first time each gram length is used, unless mapped from table files by mapNgramTables().
+ * 
+ * The selected statistic is shared by every caller of computeFitnessScore(). Concurrent searches should instead take
+ * an immutable FitnessFunction per statistic from getFitnessFunction(), which may be shared freely between threads.
  * 
  * @see <a href="http://practicalcryptography.com/cryptanalysis/breaking-machine-ciphers/cryptanalysis-enigma/">Practical Cryptography: Cryptanalysis of Enigma</a>
  * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams/">Practical Cryptography: Quadgram Statistics as a Fitness Measure</a>
@@ -30,9 +39,24 @@ import java.util.HashMap;
  * 
  */
 public class StatisticsGenerator {
+	public static final int NUM_STATISTICS = 11;
+	
+	// Scores every message as negative infinity. Used for statistics the corpus has no grams for.
+	private static final FitnessFunction UNAVAILABLE = new FitnessFunction() {
+		public double score(int[] message, int length) {
+			return Double.NEGATIVE_INFINITY;
+		}
+	};
+	
 	private Corpus database;
 	private int statIndex;		// Used to select statistic to use.
 	
+	// Dense log probability tables, indexed by gram length. Built on first use.
+	private final AtomicReferenceArray<NgramTable> ngramTables = new AtomicReferenceArray<NgramTable>(NgramTable.MAX_LENGTH + 1);
+	
+	// Fitness functions, indexed by statistic. Built on first use.
+	private final AtomicReferenceArray<FitnessFunction> fitnessFunctions = new AtomicReferenceArray<FitnessFunction>(NUM_STATISTICS);
+	
 	/**
 	 * Default constructor specifying the corpus and the statistic to use.
 	 * @param newDatabase
@@ -46,7 +70,118 @@ public class StatisticsGenerator {
 	}
 	
 	/**
-	 * Select a statistic, according to the table above.
+	 * Gets the dense log probability table for a gram length, building it from the corpus on first use.
+	 * @param length gram length, 1 to 5
+	 * @return the table, or null if the corpus has no grams of that length
+	 */
+	public NgramTable getNgramTable(int length) {
+		NgramTable table = ngramTables.get(length);
+		
+		if (table == null) {
+			table = NgramTable.fromCorpus(database, length);
+			
+			if (table != null && !ngramTables.compareAndSet(length, null, table)) {
+				table = ngramTables.get(length);	// Another thread finished first.
+			}
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Memory maps the table file of each gram length found in a directory (see NgramTable), to be used in place of
+	 * tables built from the corpus. Should be called before the tables are used, as fitness functions already built
+	 * keep the tables they were built with.
+	 * @param directory directory holding the table files
+	 * @return the number of tables mapped
+	 * @throws IOException if a table file cannot be mapped
+	 */
+	public int mapNgramTables(File directory) throws IOException {
+		int count = 0;
+		
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			File file = new File(directory, NgramTable.getFileName(length));
+			
+			if (file.isFile()) {
+				NgramTable table = NgramTable.map(file);
+				
+				if (table.getLength() != length) {
+					throw new IOException("Gram length mismatch: " + file);
+				}
+				
+				ngramTables.set(length, table);
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the fitness function for a statistic, according to the table above, building it on first use.
+	 * The returned function is immutable and safe to share between threads.
+	 * @param statistic
+	 * 				int, 0 to 10
+	 * @return FitnessFunction, scoring negative infinity if the corpus has no grams for the statistic
+	 */
+	public FitnessFunction getFitnessFunction(int statistic) {
+		if (statistic < 0 || statistic >= NUM_STATISTICS) {
+			throw new IllegalArgumentException("Unsupported statistic: " + statistic);
+		}
+		
+		FitnessFunction function = fitnessFunctions.get(statistic);
+		
+		if (function == null) {
+			function = createFitnessFunction(statistic);
+			
+			if (!fitnessFunctions.compareAndSet(statistic, null, function)) {
+				function = fitnessFunctions.get(statistic);	// Another thread finished first.
+			}
+		}
+		
+		return function;
+	}
+	
+	/**
+	 * Builds the fitness function for a statistic.
+	 * @param statistic
+	 * 				int, 0 to 10
+	 * @return FitnessFunction
+	 */
+	private FitnessFunction createFitnessFunction(int statistic) {
+		switch (statistic) {
+			case 0:		// Sinkov unigram through quadgram character probability.
+			case 1:
+			case 2:
+			case 3:
+				return getSinkovFunction(statistic + 1);
+			case 10:	// Sinkov quintgram character probability.
+				return getSinkovFunction(5);
+			case 4:		// Index of Coincidence unigram through quadgram character probability.
+			case 5:
+			case 6:
+			case 7:
+				return new IocStatistic(statistic - 3);
+			case 8:		// Chi-Squared unigram probability.
+				return new ChiSquaredUnigramStatistic(database.getDenseGramCounts(1), database.getTotalUnigramCount());
+			default:	// Chi-Squared bigram probability.
+				return new ChiSquaredBigramStatistic(database.getDenseGramCounts(2), database.getTotalBigramCount());
+		}
+	}
+	
+	/**
+	 * @param gramLength gram length, 1 to 5
+	 * @return the Sinkov table for the gram length, or a function scoring negative infinity if there is none
+	 */
+	private FitnessFunction getSinkovFunction(int gramLength) {
+		NgramTable table = getNgramTable(gramLength);
+		
+		return (table != null) ? table : UNAVAILABLE;
+	}
+	
+	/**
+	 * Select a statistic, according to the table above. The selection is shared by every caller of
+	 * computeFitnessScore(), so it should not be changed while other threads are scoring.
 	 * @param test
 	 * 			int
 	 */
@@ -81,11 +216,63 @@ public class StatisticsGenerator {
 				return computeChiSquaredUnigramProbability(message);
 			case 9:		// Chi-Squared bigram probability.
 				return computeChiSquaredBigramProbability(message);
+			case 10:	// Sinkov quintgram character probability.
+				int[] indices = toIndices(message);
+				return computeSinkovProbability(indices, indices.length, 5);
 			default:	// Error condition.
 				return Double.NEGATIVE_INFINITY;
 		}
 	}
 	
+	/**
+	 * Computes a fitness score of a message of letter indices (0-25), using a previously set statistic method.
+	 * @param message to analyze, an array of letter indices
+	 * @return fitness score, a double
+	 */
+	public double computeFitnessScore(int[] message) {
+		if (statIndex < 0 || statIndex >= NUM_STATISTICS) {
+			return Double.NEGATIVE_INFINITY;	// Error condition.
+		}
+		
+		return getFitnessFunction(statIndex).score(message, message.length);
+	}
+	
+	/**
+	 * Computes log probability of a sequence of letter indices (0-25) using Sinkov's Statistic for the given
+	 * gram length. Does not depend on the selected statistic, so callers may use different gram lengths
+	 * concurrently.
+	 * @param message to analyze, an array of letter indices
+	 * @param length number of letters of the message to score, an int
+	 * @param gramLength gram length, 1 to 5
+	 * @return fitness score, a double, or negative infinity if the corpus has no grams of that length
+	 */
+	public double computeSinkovProbability(int[] message, int length, int gramLength) {
+		return getSinkovFunction(gramLength).score(message, length);
+	}
+	
+	/**
+	 * Converts an uppercase String to letter indices (0-25). Non-letter characters are dropped.
+	 * @param message the message, a String
+	 * @return letter indices, an int array
+	 */
+	private static int[] toIndices(String message) {
+		int[] result = new int[message.length()];
+		int count = 0;
+		
+		for (int index = 0; index < message.length(); index++) {
+			char character = message.charAt(index);
+			
+			if (character >= 'A' && character <= 'Z') {
+				result[count++] = character - 'A';
+			}
+		}
+		
+		int[] trimmed = new int[count];
+		System.arraycopy(result, 0, trimmed, 0, count);
+		
+		return trimmed;
+	}
+	
 	/**
 	 * Computes log probability of a unigram character string compared to a corpus using Sinkov's Statistic.
 	 * @param message to analyze, a String
@@ -210,212 +397,125 @@ public class StatisticsGenerator {
 		return result;
 	}
 	
+	/**
+	 * Computes log probability of a quadgram sequence of letter indices (0-25) using Sinkov's Statistic.
+	 * Uses the precomputed quadgram table, so each position is a single array load.
+	 * @param message to analyze, an array of letter indices
+	 * @param length number of letters of the message to score, an int
+	 * @return fitness score, a double
+	 */
+	public double computeSinkovQuadgramProbability(int[] message, int length) {
+		return computeSinkovProbability(message, length, 4);
+	}
+	
 	/**
 	 * Computes log probability of a unigram character string compared to a corpus using Index of Coincidence.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeIocUnigramProbability(String message) {
-		Corpus iocCounter = new Corpus();
-		
-		double result = 0.0;
-
-		char[] characters = message.toCharArray();
-		
-		// Count gram instances.
-		for (int index = 0; index < message.length(); index++) {
-			String gram = "" + characters[index];
-			iocCounter.addUnigram(gram);
-		}
-		
-		// Compute Index of Coincidences.
-		for (String gram: iocCounter.getUnigramTestQueue()) {
-			long count = iocCounter.getUnigramCount(gram);
-			
-			result += count * (count - 1);
-		}
-		
-		result /= message.length() * (message.length() - 1);
-		
-		return result;
+		return computeIocProbability(message, 1);
 	}
 	
 	/**
 	 * Computes log probability of a bigram character string compared to a corpus using Index of Coincidence.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeIocBigramProbability(String message) {
-		Corpus iocCounter = new Corpus();
-		
-		double result = 0.0;
-		
-		char[] characters = message.toCharArray();
-		
-		// Count gram instances.
-		for (int index = 0; index < message.length() - 1; index++) {
-			String gram = "" + characters[index] + characters[index + 1];
-			iocCounter.addBigram(gram);
-		}
-		
-		// Compute Index of Coincidences.
-		for (String gram: iocCounter.getBigramTestQueue()) {
-			long count = iocCounter.getBigramCount(gram);
-			
-			result += count * (count - 1);
-		}
-		
-		result /= message.length() * (message.length() - 1);
-		
-		return result;
+		return computeIocProbability(message, 2);
 	}
 	
 	/**
 	 * Computes log probability of a trigram character string compared to a corpus using Index of Coincidence.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeIocTrigramProbability(String message) {
-		Corpus iocCounter = new Corpus();
-		
-		double result = 0.0;
-		
-		char[] characters = message.toCharArray();
-		
-		// Count gram instances.
-		for (int index = 0; index < message.length() - 2; index++) {
-			String gram = "" + characters[index] + characters[index + 1] + characters[index + 2];
-			iocCounter.addTrigram(gram);
-		}
-		
-		// Compute Index of Coincidences.
-		for (String gram: iocCounter.getTrigramTestQueue()) {
-			long count = iocCounter.getTrigramCount(gram);
-			
-			result += count * (count - 1);
-		}
-		
-		result /= message.length() * (message.length() - 1);
-		
-		return result;
+		return computeIocProbability(message, 3);
 	}
 	
 	/**
 	 * Computes log probability of a quadgram character string compared to a corpus using Index of Coincidence.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeIocQuadgramProbability(String message) {
-		Corpus iocCounter = new Corpus();
-		
-		double result = 0.0;
-		
-		char[] characters = message.toCharArray();
-		
-		// Count gram instances.
-		for (int index = 0; index < message.length() - 3; index++) {
-			String gram = "" + characters[index] + characters[index + 1] + characters[index + 2] + characters[index + 3];
-			iocCounter.addQuadgram(gram);
-		}
-		
-		// Compute Index of Coincidences.
-		for (String gram: iocCounter.getQuadgramTestQueue()) {
-			long count = iocCounter.getQuadgramCount(gram);
-			
-			result += count * (count - 1);
-		}
-		
-		result /= message.length() * (message.length() - 1);
+		return computeIocProbability(message, 4);
+	}
+	
+	/**
+	 * Computes the Index of Coincidence of a sequence of letter indices (0-25) for the given gram length.
+	 * Grams are counted into reusable per-thread arrays, so no allocation is done per call.
+	 * @param message to analyze, an array of letter indices
+	 * @param length number of letters of the message to analyze, an int
+	 * @param gramLength gram length, 1 to 5
+	 * @return fitness score, a double
+	 */
+	public double computeIocProbability(int[] message, int length, int gramLength) {
+		return IocStatistic.score(message, length, gramLength, length);
+	}
+	
+	/**
+	 * Computes the Index of Coincidence of the letters of a String, normalized by its full length.
+	 * @param message to analyze, a String
+	 * @param gramLength gram length, 1 to 5
+	 * @return fitness score, a double
+	 */
+	private static double computeIocProbability(String message, int gramLength) {
+		int[] indices = toIndices(message);
 		
-		return result;
+		return IocStatistic.score(indices, indices.length, gramLength, message.length());
 	}
 	
 	/**
 	 * Computes log probability of a unigram character string compared to a corpus using Chi-Squared Statistic.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeChiSquaredUnigramProbability(String message) {
-		Corpus gramCounter = new Corpus();
-		
-		double result = 0.0;
-		
-		char[] characters = message.toCharArray();
+		int[] indices = toIndices(message);
 		
-		// Count gram instances.
-		for (int index = 0; index < message.length(); index++) {
-			String gram = "" + characters[index];
-			gramCounter.addUnigram(gram);
-		}
-		
-		// Count gram instances.
-		for (String gram: gramCounter.getUnigramTestQueue()) {
-			double count = gramCounter.getUnigramCount(gram);
-			double unigramCount = database.getUnigramCount(gram);
-			long totalCount = database.getTotalUnigramCount();
-			
-			double relativeFreq = count / message.length();
-			double absoluteFreq = unigramCount / totalCount;
-			
-			result += -(relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
-		}
-		
-		return result;
+		return computeChiSquaredUnigramProbability(indices, indices.length);
+	}
+	
+	/**
+	 * Computes log probability of a sequence of letter indices (0-25) compared to a corpus using Chi-Squared
+	 * Statistic on unigrams.
+	 * @param message to analyze, an array of letter indices
+	 * @param length number of letters of the message to analyze, an int
+	 * @return fitness score, a double
+	 */
+	public double computeChiSquaredUnigramProbability(int[] message, int length) {
+		return getFitnessFunction(8).score(message, length);
 	}
 	
 	/**
 	 * Computes log probability of a bigram character string compared to a corpus using Chi-Squared Statistic.
+	 * Non-letter characters are not counted.
 	 * @param message to analyze, a String
 	 * @return fitness score, a double
 	 */
 	public double computeChiSquaredBigramProbability(String message) {
-		Corpus gramCounter = new Corpus();
-		
-		double result = 0.0;
-		
-		char[] characters = message.toCharArray();
-		
-		HashMap<Character, Integer> bigramFirstLetterCount = new HashMap<Character, Integer>();
-		
-		for (int index = 0; index < 26; index++) {
-			bigramFirstLetterCount.put((char)('A' + index), 0);
-		}
-		
-		// Count gram instances.
-		for (int index = 0; index < message.length() - 1; index++) {
-			String gram = "" + characters[index] + characters[index + 1];
-
-			int count = bigramFirstLetterCount.get(characters[index]) + 1;
-			bigramFirstLetterCount.put(characters[index], count);
-			
-			gramCounter.addUnigram("" + characters[index]);
-			gramCounter.addBigram(gram);
-		}
-		
-		gramCounter.addUnigram("" + characters[message.length() - 1]);
+		int[] indices = toIndices(message);
 		
-		// Count gram instances.
-		for (int i = 0; i < 26; i++) {
-			for (int j = 0; j < 26; j++) {
-				char first = (char)(i + 'A');
-				char second = (char)(j + 'A');
-				String gram = "" + first + second;
-				
-				int unigramCount = gramCounter.getUnigramCount("" + first);
-				int bigramCount = gramCounter.getBigramCount(gram);
-				double bigramLetterCount = bigramFirstLetterCount.get(first);
-				double bigramTotalCount = database.getBigramCount(gram);
-				int totalCount = database.getTotalBigramCount();
-				
-				if (bigramLetterCount > 0 && bigramTotalCount > 0) {
-					double relativeFreq = bigramCount / bigramLetterCount;
-					double absoluteFreq = bigramTotalCount / totalCount;
-					
-					result += -unigramCount * (relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
-				}
-			}
-		}
-		
-		return result;
+		return computeChiSquaredBigramProbability(indices, indices.length);
+	}
+	
+	/**
+	 * Computes log probability of a sequence of letter indices (0-25) compared to a corpus using Chi-Squared
+	 * Statistic on bigrams. Each bigram's frequency is taken relative to its first letter, and weighted by that
+	 * letter's count.
+	 * @param message to analyze, an array of letter indices
+	 * @param length number of letters of the message to analyze, an int
+	 * @return fitness score, a double
+	 */
+	public double computeChiSquaredBigramProbability(int[] message, int length) {
+		return getFitnessFunction(9).score(message, length);
 	}
 }
@@ -0,0 +1,199 @@
+package main.java.cryptanalysis.nlp;
+
+import java.util.Arrays;
+
+/**
+ * TrimSettings.java
+ *
+ * Thresholds used by Corpus.trimCorpus to remove grams and words unlikely to be valid text. Each table of a corpus is
+ * trimmed to the grams or words meeting every threshold that is set:
+ *
+ * Relative threshold: a count of at least total / threshold + 1, where total is the total count of the table (by
+ * default one in a million, plus one).
+ * Minimum count: a count of at least the minimum.
+ * Maximum size: among the most frequent of the table, the table size.
+ * Cumulative mass: among the most frequent, whose counts add up to the fraction of the counts of the table.
+ *
+ * Grams and words tied with the last one kept by the maximum size or cumulative mass are kept too, so the result does
+ * not depend on table order. The counts are only sorted if one of these two is set; otherwise a table is trimmed in
+ * a single pass over its counts.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 12, 2013
+ */
+public class TrimSettings {
+	public static final int DEFAULT_RELATIVE_THRESHOLD = 1000000;
+	
+	private int relativeThreshold = DEFAULT_RELATIVE_THRESHOLD;	// 0 to disable.
+	private int minimumCount = 0;			// 0 to disable.
+	private int maximumSize = 0;			// 0 to disable.
+	private double cumulativeMass = 1.0;	// 1.0 to disable.
+	private boolean trimUnigrams = false;
+	
+	/**
+	 * @return the relative threshold, 0 if disabled
+	 */
+	public int getRelativeThreshold() {
+		return relativeThreshold;
+	}
+	
+	/**
+	 * @param threshold
+	 * 				Counts of less than total / threshold + 1 are trimmed, 0 to disable
+	 * @throws IllegalArgumentException
+	 * 				if the threshold is negative
+	 */
+	public void setRelativeThreshold(int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Invalid relative threshold: " + threshold);
+		}
+		
+		relativeThreshold = threshold;
+	}
+	
+	/**
+	 * @return the minimum count, 0 if disabled
+	 */
+	public int getMinimumCount() {
+		return minimumCount;
+	}
+	
+	/**
+	 * @param count
+	 * 				Counts of less than the minimum are trimmed, 0 to disable
+	 * @throws IllegalArgumentException
+	 * 				if the count is negative
+	 */
+	public void setMinimumCount(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Invalid minimum count: " + count);
+		}
+		
+		minimumCount = count;
+	}
+	
+	/**
+	 * @return the maximum table size, 0 if disabled
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * @param size
+	 * 				Number of the most frequent grams or words to keep in each table, 0 to disable
+	 * @throws IllegalArgumentException
+	 * 				if the size is negative
+	 */
+	public void setMaximumSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Invalid maximum size: " + size);
+		}
+		
+		maximumSize = size;
+	}
+	
+	/**
+	 * @return the cumulative mass, 1.0 if disabled
+	 */
+	public double getCumulativeMass() {
+		return cumulativeMass;
+	}
+	
+	/**
+	 * @param mass
+	 * 				Fraction of the counts of each table the most frequent grams or words kept must add up to, 1.0 to
+	 * 				disable
+	 * @throws IllegalArgumentException
+	 * 				if the mass is not greater than 0 and at most 1
+	 */
+	public void setCumulativeMass(double mass) {
+		if (!(mass > 0.0 && mass <= 1.0)) {
+			throw new IllegalArgumentException("Invalid cumulative mass: " + mass);
+		}
+		
+		cumulativeMass = mass;
+	}
+	
+	/**
+	 * @return true if the unigram table is trimmed too
+	 */
+	public boolean isTrimUnigrams() {
+		return trimUnigrams;
+	}
+	
+	/**
+	 * @param trim
+	 * 				True to trim the unigram table too. It is expected to hold only alphanumeric characters, so by
+	 * 				default it is not trimmed
+	 */
+	public void setTrimUnigrams(boolean trim) {
+		trimUnigrams = trim;
+	}
+	
+	/**
+	 * @return true if trimming needs the counts of a table in order, as the maximum size or cumulative mass is set
+	 */
+	boolean isRanked() {
+		return maximumSize > 0 || cumulativeMass < 1.0;
+	}
+	
+	/**
+	 * Gets the lowest count kept by the relative threshold and minimum count.
+	 * @param total
+	 * 				Total count of the table
+	 * @return the lowest count kept
+	 */
+	int getCountCutoff(int total) {
+		int cutoff = Math.max(1, minimumCount);
+		
+		if (relativeThreshold > 0) {
+			cutoff = Math.max(cutoff, total / relativeThreshold + 1);
+		}
+		
+		return cutoff;
+	}
+	
+	/**
+	 * Gets the lowest count kept by the maximum size and cumulative mass.
+	 * @param counts
+	 * 				Counts of the table, sorted in place
+	 * @param size
+	 * 				Number of counts
+	 * @return the lowest count kept
+	 */
+	int getRankCutoff(int[] counts, int size) {
+		Arrays.sort(counts, 0, size);
+		
+		int cutoff = 1;
+		
+		if (maximumSize > 0 && size > maximumSize) {
+			cutoff = Math.max(cutoff, counts[size - maximumSize]);
+		}
+		
+		if (cumulativeMass < 1.0) {
+			long total = 0;
+			
+			for (int index = 0; index < size; index++) {
+				total += counts[index];
+			}
+			
+			double mass = cumulativeMass * total;
+			long sum = 0;
+			
+			// Add up counts from the most frequent until the mass is reached.
+			for (int index = size - 1; index >= 0; index--) {
+				sum += counts[index];
+				
+				if (sum >= mass) {
+					cutoff = Math.max(cutoff, counts[index]);
+					break;
+				}
+			}
+		}
+		
+		return cutoff;
+	}
+}
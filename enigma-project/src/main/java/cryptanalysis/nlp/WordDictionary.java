@@ -0,0 +1,253 @@
+package main.java.cryptanalysis.nlp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WordDictionary.java
+ *
+ * Read-only word counts of a corpus read from a binary corpus file (see CorpusFile). The words are kept as the
+ * ISO-8859-1 text they were read as, in ascending order with each ended by a newline, and are looked up by binary
+ * search over that text. No String is created per word until the whole table is needed, so a dictionary is ready as
+ * soon as its text is read. For ISO-8859-1 text, byte order matches String order, so the order of the text is that
+ * of String.compareTo.
+ *
+ * Dictionaries are immutable and safe to share between threads.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 12, 2013
+ */
+final class WordDictionary {
+	private final byte[] text;
+	private final int[] starts;		// Offset of each word in the text, and of the end of the text.
+	private final int[] counts;
+	
+	/**
+	 * Constructor.
+	 * @param text
+	 * 				ISO-8859-1 words in ascending order, each ended by a newline
+	 * @param counts
+	 * 				Count of each word
+	 * @throws IllegalArgumentException
+	 * 				if the text does not hold one word per count
+	 */
+	WordDictionary(byte[] text, int[] counts) {
+		this.text = text;
+		this.counts = counts;
+		
+		starts = new int[counts.length + 1];
+		int word = 0;
+		
+		for (int index = 0; index < text.length; index++) {
+			if (text[index] == '\n') {
+				if (++word > counts.length) {
+					break;
+				}
+				
+				starts[word] = index + 1;
+			}
+		}
+		
+		if (word != counts.length || starts[word] != text.length) {
+			throw new IllegalArgumentException("Word count mismatch: " + word);
+		}
+	}
+	
+	/**
+	 * @param word
+	 * 				Word to look for
+	 * @return the count of the word, or 0 if not found
+	 */
+	int getCount(String word) {
+		int low = 0;
+		int high = counts.length - 1;
+		
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compare(middle, word);
+			
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return counts[middle];
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * @return a new array of the count of each word, in word order
+	 */
+	int[] getCounts() {
+		return counts.clone();
+	}
+	
+	/**
+	 * Removes the words of less than a count, in a single pass over the text.
+	 * @param cutoff
+	 * 				Lowest count kept
+	 * @return a new dictionary of the words kept, or this dictionary if all are kept
+	 */
+	WordDictionary trim(int cutoff) {
+		ByteArrayOutputStream kept = new ByteArrayOutputStream(text.length);
+		int[] keptCounts = new int[counts.length];
+		int size = 0;
+		
+		for (int index = 0; index < counts.length; index++) {
+			if (counts[index] >= cutoff) {
+				kept.write(text, starts[index], starts[index + 1] - starts[index]);
+				keptCounts[size++] = counts[index];
+			}
+		}
+		
+		return (size == counts.length) ? this : new WordDictionary(kept.toByteArray(), Arrays.copyOf(keptCounts, size));
+	}
+	
+	/**
+	 * @return the number of words
+	 */
+	int size() {
+		return counts.length;
+	}
+	
+	/**
+	 * @return a new table of every word and its count
+	 */
+	Map<String, Integer> toTable() {
+		Map<String, Integer> table = new HashMap<String, Integer>(counts.length * 4 / 3 + 1);
+		
+		for (int index = 0; index < counts.length; index++) {
+			int start = starts[index];
+			String word = new String(text, start, starts[index + 1] - 1 - start, StandardCharsets.ISO_8859_1);
+			
+			table.put(word, counts[index]);
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Adds or subtracts the counts of two dictionaries in a single merge pass over their text, as both are in
+	 * ascending order. Words whose count falls to zero are dropped.
+	 * @param first
+	 * 				Dictionary to add to or subtract from
+	 * @param second
+	 * 				Dictionary whose counts are added or subtracted
+	 * @param sign
+	 * 				1 to add the counts of the second dictionary, -1 to subtract them
+	 * @return a new dictionary of the combined counts
+	 * @throws IllegalArgumentException
+	 * 				if a count subtracted exceeds the count of the word in the first dictionary
+	 */
+	static WordDictionary combine(WordDictionary first, WordDictionary second, int sign) {
+		ByteArrayOutputStream text = new ByteArrayOutputStream(first.text.length + second.text.length);
+		int[] counts = new int[first.counts.length + second.counts.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		
+		while (i < first.counts.length || j < second.counts.length) {
+			int comparison;
+			
+			if (i == first.counts.length) {
+				comparison = 1;
+			}
+			else if (j == second.counts.length) {
+				comparison = -1;
+			}
+			else {
+				comparison = first.compare(i, second, j);
+			}
+			
+			WordDictionary source = (comparison <= 0) ? first : second;
+			int index = (comparison <= 0) ? i : j;
+			int count = 0;
+			
+			if (comparison <= 0) {
+				count += first.counts[i++];
+			}
+			
+			if (comparison >= 0) {
+				count += sign * second.counts[j++];
+			}
+			
+			if (count < 0) {
+				int start = source.starts[index];
+				String word = new String(source.text, start, source.starts[index + 1] - 1 - start, StandardCharsets.ISO_8859_1);
+				
+				throw new IllegalArgumentException("Subtracted word count too large: " + word);
+			}
+			
+			if (count > 0) {
+				int start = source.starts[index];
+				
+				text.write(source.text, start, source.starts[index + 1] - start);
+				counts[size++] = count;
+			}
+		}
+		
+		return new WordDictionary(text.toByteArray(), Arrays.copyOf(counts, size));
+	}
+	
+	/**
+	 * Compares a dictionary word with a word of another dictionary, as String.compareTo would.
+	 * @param index
+	 * 				Index of the dictionary word
+	 * @param other
+	 * 				Dictionary of the word to compare with
+	 * @param otherIndex
+	 * 				Index of the word to compare with
+	 * @return negative, zero or positive as the dictionary word is less than, equal to or greater than the other word
+	 */
+	private int compare(int index, WordDictionary other, int otherIndex) {
+		int start = starts[index];
+		int length = starts[index + 1] - 1 - start;
+		int otherStart = other.starts[otherIndex];
+		int otherLength = other.starts[otherIndex + 1] - 1 - otherStart;
+		int common = Math.min(length, otherLength);
+		
+		for (int i = 0; i < common; i++) {
+			int difference = (text[start + i] & 0xFF) - (other.text[otherStart + i] & 0xFF);
+			
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		
+		return length - otherLength;
+	}
+	
+	/**
+	 * Compares a dictionary word with a word, as String.compareTo would.
+	 * @param index
+	 * 				Index of the dictionary word
+	 * @param word
+	 * 				Word to compare with
+	 * @return negative, zero or positive as the dictionary word is less than, equal to or greater than the word
+	 */
+	private int compare(int index, String word) {
+		int start = starts[index];
+		int length = starts[index + 1] - 1 - start;
+		int common = Math.min(length, word.length());
+		
+		for (int i = 0; i < common; i++) {
+			int difference = (text[start + i] & 0xFF) - word.charAt(i);
+			
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		
+		return length - word.length();
+	}
+}
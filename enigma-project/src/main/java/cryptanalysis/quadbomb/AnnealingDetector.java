@@ -0,0 +1,466 @@
+package main.java.cryptanalysis.quadbomb;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.enigma.EnigmaMachine;
+
+/**
+ * AnnealingDetector.java
+ * 
+ * Worker thread running one simulated annealing chain over the plugboard and ring settings of a candidate from the
+ * ring step, as an alternative to the greedy PlugboardDetector. The greedy search keeps the single best pair of each
+ * pass, and on heavily steckered messages an early wrong pair can never be undone. A chain instead also tries
+ * removing pairs and exchanging partners, and accepts worse plugboards with a probability that falls as the chain
+ * cools, before finishing with a hill climb.
+ * 
+ * Each sweep tries a move for every pair of letters not fixed by the user's plugboard. Once cool, every hill climbing
+ * sweep also tries every middle and right ring setting, moving each indicator with its ring so only the turnovers
+ * move. Rings are only moved on wheels the ring step searched in tandem (see QuadBombSettings.getTandemStepFlags).
+ * Plugboard moves are scored with a PlugboardScorer, and accepted moves committed to it, rescoring only the positions
+ * they touch; ring moves rebuild the scorer.
+ * 
+ * The ring step scores rings without a plugboard, so with many pairs its right ring is often wrong, and a plugboard
+ * cannot be recovered with the middle rotor stepping at the wrong letters. Each chain of a candidate therefore starts
+ * from a different right ring offset. A chain restarts several times, alternately from a random plugboard and from
+ * the best result shared by all chains of the candidate. The last chain of a candidate to finish offers the shared
+ * best to the collector, and adds it to resultsList if kept. The temperature is scaled to the magnitude of the
+ * starting score, so it suits any statistic.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 10, 2013
+ */
+public class AnnealingDetector implements Callable<Boolean> {
+	private static final int SWEEPS = 20;					// Cooling sweeps per restart, before the hill climb.
+	private static final double START_TEMPERATURE = 0.01;	// As a fraction of the starting score's magnitude.
+	private static final double COOLING = 0.75;				// Temperature factor per sweep.
+	private static final int RANDOM_PAIRS = 10;				// Most pairs added to a random plugboard.
+	
+	private FitnessFunction tester;
+	private long baseCandidate;
+	private byte[] plugboard;
+	private QuadBombSettings settings;
+	private final int[] messageIndices;
+	
+	private CandidateCollector results;
+	private ConcurrentLinkedQueue<Long> resultsList;
+	private final SharedBest shared;
+	private final int chain;
+	private final Random random;
+	
+	// Chain state.
+	private final boolean[] fixed = new boolean[26];	// Letters wired by the user's plugboard.
+	private final int[] plug = new int[26];
+	private final int[] trialPlug = new int[26];		// Copy of plug, changed only while a move is being scored.
+	private final int[] letters = new int[4];			// Letters rewired by the move being scored.
+	private long candidate;
+	private PlugboardScorer scorer;
+	private double score;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param tester
+	 * 				FitnessFunction
+	 * @param candidate
+	 * 				PackedCandidate
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate, whose pairs are kept fixed
+	 * @param settings
+	 * 				QuadBombSettings
+	 * @param results
+	 * 				CandidateCollector
+	 * @param resultsList
+	 * 				ConcurrentLinkedQueue<Long>
+	 * @param message
+	 * 				String
+	 * @param shared
+	 * 				SharedBest of the chains searching the candidate
+	 * @param chain
+	 * 				Chain number, from 0
+	 */
+	public AnnealingDetector(FitnessFunction tester,
+			long candidate,
+			byte[] plugboard,
+			QuadBombSettings settings,
+			CandidateCollector results,
+			ConcurrentLinkedQueue<Long> resultsList,
+			String message,
+			SharedBest shared,
+			int chain)
+	{
+		this.tester = tester;
+		this.baseCandidate = candidate;
+		this.plugboard = (plugboard != null) ? plugboard : PackedCandidate.packPlugboard("");
+		this.settings = settings;
+		this.results = results;
+		this.resultsList = resultsList;
+		this.messageIndices = EnigmaMachine.toIndices(message);
+		this.shared = shared;
+		this.chain = chain;
+		this.random = new Random(candidate * 31 + chain);
+	}
+	
+	/**
+	 * Required by Callable. Workhorse method.
+	 */
+	public Boolean call() {
+		for (int letter = 0; letter < 26; letter++) {
+			fixed[letter] = plugboard[letter] != letter;
+		}
+		
+		for (int restart = 0; restart < settings.getAnnealingRestarts(); restart++) {
+			start(restart);
+			
+			if (!anneal()) {
+				return false;
+			}
+			
+			shared.offer(new Result(candidate, plug, score));
+		}
+		
+		shared.chainFinished(results, resultsList);
+		
+		return true;
+	} // End call()
+	
+	/**
+	 * Sets up the chain for a restart. Odd restarts start from the shared best, if any. Otherwise the chain starts
+	 * from the user's plugboard, with random pairs added after the first restart, and with the right ring moved by
+	 * an offset that spreads the chains of a candidate evenly around the wheel.
+	 * 
+	 * @param restart
+	 * 				Restart number, from 0
+	 */
+	private void start(int restart) {
+		Result best = shared.getBest();
+		
+		if (restart % 2 == 1 && best != null) {
+			candidate = best.candidate;
+			System.arraycopy(best.wiring, 0, plug, 0, 26);
+		}
+		else {
+			candidate = baseCandidate;
+			
+			int wheels = PackedCandidate.isThreeRotor(candidate) ? 3 : 4;
+			int offset = chain * 26 / settings.getAnnealingChains() % 26;
+			
+			if (offset > 0 && settings.getTandemStepFlags()[3]) {
+				candidate = moveRing(candidate, wheels - 1, offset);
+			}
+			
+			for (int letter = 0; letter < 26; letter++) {
+				plug[letter] = plugboard[letter];
+			}
+			
+			int pairs = (restart == 0) ? 0 : random.nextInt(RANDOM_PAIRS + 1);
+			
+			for (int pair = 0; pair < pairs; pair++) {
+				int first = random.nextInt(26);
+				int second = random.nextInt(26);
+				
+				if (first != second && !fixed[first] && !fixed[second] && plug[first] == first && plug[second] == second) {
+					plug[first] = second;
+					plug[second] = first;
+				}
+			}
+		}
+		
+		System.arraycopy(plug, 0, trialPlug, 0, 26);
+		scorer = createScorer(candidate);
+		score = scorer.getScore();
+	}
+	
+	/**
+	 * Cools the chain over a set number of sweeps, then hill climbs until a sweep finds no improvement.
+	 * 
+	 * @return false if the thread was interrupted, true otherwise
+	 */
+	private boolean anneal() {
+		double temperature = START_TEMPERATURE * Math.abs(score);
+		
+		for (int sweep = 0; sweep < SWEEPS; sweep++) {
+			if (!sweep(temperature)) {
+				return false;
+			}
+			
+			temperature *= COOLING;
+		}
+		
+		double previous;
+		
+		do {
+			previous = score;
+			
+			if (!sweep(0.0)) {
+				return false;
+			}
+			
+			moveRings();
+		} while (score > previous);
+		
+		return true;
+	}
+	
+	/**
+	 * Tries a move for every pair of letters not fixed by the user's plugboard.
+	 * 
+	 * @param temperature
+	 * 				Current temperature, 0 to accept improvements only
+	 * @return false if the thread was interrupted, true otherwise
+	 */
+	private boolean sweep(double temperature) {
+		for (int left = 0; left < 26; left++) {
+			for (int right = left + 1; right < 26; right++) {
+				if (Thread.currentThread().isInterrupted()) {	// Allows interrupted thread to terminate.
+					return false;
+				}
+				
+				if (!fixed[left] && !fixed[right]) {
+					int count = proposeMove(left, right);
+					double testValue = scorer.scorePlugboard(trialPlug, letters, count);
+					
+					if (accept(testValue - score, temperature)) {
+						scorer.commitPlugboard(trialPlug, letters, count);
+						System.arraycopy(trialPlug, 0, plug, 0, 26);
+						score = scorer.getScore();
+					}
+					else {
+						for (int index = 0; index < count; index++) {
+							trialPlug[letters[index]] = plug[letters[index]];
+						}
+					}
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Tries every ring setting of the middle and right wheels in turn, moving each indicator with its ring, and
+	 * keeps the best if it improves the score.
+	 */
+	private void moveRings() {
+		boolean[] tandem = settings.getTandemStepFlags();
+		int wheels = PackedCandidate.isThreeRotor(candidate) ? 3 : 4;
+		
+		for (int wheel = wheels - 2; wheel < wheels; wheel++) {
+			if (!tandem[wheel + 4 - wheels]) {
+				continue;
+			}
+			
+			long start = candidate;
+			
+			for (int step = 1; step < 26; step++) {
+				long moved = moveRing(start, wheel, step);
+				PlugboardScorer movedScorer = createScorer(moved);
+				
+				if (movedScorer.getScore() > score) {
+					candidate = moved;
+					scorer = movedScorer;
+					score = movedScorer.getScore();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Rewires trialPlug with a move involving two letters, recording the letters rewired. Letters wired to each
+	 * other are unpaired, two unpaired letters are paired, and otherwise the letters are paired to each other or
+	 * exchange partners, chosen at random.
+	 * 
+	 * @return the number of letters rewired
+	 */
+	private int proposeMove(int first, int second) {
+		int firstPartner = plug[first];
+		int secondPartner = plug[second];
+		int count = 0;
+		
+		letters[count++] = first;
+		letters[count++] = second;
+		
+		if (firstPartner == second) {
+			unpair(first);
+			unpair(second);
+			return count;
+		}
+		
+		if (firstPartner != first) {
+			letters[count++] = firstPartner;
+		}
+		
+		if (secondPartner != second) {
+			letters[count++] = secondPartner;
+		}
+		
+		if (firstPartner != first && secondPartner != second && random.nextBoolean()) {
+			pair(first, secondPartner);
+			pair(second, firstPartner);
+		}
+		else if (firstPartner != first && secondPartner == second && random.nextBoolean()) {
+			pair(firstPartner, second);
+			unpair(first);
+		}
+		else if (firstPartner == first && secondPartner != second && random.nextBoolean()) {
+			pair(first, secondPartner);
+			unpair(second);
+		}
+		else {
+			pair(first, second);
+			
+			if (firstPartner != first && secondPartner != second) {
+				pair(firstPartner, secondPartner);
+			}
+			else if (firstPartner != first) {
+				unpair(firstPartner);
+			}
+			else if (secondPartner != second) {
+				unpair(secondPartner);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Moves a ring and its indicator by the same amount, so the wheel's shift at the first letter is unchanged.
+	 * 
+	 * @param trialCandidate
+	 * 				PackedCandidate
+	 * @param wheel
+	 * 				Wheel index, leftmost wheel first
+	 * @param step
+	 * 				Amount to move by, 1-25
+	 * @return the moved candidate
+	 */
+	private static long moveRing(long trialCandidate, int wheel, int step) {
+		char[] rings = PackedCandidate.getRingSettings(trialCandidate);
+		char[] indicators = PackedCandidate.getIndicatorSettings(trialCandidate);
+		
+		rings[wheel] = (char) ('A' + (rings[wheel] - 'A' + step) % 26);
+		indicators[wheel] = (char) ('A' + (indicators[wheel] - 'A' + step) % 26);
+		
+		return PackedCandidate.withIndicators(PackedCandidate.withRings(trialCandidate, rings), indicators);
+	}
+	
+	/**
+	 * @return a scorer for a candidate, set to the current plugboard
+	 */
+	private PlugboardScorer createScorer(long trialCandidate) {
+		PlugboardScorer result = new PlugboardScorer(tester, PackedCandidate.toSettings(trialCandidate, null, Double.NEGATIVE_INFINITY), messageIndices);
+		result.setPlugboard(plug);
+		
+		return result;
+	}
+	
+	/**
+	 * Metropolis acceptance rule.
+	 * 
+	 * @param change
+	 * 				Change in score the move would make
+	 * @param temperature
+	 * 				Current temperature, 0 to accept improvements only
+	 * @return true if the move is accepted
+	 */
+	private boolean accept(double change, double temperature) {
+		if (change > 0) {
+			return true;
+		}
+		
+		return temperature > 0 && random.nextDouble() < Math.exp(change / temperature);
+	}
+	
+	private void pair(int first, int second) {
+		trialPlug[first] = second;
+		trialPlug[second] = first;
+	}
+	
+	private void unpair(int letter) {
+		trialPlug[letter] = letter;
+	}
+	
+	/**
+	 * A chain's result: a PackedCandidate, its plugboard wiring table and its fitness score.
+	 */
+	static final class Result {
+		private final long candidate;
+		private final int[] wiring;
+		private final double score;
+		
+		Result(long candidate, int[] wiring, double score) {
+			this.candidate = candidate;
+			this.wiring = wiring.clone();
+			this.score = score;
+		}
+	}
+	
+	/**
+	 * Best result found by the chains searching a candidate, and the number of those chains still running.
+	 */
+	static final class SharedBest {
+		private final AtomicInteger chainsRunning;
+		private Result best;
+		
+		/**
+		 * @param chains
+		 * 				Number of chains searching the candidate
+		 */
+		SharedBest(int chains) {
+			chainsRunning = new AtomicInteger(chains);
+		}
+		
+		/**
+		 * Keeps a result if it scores better than the best so far.
+		 */
+		synchronized void offer(Result result) {
+			if (best == null || result.score > best.score) {
+				best = result;
+			}
+		}
+		
+		/**
+		 * @return the best result so far, or null if none
+		 */
+		synchronized Result getBest() {
+			return best;
+		}
+		
+		/**
+		 * Counts a chain as finished, whether it ran or was skipped. Once the last chain finishes, the best result is
+		 * offered to the collector, and added to resultsList if kept.
+		 * 
+		 * @param results
+		 * 				CandidateCollector
+		 * @param resultsList
+		 * 				ConcurrentLinkedQueue<Long>
+		 */
+		void chainFinished(CandidateCollector results, ConcurrentLinkedQueue<Long> resultsList) {
+			if (chainsRunning.decrementAndGet() > 0) {
+				return;
+			}
+			
+			// Read only once every chain has offered its result.
+			Result result = getBest();
+			
+			if (result == null) {
+				return;
+			}
+			
+			byte[] wiring = new byte[26];
+			
+			for (int letter = 0; letter < 26; letter++) {
+				wiring[letter] = (byte) result.wiring[letter];
+			}
+			
+			if (results.offer(result.candidate, wiring, result.score)) {
+				resultsList.add(result.candidate);
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package main.java.cryptanalysis.quadbomb;
+
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.NgramTable;
+
+/**
+ * BoundedScorer.java
+ * 
+ * Decrypts and scores a message, or its prefix, for the indicator and ring steps, giving up on candidates that
+ * cannot beat a threshold. When the fitness function is an NgramTable, the message is decrypted and scored a block at a time. Each
+ * remaining gram can score at most the table's best log probability, so once the partial score plus that bound for
+ * every remaining gram is no better than the threshold, the rest of the message is skipped. Other statistics are not
+ * sums over the message and are always scored in full.
+ * 
+ * A candidate that is scored in full gets exactly the score the fitness function would give it. Scorers hold a
+ * decryption buffer, and are confined to a single thread.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 8, 2013
+ */
+final class BoundedScorer {
+	private static final int BLOCK_LENGTH = 64;		// Letters decrypted between bound checks.
+	
+	private final FitnessFunction tester;
+	private final NgramTable table;		// Null unless the fitness function is an NgramTable.
+	private final int length;			// Letters scored.
+	private final int[] cipher;			// Reused decryption buffer.
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param tester
+	 * 				FitnessFunction
+	 * @param length
+	 * 				Number of letters of the message to score
+	 */
+	BoundedScorer(FitnessFunction tester, int length) {
+		this.tester = tester;
+		this.table = (tester instanceof NgramTable) ? (NgramTable) tester : null;
+		this.length = length;
+		this.cipher = new int[length];
+	}
+	
+	/**
+	 * Decrypts the message for a trial and scores it.
+	 * 
+	 * @param decryptor
+	 * 				Decryptor set to the trial
+	 * @param threshold
+	 * 				Score to beat, or negative infinity to always score in full
+	 * @return the fitness score, or negative infinity if the candidate cannot beat the threshold
+	 */
+	double score(Decryptor decryptor, double threshold) {
+		if (table == null || threshold == Double.NEGATIVE_INFINITY) {
+			decryptor.decrypt(cipher, 0, length);
+			return tester.score(cipher, length);
+		}
+		
+		double maxLog = table.getMaxLogProbability();
+		int lastGramStart = table.getLength() - 1;
+		double result = 0.0;
+		
+		for (int start = 0; start < length; start += BLOCK_LENGTH) {
+			int end = Math.min(length, start + BLOCK_LENGTH);
+			
+			decryptor.decrypt(cipher, start, end);
+			result = table.score(cipher, start, end, result);
+			
+			// Grams not yet scored, those ending at or after the end of the block.
+			int remaining = length - Math.max(end, lastGramStart);
+			
+			if (remaining > 0 && result + remaining * maxLog <= threshold) {
+				return Double.NEGATIVE_INFINITY;
+			}
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,291 @@
+package main.java.cryptanalysis.quadbomb;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import main.java.enigma.EnigmaSettings;
+
+/**
+ * CandidateCollector.java
+ * 
+ * Holds the best candidates found so far by a QuadBomb step, up to a fixed number. Results are offered as they are
+ * found, and a better late result evicts the worst candidate held. Offering reports whether the result was kept,
+ * so it can be forwarded to the next step straight away.
+ * 
+ * Candidates are held as PackedCandidates in primitive parallel arrays of keys, score bits and plugboard wiring
+ * tables, and are only converted to EnigmaSettings by getBest(). 
+ * 
+ * Collectors are shared by all worker threads and take no locks. Each slot has a version, which is zero
+ * while the slot is empty and odd while it is being written. A result replaces the worst one by moving that slot's
+ * version from the even value it was read at to odd with a compare-and-set, retrying if another thread got there
+ * first, and readers retry if the version changed under them. Slot scores only ever increase, so the cached
+ * threshold (the worst score held, as last seen) never exceeds the true one. Detectors check a score with accepts()
+ * before packing anything, so the vast majority of trials, which score below the threshold, cost nothing.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 6, 2013
+ */
+public class CandidateCollector {
+	private final int capacity;
+	private final AtomicIntegerArray versions;
+	private final AtomicLongArray keys;
+	private final AtomicLongArray scores;		// Score bits, negative infinity while empty.
+	private final AtomicReferenceArray<byte[]> plugboards;	// Null for an empty plugboard.
+	private final AtomicLong threshold;		// Bits of the worst score held, or negative infinity until full.
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 * 				Number of candidates to hold
+	 */
+	public CandidateCollector(int capacity) {
+		this.capacity = capacity;
+		versions = new AtomicIntegerArray(capacity);
+		keys = new AtomicLongArray(capacity);
+		scores = new AtomicLongArray(capacity);
+		plugboards = new AtomicReferenceArray<byte[]>(capacity);
+		threshold = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+		
+		for (int slot = 0; slot < capacity; slot++) {
+			scores.set(slot, threshold.get());
+		}
+	}
+	
+	/**
+	 * Cheap check of whether a score could be kept. A false result is final; a true result may still be rejected
+	 * by offer() if better results arrive in the meantime.
+	 * 
+	 * @param score
+	 * 				Fitness score of a result
+	 * @return true if the score beats the worst candidate held, or there is room
+	 */
+	public boolean accepts(double score) {
+		return capacity > 0 && (score > getThreshold() || isRoom());
+	}
+	
+	/**
+	 * @return the worst score held as last seen, or negative infinity until the collector is full
+	 */
+	public double getThreshold() {
+		return Double.longBitsToDouble(threshold.get());
+	}
+	
+	/**
+	 * Offers a result, keeping it if there is room or if it scores better than the worst candidate held, which
+	 * is then evicted.
+	 * 
+	 * @param candidate
+	 * 				PackedCandidate
+	 * @param plugboard
+	 * 				Plugboard wiring table, or null for an empty plugboard
+	 * @param score
+	 * 				Fitness score of the result
+	 * @return true if the result is now held
+	 */
+	public boolean offer(long candidate, byte[] plugboard, double score) {
+		while (true) {
+			// Find the worst slot, taking the first empty one if any.
+			int worstSlot = -1;
+			int worstVersion = 0;
+			double worstScore = Double.POSITIVE_INFINITY;
+			
+			for (int slot = 0; slot < capacity; slot++) {
+				int version = versions.get(slot);
+				
+				if (version == 0) {
+					worstSlot = slot;
+					worstVersion = version;
+					worstScore = Double.NEGATIVE_INFINITY;
+					break;
+				}
+				
+				double held = Double.longBitsToDouble(scores.get(slot));
+				
+				if ((version & 1) == 0 && held < worstScore) {
+					worstSlot = slot;
+					worstVersion = version;
+					worstScore = held;
+				}
+			}
+			
+			if (worstSlot < 0) {
+				if (capacity == 0) {
+					return false;
+				}
+				
+				Thread.yield();		// Every slot is being written.
+				continue;
+			}
+			
+			if (worstVersion != 0 && score <= worstScore) {
+				return false;
+			}
+			
+			// Claim the slot, then write it and release it.
+			if (versions.compareAndSet(worstSlot, worstVersion, worstVersion + 1)) {
+				keys.set(worstSlot, candidate);
+				plugboards.set(worstSlot, plugboard);
+				scores.set(worstSlot, Double.doubleToLongBits(score));
+				versions.set(worstSlot, worstVersion + 2);
+				
+				updateThreshold();
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether a result is still held, or has been evicted by better results.
+	 * 
+	 * @param candidate
+	 * 				PackedCandidate previously offered
+	 * @return true if the candidate is held
+	 */
+	public boolean contains(long candidate) {
+		for (int slot = 0; slot < capacity; slot++) {
+			int version = versions.get(slot);
+			
+			if (version != 0 && (version & 1) == 0 && keys.get(slot) == candidate && versions.get(slot) == version) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return the PackedCandidates currently held, in no particular order
+	 */
+	public long[] getCandidates() {
+		long[] held = new long[capacity];
+		int count = 0;
+		
+		for (int slot = 0; slot < capacity; slot++) {
+			while (true) {
+				int version = versions.get(slot);
+				long candidate = keys.get(slot);
+				
+				if (version == 0) {
+					break;		// Empty.
+				}
+				
+				if ((version & 1) == 0 && versions.get(slot) == version) {
+					held[count++] = candidate;
+					break;
+				}
+				
+				Thread.yield();
+			}
+		}
+		
+		return Arrays.copyOf(held, count);
+	}
+	
+	/**
+	 * Offers every candidate held to another collector, so the best results of several collectors can be combined.
+	 * 
+	 * @param target
+	 * 				CandidateCollector to offer the candidates to
+	 */
+	public void offerAll(CandidateCollector target) {
+		for (int slot = 0; slot < capacity; slot++) {
+			while (true) {
+				int version = versions.get(slot);
+				
+				if (version == 0) {
+					break;		// Empty.
+				}
+				
+				long candidate = keys.get(slot);
+				byte[] plugboard = plugboards.get(slot);
+				double score = Double.longBitsToDouble(scores.get(slot));
+				
+				if ((version & 1) == 0 && versions.get(slot) == version) {
+					if (target.accepts(score)) {
+						target.offer(candidate, plugboard, score);
+					}
+					break;
+				}
+				
+				Thread.yield();
+			}
+		}
+	}
+	
+	/**
+	 * @return the best candidate held, or null if there is none
+	 */
+	public EnigmaSettings getBest() {
+		while (true) {
+			int bestSlot = -1;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			
+			for (int slot = 0; slot < capacity; slot++) {
+				double held = Double.longBitsToDouble(scores.get(slot));
+				
+				if (versions.get(slot) != 0 && (bestSlot < 0 || held > bestScore)) {
+					bestSlot = slot;
+					bestScore = held;
+				}
+			}
+			
+			if (bestSlot < 0) {
+				return null;
+			}
+			
+			// Read the slot consistently, retrying if it is rewritten meanwhile.
+			int version = versions.get(bestSlot);
+			long candidate = keys.get(bestSlot);
+			byte[] plugboard = plugboards.get(bestSlot);
+			double score = Double.longBitsToDouble(scores.get(bestSlot));
+			
+			if ((version & 1) == 0 && versions.get(bestSlot) == version) {
+				return PackedCandidate.toSettings(candidate, plugboard, score);
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Slots are always filled in order, as an offer takes the first empty slot it finds.
+	 * 
+	 * @return true if a slot is still empty
+	 */
+	private boolean isRoom() {
+		return versions.get(capacity - 1) == 0;
+	}
+	
+	/**
+	 * Raises the cached threshold to the worst score currently held, once every slot is filled.
+	 */
+	private void updateThreshold() {
+		double worstScore = Double.POSITIVE_INFINITY;
+		
+		for (int slot = 0; slot < capacity; slot++) {
+			if (versions.get(slot) == 0) {
+				return;		// Not full; any score is accepted.
+			}
+			
+			// A slot being written still holds its old, lower score.
+			worstScore = Math.min(worstScore, Double.longBitsToDouble(scores.get(slot)));
+		}
+		
+		// Only ever raise the threshold, as a concurrent update may have seen newer slots.
+		long current = threshold.get();
+		
+		while (worstScore > Double.longBitsToDouble(current)) {
+			if (threshold.compareAndSet(current, Double.doubleToLongBits(worstScore))) {
+				return;
+			}
+			
+			current = threshold.get();
+		}
+	}
+}
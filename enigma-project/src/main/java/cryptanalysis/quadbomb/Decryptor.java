@@ -0,0 +1,27 @@
+package main.java.cryptanalysis.quadbomb;
+
+/**
+ * Decryptor.java
+ * 
+ * Source of the decryption of the message under test for a single trial, produced a range of letters at a time so
+ * that scoring can stop partway through. Ranges are requested in order from the start of the message, and each
+ * continues the stepping of the one before.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 9, 2013
+ */
+interface Decryptor {
+	/**
+	 * Decrypts letters start to end - 1 of the message.
+	 * 
+	 * @param plain
+	 * 				Buffer of the message length to receive the letter indices
+	 * @param start
+	 * 				Index of the first letter, inclusive
+	 * @param end
+	 * 				Index of the last letter, exclusive
+	 */
+	void decrypt(int[] plain, int start, int end);
+}
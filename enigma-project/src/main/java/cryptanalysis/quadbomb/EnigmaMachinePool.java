@@ -0,0 +1,46 @@
+package main.java.cryptanalysis.quadbomb;
+
+import main.java.enigma.EnigmaMachine;
+import main.java.enigma.EnigmaSettings;
+
+/**
+ * EnigmaMachinePool.java
+ * 
+ * Per-worker pool of reusable Enigma machines for the QuadBomb detectors.
+ * Each worker thread owns a single EnigmaMachine, which is reconfigured in
+ * place for every candidate instead of building a new machine (and its rotors
+ * and plugboard) per trial.
+ * 
+ * Machines are confined to the thread that acquired them, so a machine must
+ * not be handed to another thread.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 6, 2013
+ */
+public final class EnigmaMachinePool {
+	private static final ThreadLocal<EnigmaMachine> machines = new ThreadLocal<EnigmaMachine>() {
+		protected EnigmaMachine initialValue() {
+			return new EnigmaMachine(new int[] {0, 1, 2}, 0, new char[] {'A', 'A', 'A'}, new char[] {'A', 'A', 'A'});
+		}
+	};
+	
+	private EnigmaMachinePool() {
+	}
+	
+	/**
+	 * Gets the calling thread's machine, configured with the provided settings
+	 * and set to its initial positions.
+	 * 
+	 * @param settings
+	 * 				EnigmaSettings to apply
+	 * @return the calling thread's EnigmaMachine
+	 */
+	public static EnigmaMachine acquire(EnigmaSettings settings) {
+		EnigmaMachine machine = machines.get();
+		machine.configure(settings);
+		
+		return machine;
+	}
+}
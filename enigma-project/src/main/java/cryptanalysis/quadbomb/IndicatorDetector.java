@@ -1,20 +1,28 @@
 package main.java.cryptanalysis.quadbomb;
 
-import java.util.PriorityQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.cryptanalysis.nlp.FitnessFunction;
 import main.java.enigma.EnigmaMachine;
-import main.java.enigma.EnigmaSettings;
 
 /**
  * Worker thread to determine best indicator settings for a given rotor / reflector configuration.
  * This thread performs an exhaustive search of all possible indicator settings within defined constraints.
  * Each candidate indicator setting is applied to the provided machine settings, and scored with a defined statistic.
- * The best number of candidates (number specified by the user) is saved in resultsList for further use.
+ * Candidates that enter the shared collector of best results are also added to resultsList, so they can be sent on
+ * to the next step. Candidates are PackedCandidates, and only those scoring above the collector's threshold are packed.
+ * Candidates that cannot beat the collector's threshold are abandoned partway through the message; see BoundedScorer.
  * Return values indicate if the thread completed it's computation.
  * 
+ * The search may be limited to a slice of middle rotor indicators, so a single wheel order can be split into many
+ * small tasks.
+ * 
+ * For long messages, a two-tier search may be set up in QuadBombSettings. Every indicator setting is then scored on
+ * a prefix of the message into a private shortlist, and only the shortlist is rescored on the full message and
+ * offered to the collector. Each wheel order has a shortlist wider than the shared collector, shared out among the
+ * slices of its search, so a slice keeps only a few of its settings.
+ * 
  * IndicatorDetector.java
  * @author - Walter Adolph
  * @author - Team Enigma
@@ -22,99 +30,137 @@ import main.java.enigma.EnigmaSettings;
  * Nov 26, 2013
  */
 public class IndicatorDetector implements Callable<Boolean> {
-	private StatisticsGenerator tester;
-	private EnigmaSettings baseCandidate;
+	private FitnessFunction tester;
+	private long baseCandidate;
+	private byte[] plugboard;
 	private QuadBombSettings settings;
-	private final String message;
+	private final int[] messageIndices;
+	private final int middleStart;
+	private final int middleEnd;
 	
-	private PriorityQueue<EnigmaSettings> workList;
-	private ConcurrentLinkedQueue<EnigmaSettings> resultsList;
+	private CandidateCollector results;
+	private ConcurrentLinkedQueue<Long> resultsList;
 	
 	/**
 	 * Constructor.
 	 * 
 	 * @param tester
-	 * 			StatisticsGenerator
+	 * 			FitnessFunction
 	 * @param candidate
-	 * 			EnigmaSettings
+	 * 			PackedCandidate
+	 * @param plugboard
+	 * 			Plugboard wiring table of the candidate
 	 * @param settings
 	 * 			QuadBombSettings
+	 * @param results
+	 * 			CandidateCollector
 	 * @param resultsList
-	 * 			CurrentLinkedQueue<EnigmaSettings>
+	 * 			ConcurrentLinkedQueue<Long>
 	 * @param message
 	 * 			String
 	 */
-	public IndicatorDetector(StatisticsGenerator tester, 
-			EnigmaSettings candidate, 
+	public IndicatorDetector(FitnessFunction tester, 
+			long candidate, 
+			byte[] plugboard, 
 			QuadBombSettings settings, 
-			ConcurrentLinkedQueue<EnigmaSettings> resultsList, 
+			CandidateCollector results, 
+			ConcurrentLinkedQueue<Long> resultsList, 
 			String message) 
 	{
-		workList = new PriorityQueue<EnigmaSettings>();
-		
+		this(tester, candidate, plugboard, settings, results, resultsList, message, 0, 26);
+	}
+	
+	/**
+	 * Constructor limiting the search to a slice of middle rotor indicators.
+	 * 
+	 * @param tester
+	 * 			FitnessFunction
+	 * @param candidate
+	 * 			PackedCandidate
+	 * @param plugboard
+	 * 			Plugboard wiring table of the candidate
+	 * @param settings
+	 * 			QuadBombSettings
+	 * @param results
+	 * 			CandidateCollector
+	 * @param resultsList
+	 * 			ConcurrentLinkedQueue<Long>
+	 * @param message
+	 * 			String
+	 * @param middleStart
+	 * 			First middle indicator index to test, inclusive
+	 * @param middleEnd
+	 * 			Last middle indicator index to test, exclusive
+	 */
+	public IndicatorDetector(FitnessFunction tester, 
+			long candidate, 
+			byte[] plugboard, 
+			QuadBombSettings settings, 
+			CandidateCollector results, 
+			ConcurrentLinkedQueue<Long> resultsList, 
+			String message,
+			int middleStart,
+			int middleEnd) 
+	{
 		this.tester = tester;
 		this.baseCandidate = candidate;
+		this.plugboard = plugboard;
 		this.settings = settings;
+		this.results = results;
 		this.resultsList = resultsList;
-		this.message = message;
+		this.messageIndices = EnigmaMachine.toIndices(message);
+		this.middleStart = middleStart;
+		this.middleEnd = middleEnd;
 	}
 	
 	/**
 	 * Workhorse method. 
 	 */
 	public Boolean call() {
-		int[] testParameters = settings.getTestingIndicators(baseCandidate.isThreeRotor());
-		tester.selectFitnessTest(3);
+		boolean threeRotor = PackedCandidate.isThreeRotor(baseCandidate);
+		int[] testParameters = settings.getTestingIndicators(threeRotor);
+		char[] indicators = new char[threeRotor ? 3 : 4];
+		
+		// In a two-tier search, score the prefix into a shortlist first.
+		int prefixLength = settings.getCoarsePrefixLength();
+		boolean coarse = prefixLength > 0 && prefixLength < messageIndices.length;
+		BoundedScorer scorer = new BoundedScorer(tester, messageIndices.length);
+		BoundedScorer searchScorer = coarse ? new BoundedScorer(tester, prefixLength) : scorer;
+		CandidateCollector searchResults = coarse ? new CandidateCollector(getShortlistSize(testParameters)) : results;
+		ConcurrentLinkedQueue<Long> searchList = coarse ? null : resultsList;
+		
+		// The wheel order is fixed, so the machine is configured once and only the positions change.
+		final EnigmaMachine bomb = EnigmaMachinePool.acquire(PackedCandidate.toSettings(baseCandidate, plugboard, Double.NEGATIVE_INFINITY));
+		Decryptor decryptor = new Decryptor() {
+			public void decrypt(int[] plain, int start, int end) {
+				bomb.encrypt(messageIndices, plain, start, end);
+			}
+		};
 		
 		// Cycle through each combination of three rotor settings, taking in account set constraints.
 		for (int i = testParameters[2]; i < testParameters[3]; i++) {			// Left rotor loop.
-			for (int j = testParameters[4]; j < testParameters[5]; j++) {		// Middle rotor loop.
+			for (int j = Math.max(testParameters[4], middleStart); j < Math.min(testParameters[5], middleEnd); j++) {	// Middle rotor loop.
 				for (int k = testParameters[6]; k < testParameters[7]; k++) {	// Right rotor loop.
-					if (baseCandidate.isThreeRotor()) {
-						// Copy the rotor and reflector settings and generate indicator settings.
-						EnigmaSettings candidate = baseCandidate.copy();
-						char[] indicators = {(char) ('A' + i), (char) ('A' + j), (char) ('A' + k)};
-						
-						candidate.setIndicatorSettings(indicators);
+					if (threeRotor) {
+						// Generate indicator settings.
+						indicators[0] = (char) ('A' + i);
+						indicators[1] = (char) ('A' + j);
+						indicators[2] = (char) ('A' + k);
 						
-						// Test the candidate and score.
-						EnigmaMachine bomb = candidate.createEnigmaMachine();
-						String cipher = bomb.encryptString(message);
-						double testValue = tester.computeFitnessScore(cipher);
-						
-						// Save results.
-						candidate.setFitnessScore(testValue);
-						workList.add(candidate);
+						testIndicators(bomb, decryptor, indicators, searchScorer, searchResults, searchList);
 					}
 					else {	// Is four-rotor.
 						for (int l = testParameters[0]; l < testParameters[1]; l++) {	// Fourth rotor loop.
-							// Copy the rotor and reflector settings and generate indicator settings.
-							EnigmaSettings candidate = baseCandidate.copy();
-							char[] indicators = {(char) ('A' + l), (char) ('A' + i), (char) ('A' + j), (char) ('A' + k)};
-							
-							candidate.setIndicatorSettings(indicators);
-							
-							// Test the candidate and score.
-							EnigmaMachine bomb = candidate.createEnigmaMachine();
-							String cipher = bomb.encryptString(message);
-							double testValue = tester.computeFitnessScore(cipher);
+							// Generate indicator settings.
+							indicators[0] = (char) ('A' + l);
+							indicators[1] = (char) ('A' + i);
+							indicators[2] = (char) ('A' + j);
+							indicators[3] = (char) ('A' + k);
 							
-							// Save results.
-							candidate.setFitnessScore(testValue);
-							workList.add(candidate);
-							
-							// Trim saved results to candidate size to save on memory.
-							while (workList.size() > settings.getCandidateSize()) {
-								workList.poll();
-							}
+							testIndicators(bomb, decryptor, indicators, searchScorer, searchResults, searchList);
 						}
 					}
 					
-					// Trim saved results to candidate size to save on memory.
-					while (workList.size() > settings.getCandidateSize()) {
-						workList.poll();
-					}
-					
 					// Allows interrupted thread to terminate.
 					if (Thread.currentThread().isInterrupted()) {
 						return false;
@@ -122,9 +168,64 @@ public class IndicatorDetector implements Callable<Boolean> {
 				} // End right indicator loop.
 			} // End middle indicator loop.
 		} // End left indicator loop.
+		
+		// Rescore the shortlist on the full message.
+		if (coarse) {
+			for (long candidate : searchResults.getCandidates()) {
+				testIndicators(bomb, decryptor, PackedCandidate.getIndicatorSettings(candidate), scorer, results, resultsList);
+			}
+		}
 
-		// Save results and exit.
-		resultsList.addAll(workList);
 		return true;
 	} // End call()
+	
+	/**
+	 * Computes this slice's share of the wheel order's coarse shortlist.
+	 * 
+	 * @param testParameters
+	 * 			Indicator ranges of the wheel order
+	 * @return the number of candidates to keep from the coarse pass
+	 */
+	private int getShortlistSize(int[] testParameters) {
+		int settingCount = testParameters[5] - testParameters[4];
+		int sliceWidth = Math.min(testParameters[5], middleEnd) - Math.max(testParameters[4], middleStart);
+		
+		if (sliceWidth <= 0) {
+			return 0;	// Nothing to search.
+		}
+		
+		return settings.getCoarseShortlistSize((settingCount + sliceWidth - 1) / sliceWidth);
+	}
+	
+	/**
+	 * Scores a single indicator setting, saving it if it enters the collector.
+	 * 
+	 * @param bomb
+	 * 			EnigmaMachine configured with the base candidate
+	 * @param decryptor
+	 * 			Decryptor encrypting the message with bomb
+	 * @param indicators
+	 * 			Indicator settings to test
+	 * @param scorer
+	 * 			BoundedScorer for the message or its prefix
+	 * @param collector
+	 * 			CandidateCollector to offer the result to
+	 * @param keptList
+	 * 			Queue to add the result to if it is kept, or null
+	 */
+	private void testIndicators(EnigmaMachine bomb, Decryptor decryptor, char[] indicators, BoundedScorer scorer, 
+			CandidateCollector collector, ConcurrentLinkedQueue<Long> keptList) {
+		// Test the indicators and score.
+		bomb.setPositions(indicators);
+		double testValue = scorer.score(decryptor, collector.getThreshold());	// Negative infinity if it cannot be kept.
+		
+		// Save results, packing the settings only if they can be kept.
+		if (collector.accepts(testValue)) {
+			long candidate = PackedCandidate.withIndicators(baseCandidate, indicators);
+			
+			if (collector.offer(candidate, plugboard, testValue) && keptList != null) {
+				keptList.add(candidate);
+			}
+		}
+	}
 }
@@ -0,0 +1,223 @@
+package main.java.cryptanalysis.quadbomb;
+
+import main.java.enigma.EnigmaSettings;
+
+/**
+ * PackedCandidate.java
+ *
+ * Compact encoding of a QuadBomb candidate. The wheel order, reflector, ring settings and indicator settings are
+ * packed into a single long, and the plugboard into a 26 byte wiring table (each letter's index maps to the index
+ * of the letter it is swapped with). The fitness score is kept alongside by whoever holds the candidate. Candidates
+ * are only converted back to EnigmaSettings when a result is needed.
+ *
+ * Bit layout, from the least significant bit:
+ *
+ * Bits 0-19: Indicator settings, 5 bits per wheel, leftmost wheel first.
+ * Bits 20-39: Ring settings, 5 bits per wheel, leftmost wheel first.
+ * Bits 40-55: Rotors, 4 bits per wheel, leftmost wheel first.
+ * Bits 56-57: Reflector.
+ * Bit 58: Set for a four-rotor machine.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 7, 2013
+ */
+public final class PackedCandidate {
+	private static final int INDICATOR_SHIFT = 0;
+	private static final int RING_SHIFT = 20;
+	private static final int ROTOR_SHIFT = 40;
+	private static final int REFLECTOR_SHIFT = 56;
+	private static final int FOUR_ROTOR_SHIFT = 58;
+	
+	private static final long LETTER_MASK = 0x1F;
+	private static final long ROTOR_MASK = 0xF;
+	private static final long SETTING_MASK = 0xFFFFFL;	// Four letters.
+	
+	private PackedCandidate() {
+	}
+	
+	/**
+	 * Packs the wheel order, reflector, ring and indicator settings. The plugboard is packed separately.
+	 *
+	 * @param settings
+	 * 				EnigmaSettings to pack
+	 * @return packed candidate
+	 */
+	public static long pack(EnigmaSettings settings) {
+		int[] rotors = settings.getRotors();
+		long candidate = (long) settings.getReflector() << REFLECTOR_SHIFT;
+		
+		if (rotors.length == 4) {
+			candidate |= 1L << FOUR_ROTOR_SHIFT;
+		}
+		
+		for (int i = 0; i < rotors.length; i++) {
+			candidate |= (rotors[i] & ROTOR_MASK) << (ROTOR_SHIFT + 4 * i);
+		}
+		
+		candidate = withRings(candidate, settings.getRingSettings());
+		
+		return withIndicators(candidate, settings.getIndicatorSettings());
+	}
+	
+	/**
+	 * Replaces the indicator settings of a packed candidate.
+	 *
+	 * @param candidate
+	 * 				Packed candidate
+	 * @param indicators
+	 * 				Indicator settings, one letter per wheel
+	 * @return packed candidate with the new indicator settings
+	 */
+	public static long withIndicators(long candidate, char[] indicators) {
+		return (candidate & ~(SETTING_MASK << INDICATOR_SHIFT)) | (packLetters(indicators) << INDICATOR_SHIFT);
+	}
+	
+	/**
+	 * Replaces the ring settings of a packed candidate.
+	 *
+	 * @param candidate
+	 * 				Packed candidate
+	 * @param rings
+	 * 				Ring settings, one letter per wheel
+	 * @return packed candidate with the new ring settings
+	 */
+	public static long withRings(long candidate, char[] rings) {
+		return (candidate & ~(SETTING_MASK << RING_SHIFT)) | (packLetters(rings) << RING_SHIFT);
+	}
+	
+	/**
+	 * @param candidate
+	 * 				Packed candidate
+	 * @return the indicator settings, one letter per wheel
+	 */
+	public static char[] getIndicatorSettings(long candidate) {
+		return unpackLetters(candidate >>> INDICATOR_SHIFT, isThreeRotor(candidate) ? 3 : 4);
+	}
+	
+	/**
+	 * @param candidate
+	 * 				Packed candidate
+	 * @return the ring settings, one letter per wheel
+	 */
+	public static char[] getRingSettings(long candidate) {
+		return unpackLetters(candidate >>> RING_SHIFT, isThreeRotor(candidate) ? 3 : 4);
+	}
+	
+	/**
+	 * @param candidate
+	 * 				Packed candidate
+	 * @return true if the candidate is for a 3-rotor machine, false if for a 4-rotor machine
+	 */
+	public static boolean isThreeRotor(long candidate) {
+		return (candidate >>> FOUR_ROTOR_SHIFT & 1) == 0;
+	}
+	
+	/**
+	 * Unpacks a candidate into EnigmaSettings.
+	 *
+	 * @param candidate
+	 * 				Packed candidate
+	 * @param plugboard
+	 * 				Plugboard wiring table, or null for an empty plugboard
+	 * @param score
+	 * 				Fitness score
+	 * @return the candidate's EnigmaSettings
+	 */
+	public static EnigmaSettings toSettings(long candidate, byte[] plugboard, double score) {
+		int wheels = isThreeRotor(candidate) ? 3 : 4;
+		int[] rotors = new int[wheels];
+		
+		for (int i = 0; i < wheels; i++) {
+			rotors[i] = (int) (candidate >>> (ROTOR_SHIFT + 4 * i) & ROTOR_MASK);
+		}
+		
+		EnigmaSettings settings = new EnigmaSettings(rotors,
+				unpackLetters(candidate >>> RING_SHIFT, wheels),
+				unpackLetters(candidate >>> INDICATOR_SHIFT, wheels),
+				(int) (candidate >>> REFLECTOR_SHIFT & 3),
+				unpackPlugboard(plugboard));
+		settings.setFitnessScore(score);
+		
+		return settings;
+	}
+	
+	/**
+	 * Packs a plugboard map into a wiring table.
+	 *
+	 * @param map
+	 * 				String of swapped letter pairs, as used by EnigmaSettings
+	 * @return wiring table of 26 letter indices
+	 */
+	public static byte[] packPlugboard(String map) {
+		byte[] plugboard = new byte[26];
+		
+		for (int i = 0; i < 26; i++) {
+			plugboard[i] = (byte) i;
+		}
+		
+		for (int i = 0; i + 1 < map.length(); i += 2) {
+			int left = map.charAt(i) - 'A';
+			int right = map.charAt(i + 1) - 'A';
+			
+			plugboard[left] = (byte) right;
+			plugboard[right] = (byte) left;
+		}
+		
+		return plugboard;
+	}
+	
+	/**
+	 * Unpacks a wiring table into a plugboard map, pairs ordered by their first letter.
+	 *
+	 * @param plugboard
+	 * 				Wiring table of 26 letter indices, or null for an empty plugboard
+	 * @return String of swapped letter pairs, as used by EnigmaSettings
+	 */
+	public static String unpackPlugboard(byte[] plugboard) {
+		StringBuilder map = new StringBuilder();
+		
+		if (plugboard != null) {
+			for (int i = 0; i < 26; i++) {
+				if (plugboard[i] > i) {
+					map.append((char) ('A' + i)).append((char) ('A' + plugboard[i]));
+				}
+			}
+		}
+		
+		return map.toString();
+	}
+	
+	/**
+	 * @param letters
+	 * 				Up to four letters
+	 * @return letters packed 5 bits apiece
+	 */
+	private static long packLetters(char[] letters) {
+		long packed = 0;
+		
+		for (int i = 0; i < letters.length; i++) {
+			packed |= (long) (letters[i] - 'A') << (5 * i);
+		}
+		
+		return packed;
+	}
+	
+	/**
+	 * @param packed
+	 * 				Letters packed 5 bits apiece
+	 * @param count
+	 * 				Number of letters
+	 * @return unpacked letters
+	 */
+	private static char[] unpackLetters(long packed, int count) {
+		char[] letters = new char[count];
+		
+		for (int i = 0; i < count; i++) {
+			letters[i] = (char) ('A' + (packed >>> (5 * i) & LETTER_MASK));
+		}
+		
+		return letters;
+	}
+}
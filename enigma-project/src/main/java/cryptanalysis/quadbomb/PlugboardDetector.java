@@ -3,9 +3,8 @@ package main.java.cryptanalysis.quadbomb;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.cryptanalysis.nlp.FitnessFunction;
 import main.java.enigma.EnigmaMachine;
-import main.java.enigma.EnigmaSettings;
 
 /**
  * PlugboardDetector.java
@@ -13,7 +12,10 @@ import main.java.enigma.EnigmaSettings;
  * Worker thread to determine plugboard settings. Each combination of possible plugboard settings are tested
  * and scored. If any combinations score better than the pre-tested message, then the best combination is saved
  * and then applied in the next iteration of this check. The process iterates until no improvement in score is found
- * during an iteration. The best result is returned.
+ * during an iteration. The best result is offered to the shared collector, and added to resultsList if kept.
+ * 
+ * Candidate pairs are scored with a PlugboardScorer, which reuses the rotor stack permutations of the candidate
+ * rather than re-encrypting the message for every pair.
  * 
  * @author - Walter Adolph
  * @author - Team Enigma
@@ -21,46 +23,54 @@ import main.java.enigma.EnigmaSettings;
  * Nov 26, 2013
  */
 public class PlugboardDetector implements Callable<Boolean> {
-	private StatisticsGenerator tester;
-	private EnigmaSettings baseCandidate;
+	private FitnessFunction tester;
+	private long baseCandidate;
+	private byte[] plugboard;
 	private QuadBombSettings settings;
-	private final String message;
+	private final int[] messageIndices;
 	
-	private ConcurrentLinkedQueue<EnigmaSettings> resultsList;
+	private CandidateCollector results;
+	private ConcurrentLinkedQueue<Long> resultsList;
 	
 	/**
 	 * Constructor.
 	 * 
 	 * @param tester
-	 * 				StatisticsGenerator
+	 * 				FitnessFunction
 	 * @param candidate
-	 * 				EnigmaSettings
+	 * 				PackedCandidate
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
 	 * @param settings
 	 * 				QuadBombSettings
+	 * @param results
+	 * 				CandidateCollector
 	 * @param resultsList
-	 * 				CurrentLinkedQueue<EnigmaSettings>
+	 * 				ConcurrentLinkedQueue<Long>
 	 * @param message
 	 * 				String
 	 */
-	public PlugboardDetector(StatisticsGenerator tester, 
-			EnigmaSettings candidate, 
+	public PlugboardDetector(FitnessFunction tester, 
+			long candidate, 
+			byte[] plugboard, 
 			QuadBombSettings settings, 
-			ConcurrentLinkedQueue<EnigmaSettings> resultsList, 
+			CandidateCollector results, 
+			ConcurrentLinkedQueue<Long> resultsList, 
 			String message) 
 	{
 		this.tester = tester;
 		this.baseCandidate = candidate;
+		this.plugboard = plugboard;
 		this.settings = settings;
+		this.results = results;
 		this.resultsList = resultsList;
-		this.message = message;
+		this.messageIndices = EnigmaMachine.toIndices(message);
 	}
 	
 	/**
 	 * Required by Callable. Workhorse method. 
 	 */
 	public Boolean call() {
-		tester.selectFitnessTest(3);
-		
 		// Set marker table.
 		String result = settings.getPlugboardSetting();
 		char[] candidates = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
@@ -69,10 +79,8 @@ public class PlugboardDetector implements Callable<Boolean> {
 		char bestRight;
 		double controlValue;
 		
-		EnigmaSettings testSettings = baseCandidate.copy();
-		EnigmaSettings candidate = baseCandidate.copy();
-		
-		testSettings.setPlugboardMap(result);
+		PlugboardScorer scorer = new PlugboardScorer(tester, PackedCandidate.toSettings(baseCandidate, plugboard, Double.NEGATIVE_INFINITY), messageIndices);
+		scorer.setPlugboard(result);
 		
 		// Mark out the constraints.
 		for(char letter : result.toCharArray()) {
@@ -83,11 +91,8 @@ public class PlugboardDetector implements Callable<Boolean> {
 			bestLeft = '!';
 			bestRight = '!';
 			
-			// Compute control probability.
-			EnigmaMachine bomb = testSettings.createEnigmaMachine();
-			controlValue = tester.computeFitnessScore(bomb.encryptString(message));
-			
-			String currentPlugboard = testSettings.getPlugboardMap();
+			// Control probability.
+			controlValue = scorer.getScore();
 			
 			for (int left = 0; left < 26; left++) {					// Left plugboard pair.
 				for (int right = left + 1; right < 26; right++) {	// Right plugboard pair.
@@ -96,23 +101,14 @@ public class PlugboardDetector implements Callable<Boolean> {
 					}
 					
 					if (candidates[left] != '!' && candidates[right] != '!') {	// Ignore previously found steckers.
-						char testLeft = (char) ('A' + left);
-						char testRight = (char) ('A' + right);
-						
-						// Implement test plugboard pair.
-						testSettings.setPlugboardMap(currentPlugboard + testLeft + testRight);
-						
-						bomb = testSettings.createEnigmaMachine();
-						String cipher = bomb.encryptString(message);
-						
-						// Compute test probability.
-						double testValue = tester.computeFitnessScore(cipher);
+						// Compute test probability with the test plugboard pair.
+						double testValue = scorer.scorePair(left, right);
 						
 						// Find best plugboard pair.
 						if (testValue > controlValue) {
 							controlValue = testValue;
-							bestLeft = testLeft;
-							bestRight = testRight;
+							bestLeft = (char) ('A' + left);
+							bestRight = (char) ('A' + right);
 						} // End best value saving if
 					} // End invalid combination rejection if
 				} // End right letter for
@@ -123,15 +119,14 @@ public class PlugboardDetector implements Callable<Boolean> {
 				result += "" + bestLeft + bestRight;
 				candidates[bestLeft - 'A'] = '!';
 				candidates[bestRight - 'A'] = '!';
-				testSettings.setPlugboardMap(result);
+				scorer.addPair(bestLeft - 'A', bestRight - 'A');
 			}
 		} while (bestLeft != '!' && bestRight != '!'); // Continue until no further gain in fitness can be achieved.
 		
-		candidate.setPlugboardMap(result);
-		candidate.setFitnessScore(controlValue);
-		
-		// Save best indicator result into list for further processing.
-		resultsList.add(candidate);
+		// Save best result into list for further processing if it enters the collector.
+		if (results.offer(baseCandidate, PackedCandidate.packPlugboard(result), controlValue)) {
+			resultsList.add(baseCandidate);
+		}
 		
 		return true;
 	} // End call()
@@ -0,0 +1,408 @@
+package main.java.cryptanalysis.quadbomb;
+
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.NgramTable;
+import main.java.enigma.EnigmaMachine;
+import main.java.enigma.EnigmaSettings;
+import main.java.enigma.Plugboard;
+
+/**
+ * PlugboardScorer.java
+ * 
+ * Scores plugboard changes for a single rotor / reflector / ring / indicator candidate without re-encrypting the
+ * message. The permutation applied by the rotor stack at each message position does not depend on the plugboard, so
+ * it is taken once per candidate from the machine's rotor path table. A decryption is then
+ * 
+ *     plain[t] = plug[core[t][plug[cipher[t]]]]
+ * 
+ * and adding a pair (a, b) only changes the positions whose cipher letter, or whose rotor stack output, is a or b.
+ * With a Sinkov statistic (an NgramTable) only the grams covering those positions are rescored; any other fitness
+ * function rescores the whole decryption, which is still built with table lookups only. Plugboards scored this way
+ * can also be committed this way, updating only the positions they change.
+ * 
+ * This class is not thread safe; each worker uses its own scorer.
+ * 
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 6, 2013
+ */
+class PlugboardScorer {
+	private final FitnessFunction fitness;
+	private final NgramTable table;		// Set if the fitness function can be rescored incrementally.
+	private final int[] message;
+	private final int length;
+	
+	private final byte[][] core;		// Rotor stack permutation at each message position. Shared; not modified.
+	private final int[][] inputPositions;	// Message positions of each cipher letter.
+	
+	private final int[] plug = new int[26];
+	private final int[] plain;
+	private final int[] trial;			// Copy of plain, changed only while a pair is being scored.
+	
+	// Message positions of each rotor stack output letter under the current plugboard, and the index of each
+	// position in its list.
+	private final int[][] outputPositions;
+	private final int[] outputCounts = new int[26];
+	private final int[] outputSlots;
+	
+	// Marks for positions and grams already visited by the current trial.
+	private final int[] positionMarks;
+	private final int[] gramMarks;
+	private final int[] changed;
+	private int trialCount;
+	
+	private double score;
+	
+	/**
+	 * Constructor. Takes the rotor stack permutations for the candidate from the worker's pooled machine.
+	 * 
+	 * @param fitness
+	 * 				FitnessFunction
+	 * @param candidate
+	 * 				EnigmaSettings
+	 * @param message
+	 * 				Letter indices of the cipher text
+	 */
+	PlugboardScorer(FitnessFunction fitness, EnigmaSettings candidate, int[] message) {
+		this.fitness = fitness;
+		this.table = (fitness instanceof NgramTable) ? (NgramTable) fitness : null;
+		this.message = message;
+		this.length = message.length;
+		
+		EnigmaMachine bomb = EnigmaMachinePool.acquire(candidate);
+		core = bomb.getPathTable(length);
+		
+		int[] inputCounts = new int[26];
+		
+		for (int position = 0; position < length; position++) {
+			inputCounts[message[position]]++;
+		}
+		
+		inputPositions = new int[26][];
+		outputPositions = new int[26][length];
+		
+		for (int letter = 0; letter < 26; letter++) {
+			inputPositions[letter] = new int[inputCounts[letter]];
+			inputCounts[letter] = 0;
+		}
+		
+		for (int position = 0; position < length; position++) {
+			int letter = message[position];
+			inputPositions[letter][inputCounts[letter]++] = position;
+		}
+		
+		outputSlots = new int[length];
+		plain = new int[length];
+		trial = new int[length];
+		positionMarks = new int[length];
+		gramMarks = new int[length];
+		changed = new int[length];
+		
+		setPlugboard("");
+	}
+	
+	/**
+	 * Replaces the plugboard and rescores the decryption.
+	 * 
+	 * @param mapping
+	 * 				Plugboard mapping, as accepted by Plugboard
+	 */
+	void setPlugboard(String mapping) {
+		Plugboard plugboard = new Plugboard(mapping);
+		
+		for (int letter = 0; letter < 26; letter++) {
+			plug[letter] = plugboard.matchIndex(letter);
+		}
+		
+		update();
+	}
+	
+	/**
+	 * Replaces the plugboard and rescores the decryption.
+	 * 
+	 * @param wiring
+	 * 				Plugboard wiring table of 26 letter indices
+	 */
+	void setPlugboard(int[] wiring) {
+		System.arraycopy(wiring, 0, plug, 0, 26);
+		
+		update();
+	}
+	
+	/**
+	 * Adds a pair to the plugboard and rescores the decryption. Both letters must be unpaired.
+	 * 
+	 * @param first
+	 * 				Letter index of the first letter
+	 * @param second
+	 * 				Letter index of the second letter
+	 */
+	void addPair(int first, int second) {
+		plug[first] = second;
+		plug[second] = first;
+		
+		update();
+	}
+	
+	/**
+	 * @return the fitness score of the decryption with the current plugboard, a double
+	 */
+	double getScore() {
+		return score;
+	}
+	
+	/**
+	 * Computes the fitness score the decryption would have with a pair added to the current plugboard, leaving the
+	 * plugboard unchanged. Both letters must be unpaired.
+	 * 
+	 * @param first
+	 * 				Letter index of the first letter
+	 * @param second
+	 * 				Letter index of the second letter
+	 * @return fitness score, a double
+	 */
+	double scorePair(int first, int second) {
+		trialCount++;
+		
+		// Decrypt only the positions touched by either letter, on the way in or on the way out.
+		int changedCount = 0;
+		changedCount = decryptTrial(inputPositions[first], inputPositions[first].length, first, second, changedCount);
+		changedCount = decryptTrial(inputPositions[second], inputPositions[second].length, first, second, changedCount);
+		changedCount = decryptTrial(outputPositions[first], outputCounts[first], first, second, changedCount);
+		changedCount = decryptTrial(outputPositions[second], outputCounts[second], first, second, changedCount);
+		
+		return scoreTrial(changedCount);
+	}
+	
+	/**
+	 * Computes the fitness score the decryption would have with another plugboard, leaving the plugboard
+	 * unchanged. The other plugboard may only differ from the current one in the wiring of the letters given.
+	 * 
+	 * @param wiring
+	 * 				Plugboard wiring table of 26 letter indices
+	 * @param letters
+	 * 				Letter indices whose wiring differs
+	 * @param count
+	 * 				Number of letters given
+	 * @return fitness score, a double
+	 */
+	double scorePlugboard(int[] wiring, int[] letters, int count) {
+		trialCount++;
+		
+		// Decrypt only the positions touched by a rewired letter, on the way in or on the way out.
+		int changedCount = 0;
+		
+		for (int index = 0; index < count; index++) {
+			int letter = letters[index];
+			changedCount = decryptTrial(inputPositions[letter], inputPositions[letter].length, wiring, changedCount);
+			changedCount = decryptTrial(outputPositions[letter], outputCounts[letter], wiring, changedCount);
+		}
+		
+		return scoreTrial(changedCount);
+	}
+	
+	/**
+	 * Replaces the plugboard with another, updating and rescoring only the positions it changes. The other
+	 * plugboard may only differ from the current one in the wiring of the letters given.
+	 * 
+	 * @param wiring
+	 * 				Plugboard wiring table of 26 letter indices
+	 * @param letters
+	 * 				Letter indices whose wiring differs
+	 * @param count
+	 * 				Number of letters given
+	 */
+	void commitPlugboard(int[] wiring, int[] letters, int count) {
+		trialCount++;
+		
+		int changedCount = 0;
+		
+		for (int index = 0; index < count; index++) {
+			int letter = letters[index];
+			changedCount = decryptTrial(inputPositions[letter], inputPositions[letter].length, wiring, changedCount);
+			changedCount = decryptTrial(outputPositions[letter], outputCounts[letter], wiring, changedCount);
+		}
+		
+		if (table != null) {
+			score += rescoreGrams(changedCount);
+		}
+		else {
+			score = fitness.score(trial, length);
+		}
+		
+		for (int index = 0; index < changedCount; index++) {
+			plain[changed[index]] = trial[changed[index]];
+		}
+		
+		// Only the positions of a rewired cipher letter change rotor stack output letter.
+		for (int index = 0; index < count; index++) {
+			int letter = letters[index];
+			
+			for (int position : inputPositions[letter]) {
+				moveOutput(position, core[position][plug[letter]], core[position][wiring[letter]]);
+			}
+		}
+		
+		for (int index = 0; index < count; index++) {
+			plug[letters[index]] = wiring[letters[index]];
+		}
+	}
+	
+	/**
+	 * Moves a position from the list of one rotor stack output letter to that of another.
+	 */
+	private void moveOutput(int position, int from, int to) {
+		if (from == to) {
+			return;
+		}
+		
+		// Fill the position's slot with the last position of its list.
+		int slot = outputSlots[position];
+		int last = outputPositions[from][--outputCounts[from]];
+		outputPositions[from][slot] = last;
+		outputSlots[last] = slot;
+		
+		outputSlots[position] = outputCounts[to];
+		outputPositions[to][outputCounts[to]++] = position;
+	}
+	
+	/**
+	 * Scores the trial buffer, then restores it to the current decryption.
+	 * 
+	 * @return fitness score of the trial decryption, a double
+	 */
+	private double scoreTrial(int changedCount) {
+		double result;
+		
+		if (table != null) {
+			result = score + rescoreGrams(changedCount);
+		}
+		else {
+			result = fitness.score(trial, length);
+		}
+		
+		// Restore the trial buffer.
+		for (int index = 0; index < changedCount; index++) {
+			trial[changed[index]] = plain[changed[index]];
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Decrypts a list of positions into the trial buffer with a pair added to the plugboard, skipping positions
+	 * already decrypted by this trial.
+	 * 
+	 * @return the new number of changed positions, an int
+	 */
+	private int decryptTrial(int[] positions, int count, int first, int second, int changedCount) {
+		for (int index = 0; index < count; index++) {
+			int position = positions[index];
+			
+			if (positionMarks[position] != trialCount) {
+				positionMarks[position] = trialCount;
+				changed[changedCount++] = position;
+				
+				int letter = core[position][swap(plug[message[position]], first, second)];
+				trial[position] = swap(plug[letter], first, second);
+			}
+		}
+		
+		return changedCount;
+	}
+	
+	/**
+	 * Decrypts a list of positions into the trial buffer with another plugboard, skipping positions already
+	 * decrypted by this trial.
+	 * 
+	 * @return the new number of changed positions, an int
+	 */
+	private int decryptTrial(int[] positions, int count, int[] wiring, int changedCount) {
+		for (int index = 0; index < count; index++) {
+			int position = positions[index];
+			
+			if (positionMarks[position] != trialCount) {
+				positionMarks[position] = trialCount;
+				changed[changedCount++] = position;
+				
+				trial[position] = wiring[core[position][wiring[message[position]]]];
+			}
+		}
+		
+		return changedCount;
+	}
+	
+	/**
+	 * Sums the change in log probability of every gram covering a changed position.
+	 * 
+	 * @return score difference between the trial and current decryptions, a double
+	 */
+	private double rescoreGrams(int changedCount) {
+		int gramLength = table.getLength();
+		double oldScore = 0.0;
+		double newScore = 0.0;
+		
+		for (int index = 0; index < changedCount; index++) {
+			int position = changed[index];
+			int last = Math.min(position, length - gramLength);
+			
+			for (int start = Math.max(0, position - gramLength + 1); start <= last; start++) {
+				if (gramMarks[start] != trialCount) {
+					gramMarks[start] = trialCount;
+					oldScore += table.getLogProbability(gramIndex(plain, start, gramLength));
+					newScore += table.getLogProbability(gramIndex(trial, start, gramLength));
+				}
+			}
+		}
+		
+		return newScore - oldScore;
+	}
+	
+	/**
+	 * Decrypts the whole message with the current plugboard, rebuilding the rotor stack output lists and the score.
+	 */
+	private void update() {
+		for (int letter = 0; letter < 26; letter++) {
+			outputCounts[letter] = 0;
+		}
+		
+		for (int position = 0; position < length; position++) {
+			int letter = core[position][plug[message[position]]];
+			outputSlots[position] = outputCounts[letter];
+			outputPositions[letter][outputCounts[letter]++] = position;
+			
+			plain[position] = plug[letter];
+			trial[position] = plain[position];
+		}
+		
+		score = fitness.score(plain, length);
+	}
+	
+	/**
+	 * Packs the letter indices of a gram into a table index.
+	 */
+	private static int gramIndex(int[] text, int start, int gramLength) {
+		int index = 0;
+		
+		for (int position = start; position < start + gramLength; position++) {
+			index = index * 26 + text[position];
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Applies a single plugboard pair to a letter index.
+	 */
+	private static int swap(int letter, int first, int second) {
+		if (letter == first) {
+			return second;
+		}
+		else if (letter == second) {
+			return first;
+		}
+		
+		return letter;
+	}
+}
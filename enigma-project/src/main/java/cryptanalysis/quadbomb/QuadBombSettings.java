@@ -3,6 +3,7 @@ package main.java.cryptanalysis.quadbomb;
 import java.util.LinkedList;
 import java.util.Queue;
 
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
 import main.java.enigma.EnigmaSettings;
 
 /**
@@ -28,6 +29,14 @@ import main.java.enigma.EnigmaSettings;
  * Dec 6, 2013
  */
 public class QuadBombSettings {
+	// Plugboard step solvers.
+	public static final int GREEDY_SOLVER = 0;		// PlugboardDetector.
+	public static final int ANNEALING_SOLVER = 1;	// AnnealingDetector.
+	
+	public static final int COARSE_SHORTLIST_FACTOR = 4;	// Default coarse shortlist size, per candidate.
+	public static final int ANNEALING_CHAINS = 8;			// Default annealing chains per candidate.
+	public static final int ANNEALING_RESTARTS = 4;			// Default restarts per annealing chain.
+	
 	private static int NUM_ROTORS = 8;	// Used for debugging and rapid testing only.
 	
 	// User-defined constraints.
@@ -41,6 +50,20 @@ public class QuadBombSettings {
 	private int threadCount;
 	private int candidateSize;
 	
+	// Statistics used to score each stage. See StatisticsGenerator for the list.
+	private int indicatorStatistic = 3;
+	private int ringStatistic = 3;
+	private int plugboardStatistic = 3;
+	
+	// Two-tier indicator search. Disabled while the prefix length is 0.
+	private int coarsePrefixLength = 0;
+	private int coarseShortlistFactor = COARSE_SHORTLIST_FACTOR;
+	
+	// Plugboard step solver, and the chains and restarts per candidate of the annealing solver.
+	private int plugboardSolver = GREEDY_SOLVER;
+	private int annealingChains = ANNEALING_CHAINS;
+	private int annealingRestarts = ANNEALING_RESTARTS;
+	
 	/**
 	 * Constructor saving settings and determining if testing 3-rotor Enigmas only.
 	 * 
@@ -194,6 +217,130 @@ public class QuadBombSettings {
 		return candidateSize;
 	}
 
+	/**
+	 * @return the statistic used to score the indicator stage, an integer
+	 */
+	public int getIndicatorStatistic() {
+		return indicatorStatistic;
+	}
+
+	/**
+	 * @return the statistic used to score the ring stage, an integer
+	 */
+	public int getRingStatistic() {
+		return ringStatistic;
+	}
+
+	/**
+	 * @return the statistic used to score the plugboard stage, an integer
+	 */
+	public int getPlugboardStatistic() {
+		return plugboardStatistic;
+	}
+	
+	/**
+	 * Selects the statistic (0-10, see StatisticsGenerator) used to score each stage. All stages default to
+	 * Sinkov quadgrams (3). Sinkov quintgrams (10) need a corpus trained with quintgrams, or a quintgram table mapped
+	 * by QuadbombManager.mapNgramTables(); the shipped training corpus has none, and scores every trial as negative
+	 * infinity under statistic 10.
+	 * 
+	 * @param indicators
+	 * 				Statistic for the indicator stage
+	 * @param rings
+	 * 				Statistic for the ring stage
+	 * @param plugboard
+	 * 				Statistic for the plugboard stage
+	 * @throws IllegalArgumentException
+	 * 				if a statistic is not in the range 0 to StatisticsGenerator.NUM_STATISTICS - 1
+	 */
+	public void setStageStatistics(int indicators, int rings, int plugboard) {
+		checkStatistic(indicators);
+		checkStatistic(rings);
+		checkStatistic(plugboard);
+		
+		indicatorStatistic = indicators;
+		ringStatistic = rings;
+		plugboardStatistic = plugboard;
+	}
+
+	/**
+	 * @return the number of letters the indicator stage scores in its coarse pass, or 0 if the coarse pass is off
+	 */
+	public int getCoarsePrefixLength() {
+		return coarsePrefixLength;
+	}
+	
+	/**
+	 * Shares the coarse shortlist of a wheel order out among the tasks its indicator search is split into.
+	 * 
+	 * @param slices
+	 * 				Number of tasks searching the wheel order
+	 * @return the number of candidates each indicator task keeps from its coarse pass to rescore in full
+	 */
+	public int getCoarseShortlistSize(int slices) {
+		return (candidateSize * coarseShortlistFactor + slices - 1) / slices;
+	}
+	
+	/**
+	 * Sets up a two-tier indicator search for long messages. Every indicator setting is first scored on a prefix
+	 * of the message, and only a shortlist of the best of each wheel order, wider than the candidate size, is
+	 * rescored on the full message. This is much faster, at a small risk of dropping a setting whose prefix scores
+	 * poorly.
+	 * 
+	 * @param prefixLength
+	 * 				Letters scored in the coarse pass, e.g. 150. 0 turns the coarse pass off.
+	 * @param shortlistFactor
+	 * 				Shortlist size of each wheel order, as a multiple of the candidate size, e.g. COARSE_SHORTLIST_FACTOR
+	 * @throws IllegalArgumentException
+	 * 				if the shortlist factor is less than 1, which would keep no candidates
+	 */
+	public void setCoarseIndicatorSearch(int prefixLength, int shortlistFactor) {
+		if (shortlistFactor < 1) {
+			throw new IllegalArgumentException("Unsupported shortlist factor: " + shortlistFactor);
+		}
+		
+		coarsePrefixLength = prefixLength;
+		coarseShortlistFactor = shortlistFactor;
+	}
+
+	/**
+	 * @return the solver used by the plugboard stage, GREEDY_SOLVER or ANNEALING_SOLVER
+	 */
+	public int getPlugboardSolver() {
+		return plugboardSolver;
+	}
+	
+	/**
+	 * @return the number of annealing chains run for each candidate
+	 */
+	public int getAnnealingChains() {
+		return annealingChains;
+	}
+	
+	/**
+	 * @return the number of times each annealing chain restarts
+	 */
+	public int getAnnealingRestarts() {
+		return annealingRestarts;
+	}
+	
+	/**
+	 * Replaces the greedy plugboard search with simulated annealing over the plugboard and the ring settings of
+	 * the two fastest wheels. Each candidate from the ring stage is searched by several independent chains in
+	 * parallel, which share their best result. This is slower, but recovers plugboards with many pairs that the
+	 * greedy search loses.
+	 * 
+	 * @param chains
+	 * 				Chains per candidate, e.g. ANNEALING_CHAINS
+	 * @param restarts
+	 * 				Restarts per chain, e.g. ANNEALING_RESTARTS
+	 */
+	public void setAnnealingSolver(int chains, int restarts) {
+		plugboardSolver = ANNEALING_SOLVER;
+		annealingChains = chains;
+		annealingRestarts = restarts;
+	}
+
 	/**
 	 * @return the plugboardSetting, a String
 	 */
@@ -201,6 +348,18 @@ public class QuadBombSettings {
 		return plugboardSetting;
 	}
 
+	/**
+	 * @param statistic
+	 * 				Statistic index to check
+	 * @throws IllegalArgumentException
+	 * 				if the statistic is not one StatisticsGenerator provides
+	 */
+	private static void checkStatistic(int statistic) {
+		if (statistic < 0 || statistic >= StatisticsGenerator.NUM_STATISTICS) {
+			throw new IllegalArgumentException("Unsupported statistic: " + statistic);
+		}
+	}
+	
 	/**
 	 * Takes settings from the spinner values and maps them to facilitate setting loop boundaries.
 	 * @param rotorIndex
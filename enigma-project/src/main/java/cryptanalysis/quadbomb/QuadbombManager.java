@@ -1,21 +1,30 @@
 package main.java.cryptanalysis.quadbomb;
 
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JButton;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 import main.java.GUINew.ResultsPanel;
 import main.java.cryptanalysis.nlp.Corpus;
 import main.java.cryptanalysis.nlp.CribDetector;
+import main.java.cryptanalysis.nlp.FitnessFunction;
 import main.java.cryptanalysis.nlp.StatisticsGenerator;
 import main.java.enigma.EnigmaMachine;
 import main.java.enigma.EnigmaSettings;
@@ -31,7 +40,24 @@ import main.java.enigma.EnigmaSettings;
  * Step 3: Determine plugboard connections a pair at a time, saving best results of each pair combo, until no further improvement can be found.
  * 
  * Improvements:
- * Incorporated multiple threading to improve CPU utilization.
+ * Incorporated multiple threading to improve CPU utilization. Each step is split into small tasks (a single middle
+ * indicator or ring setting of a candidate) that run on a work-stealing ForkJoinPool, so workers are not left idle
+ * while a single long task finishes.
+ * 
+ * The steps are pipelined rather than run one after the other. Each step keeps its best results in a
+ * CandidateCollector, and a result that enters a step's best list is sent to the next step straight away. Better
+ * results found later evict worse ones, and tasks for evicted candidates that have not started yet are skipped.
+ * The best decryption found so far is shown as soon as the plugboard step produces it. Candidates are passed between
+ * steps as PackedCandidates, and only the results shown are converted to EnigmaSettings.
+ * 
+ * Every candidate a barrier between steps would have kept is still searched. Ring results of an indicator candidate
+ * evicted after its ring search can displace results of the candidates that survive from the ring step's list, so
+ * the ring step also keeps the best results of each indicator candidate. Once all tasks are done, the best ring
+ * results of the surviving indicator candidates are collected, as a barrier would have, and any of them whose
+ * plugboard search was displaced or skipped is searched then.
+ * 
+ * The plugboard step can instead use an AnnealingDetector (see QuadBombSettings.setAnnealingSolver), which runs
+ * several simulated annealing chains per candidate as separate tasks, sharing their best result.
  * 
  * Limitations:
  * This method does not guarantee a correct result. Essentially, this algorithm is equivalent to a ensemble local maxima search in that it
@@ -41,7 +67,8 @@ import main.java.enigma.EnigmaSettings;
  * rotor and ring settings, and in these cases the algorithm is expected to fail. Furthermore, in cases of messages encrypted with a large
  * number of plugboard pairs, the search space scores are very similar until most of the correct settings are recovered. In these cases, it is very
  * likely that the correct settings are lost in a given step due to a large number of slightly better scoring 'incorrect' setting combinations clogging
- * the candidate lists.
+ * the candidate lists. The annealing solver recovers such plugboards in the plugboard step, but cannot recover a candidate lost in an
+ * earlier step.
  * 
  * @see <a href="http://practicalcryptography.com/cryptanalysis/breaking-machine-ciphers/cryptanalysis-enigma/">Practical Cryptography: Cryptanalysis of Enigma</a>
  * @see <a href="http://practicalcryptography.com/cryptanalysis/text-characterisation/quadgrams/">Practical Cryptography: Quadram Statistics as a Fitness Measure</a>
@@ -52,6 +79,11 @@ import main.java.enigma.EnigmaSettings;
  * Nov 26, 2013
  */
 public class QuadbombManager extends SwingWorker<Boolean, Integer> {
+	private static final int INDICATOR_STEP = 0;
+	private static final int RING_STEP = 1;
+	private static final int PLUGBOARD_STEP = 2;
+	private static final int ANNEALING_STEP = 3;	// Plugboard step, with the annealing solver.
+	
 	private final StatisticsGenerator statGenerator;
 	private final CribDetector tester;
 	private final String message;
@@ -64,12 +96,37 @@ public class QuadbombManager extends SwingWorker<Boolean, Integer> {
 	private JTextField statusLabel;
 	private JButton encryptButton;
 	
-	private ConcurrentLinkedQueue<EnigmaSettings> resultsList;
-	private PriorityQueue<EnigmaSettings> candidateList;
+	// Best results of each step.
+	private final CandidateCollector indicatorResults;
+	private volatile CandidateCollector ringResults;
+	private final CandidateCollector plugboardResults;
 	
-	private ExecutorService threadManager;
-
-	private int operationCount;
+	// Best ring results of each indicator candidate. Lists of evicted candidates are dropped now and then.
+	private final ConcurrentHashMap<Long, CandidateCollector> parentRingResults = new ConcurrentHashMap<Long, CandidateCollector>();
+	private final AtomicBoolean pruningRingResults = new AtomicBoolean();
+	
+	// Ring results whose plugboard search was submitted, and those whose plugboard search was skipped.
+	private final Set<Long> plugboardSearches = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+	private final Set<Long> skippedPlugboardSearches = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+	
+	private FitnessFunction indicatorFitness;
+	private FitnessFunction ringFitness;
+	private FitnessFunction plugboardFitness;
+	
+	private ForkJoinPool threadManager;
+	
+	// Submitted tasks not yet finished. The manager waits on taskLock until this reaches zero.
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+	private final Object taskLock = new Object();
+	private volatile RuntimeException taskFailure;
+	
+	// Progress counters.
+	private int indicatorTaskCount;
+	private int ringTaskCount;		// Ring tasks per candidate.
+	private int plugboardTaskCount;	// Plugboard tasks per candidate.
+	private final AtomicInteger indicatorTasksDone = new AtomicInteger();
+	private final AtomicInteger ringTasksDone = new AtomicInteger();
+	private final AtomicInteger plugboardTasksDone = new AtomicInteger();
 
 	/**
 	 * Constructor
@@ -95,135 +152,369 @@ public class QuadbombManager extends SwingWorker<Boolean, Integer> {
 		this.statusLabel = label;
 		this.encryptButton = button;
 		
-		resultsList = new ConcurrentLinkedQueue<EnigmaSettings>();
-		candidateList = new PriorityQueue<EnigmaSettings>();
+		indicatorResults = new CandidateCollector(settings.getCandidateSize());
+		ringResults = new CandidateCollector(settings.getCandidateSize());
+		plugboardResults = new CandidateCollector(settings.getCandidateSize());
 		
-		statGenerator = new StatisticsGenerator(database, 3);	// TODO: Set best statistics for individual tests.
+		statGenerator = new StatisticsGenerator(database, 3);
 		tester = new CribDetector(database);
 	}
 	
+	/**
+	 * Memory maps precomputed n-gram tables, so processes on one host share a single copy. Must be called before
+	 * execute(). See StatisticsGenerator.mapNgramTables().
+	 * 
+	 * @param directory
+	 * 				Directory holding the table files
+	 * @return the number of tables mapped
+	 * @throws IOException
+	 * 				if a table file cannot be mapped
+	 */
+	public int mapNgramTables(File directory) throws IOException {
+		return statGenerator.mapNgramTables(directory);
+	}
+	
 	/**
 	 * Workhorse method. Specified by SwingWorker. 
 	 */
 	public Boolean doInBackground() {
-		// Initialize thread list.
-		threadManager = Executors.newFixedThreadPool(settings.getThreadCount());
+		// Initialize thread pool, shared by all steps.
+		threadManager = new ForkJoinPool(settings.getThreadCount());
 		
-		operationCount = 0;
+		indicatorFitness = statGenerator.getFitnessFunction(settings.getIndicatorStatistic());
+		ringFitness = statGenerator.getFitnessFunction(settings.getRingStatistic());
+		plugboardFitness = statGenerator.getFitnessFunction(settings.getPlugboardStatistic());
 		
-		// Get rotors and reflectors to test.
+		// Get rotors and reflectors to test. Every candidate shares the plugboard settings provided.
 		Queue<EnigmaSettings> testList = settings.getRotorReflectorCandidateList();
-		LinkedList<Future<Boolean>> threadList = new LinkedList<Future<Boolean>>();
+		byte[] plugboard = PackedCandidate.packPlugboard(settings.getPlugboardSetting());
+		List<Slice> sliceList = new ArrayList<Slice>();
 		
 		updateProgress(0);	// Reset progress bar and status text.
 		
-		// Step 1: Test indicators for each rotor and reflector combo.
+		// Step 1: Test indicators for each rotor and reflector combo, one task per middle indicator.
+		// Steps 2 and 3 are started by step 1 as candidates are found.
 		while (!testList.isEmpty()) {
-			threadList.add(threadManager.submit(new IndicatorDetector(statGenerator, testList.poll(), settings, resultsList, message)));
-		}
-		
-		// Spinlock this thread, updating progress and status, until all threads are complete.
-		while (!threadList.isEmpty()) {
-			List<Future<Boolean>> removeList = new LinkedList<Future<Boolean>>();
+			long candidate = PackedCandidate.pack(testList.poll());
+			int[] indicators = settings.getTestingIndicators(PackedCandidate.isThreeRotor(candidate));
 			
-			for (Future<Boolean> thread : threadList) {
-				if (thread.isDone() && !thread.isCancelled()) {
-					operationCount++;
-					updateProgress(operationCount);
-					publish(operationCount);
-					removeList.add(thread);
-				}
-				else if (Thread.currentThread().isInterrupted()) {	// Allow thread cancellation.
-					updateProgress(0);
-					return false;
-				}
+			for (int j = indicators[4]; j < indicators[5]; j++) {
+				sliceList.add(new Slice(candidate, plugboard, j));
 			}
-			
-			threadList.removeAll(removeList);
+		}
+		
+		indicatorTaskCount = sliceList.size();
+		int[] rings = settings.getTestingRings(true);
+		ringTaskCount = Math.max(1, rings[5] - rings[4]);
+		plugboardTaskCount = (settings.getPlugboardSolver() == QuadBombSettings.ANNEALING_SOLVER) ? settings.getAnnealingChains() : 1;
+		
+		if (!submit(new SearchTask(INDICATOR_STEP, sliceList, 0, sliceList.size())) || !awaitTasks()) {
+			updateProgress(0);
+			return false;
+		}
+		
+		// Step 3 for the ring results a barrier would have kept, but whose plugboard search was displaced.
+		searchDisplacedRings(plugboard);
+		
+		if (!awaitTasks()) {
+			updateProgress(0);
+			return false;
 		}
 		
 		threadManager.shutdown();
 		
-		// Trim candidate list.
-		trimCandidateList();
+		if (taskFailure != null) {
+			throw taskFailure;
+		}
+		
+		// Get best result.
+		result = plugboardResults.getBest();
+		
+		EnigmaMachine decoder = result.createEnigmaMachine();
+		decryptedMessage = decoder.encryptString(message);
 		
-		// Step 2: Determine possible ring settings.
-		// Initialize thread list.
-		threadManager = Executors.newFixedThreadPool(settings.getThreadCount());
+		decryptedMessage = tester.parseMessage(decryptedMessage);
+
+		return true;	// Return success flag.
+	}
+	
+	/**
+	 * Submits a task to the thread pool, counting it as pending until it finishes.
+	 * 
+	 * @param task
+	 * 				SearchTask
+	 * @return false if the search was aborted, true otherwise
+	 */
+	private boolean submit(SearchTask task) {
+		pendingTasks.incrementAndGet();
 		
-		for (EnigmaSettings candidate: candidateList) {
-			threadList.add(threadManager.submit(new RingDetector(statGenerator, candidate, settings, resultsList, message)));
+		try {
+			if (ForkJoinTask.inForkJoinPool()) {
+				task.fork();
+			}
+			else {
+				threadManager.execute(task);
+			}
+		}
+		catch (RejectedExecutionException e) {	// Pool has been shut down.
+			taskFinished();
+			return false;
 		}
 		
-		// Spinlock this thread, updating progress and status, until all threads are complete.
-		while (!threadList.isEmpty()) {
-			List<Future<Boolean>> removeList = new LinkedList<Future<Boolean>>();
-			
-			for (Future<Boolean> thread : threadList) {
-				if (thread.isDone() && !thread.isCancelled()) {
-					operationCount++;
-					updateProgress(operationCount);
-					publish(operationCount);
-					removeList.add(thread);
+		return true;
+	}
+	
+	/**
+	 * Marks a submitted task as finished, waking the manager once no tasks are pending.
+	 */
+	private void taskFinished() {
+		if (pendingTasks.decrementAndGet() == 0) {
+			synchronized (taskLock) {
+				taskLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Blocks until all submitted tasks, including those they submit, have finished.
+	 * 
+	 * @return false if the search was aborted, true otherwise
+	 */
+	private boolean awaitTasks() {
+		synchronized (taskLock) {
+			while (pendingTasks.get() > 0 && !threadManager.isShutdown()) {
+				try {
+					taskLock.wait();
 				}
-				else if (Thread.currentThread().isInterrupted()) {	// Allow thread cancellation.
-					updateProgress(0);
+				catch (InterruptedException e) {	// Allow thread cancellation.
 					return false;
 				}
 			}
-			
-			threadList.removeAll(removeList);
 		}
-			
-		threadManager.shutdown();
 		
-		// Trim candidate list.
-		trimCandidateList();
+		return !threadManager.isShutdown();
+	}
+	
+	/**
+	 * Runs a single task: one slice of the indicator or ring search, the plugboard search of one candidate, or one
+	 * annealing chain of a candidate.
+	 * Detectors return the results that entered their step's collector, which are sent on to the next step.
+	 * 
+	 * @param step
+	 * 				Step of the search
+	 * @param slice
+	 * 				Candidate and middle wheel setting to search
+	 */
+	private void runSlice(int step, Slice slice) {
+		ConcurrentLinkedQueue<Long> found = new ConcurrentLinkedQueue<Long>();
+		
+		switch (step) {
+			case INDICATOR_STEP:
+				if (new IndicatorDetector(indicatorFitness, slice.candidate, slice.plugboard, settings, indicatorResults, found, message, slice.middle, slice.middle + 1).call()) {
+					for (long candidate : found) {
+						searchRings(candidate, slice.plugboard);
+					}
+					
+					indicatorTasksDone.incrementAndGet();
+				}
+				break;
+			case RING_STEP:
+				// Skip candidates evicted since they were found. Results are sent on if they enter both the
+				// candidate's own list and the ring step's list.
+				if (!indicatorResults.contains(slice.candidate) 
+						|| new RingDetector(ringFitness, slice.candidate, slice.plugboard, settings, getParentRingResults(slice.candidate), 
+								ringResults, found, message, slice.middle, slice.middle + 1).call()) {
+					for (long candidate : found) {
+						searchPlugboard(candidate, slice.plugboard);
+					}
+					
+					ringTasksDone.incrementAndGet();
+				}
+				break;
+			case PLUGBOARD_STEP:
+				boolean skipped = !ringResults.contains(slice.candidate);
+				
+				if (skipped) {
+					skippedPlugboardSearches.add(slice.candidate);
+				}
+				
+				if (skipped 
+						|| new PlugboardDetector(plugboardFitness, slice.candidate, slice.plugboard, settings, plugboardResults, found, message).call()) {
+					if (!found.isEmpty()) {
+						showBest();
+					}
+					
+					plugboardTasksDone.incrementAndGet();
+				}
+				break;
+			default:	// Annealing step, one task per chain. Skipped chains still finish, so the last one offers the result.
+				boolean evicted = !ringResults.contains(slice.candidate);
+				
+				if (evicted) {
+					skippedPlugboardSearches.add(slice.candidate);
+					slice.shared.chainFinished(plugboardResults, found);
+				}
+				
+				if (evicted 
+						|| new AnnealingDetector(plugboardFitness, slice.candidate, slice.plugboard, settings, plugboardResults, found, message, 
+								slice.shared, slice.middle).call()) {
+					if (!found.isEmpty()) {
+						showBest();
+					}
+					
+					plugboardTasksDone.incrementAndGet();
+				}
+				break;
+		}
 		
-		// Step 3: Determine possible plugboard settings.
-		// Initialize thread list.
-		threadManager = Executors.newFixedThreadPool(settings.getThreadCount());
+		reportProgress();
+	}
+	
+	/**
+	 * Submits the ring search of a candidate, one task per middle ring setting.
+	 * 
+	 * @param candidate
+	 * 				PackedCandidate from the indicator step
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
+	 */
+	private void searchRings(long candidate, byte[] plugboard) {
+		int[] rings = settings.getTestingRings(PackedCandidate.isThreeRotor(candidate));
+		List<Slice> sliceList = new ArrayList<Slice>();
 		
-		for (EnigmaSettings candidate: candidateList) {
-			threadList.add(threadManager.submit(new PlugboardDetector(statGenerator, candidate, settings, resultsList, message)));
+		for (int j = rings[4]; j < rings[5]; j++) {
+			sliceList.add(new Slice(candidate, plugboard, j));
 		}
 		
-		// Spinlock this thread, updating progress and status, until all threads are complete.
-		while (!threadList.isEmpty()) {
-			List<Future<Boolean>> removeList = new LinkedList<Future<Boolean>>();
+		submit(new SearchTask(RING_STEP, sliceList, 0, sliceList.size()));
+	}
+	
+	/**
+	 * Gets the list of best ring results of an indicator candidate, creating it on the candidate's first ring task.
+	 * Once there are more than twice as many lists as the candidate size, those of evicted candidates are dropped.
+	 * 
+	 * @param parent
+	 * 				PackedCandidate from the indicator step
+	 * @return the CandidateCollector of the candidate's ring results
+	 */
+	private CandidateCollector getParentRingResults(long parent) {
+		CandidateCollector results = parentRingResults.get(parent);
+		
+		if (results == null) {
+			// No candidate can keep more results than it has ring settings.
+			boolean threeRotor = PackedCandidate.isThreeRotor(parent);
+			int[] rings = settings.getTestingRings(threeRotor);
+			int trials = (rings[3] - rings[2]) * (rings[5] - rings[4]) * (rings[7] - rings[6]);
 			
-			for (Future<Boolean> thread : threadList) {
-				if (thread.isDone() && !thread.isCancelled()) {
-					operationCount++;
-					updateProgress(operationCount);
-					publish(operationCount);
-					removeList.add(thread);
-				}
-				else if (Thread.currentThread().isInterrupted()) {	// Allow thread cancellation.
-					updateProgress(0);
-					return false;
+			if (!threeRotor) {
+				trials *= rings[1] - rings[0];
+			}
+			
+			CandidateCollector created = new CandidateCollector(Math.max(0, Math.min(settings.getCandidateSize(), trials)));
+			results = parentRingResults.putIfAbsent(parent, created);
+			
+			if (results == null) {
+				results = created;
+				
+				if (parentRingResults.size() > 2 * settings.getCandidateSize() && pruningRingResults.compareAndSet(false, true)) {
+					for (Long candidate : parentRingResults.keySet()) {
+						if (!indicatorResults.contains(candidate)) {
+							parentRingResults.remove(candidate);
+						}
+					}
+					
+					pruningRingResults.set(false);
 				}
 			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Collects the best ring results of the indicator candidates kept, as a barrier between the ring and plugboard
+	 * steps would have, and submits the plugboard search of those not yet searched. Their searches may have been
+	 * skipped or never submitted, as ring results of candidates evicted later displaced them from ringResults.
+	 * Called once all tasks are done.
+	 * 
+	 * @param plugboard
+	 * 				Plugboard wiring table shared by all candidates
+	 */
+	private void searchDisplacedRings(byte[] plugboard) {
+		CandidateCollector barrierResults = new CandidateCollector(settings.getCandidateSize());
+		
+		for (long parent : indicatorResults.getCandidates()) {
+			CandidateCollector results = parentRingResults.get(parent);
 			
-			threadList.removeAll(removeList);
+			if (results != null) {
+				results.offerAll(barrierResults);
+			}
 		}
-				
-		threadManager.shutdown();
 		
-		// Trim candidate list.
-		trimCandidateList();
+		ringResults = barrierResults;	// Plugboard searches are skipped unless their candidate is held here.
 		
-		// Get best result.
-		while (!candidateList.isEmpty()) {
-			result = candidateList.remove();
+		for (long candidate : barrierResults.getCandidates()) {
+			if (!plugboardSearches.contains(candidate) || skippedPlugboardSearches.remove(candidate)) {
+				searchPlugboard(candidate, plugboard);
+			}
 		}
+	}
+	
+	/**
+	 * Submits the plugboard search of a candidate, as a single greedy task or one task per annealing chain.
+	 * 
+	 * @param candidate
+	 * 				PackedCandidate from the ring step
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
+	 */
+	private void searchPlugboard(long candidate, byte[] plugboard) {
+		plugboardSearches.add(candidate);
 		
-		EnigmaMachine decoder = result.createEnigmaMachine();
-		decryptedMessage = decoder.encryptString(message);
+		if (settings.getPlugboardSolver() != QuadBombSettings.ANNEALING_SOLVER) {
+			submit(new SearchTask(PLUGBOARD_STEP, new Slice(candidate, plugboard, 0)));
+			return;
+		}
 		
-		decryptedMessage = tester.parseMessage(decryptedMessage);
-
-		return true;	// Return success flag.
+		AnnealingDetector.SharedBest shared = new AnnealingDetector.SharedBest(plugboardTaskCount);
+		List<Slice> sliceList = new ArrayList<Slice>();
+		
+		for (int chain = 0; chain < plugboardTaskCount; chain++) {
+			sliceList.add(new Slice(candidate, plugboard, chain, shared));
+		}
+		
+		submit(new SearchTask(ANNEALING_STEP, sliceList, 0, sliceList.size()));
+	}
+	
+	/**
+	 * Shows the best decryption found so far on the Event Dispatch Thread.
+	 */
+	private void showBest() {
+		final EnigmaSettings best = plugboardResults.getBest();
+		final String text = best.createEnigmaMachine().encryptString(message);
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (!isDone()) {
+					resultsPanel.printSolution(best, text);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Updates the progress bar and status from the step counters. Indicator tasks count for the wheel order
+	 * operations, and each of the ring and plugboard steps counts for up to the candidate size.
+	 */
+	private void reportProgress() {
+		int indicatorOperations = settings.getTotalOperationCount() - settings.getCandidateSize() * 2;
+		int count = (int) ((long) indicatorTasksDone.get() * indicatorOperations / indicatorTaskCount);
+		
+		count += Math.min(settings.getCandidateSize(), ringTasksDone.get() / ringTaskCount);
+		count += Math.min(settings.getCandidateSize(), plugboardTasksDone.get() / plugboardTaskCount);
+		
+		updateProgress(count);
+		publish(count);
 	}
 	
 	/**
@@ -248,18 +539,37 @@ public class QuadbombManager extends SwingWorker<Boolean, Integer> {
 			setProgress(100);
 			statusLabel.setText("Completed");
 		}
+		else if (taskFailure != null) {
+			statusLabel.setText("Error - " + taskFailure);
+			setProgress(0);
+		}
 		else if (threadManager.isShutdown()) {
 			statusLabel.setText("Aborted...");
 			setProgress(0);
 		}
 	}
 	
+	/**
+	 * Gets the best result, once doInBackground() has returned successfully.
+	 * 
+	 * @return EnigmaSettings, or null if the search has not completed
+	 */
+	EnigmaSettings getResult() {
+		return result;
+	}
+	
 	/**
 	 * Stops work on all worker threads, in case the user wishes to cancel
 	 * prematurely. 
 	 */
 	public void abort() {
-		threadManager.shutdownNow();
+		if (threadManager != null) {
+			threadManager.shutdownNow();
+			
+			synchronized (taskLock) {
+				taskLock.notifyAll();
+			}
+		}
 	}
 	
 	/**
@@ -268,20 +578,82 @@ public class QuadbombManager extends SwingWorker<Boolean, Integer> {
 	 */
 	private void updateProgress(int count) {
 		int percent = (int)(100 * (double)count / settings.getTotalOperationCount());
-		setProgress(percent);
+		setProgress(Math.min(100, percent));
 	}
 	
 	/**
-	 * Loads candidateList with the top candidates, with the list size specified by the user.
+	 * A PackedCandidate with its plugboard, and the middle wheel setting (indicator or ring) to search it for. In
+	 * the annealing step, middle is the chain number and shared holds the best result of the candidate's chains.
 	 */
-	private void trimCandidateList() {
-		candidateList.clear();
-		candidateList.addAll(resultsList);	// Sorts on adding.
+	private static class Slice {
+		private final long candidate;
+		private final byte[] plugboard;
+		private final int middle;
+		private final AnnealingDetector.SharedBest shared;
 		
-		while (candidateList.size() > settings.getCandidateSize()) {
-			candidateList.poll();
+		Slice(long candidate, byte[] plugboard, int middle) {
+			this(candidate, plugboard, middle, null);
 		}
 		
-		resultsList.clear();	// Clear out result list for next step.
+		Slice(long candidate, byte[] plugboard, int middle, AnnealingDetector.SharedBest shared) {
+			this.candidate = candidate;
+			this.plugboard = plugboard;
+			this.middle = middle;
+			this.shared = shared;
+		}
+	}
+	
+	/**
+	 * Runs a range of slices of a step, splitting it in half until a single slice remains, so idle workers can
+	 * steal the other half. Only the top level task is counted as pending.
+	 */
+	private class SearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int step;
+		private final List<Slice> sliceList;
+		private final int start;
+		private final int end;
+		private final boolean submitted;
+		
+		SearchTask(int step, Slice slice) {
+			this(step, Collections.singletonList(slice), 0, 1);
+		}
+		
+		SearchTask(int step, List<Slice> sliceList, int start, int end) {
+			this(step, sliceList, start, end, true);
+		}
+		
+		private SearchTask(int step, List<Slice> sliceList, int start, int end, boolean submitted) {
+			this.step = step;
+			this.sliceList = sliceList;
+			this.start = start;
+			this.end = end;
+			this.submitted = submitted;
+		}
+		
+		protected void compute() {
+			try {
+				if (end - start > 1) {
+					int middle = (start + end) >>> 1;
+					invokeAll(new SearchTask(step, sliceList, start, middle, false), 
+							new SearchTask(step, sliceList, middle, end, false));
+				}
+				else if (end > start && !Thread.currentThread().isInterrupted()) {
+					runSlice(step, sliceList.get(start));
+				}
+			}
+			catch (RuntimeException e) {
+				if (taskFailure == null) {
+					taskFailure = e;
+				}
+				throw e;
+			}
+			finally {
+				if (submitted) {
+					taskFinished();
+				}
+			}
+		}
 	}
 }
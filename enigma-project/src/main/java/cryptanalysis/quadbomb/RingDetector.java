@@ -1,10 +1,9 @@
 package main.java.cryptanalysis.quadbomb;
 
-import java.util.PriorityQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
-import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.cryptanalysis.nlp.FitnessFunction;
 import main.java.enigma.EnigmaMachine;
 import main.java.enigma.EnigmaSettings;
 
@@ -15,9 +14,17 @@ import main.java.enigma.EnigmaSettings;
  * ring does not need to be stepped.
  * 
  * Each candidate ring setting is applied to the provided machine settings, and scored with a defined statistic.
- * The best number of candidates (number specified by the user) is saved in resultsList for further use.
+ * Candidates that enter the collector of best results are also added to resultsList, so they can be sent on
+ * to the next step. Candidates are PackedCandidates, and only those scoring above the collector's threshold are packed.
+ * Given a shortlist, such as a collector shared by all base candidates, only candidates that enter both collectors
+ * are added to resultsList.
+ * Candidates that cannot beat the collector's threshold are abandoned partway through the message; see BoundedScorer.
  * Return values indicate if the thread completed it's computation.
  * 
+ * The search may be limited to a slice of middle ring settings, so a single candidate can be split into many
+ * small tasks. Trials are decrypted by a RingSearchEngine, which only decrypts the parts of the message whose
+ * stepping differs from every earlier trial.
+ * 
  * RingDetector.java
  * @author - Walter Adolph
  * @author - Team Enigma
@@ -25,92 +32,135 @@ import main.java.enigma.EnigmaSettings;
  * Nov 26, 2013
  */
 public class RingDetector implements Callable<Boolean> {
-	private StatisticsGenerator tester;
-	private EnigmaSettings baseCandidate;
+	private FitnessFunction tester;
+	private long baseCandidate;
+	private byte[] plugboard;
 	private QuadBombSettings settings;
-	private final String message;
+	private final int[] messageIndices;
+	private final int middleStart;
+	private final int middleEnd;
 	
-	private PriorityQueue<EnigmaSettings> workList;
-	private ConcurrentLinkedQueue<EnigmaSettings> resultsList;
+	private CandidateCollector results;
+	private CandidateCollector shortlist;
+	private ConcurrentLinkedQueue<Long> resultsList;
 	
 	/**
 	 * Constructor. 
 	 * 
 	 * @param tester
-	 * 				StatisticsGenerator
+	 * 				FitnessFunction
 	 * @param baseCandidate
-	 * 				EnigmaSettings
+	 * 				PackedCandidate
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
 	 * @param settings
 	 * 				QuadBombSettings
+	 * @param results
+	 * 				CandidateCollector
 	 * @param resultsList
-	 * 				ConcurrentLinkedQueue<EnigmaSettings>
+	 * 				ConcurrentLinkedQueue<Long>
 	 * @param message
 	 * 				String
 	 */
-	public RingDetector(StatisticsGenerator tester, 
-			EnigmaSettings baseCandidate, 
+	public RingDetector(FitnessFunction tester, 
+			long baseCandidate, 
+			byte[] plugboard, 
 			QuadBombSettings settings, 
-			ConcurrentLinkedQueue<EnigmaSettings> resultsList, 
+			CandidateCollector results, 
+			ConcurrentLinkedQueue<Long> resultsList, 
 			String message) 
 	{
-		workList = new PriorityQueue<EnigmaSettings>();
-		
+		this(tester, baseCandidate, plugboard, settings, results, null, resultsList, message, 0, 26);
+	}
+	
+	/**
+	 * Constructor limiting the search to a slice of middle ring settings.
+	 * 
+	 * @param tester
+	 * 				FitnessFunction
+	 * @param baseCandidate
+	 * 				PackedCandidate
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
+	 * @param settings
+	 * 				QuadBombSettings
+	 * @param results
+	 * 				CandidateCollector
+	 * @param shortlist
+	 * 				CandidateCollector results must also enter to be added to resultsList, or null for none
+	 * @param resultsList
+	 * 				ConcurrentLinkedQueue<Long>
+	 * @param message
+	 * 				String
+	 * @param middleStart
+	 * 				First middle ring index to test, inclusive
+	 * @param middleEnd
+	 * 				Last middle ring index to test, exclusive
+	 */
+	public RingDetector(FitnessFunction tester, 
+			long baseCandidate, 
+			byte[] plugboard, 
+			QuadBombSettings settings, 
+			CandidateCollector results, 
+			CandidateCollector shortlist, 
+			ConcurrentLinkedQueue<Long> resultsList, 
+			String message,
+			int middleStart,
+			int middleEnd) 
+	{
 		this.tester = tester;
 		this.baseCandidate = baseCandidate;
+		this.plugboard = plugboard;
 		this.settings = settings;
+		this.results = results;
+		this.shortlist = shortlist;
 		this.resultsList = resultsList;
-		this.message = message;
+		this.messageIndices = EnigmaMachine.toIndices(message);
+		this.middleStart = middleStart;
+		this.middleEnd = middleEnd;
 	}
 	
 	/**
 	 * Worker method. Specified by Callable interface. 
 	 */
 	public Boolean call() {
-		int[] testParameters = settings.getTestingRings(baseCandidate.isThreeRotor());
-		tester.selectFitnessTest(3);
+		boolean threeRotor = PackedCandidate.isThreeRotor(baseCandidate);
+		int[] testParameters = settings.getTestingRings(threeRotor);
+		BoundedScorer scorer = new BoundedScorer(tester, messageIndices.length);
 		
 		boolean[] tandemCycle = settings.getTandemStepFlags();
 		
+		// The wheel order is fixed, so a single engine decrypts every trial, reusing what earlier trials decrypted.
+		EnigmaSettings base = PackedCandidate.toSettings(baseCandidate, plugboard, Double.NEGATIVE_INFINITY);
+		RingSearchEngine engine = new RingSearchEngine(base, plugboard, messageIndices);
+		char[] baseIndicators = base.getIndicatorSettings();
+		char[] ringTestSettings = new char[baseIndicators.length];
+		char[] indicatorTestSettings = new char[baseIndicators.length];
+		
 		// Cycle through ring setting combinations.
 		for (int i = testParameters[2]; i < testParameters[3]; i++) {			// Left ring loop.
-			for (int j = testParameters[4]; j < testParameters[5]; j++) {		// Middle ring loop.
+			for (int j = Math.max(testParameters[4], middleStart); j < Math.min(testParameters[5], middleEnd); j++) {	// Middle ring loop.
 				for (int k = testParameters[6]; k < testParameters[7]; k++) {	// Right ring loop.
-					if (baseCandidate.isThreeRotor()) {
-						// Copy settings and generate ring settings, offsetting indicator settings if necessary.
-						EnigmaSettings candidate = baseCandidate.copy();
-						char[] ringTestSettings = new char[3];
-						char[] indicatorTestSettings = new char[3];
-						
+					if (threeRotor) {
+						// Generate ring settings, offsetting indicator settings if necessary.
 						ringTestSettings[0] = (char) ('A' + i);
 						ringTestSettings[1] = (char) ('A' + j);
 						ringTestSettings[2] = (char) ('A' + k);
 						
 						// Compute indicator offsets.
-						indicatorTestSettings = candidate.getIndicatorSettings();
-						
-						int leftOffset = indicatorTestSettings[0] + i - 'A';
-						int middleOffset = indicatorTestSettings[1] + j - 'A';
-						int rightOffset = indicatorTestSettings[2] + k - 'A';
+						int leftOffset = baseIndicators[0] + i - 'A';
+						int middleOffset = baseIndicators[1] + j - 'A';
+						int rightOffset = baseIndicators[2] + k - 'A';
 						
 						char left = (char)(leftOffset % 26 + 'A');
 						char middle = (char)(middleOffset % 26 + 'A');
 						char right = (char)(rightOffset % 26 + 'A');
 						
-						indicatorTestSettings[0] = tandemCycle[1] ? left : indicatorTestSettings[0];
-						indicatorTestSettings[1] = tandemCycle[2] ? middle : indicatorTestSettings[1];
-						indicatorTestSettings[2] = tandemCycle[3] ? right : indicatorTestSettings[2];
-						
-						candidate.setIndicatorSettings(indicatorTestSettings);
-						candidate.setRingSettings(ringTestSettings);
-						
-						// Test the candidate and score.
-						EnigmaMachine bomb = candidate.createEnigmaMachine();
-						String cipher = bomb.encryptString(message);
-						double testValue = tester.computeFitnessScore(cipher);
+						indicatorTestSettings[0] = tandemCycle[1] ? left : baseIndicators[0];
+						indicatorTestSettings[1] = tandemCycle[2] ? middle : baseIndicators[1];
+						indicatorTestSettings[2] = tandemCycle[3] ? right : baseIndicators[2];
 						
-						// Save results.
-						candidate.setFitnessScore(testValue);
-						workList.add(candidate);
+						testRings(engine, ringTestSettings, indicatorTestSettings, scorer);
 						
 						if (Thread.currentThread().isInterrupted()) {	// Allows interrupted thread to terminate.
 							return false;
@@ -118,63 +168,67 @@ public class RingDetector implements Callable<Boolean> {
 					}
 					else { // Is four-rotor.
 						for (int l = testParameters[0]; l < testParameters[1]; l++) {	// Fourth ring loop.
-							// Copy settings and generate ring settings, offsetting indicator settings if necessary.
-							EnigmaSettings candidate = baseCandidate.copy();
-							char[] ringTestSettings = new char[4];
-							char[] indicatorTestSettings = new char[4];
-							
+							// Generate ring settings, offsetting indicator settings if necessary.
 							ringTestSettings[0] = (char) ('A' + l);
 							ringTestSettings[1] = (char) ('A' + i);
 							ringTestSettings[2] = (char) ('A' + j);
 							ringTestSettings[3] = (char) ('A' + k);
 							
 							// Compute indicator offsets.
-							indicatorTestSettings = candidate.getIndicatorSettings();
-							
-							int fourthOffset = indicatorTestSettings[0] + l - 'A';
-							int leftOffset = indicatorTestSettings[1] + i - 'A';
-							int middleOffset = indicatorTestSettings[2] + j - 'A';
-							int rightOffset = indicatorTestSettings[3] + k - 'A';
+							int fourthOffset = baseIndicators[0] + l - 'A';
+							int leftOffset = baseIndicators[1] + i - 'A';
+							int middleOffset = baseIndicators[2] + j - 'A';
+							int rightOffset = baseIndicators[3] + k - 'A';
 							
 							char fourth = (char)(fourthOffset % 26 + 'A');
 							char left = (char)(leftOffset % 26 + 'A');
 							char middle = (char)(middleOffset % 26 + 'A');
 							char right = (char)(rightOffset % 26 + 'A');
 							
-							indicatorTestSettings[0] = (tandemCycle[0]) ? fourth : indicatorTestSettings[0];
-							indicatorTestSettings[1] = (tandemCycle[1]) ? left : indicatorTestSettings[1];
-							indicatorTestSettings[2] = (tandemCycle[2]) ? middle : indicatorTestSettings[2];
-							indicatorTestSettings[3] = (tandemCycle[3]) ? right : indicatorTestSettings[3];
-							
-							candidate.setIndicatorSettings(indicatorTestSettings);
-							candidate.setRingSettings(ringTestSettings);
-							
-							// Test the candidate and score.
-							EnigmaMachine bomb = candidate.createEnigmaMachine();
-							String cipher = bomb.encryptString(message);
-							double testValue = tester.computeFitnessScore(cipher);
+							indicatorTestSettings[0] = (tandemCycle[0]) ? fourth : baseIndicators[0];
+							indicatorTestSettings[1] = (tandemCycle[1]) ? left : baseIndicators[1];
+							indicatorTestSettings[2] = (tandemCycle[2]) ? middle : baseIndicators[2];
+							indicatorTestSettings[3] = (tandemCycle[3]) ? right : baseIndicators[3];
 							
-							// Save results.
-							candidate.setFitnessScore(testValue);
-							workList.add(candidate);
+							testRings(engine, ringTestSettings, indicatorTestSettings, scorer);
 							
 							if (Thread.currentThread().isInterrupted()) {	// Allows interrupted thread to terminate.
 								return false;
 							}
 						} // End left ring loop.
 					} // End fourth rotor check.
-					
-					// Trim saved results to candidate size to save on memory.
-					while (workList.size() > settings.getCandidateSize()) {
-						workList.poll();
-					}
 				} // End right ring loop.
 			} // End middle ring loop.
 		} // End left ring loop.
 		
-		// Save results and exit.
-		resultsList.addAll(workList);
-		
 		return true;
 	} // End run()
+	
+	/**
+	 * Scores a single ring setting, saving it if it enters the collector.
+	 * 
+	 * @param engine
+	 * 				RingSearchEngine of the base candidate
+	 * @param rings
+	 * 				Ring settings to test
+	 * @param indicators
+	 * 				Indicator settings, offset to match the rings
+	 * @param scorer
+	 * 				BoundedScorer for the message
+	 */
+	private void testRings(RingSearchEngine engine, char[] rings, char[] indicators, BoundedScorer scorer) {
+		// Test the candidate and score.
+		engine.setTrial(rings, indicators);
+		double testValue = scorer.score(engine, results.getThreshold());	// Negative infinity if it cannot be kept.
+		
+		// Save results, packing the settings only if they can be kept.
+		if (results.accepts(testValue)) {
+			long candidate = PackedCandidate.withIndicators(PackedCandidate.withRings(baseCandidate, rings), indicators);
+			
+			if (results.offer(candidate, plugboard, testValue) 
+					&& (shortlist == null || shortlist.offer(candidate, plugboard, testValue))) {
+				resultsList.add(candidate);
+			}
+		}
+	}
 }
@@ -0,0 +1,256 @@
+package main.java.cryptanalysis.quadbomb;
+
+import java.util.Arrays;
+
+import main.java.enigma.EnigmaSettings;
+import main.java.enigma.Rotor;
+import main.java.enigma.Rotors;
+
+/**
+ * RingSearchEngine.java
+ *
+ * Decrypts the message under test for every ring setting trial of a candidate in the ring step, reusing the letters
+ * decrypted by earlier trials.
+ *
+ * A rotor's wiring only depends on its shift, the position less the ring setting. The ring step moves each ring
+ * together with its indicator (see QuadBombSettings.getTandemStepFlags), so every trial starts with the same shifts and
+ * only the turnovers move. The right rotor steps on every letter, so its shift at each letter is the same for every
+ * trial, and the left and middle shifts stay constant between turnovers. The letter decrypted at a position therefore
+ * only depends on the left and middle shifts there, and is cached by those. Each trial steps through the message with
+ * plain integers, and only decrypts the letters of segments whose left and middle shifts no earlier trial has used at
+ * those positions.
+ *
+ * The stepping mirrors Rotors.step(), including the double step, and uses the notch positions as reported by Rotor,
+ * so the decryption is identical to that of an EnigmaMachine with the same settings. If the right or fourth rotor's
+ * starting shift changes between trials the cache is cleared, so any trials can be run, they just gain nothing.
+ *
+ * Engines hold the cache of a single candidate, and are confined to a single thread.
+ *
+ * @author - Walter Adolph
+ * @author - Team Enigma
+ * @version - 0.9
+ * Dec 9, 2013
+ */
+final class RingSearchEngine implements Decryptor {
+	private final int[] message;
+	private final byte[] plugboard;
+	
+	private final Rotor fourth;		// Null for a 3-rotor machine.
+	private final Rotor left;
+	private final Rotor middle;
+	private final Rotor right;
+	private final Rotor reflector;
+	
+	// Stepping of the left, middle and right rotors, indexed by rotor position.
+	private final boolean[] middleTurnover = new boolean[26];
+	private final boolean[] middleNotch = new boolean[26];
+	private final boolean[] rightNotch = new boolean[26];
+	private final int[] nextRightNotch = new int[26];	// Letters until the right rotor next reaches a notch, at most 26.
+	
+	// Decrypted letters indexed by [left shift * 26 + middle shift][position], -1 until decrypted.
+	private final byte[][] cache = new byte[26 * 26][];
+	private int cachedRightShift = -1;	// Right rotor shift before the first letter the cache was built with.
+	private int cachedFourthShift = -1;
+	
+	// Trial state, advanced as the message is decrypted.
+	private int leftRing;
+	private int middleRing;
+	private int rightRing;
+	private int fourthShift;
+	private int leftPosition;
+	private int middlePosition;
+	private int rightPosition;
+	
+	/**
+	 * Constructor.
+	 *
+	 * @param candidate
+	 * 				EnigmaSettings of the wheel order and reflector to search
+	 * @param plugboard
+	 * 				Plugboard wiring table of the candidate
+	 * @param message
+	 * 				Letter indices of the message
+	 */
+	RingSearchEngine(EnigmaSettings candidate, byte[] plugboard, int[] message) {
+		int[] rotors = candidate.getRotors();
+		int first = rotors.length - 3;
+		
+		this.message = message;
+		this.plugboard = (plugboard != null) ? plugboard : PackedCandidate.packPlugboard("");
+		
+		fourth = (first > 0) ? createRotor(rotors[0]) : null;
+		left = createRotor(rotors[first]);
+		middle = createRotor(rotors[first + 1]);
+		right = createRotor(rotors[first + 2]);
+		reflector = new Rotor(Rotors.reflectors[candidate.getReflector()], new char[] {'!', '!'});
+		
+		// Read the stepping from the rotors, so it matches Rotors.step() exactly.
+		for (int position = 0; position < 26; position++) {
+			middle.setStartPosition((char) ('A' + position));
+			middleTurnover[position] = middle.isAtTurnover();
+			
+			middle.setStartPosition((char) ('A' + (position + 25) % 26));
+			middleNotch[position] = middle.cycleRotor();
+			
+			right.setStartPosition((char) ('A' + (position + 25) % 26));
+			rightNotch[position] = right.cycleRotor();
+		}
+		
+		for (int position = 0; position < 26; position++) {
+			int distance = 1;
+			
+			while (distance < 26 && !rightNotch[(position + distance) % 26]) {
+				distance++;
+			}
+			
+			nextRightNotch[position] = distance;
+		}
+	}
+	
+	/**
+	 * Sets the ring settings and indicators of the next trial, and restarts the message.
+	 *
+	 * @param rings
+	 * 				Ring settings, one letter per wheel
+	 * @param indicators
+	 * 				Indicator settings, one letter per wheel
+	 */
+	void setTrial(char[] rings, char[] indicators) {
+		int first = rings.length - 3;
+		
+		fourthShift = (first > 0) ? shift(indicators[0], rings[0]) : 0;
+		leftRing = rings[first] - 'A';
+		middleRing = rings[first + 1] - 'A';
+		rightRing = rings[first + 2] - 'A';
+		leftPosition = indicators[first] - 'A';
+		middlePosition = indicators[first + 1] - 'A';
+		rightPosition = indicators[first + 2] - 'A';
+		
+		// The cached letters assume the same right and fourth shifts throughout.
+		int rightShift = shift(indicators[first + 2], rings[first + 2]);
+		
+		if (rightShift != cachedRightShift || fourthShift != cachedFourthShift) {
+			Arrays.fill(cache, null);
+			
+			cachedRightShift = rightShift;
+			cachedFourthShift = fourthShift;
+		}
+	}
+	
+	/**
+	 * Decrypts letters start to end - 1 of the message, continuing the stepping of the trial. Specified by Decryptor.
+	 */
+	public void decrypt(int[] plain, int start, int end) {
+		int index = start;
+		
+		while (index < end) {
+			// Step for the first letter of the segment, as in Rotors.step().
+			boolean doubleStep = middleTurnover[middlePosition];
+			
+			rightPosition = (rightPosition + 1) % 26;
+			
+			if (rightNotch[rightPosition] || doubleStep) {
+				middlePosition = (middlePosition + 1) % 26;
+				
+				if (middleNotch[middlePosition] && doubleStep) {
+					leftPosition = (leftPosition + 1) % 26;
+				}
+			}
+			
+			// Only the right rotor steps until it next reaches a notch, unless the middle rotor is due to double step.
+			int length = middleTurnover[middlePosition] ? 1 : Math.min(nextRightNotch[rightPosition], end - index);
+			int segmentEnd = index + length;
+			
+			rightPosition = (rightPosition + length - 1) % 26;
+			
+			// Copy the segment from the cache, decrypting letters no earlier trial has.
+			int leftShift = (leftPosition - leftRing + 26) % 26;
+			int middleShift = (middlePosition - middleRing + 26) % 26;
+			byte[] letters = getLetters(leftShift * 26 + middleShift);
+			
+			for (; index < segmentEnd; index++) {
+				int letter = letters[index];
+				
+				if (letter < 0) {
+					letter = encrypt(message[index], leftShift, middleShift, (cachedRightShift + index + 1) % 26);
+					letters[index] = (byte) letter;
+				}
+				
+				plain[index] = letter;
+			}
+		}
+	}
+	
+	/**
+	 * @param shifts
+	 * 				Left shift * 26 + middle shift
+	 * @return the cached letters for the shifts, created if needed
+	 */
+	private byte[] getLetters(int shifts) {
+		byte[] letters = cache[shifts];
+		
+		if (letters == null) {
+			letters = new byte[message.length];
+			Arrays.fill(letters, (byte) -1);
+			cache[shifts] = letters;
+		}
+		
+		return letters;
+	}
+	
+	/**
+	 * Encrypts a single letter through the plugboard, rotors and reflector at the given shifts.
+	 *
+	 * @param letterIndex
+	 * 				Letter to encrypt
+	 * @param leftShift
+	 * 				Shift of the left rotor
+	 * @param middleShift
+	 * 				Shift of the middle rotor
+	 * @param rightShift
+	 * 				Shift of the right rotor
+	 * @return the encrypted letter
+	 */
+	private int encrypt(int letterIndex, int leftShift, int middleShift, int rightShift) {
+		letterIndex = plugboard[letterIndex];
+		letterIndex = right.forwardEncrypt(letterIndex, rightShift);
+		letterIndex = middle.forwardEncrypt(letterIndex, middleShift);
+		letterIndex = left.forwardEncrypt(letterIndex, leftShift);
+		
+		if (fourth != null) {
+			letterIndex = fourth.forwardEncrypt(letterIndex, fourthShift);
+		}
+		
+		letterIndex = reflector.forwardEncrypt(letterIndex);
+		
+		if (fourth != null) {
+			letterIndex = fourth.reverseEncrypt(letterIndex, fourthShift);
+		}
+		
+		letterIndex = left.reverseEncrypt(letterIndex, leftShift);
+		letterIndex = middle.reverseEncrypt(letterIndex, middleShift);
+		letterIndex = right.reverseEncrypt(letterIndex, rightShift);
+		
+		return plugboard[letterIndex];
+	}
+	
+	/**
+	 * @param choice
+	 * 				Rotor choice, numbered 0-9
+	 * @return a new Rotor
+	 */
+	private static Rotor createRotor(int choice) {
+		return new Rotor(Rotors.rotorWirings[choice], Rotors.rotorNotches[choice]);
+	}
+	
+	/**
+	 * @param position
+	 * 				Rotor position letter
+	 * @param ring
+	 * 				Ring setting letter
+	 * @return the rotor's shift, 0-25
+	 */
+	private static int shift(char position, char ring) {
+		return (position - ring + 26) % 26;
+	}
+}
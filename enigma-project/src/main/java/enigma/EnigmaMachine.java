@@ -129,14 +129,182 @@ public class EnigmaMachine {
 	 * @return Output string. Non-letter characters are preserved.
 	 */
 	public String encryptString(String s){
-		char[] cArr = s.toCharArray();
-		String rStr = "";
-		for(char c : cArr){
-			rStr += encryptChar(c);
-		}
-		return rStr;
+		StringBuilder rStr = new StringBuilder(s.length());
+		encrypt(s, rStr);
+		return rStr.toString();
 	} // end encryptString method
 	
+	/**
+	 * Character sequence encryption. Appends the encrypted characters to the
+	 * provided builder, so the GUI can reuse a single buffer.
+	 * 
+	 * @param input
+	 *            Characters to be encrypted.
+	 * @param output
+	 *            Builder the encrypted characters are appended to. Non-letter
+	 *            characters are preserved.
+	 */
+	public void encrypt(CharSequence input, StringBuilder output){
+		int length = input.length();
+		for(int i = 0; i < length; i++){
+			output.append(encryptChar(input.charAt(i)));
+		}
+	} // end encrypt method
+	
+	/**
+	 * Single-letter encryption using letter indices (0-25) rather than
+	 * characters. Input is not checked for validity.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be encrypted.
+	 * @return Index of the letter after encryption.
+	 */
+	public int encryptIndex(int letterIndex){
+		if(plugboard != null){
+			letterIndex = plugboard.matchIndex(letterIndex);
+		}
+		letterIndex = rotors.encrypt(letterIndex);
+		if(plugboard != null){
+			letterIndex = plugboard.matchIndex(letterIndex);
+		}
+		return letterIndex;
+	} // end encryptIndex method
+	
+	/**
+	 * Encrypts a message of letter indices (0-25) into a caller-supplied
+	 * buffer without allocating. The input and output may be the same array.
+	 * Used by cryptanalysis, where the same message is encrypted many times.
+	 * 
+	 * @param input
+	 *            Letter indices to be encrypted. Not checked for validity.
+	 * @param output
+	 *            Buffer of at least the input length to receive the
+	 *            encrypted letter indices.
+	 */
+	public void encrypt(int[] input, int[] output){
+		encrypt(input, output, 0, input.length);
+	} // end encrypt method
+	
+	/**
+	 * Encrypts part of a message of letter indices (0-25) into a
+	 * caller-supplied buffer. The rotors step once per letter, so a message
+	 * encrypted in consecutive parts matches one encrypted whole. Used by
+	 * cryptanalysis to stop partway through a hopeless candidate.
+	 * 
+	 * @param input
+	 *            Letter indices to be encrypted. Not checked for validity.
+	 * @param output
+	 *            Buffer of at least the input length to receive the
+	 *            encrypted letter indices.
+	 * @param start
+	 *            Index of the first letter to encrypt, inclusive.
+	 * @param end
+	 *            Index of the last letter to encrypt, exclusive.
+	 */
+	public void encrypt(int[] input, int[] output, int start, int end){
+		for(int i = start; i < end; i++){
+			output[i] = encryptIndex(input[i]);
+		}
+	} // end encrypt method
+	
+	/**
+	 * Encrypts a message of letter indices (0-25) into a caller-supplied
+	 * buffer without allocating. The input and output may be the same array.
+	 * 
+	 * @param input
+	 *            Letter indices to be encrypted. Not checked for validity.
+	 * @param output
+	 *            Buffer of at least the input length to receive the
+	 *            encrypted letter indices.
+	 */
+	public void encrypt(byte[] input, byte[] output){
+		for(int i = 0; i < input.length; i++){
+			output[i] = (byte) encryptIndex(input[i]);
+		}
+	} // end encrypt method
+	
+	/**
+	 * Encrypts a message of letter indices (0-25) using a path table from
+	 * getPathTable, in place of stepping the rotors. Only the plugboard is
+	 * applied on top of the table lookups, and the rotor positions are left
+	 * unchanged. The input and output may be the same array.
+	 * 
+	 * @param input
+	 *            Letter indices to be encrypted. Not checked for validity.
+	 * @param output
+	 *            Buffer of at least the input length to receive the
+	 *            encrypted letter indices.
+	 * @param pathTable
+	 *            Rotor path table of at least the input length.
+	 */
+	public void encrypt(int[] input, int[] output, byte[][] pathTable){
+		for(int i = 0; i < input.length; i++){
+			int letterIndex = input[i];
+			if(plugboard != null){
+				letterIndex = plugboard.matchIndex(letterIndex);
+			}
+			letterIndex = pathTable[i][letterIndex];
+			if(plugboard != null){
+				letterIndex = plugboard.matchIndex(letterIndex);
+			}
+			output[i] = letterIndex;
+		}
+	} // end encrypt method
+	
+	/**
+	 * Returns the permutations the rotors apply at each of the next message
+	 * positions, starting from the current rotor positions. See
+	 * Rotors.getPathTable.
+	 * 
+	 * @param length
+	 *            Number of message positions to compute.
+	 * @return Shared table of at least length rows of 26 letter indices.
+	 */
+	public byte[][] getPathTable(int length){
+		return rotors.getPathTable(length);
+	} // end getPathTable method
+	
+	/**
+	 * Converts the letters of a string to letter indices (0-25) for use with
+	 * the index-based encryption methods. Non-letter characters are dropped.
+	 * 
+	 * @param s
+	 *            String to be converted.
+	 * @return Array of letter indices.
+	 */
+	public static int[] toIndices(CharSequence s){
+		int count = 0;
+		for(int i = 0; i < s.length(); i++){
+			char c = Character.toUpperCase(s.charAt(i));
+			if(c >= 'A' && c <= 'Z')
+				count++;
+		}
+		
+		int[] result = new int[count];
+		count = 0;
+		for(int i = 0; i < s.length(); i++){
+			char c = Character.toUpperCase(s.charAt(i));
+			if(c >= 'A' && c <= 'Z')
+				result[count++] = c - 'A';
+		}
+		return result;
+	} // end toIndices method
+	
+	/**
+	 * Converts letter indices (0-25) back to an uppercase string.
+	 * 
+	 * @param indices
+	 *            Array of letter indices.
+	 * @return String of uppercase letters.
+	 */
+	public static String fromIndices(int[] indices){
+		char[] cArr = new char[indices.length];
+		for(int i = 0; i < indices.length; i++){
+			cArr[i] = (char)('A' + indices[i]);
+		}
+		return String.valueOf(cArr);
+	} // end fromIndices method
+	
 	/**
 	 * Resets the EnigmaMachine to its initial rotor positions. Useful for
 	 * testing. 
@@ -170,7 +338,9 @@ public class EnigmaMachine {
 	}
 	
 	/**
-	 * Changes the Rotor and Reflector choices of the Enigma.
+	 * Changes the Rotor and Reflector choices of the Enigma. The rotors are
+	 * swapped in place, and the new rotors start with ring settings and
+	 * positions of 'A'.
 	 * 
 	 * @param rotorChoices
 	 *            Array of 3-4 integers numbered 0-9 to determine which rotors
@@ -181,9 +351,27 @@ public class EnigmaMachine {
 	 */
 	public void setRotorChoices(int[] rotorChoices,int reflectorChoice){
 		rotorArray = rotorChoices;
-		rotors = new Rotors(rotorChoices,reflectorChoice);
+		rotors.setRotorChoices(rotorChoices,reflectorChoice);
 	} // end setRotorChoices
 	
+	/**
+	 * Reconfigures the whole Enigma in place from a set of saved settings:
+	 * wheel order, reflector, ring settings, initial positions and plugboard.
+	 * The rotors are reused rather than reallocated, so a single machine can
+	 * be used to test many candidate settings.
+	 * 
+	 * @param settings
+	 *            Settings to apply. The indicator settings become the new
+	 *            initial positions.
+	 */
+	public void configure(EnigmaSettings settings){
+		setRotorChoices(settings.getRotors(), settings.getReflector());
+		rotors.setRingSettings(settings.getRingSettings());
+		initPositions = settings.getIndicatorSettings();
+		rotors.setPositions(initPositions);
+		setPlugboard(settings.getPlugboardMap());
+	} // end configure method
+	
 	/**
 	 * Changes the Ring Settings of the Enigma's rotors.
 	 * 
@@ -196,15 +384,49 @@ public class EnigmaMachine {
 	} // end setRingSettings
 	
 	/**
-	 * Sets a new Plugboard map for the Enigma Machine.
+	 * Sets a new Plugboard map for the Enigma Machine. An existing plugboard
+	 * is updated in place.
 	 * 
 	 * @param pbMap
 	 *            String indicating the plugboard replacement mapping. 
 	 */
 	public void setPlugboard(String pbMap){
-		plugboard = new Plugboard(pbMap);
+		if(plugboard == null){
+			plugboard = new Plugboard(pbMap);
+		}
+		else{
+			plugboard.setMapping(pbMap);
+		}
 	} // end setPlugboard
 	
+	/**
+	 * Adds a single pair to the plugboard, creating the plugboard if the
+	 * Enigma has none.
+	 * 
+	 * @param first
+	 *            First letter of the pair.
+	 * @param second
+	 *            Second letter of the pair.
+	 */
+	public void addPlugboardPair(char first, char second){
+		if(plugboard == null){
+			plugboard = new Plugboard("");
+		}
+		plugboard.addPair(first, second);
+	} // end addPlugboardPair
+	
+	/**
+	 * Removes the plugboard pair containing the letter, if any.
+	 * 
+	 * @param letter
+	 *            Letter whose pair is to be removed.
+	 */
+	public void removePlugboardPair(char letter){
+		if(plugboard != null){
+			plugboard.removePair(letter);
+		}
+	} // end removePlugboardPair
+	
 	/**
 	 * Returns the Rotor Positions to the GUI so that it will accurately
 	 * reflect the current settings after encryption.
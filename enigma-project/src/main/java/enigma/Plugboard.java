@@ -12,6 +12,11 @@ package main.java.enigma;
  * example, a string of "ABCD" swaps A's with B's (and vice-versa) and C's
  * with D's. 
  * 
+ * Internally the plugboard is a 26-entry substitution array indexed by
+ * letter, so a lookup is a single array load. Pairs can be added and removed
+ * individually, which lets cryptanalysis try a stecker pair without
+ * rebuilding the plugboard.
+ * 
  * @author Brian Matthew Winstead
  * @author Team Enigma
  * @version 0.9
@@ -19,7 +24,10 @@ package main.java.enigma;
  */
 public class Plugboard {
 
-	private char[][] plugboard;
+	private static final int SIZE = 26;
+	
+	private final int[] map = new int[SIZE];	// Letter index -> substitute character - 'A'.
+	private char[] pairs;						// Pairs in the order they were added.
 	private int numPairs;
 	
 	/**
@@ -38,13 +46,8 @@ public class Plugboard {
 	 * 
 	 */
 	public Plugboard(String mapping){
-		char[] cArr = mapping.toUpperCase().toCharArray();
-		numPairs = (int) Math.floor(cArr.length/2);
-		plugboard = new char[numPairs][2];
-		for(int i = 0; i < (numPairs * 2); i++){
-			int j = (int) Math.floor(i/2);
-			plugboard[j][i%2]=cArr[i];
-		}
+		pairs = new char[SIZE];
+		setMapping(mapping);
 	}
 	
 	/**
@@ -59,7 +62,124 @@ public class Plugboard {
 	 *            configuration. Input is not checked for validity.
 	 */
 	public Plugboard(char[][] newpb){
-		plugboard = newpb;
+		pairs = new char[Math.max(SIZE, newpb.length * 2)];
+		clear();
+		for(int i = 0; i < newpb.length; i++){
+			addPair(newpb[i][0], newpb[i][1]);
+		}
+	}
+	
+	/**
+	 * Replaces the current mapping in place with the one described by the
+	 * string, using the same format as the String constructor.
+	 * 
+	 * @param mapping
+	 *            String to be used to create the two-way substitution. Strings
+	 *            are not checked for validity. 
+	 */
+	public void setMapping(String mapping){
+		clear();
+		int length = mapping.length() - mapping.length() % 2;
+		for(int i = 0; i < length; i += 2){
+			addPair(Character.toUpperCase(mapping.charAt(i)), Character.toUpperCase(mapping.charAt(i + 1)));
+		}
+	}
+	
+	/**
+	 * Removes all pairs, leaving every letter unsubstituted.
+	 */
+	public void clear(){
+		for(int i = 0; i < SIZE; i++){
+			map[i] = i;
+		}
+		numPairs = 0;
+	}
+	
+	/**
+	 * Adds a substitution pair. If either character is already part of a
+	 * pair, the earlier pair keeps precedence for that character.
+	 * 
+	 * @param first
+	 *            First character of the pair.
+	 * @param second
+	 *            Second character of the pair.
+	 */
+	public void addPair(char first, char second){
+		if(numPairs * 2 == pairs.length){
+			char[] newPairs = new char[pairs.length * 2];
+			System.arraycopy(pairs, 0, newPairs, 0, pairs.length);
+			pairs = newPairs;
+		}
+		
+		// First match wins; only map letters that are not already plugged.
+		if(isLetter(first) && !isPaired(first, numPairs))
+			map[first - 'A'] = second - 'A';
+		if(isLetter(second) && !isPaired(second, numPairs))
+			map[second - 'A'] = first - 'A';
+		
+		pairs[numPairs * 2] = first;
+		pairs[numPairs * 2 + 1] = second;
+		numPairs++;
+	}
+	
+	/**
+	 * Index-based version of addPair. Letters are represented as 0-25.
+	 * 
+	 * @param first
+	 *            Index of the first letter of the pair.
+	 * @param second
+	 *            Index of the second letter of the pair.
+	 */
+	public void addPair(int first, int second){
+		addPair((char)('A' + first), (char)('A' + second));
+	}
+	
+	/**
+	 * Removes the most recently added pair containing the character, if any.
+	 * 
+	 * @param c
+	 *            Character whose pair is to be removed.
+	 */
+	public void removePair(char c){
+		for(int i = numPairs - 1; i >= 0; i--){
+			char first = pairs[i * 2];
+			char second = pairs[i * 2 + 1];
+			
+			if(first == c || second == c){
+				System.arraycopy(pairs, i * 2 + 2, pairs, i * 2, (numPairs - i - 1) * 2);
+				numPairs--;
+				
+				// Unplugging the last of a set of distinct letter pairs needs no rebuild.
+				if(i == numPairs && isLetter(first) && isLetter(second)
+						&& !isPaired(first, numPairs) && !isPaired(second, numPairs)){
+					map[first - 'A'] = first - 'A';
+					map[second - 'A'] = second - 'A';
+				}
+				else{
+					rebuildMap();
+				}
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Index-based version of removePair. Letters are represented as 0-25.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter whose pair is to be removed.
+	 */
+	public void removePair(int letterIndex){
+		removePair((char)('A' + letterIndex));
+	}
+	
+	/**
+	 * Returns the number of pairs on the plugboard.
+	 * 
+	 * @return Number of pairs. 
+	 */
+	public int getPairCount(){
+		return numPairs;
 	}
 	
 	/**
@@ -69,11 +189,7 @@ public class Plugboard {
 	 * @return String representing the current plugboard map. 
 	 */
 	public String getPlugboardMap() {
-		String map = "";
-		for (int i = 0; i < plugboard.length; i++) {
-			map += String.valueOf(plugboard[i]);
-		}
-		return map;
+		return new String(pairs, 0, numPairs * 2);
 	}
 	
 	/**
@@ -86,12 +202,74 @@ public class Plugboard {
 	 *         the original character.
 	 */
 	public char matchChar(char c){
-		for(int i = 0; i < plugboard.length;i++){
-			if(plugboard[i][0] == c)
-				return plugboard[i][1];
-			if(plugboard[i][1] == c)
-				return plugboard[i][0];
+		if(c >= 'A' && c <= 'Z')
+			return (char)('A' + map[c - 'A']);
+		
+		// Non-letters can only be matched by scanning the pairs.
+		for(int i = 0; i < numPairs; i++){
+			if(pairs[i * 2] == c)
+				return pairs[i * 2 + 1];
+			if(pairs[i * 2 + 1] == c)
+				return pairs[i * 2];
 		}
 		return c;
 	}
+	
+	/**
+	 * Index-based version of matchChar. Letters are represented as 0-25.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be checked for substitution.
+	 * @return Index of the substitution letter if there is a match. If not,
+	 *         return is the original index.
+	 */
+	public int matchIndex(int letterIndex){
+		return map[letterIndex];
+	}
+	
+	/**
+	 * Checks whether a character is an uppercase letter.
+	 * 
+	 * @param c
+	 *            Character to check.
+	 * @return true if the character is between 'A' and 'Z'.
+	 */
+	private static boolean isLetter(char c){
+		return c >= 'A' && c <= 'Z';
+	}
+	
+	/**
+	 * Checks whether a character appears in any of the first pairs.
+	 * 
+	 * @param c
+	 *            Character to check.
+	 * @param count
+	 *            Number of pairs, from the first, to check.
+	 * @return true if the character appears in one of those pairs.
+	 */
+	private boolean isPaired(char c, int count){
+		for(int i = 0; i < count; i++){
+			if(pairs[i * 2] == c || pairs[i * 2 + 1] == c)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Rebuilds the substitution array from the pair list.
+	 */
+	private void rebuildMap(){
+		for(int i = 0; i < SIZE; i++){
+			map[i] = i;
+		}
+		for(int i = numPairs - 1; i >= 0; i--){
+			// Walk backwards so earlier pairs take precedence.
+			char first = pairs[i * 2];
+			char second = pairs[i * 2 + 1];
+			if(isLetter(first))
+				map[first - 'A'] = second - 'A';
+			if(isLetter(second))
+				map[second - 'A'] = first - 'A';
+		}
+	}
 }
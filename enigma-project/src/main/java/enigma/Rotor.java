@@ -1,5 +1,7 @@
 package main.java.enigma;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * This class simulates a single rotor of the Enigma encryption machine. It
  * stores both the forward and reverse wiring to allow for O(1) encryption and
@@ -9,6 +11,11 @@ package main.java.enigma;
  * positions of the carry notch(es), which impact when the rotor to the left of
  * it will rotate.
  * 
+ * Each wiring is also compiled into forward and reverse substitution tables
+ * indexed by the rotor's shift (stepOffset - ringSetting) and the input
+ * letter, so the index-based encryption methods are a single array load.
+ * Compiled tables are shared between all rotors with the same wiring.
+ * 
  * @author Walter Gene Adolph
  * @author Team Enigma
  * @version 0.9 Nov 22, 2013
@@ -16,13 +23,21 @@ package main.java.enigma;
 //This implementation uses two substitution databases for ensuring that both forward
 //and reverse encryption is done in O(1) time.
 public class Rotor {
+	
+	// Compiled substitution tables, keyed by wiring. Index 0 is forward, 1 is reverse.
+	private static final ConcurrentHashMap<String, int[][][]> compiledWirings = new ConcurrentHashMap<String, int[][][]>();
 
 	private final char[] forwardWiring;
 	private final char[] reverseWiring;
+	private final int[][] forwardTable;	// [shift][letter index] -> letter index
+	private final int[][] reverseTable;	// [shift][letter index] -> letter index
 	
 	private int stepOffset;				// Rotor offset (Grundstellung)
 	private int ringSetting;			// Ring offset (Ringstellung)
+	private int shift;					// (stepOffset - ringSetting) mod size, used to index the tables.
 	private final char[] notchPositions;
+	private final int[] notchIndices;		// Notch positions as indices, -1 if unused.
+	private final int[] turnoverIndices;	// Positions preceding the notches, as reported by getNotchPosition().
 	private final int size;             // Substitution alphabet size for easy reading.
 	
 	/**
@@ -49,13 +64,59 @@ public class Rotor {
 		reverseWiring = new char[size];
 		setRingPosition('A');
 		
-		char[] chars = code.toUpperCase().toCharArray();
+		String upperCode = code.toUpperCase();
+		char[] chars = upperCode.toCharArray();
 		
 		for (int index = 0; index < size; index++) {
 			forwardWiring[index] = chars[index];
 			reverseWiring[chars[index] - 'A'] = (char)('A' + index);
 		}
+		
+		notchIndices = new int[2];
+		turnoverIndices = new int[2];
+		
+		for (int index = 0; index < 2; index++) {
+			if (notchPositions[index] != '!') {
+				notchIndices[index] = notchPositions[index] - 'A';
+				turnoverIndices[index] = (notchPositions[index] - 'A' - 1) % size;
+			}
+			else {
+				notchIndices[index] = -1;
+				turnoverIndices[index] = -1;
+			}
+		}
+		
+		int[][][] tables = compiledWirings.get(upperCode);
+		
+		if (tables == null) {
+			tables = new int[][][] {compileTable(forwardWiring), compileTable(reverseWiring)};
+			compiledWirings.putIfAbsent(upperCode, tables);
+		}
+		
+		forwardTable = tables[0];
+		reverseTable = tables[1];
 	} // end constructors
+	
+	/**
+	 * Builds the substitution table for every rotor shift from a wiring.
+	 * 
+	 * @param wiring
+	 *            Forward or reverse wiring of the rotor.
+	 * @return Table indexed by [shift][letter index], giving the output
+	 *         letter index.
+	 */
+	private int[][] compileTable(char[] wiring) {
+		int[][] table = new int[size][size];
+		
+		for (int offset = 0; offset < size; offset++) {
+			for (int letterIndex = 0; letterIndex < size; letterIndex++) {
+				int rotorAdjust = (letterIndex + offset) % size;
+				table[offset][letterIndex] = (size + wiring[rotorAdjust] - 'A' - offset) % size;
+			}
+		}
+		
+		return table;
+	} // end compileTable method
 
 	/**
 	 * Getter method for the current notch positions.
@@ -117,6 +178,7 @@ public class Rotor {
 	 */
 	public void setRingPosition(char newPosition) {
 		ringSetting = Character.toUpperCase(newPosition) - 'A';
+		updateShift();
 	} // end setRingPosition method
 
 	/**
@@ -130,8 +192,27 @@ public class Rotor {
 	 */
 	public void setStartPosition(char newPosition) {
 		stepOffset = Character.toUpperCase(newPosition) - 'A';
+		updateShift();
 	} // end setStartPosition method
 	
+	/**
+	 * Recomputes the table shift after the position or ring setting changes.
+	 */
+	private void updateShift() {
+		shift = ((stepOffset - ringSetting) % size + size) % size;
+	} // end updateShift method
+	
+	/**
+	 * Checks whether the rotor is in the position preceding one of its carry
+	 * notches (the position reported by getNotchPosition()), meaning that its
+	 * next step will carry to the rotor on its left.
+	 * 
+	 * @return true if the rotor's current position precedes a carry notch.
+	 */
+	public boolean isAtTurnover() {
+		return stepOffset == turnoverIndices[0] || stepOffset == turnoverIndices[1];
+	} // end isAtTurnover method
+	
 	/**
 	 * Rotates the current rotor and returns a boolean indicating whether the
 	 * rotor to the left of it should also be rotated.
@@ -141,10 +222,10 @@ public class Rotor {
 	 */
 	public boolean cycleRotor() {
 		stepOffset = (stepOffset + 1) % size;	// Allows wrap-around.
+		shift = (shift + 1) % size;
 		
-		if(((notchPositions[0] - 'A') == stepOffset) || (notchPositions[1] - 'A') == stepOffset)
-			return true;
-		return false;	// Returns if the rotor is in the notch position.
+		// Returns if the rotor is in the notch position.
+		return notchIndices[0] == stepOffset || notchIndices[1] == stepOffset;
 	} // end cycleRotor method
 	
 	/**
@@ -157,13 +238,38 @@ public class Rotor {
 	 *         rotor, or to the reflector.
 	 */
 	public char forwardEncrypt(char letter) {
-		int letterIndex = Character.toUpperCase(letter) - 'A';
-		int offset = stepOffset - ringSetting;
-		int rotorAdjust = (size + letterIndex + offset) % size;
-		int resultOffset = (size + forwardWiring[rotorAdjust] - 'A' - offset) % size;
-		return (char)('A' + resultOffset);
+		return (char)('A' + forwardTable[shift][(Character.toUpperCase(letter) - 'A') % size]);
 	} // end forewardEncrypt method
 	
+	/**
+	 * Index-based version of forwardEncrypt. Letters are represented as 0-25,
+	 * and the input is not checked for validity.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be substituted.
+	 * @return Index of the letter to be passed to the rotor to the left of the
+	 *         current rotor, or to the reflector.
+	 */
+	public int forwardEncrypt(int letterIndex) {
+		return forwardTable[shift][letterIndex];
+	} // end forwardEncrypt method
+	
+	/**
+	 * Index-based forward substitution at a given shift (position less ring
+	 * setting, mod 26) rather than the rotor's current one. Lets a caller
+	 * track the rotor's stepping itself without changing the rotor.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be substituted.
+	 * @param rotorShift
+	 *            Shift of the rotor, 0-25.
+	 * @return Index of the letter to be passed to the rotor to the left of the
+	 *         current rotor, or to the reflector.
+	 */
+	public int forwardEncrypt(int letterIndex, int rotorShift) {
+		return forwardTable[rotorShift][letterIndex];
+	} // end forwardEncrypt method
+	
 	/**
 	 * Returns the proper reverse-encryption substitution based on the rotor's
 	 * position and ring setting.
@@ -174,10 +280,34 @@ public class Rotor {
 	 *         rotor, or the lightboard.
 	 */
 	public char reverseEncrypt(char letter) {
-		int letterIndex = Character.toUpperCase(letter) - 'A';
-		int offset = stepOffset - ringSetting;
-		int rotorAdjust = (size + letterIndex + offset) % size;
-		int resultOffset = (size + reverseWiring[rotorAdjust] - 'A' - offset) % size;
-		return (char)('A' + resultOffset);
+		return (char)('A' + reverseTable[shift][(Character.toUpperCase(letter) - 'A') % size]);
+	} // end reverseEncrypt method
+	
+	/**
+	 * Index-based version of reverseEncrypt. Letters are represented as 0-25,
+	 * and the input is not checked for validity.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be substituted.
+	 * @return Index of the letter to be passed to the rotor to the right of
+	 *         the current rotor, or the lightboard.
+	 */
+	public int reverseEncrypt(int letterIndex) {
+		return reverseTable[shift][letterIndex];
+	} // end reverseEncrypt method
+	
+	/**
+	 * Index-based reverse substitution at a given shift (position less ring
+	 * setting, mod 26) rather than the rotor's current one.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be substituted.
+	 * @param rotorShift
+	 *            Shift of the rotor, 0-25.
+	 * @return Index of the letter to be passed to the rotor to the right of
+	 *         the current rotor, or the lightboard.
+	 */
+	public int reverseEncrypt(int letterIndex, int rotorShift) {
+		return reverseTable[rotorShift][letterIndex];
 	} // end reverseEncrypt method
 } // end Rotor class
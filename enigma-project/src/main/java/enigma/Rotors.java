@@ -1,5 +1,7 @@
 package main.java.enigma;
 
+import java.util.Arrays;
+
 /**
  * Contains 3-4 instances of the Rotor class. Also acts as the reflector in an
  * Enigma machine. Fully encrypts a character (except for Plugboard
@@ -73,6 +75,18 @@ public class Rotors {
 	private Rotor fourth;  // Used only by the Navy
 	private Rotor reflector;
 	private int reflectorChoice;
+	
+	// Rotors created so far, indexed by slot (fourth, left, middle, right)
+	// and rotor choice, so the wheel order can be changed without reallocating.
+	private final Rotor[][] rotorCache = new Rotor[4][rotorWirings.length];
+	private final Rotor[] reflectorCache = new Rotor[reflectors.length];
+	
+	// Last path table built by getPathTable, and the rotors, ring settings
+	// and positions it was built from.
+	private byte[][] pathTable;
+	private final Rotor[] pathRotors = new Rotor[5];
+	private final char[] pathRings = new char[4];
+	private final char[] pathPositions = new char[4];
 
 	/**
 	 * Constructor. Accepts an array representing 3-4 Enigma rotor choices, plus
@@ -89,22 +103,62 @@ public class Rotors {
 	 * 
 	 */
 	public Rotors(int[] rotorChoices, int reflectorChoice){
+		setRotorChoices(rotorChoices, reflectorChoice);
+	} // end Constructor
+	
+	/**
+	 * Changes the rotor and reflector choices in place. Each rotor is created
+	 * the first time it is placed in a given slot and reused afterwards.
+	 * Newly placed rotors have their ring settings and positions set to 'A',
+	 * as if the Rotors had just been constructed.
+	 * 
+	 * @param rotorChoices
+	 *            An array of 3-4 integers numbered 0-9 corresponding to the
+	 *            different rotors in use by the German military
+	 * @param reflectorChoice
+	 *            An integer indicating the reflector to be used. Valid options
+	 *            are 0-3.
+	 */
+	public void setRotorChoices(int[] rotorChoices, int reflectorChoice){
 		this.reflectorChoice = reflectorChoice;
 		if(rotorChoices.length == 3 || rotorChoices[0] == -1){
-		left = new Rotor(rotorWirings[rotorChoices[0]],rotorNotches[rotorChoices[0]]);
-		middle = new Rotor(rotorWirings[rotorChoices[1]],rotorNotches[rotorChoices[1]]);
-		right = new Rotor(rotorWirings[rotorChoices[2]],rotorNotches[rotorChoices[2]]);
+		fourth = null;
+		left = getRotor(1, rotorChoices[0]);
+		middle = getRotor(2, rotorChoices[1]);
+		right = getRotor(3, rotorChoices[2]);
 		}else{
-			if (rotorChoices[0] != -1) {
-				fourth = new Rotor(rotorWirings[rotorChoices[0]], rotorNotches[rotorChoices[0]]);
-			}
-			
-			left = new Rotor(rotorWirings[rotorChoices[1]],rotorNotches[rotorChoices[1]]);
-			middle = new Rotor(rotorWirings[rotorChoices[2]],rotorNotches[rotorChoices[2]]);
-			right = new Rotor(rotorWirings[rotorChoices[3]],rotorNotches[rotorChoices[3]]);
+			fourth = getRotor(0, rotorChoices[0]);
+			left = getRotor(1, rotorChoices[1]);
+			middle = getRotor(2, rotorChoices[2]);
+			right = getRotor(3, rotorChoices[3]);
 		}
-		reflector = new Rotor(reflectors[reflectorChoice],new char[]{'!','!'});
-	} // end Constructor
+		
+		if (reflectorCache[reflectorChoice] == null) {
+			reflectorCache[reflectorChoice] = new Rotor(reflectors[reflectorChoice],new char[]{'!','!'});
+		}
+		reflector = reflectorCache[reflectorChoice];
+	} // end setRotorChoices method
+	
+	/**
+	 * Gets the cached rotor for a slot, creating it if needed, and resets its
+	 * ring setting and position.
+	 * 
+	 * @param slot
+	 *            Slot index: 0 - fourth, 1 - left, 2 - middle, 3 - right.
+	 * @param choice
+	 *            Rotor choice, numbered 0-9.
+	 * @return The rotor to place in the slot.
+	 */
+	private Rotor getRotor(int slot, int choice){
+		Rotor rotor = rotorCache[slot][choice];
+		if (rotor == null) {
+			rotor = new Rotor(rotorWirings[choice],rotorNotches[choice]);
+			rotorCache[slot][choice] = rotor;
+		}
+		rotor.setRingPosition('A');
+		rotor.setStartPosition('A');
+		return rotor;
+	} // end getRotor method
 	
 	/**
 	 * Sets the initial starting positions of the rotors.
@@ -169,38 +223,152 @@ public class Rotors {
 	 * @return Final character after processing.
 	 */
 	public char encrypt(char letter){
-		// Walter Adolph - doubleStep was init. to false; this assumed that there is no chance of a double step on initial position. Fixed 11/21/2013.
-		boolean notch1Test = middle.getPosition() == middle.getNotchPosition()[0];
-		boolean notch2Test = middle.getPosition() == middle.getNotchPosition()[1];
-		boolean doubleStep = (notch1Test || notch2Test);
-		
 		if (Character.isAlphabetic(letter)) {
-			if (right.cycleRotor() || doubleStep) {
-				if (middle.cycleRotor()) {
-					if (doubleStep) {
-						left.cycleRotor();
-						doubleStep = false;
-					}
-				} else if (middle.getPosition() == middle.getNotchPosition()[0] || middle.getPosition() == middle.getNotchPosition()[1]) {
-					doubleStep = true;
-				}
-			}
-			
-			letter = right.forwardEncrypt(letter);
-			letter = middle.forwardEncrypt(letter);
-			letter = left.forwardEncrypt(letter);
-			if(fourth != null)
-				letter = fourth.forwardEncrypt(letter);
-			letter = reflector.forwardEncrypt(letter);
-			if(fourth != null)
-				letter = fourth.reverseEncrypt(letter);
-			letter = left.reverseEncrypt(letter);
-			letter = middle.reverseEncrypt(letter);
-			letter = right.reverseEncrypt(letter);
+			// Letters outside A-Z wrap around the alphabet, as in the original rotor arithmetic.
+			letter = (char)('A' + encrypt((Character.toUpperCase(letter) - 'A') % 26));
 		}
 		return letter;
 	} // end encrypt method
 	
+	/**
+	 * Index-based version of encrypt. Letters are represented as 0-25, and
+	 * the input is not checked for validity. The rotors are stepped before
+	 * the letter is processed, exactly as with the character version.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be encrypted.
+	 * @return Index of the final letter after processing.
+	 */
+	public int encrypt(int letterIndex){
+		step();
+		return path(letterIndex);
+	} // end encrypt method
+	
+	/**
+	 * Returns the permutations the rotors and reflector apply at each of the
+	 * next message positions, as a table indexed by [position][letter index].
+	 * Each row is computed after stepping, exactly as encrypt would. The
+	 * permutations do not depend on the plugboard, so a single table can be
+	 * used to encrypt with any number of plugboards.
+	 * 
+	 * The rotor positions are left unchanged. The table is cached, and is
+	 * returned again without being recomputed while the rotors, ring
+	 * settings and positions stay the same. It is shared and must not be
+	 * modified, and may have more than the requested number of rows.
+	 * 
+	 * @param length
+	 *            Number of message positions to compute.
+	 * @return Table of at least length rows of 26 letter indices.
+	 */
+	public byte[][] getPathTable(int length){
+		if(pathTable != null && pathTable.length >= length && isPathCurrent()){
+			return pathTable;
+		}
+		
+		savePathKey();
+		char[] start = getPositions();
+		byte[][] table = new byte[length][26];
+		
+		for(int position = 0; position < length; position++){
+			step();
+			
+			// The rotor path is its own inverse, so each letter found also
+			// gives the letter it is paired with.
+			byte[] row = table[position];
+			Arrays.fill(row, (byte) -1);
+			for(int letterIndex = 0; letterIndex < 26; letterIndex++){
+				if(row[letterIndex] < 0){
+					int result = path(letterIndex);
+					row[letterIndex] = (byte) result;
+					row[result] = (byte) letterIndex;
+				}
+			}
+		}
+		
+		setPositions(start);
+		pathTable = table;
+		return table;
+	} // end getPathTable method
+	
+	/**
+	 * Passes a letter through the rotors and reflector at their current
+	 * positions, without stepping.
+	 * 
+	 * @param letterIndex
+	 *            Index of the letter to be encrypted.
+	 * @return Index of the final letter after processing.
+	 */
+	private int path(int letterIndex){
+		letterIndex = right.forwardEncrypt(letterIndex);
+		letterIndex = middle.forwardEncrypt(letterIndex);
+		letterIndex = left.forwardEncrypt(letterIndex);
+		if(fourth != null)
+			letterIndex = fourth.forwardEncrypt(letterIndex);
+		letterIndex = reflector.forwardEncrypt(letterIndex);
+		if(fourth != null)
+			letterIndex = fourth.reverseEncrypt(letterIndex);
+		letterIndex = left.reverseEncrypt(letterIndex);
+		letterIndex = middle.reverseEncrypt(letterIndex);
+		letterIndex = right.reverseEncrypt(letterIndex);
+		return letterIndex;
+	} // end path method
+	
+	/**
+	 * Checks whether the cached path table was built from the current
+	 * rotors, ring settings and positions.
+	 * 
+	 * @return True if the cached table can be reused.
+	 */
+	private boolean isPathCurrent(){
+		Rotor[] current = {fourth, left, middle, right, reflector};
+		for(int i = 0; i < current.length; i++){
+			if(current[i] != pathRotors[i]){
+				return false;
+			}
+		}
+		for(int i = 0; i < 4; i++){
+			Rotor rotor = current[i];
+			if(rotor != null && (rotor.getRingSetting() != pathRings[i]
+					|| rotor.getPosition() != pathPositions[i])){
+				return false;
+			}
+		}
+		return true;
+	} // end isPathCurrent method
+	
+	/**
+	 * Records the rotors, ring settings and positions a path table is built
+	 * from.
+	 */
+	private void savePathKey(){
+		Rotor[] current = {fourth, left, middle, right, reflector};
+		for(int i = 0; i < current.length; i++){
+			pathRotors[i] = current[i];
+		}
+		for(int i = 0; i < 4; i++){
+			if(current[i] != null){
+				pathRings[i] = current[i].getRingSetting();
+				pathPositions[i] = current[i].getPosition();
+			}
+		}
+	} // end savePathKey method
+	
+	/**
+	 * Steps the rotors once, as happens on every key press. The middle rotor
+	 * steps when the right rotor carries or when it is in its own turnover
+	 * position (the double step), in which case the left rotor steps as well.
+	 */
+	private void step(){
+		// Walter Adolph - doubleStep was init. to false; this assumed that there is no chance of a double step on initial position. Fixed 11/21/2013.
+		boolean doubleStep = middle.isAtTurnover();
+		
+		if (right.cycleRotor() || doubleStep) {
+			if (middle.cycleRotor() && doubleStep) {
+				left.cycleRotor();
+			}
+		}
+	} // end step method
+	
 	/**
 	 * Returns the Rotor Positions to EnigmaMachine, which then passes them on to
 	 * the GUI
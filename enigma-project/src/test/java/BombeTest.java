@@ -0,0 +1,80 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import main.java.cryptanalysis.bombe.Bombe;
+import main.java.cryptanalysis.bombe.Menu;
+import main.java.cryptanalysis.quadbomb.QuadBombSettings;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * Bombe JUnit test. Verifies that a crib of a message encrypted under a known
+ * key stops the Bombe at the key's rotor positions, with steckers that agree
+ * with the key's plugboard.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class BombeTest {
+	private static final String PLAIN = "ANXWETTERVORHERSAGEBISKAYAXREGENANSTEIGENDERWINDAUSWEST";
+	private static final String CRIB = "WETTERVORHERSAGE";
+	private static final String MAP = "AQBWCEDRTZFKGMHXJLNS";
+	
+	/**
+	 * Validates a search of the key's wheel order and reflector. The right
+	 * rotor (V, notch at Z) starts at C, so the middle rotor does not step
+	 * before the end of the crib, as the Bombe assumes.
+	 */
+	@Test
+	public void testFindStops() throws InterruptedException {
+		EnigmaSettings key = new EnigmaSettings(new int[] {1, 3, 4}, new char[] {'A', 'A', 'A'}, new char[] {'M', 'Q', 'C'}, 0, MAP);
+		String cipher = key.createEnigmaMachine().encryptString(PLAIN);
+		Menu menu = new Menu(CRIB, cipher, PLAIN.indexOf(CRIB));
+		
+		// Settings are numbered from 1, with 0 for any value; the fourth rotor 0 means a 3-rotor machine.
+		QuadBombSettings settings = new QuadBombSettings(new int[] {0, 2, 4, 5}, 1, new int[4], new int[4], "", 2, 1);
+		List<EnigmaSettings> stops = new Bombe(settings).findStops(menu);
+		
+		EnigmaSettings trueStop = null;
+		
+		for (EnigmaSettings stop : stops) {
+			assertArrayEquals(key.getRotors(), stop.getRotors());
+			assertEquals(key.getReflector(), stop.getReflector());
+			
+			if (Arrays.equals(key.getIndicatorSettings(), stop.getIndicatorSettings())) {
+				assertNull("More than one stop at the key's positions", trueStop);
+				trueStop = stop;
+			}
+		}
+		
+		assertNotNull("No stop at the key's positions", trueStop);
+		assertTrue("Too many stops: " + stops.size(), stops.size() < 100);
+		
+		// Every stecker found is one of the key's.
+		String steckers = trueStop.getPlugboardMap();
+		assertFalse(steckers.isEmpty());
+		
+		for (int index = 0; index < steckers.length(); index += 2) {
+			char first = steckers.charAt(index);
+			char second = steckers.charAt(index + 1);
+			
+			assertEquals(second, partner(first));
+		}
+	}
+	
+	/**
+	 * @return the key's stecker partner of a letter, or the letter itself if unsteckered
+	 */
+	private static char partner(char letter) {
+		int index = MAP.indexOf(letter);
+		
+		return (index < 0) ? letter : MAP.charAt(index ^ 1);
+	}
+}
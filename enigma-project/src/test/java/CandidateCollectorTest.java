@@ -0,0 +1,158 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import main.java.cryptanalysis.quadbomb.CandidateCollector;
+import main.java.cryptanalysis.quadbomb.PackedCandidate;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * CandidateCollector JUnit test. Verifies that a collector keeps exactly the
+ * best candidates offered, whether offered by one thread or by many at once.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CandidateCollectorTest {
+	private static final int CAPACITY = 100;
+	private static final int THREADS = 8;
+	private static final int OFFERS = 17576;	// One per 3-rotor indicator setting.
+	
+	private static final long BASE = PackedCandidate.pack(new EnigmaSettings(new int[] {0, 1, 2},
+			new char[] {'A', 'A', 'A'}, new char[] {'A', 'A', 'A'}, 0));
+	
+	/**
+	 * Validates the candidates kept by a single thread, including eviction and
+	 * rejection once the collector is full.
+	 */
+	@Test
+	public void testOffer() {
+		CandidateCollector collector = new CandidateCollector(3);
+		
+		assertNull(collector.getBest());
+		assertTrue(collector.accepts(-100));
+		
+		assertTrue(collector.offer(candidate(0), null, -10));
+		assertTrue(collector.offer(candidate(1), null, -30));
+		assertTrue(collector.offer(candidate(2), null, -20));
+		assertEquals(-30, collector.getThreshold(), 0);
+		
+		// A worse score is rejected, a better one evicts the worst held.
+		assertFalse(collector.accepts(-40));
+		assertFalse(collector.offer(candidate(3), null, -40));
+		assertTrue(collector.offer(candidate(4), null, -5));
+		
+		assertFalse(collector.contains(candidate(1)));
+		assertFalse(collector.contains(candidate(3)));
+		assertTrue(collector.contains(candidate(4)));
+		assertEquals(-20, collector.getThreshold(), 0);
+		assertEquals(toSet(candidate(0), candidate(2), candidate(4)), toSet(collector.getCandidates()));
+		
+		EnigmaSettings best = collector.getBest();
+		assertEquals(-5, best.getFitnessScore(), 0);
+		assertArrayEquals(PackedCandidate.getIndicatorSettings(candidate(4)), best.getIndicatorSettings());
+	}
+	
+	/**
+	 * Validates that offers from many threads at once keep exactly the best
+	 * candidates, against a sort of every score offered.
+	 */
+	@Test
+	public void testConcurrentOffers() throws InterruptedException {
+		Random random = new Random(13);
+		
+		for (int round = 0; round < 10; round++) {
+			// Distinct scores, so the best candidates are unambiguous.
+			final double[] scores = new double[OFFERS];
+			
+			for (int index = 0; index < OFFERS; index++) {
+				scores[index] = -index;
+			}
+			
+			for (int index = OFFERS - 1; index > 0; index--) {
+				int other = random.nextInt(index + 1);
+				double score = scores[index];
+				scores[index] = scores[other];
+				scores[other] = score;
+			}
+			
+			final CandidateCollector collector = new CandidateCollector(CAPACITY);
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread[] threads = new Thread[THREADS];
+			
+			for (int thread = 0; thread < THREADS; thread++) {
+				final int first = thread;
+				
+				threads[thread] = new Thread() {
+					public void run() {
+						try {
+							start.await();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+						
+						// Each thread offers an interleaved share of the candidates.
+						for (int index = first; index < OFFERS; index += THREADS) {
+							if (collector.accepts(scores[index])) {
+								collector.offer(candidate(index), null, scores[index]);
+							}
+						}
+					}
+				};
+				threads[thread].start();
+			}
+			
+			start.countDown();
+			
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			
+			// The best scores are the highest, 0 down to -(CAPACITY - 1).
+			Set<Long> expected = new HashSet<Long>();
+			double[] sorted = scores.clone();
+			Arrays.sort(sorted);
+			
+			for (int index = 0; index < OFFERS; index++) {
+				if (scores[index] >= sorted[OFFERS - CAPACITY]) {
+					expected.add(candidate(index));
+				}
+			}
+			
+			assertEquals(CAPACITY, expected.size());
+			assertEquals(expected, toSet(collector.getCandidates()));
+			assertEquals(sorted[OFFERS - CAPACITY], collector.getThreshold(), 0);
+			assertEquals(sorted[OFFERS - 1], collector.getBest().getFitnessScore(), 0);
+		}
+	}
+	
+	/**
+	 * @return a distinct 3-rotor candidate for each index below 17576
+	 */
+	private static long candidate(int index) {
+		char[] indicators = {(char) ('A' + index / 676), (char) ('A' + index / 26 % 26), (char) ('A' + index % 26)};
+		
+		return PackedCandidate.withIndicators(BASE, indicators);
+	}
+	
+	private static Set<Long> toSet(long... candidates) {
+		Set<Long> set = new HashSet<Long>();
+		
+		for (long candidate : candidates) {
+			set.add(candidate);
+		}
+		
+		return set;
+	}
+}
@@ -0,0 +1,270 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+
+import org.junit.Test;
+
+/**
+ * CorpusFile JUnit test. Verifies that a corpus written in the binary format
+ * reads back with the same counts, that streams of the wrong format or
+ * version, or with corrupt lengths, are rejected, and that the shipped binary
+ * training corpus matches the serialized one.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CorpusFileTest {
+	private static final String[] WORDS = {"THE", "ATTACK", "NORTH", "DON'T", "M\u00DCNCHEN", "A"};
+	
+	/**
+	 * Validates that every A-Z gram and every word keeps its count, and the
+	 * totals are unchanged, across a write and read.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		Corpus corpus = createCorpus();
+		Corpus read = CorpusFile.read(new ByteArrayInputStream(write(corpus)));
+		
+		assertSameCounts(corpus, read);
+		
+		// Writing the corpus read gives the same file.
+		assertArrayEquals(write(corpus), write(read));
+	}
+	
+	/**
+	 * Validates that load() reads both binary and serialized corpora.
+	 */
+	@Test
+	public void testLoad() throws IOException, ClassNotFoundException {
+		Corpus corpus = createCorpus();
+		File binary = File.createTempFile("corpus", ".ngrams");
+		File serialized = File.createTempFile("corpus", ".ser");
+		
+		try {
+			try (FileOutputStream out = new FileOutputStream(binary)) {
+				CorpusFile.write(corpus, out);
+			}
+			
+			try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serialized))) {
+				out.writeObject(corpus);
+			}
+			
+			assertTrue(CorpusFile.isBinary(binary));
+			assertFalse(CorpusFile.isBinary(serialized));
+			assertSameCounts(corpus, CorpusFile.load(binary));
+			assertSameCounts(corpus, CorpusFile.load(serialized));
+		}
+		finally {
+			binary.delete();
+			serialized.delete();
+		}
+	}
+	
+	/**
+	 * Validates that a stream without the magic number is rejected.
+	 */
+	@Test
+	public void testBadMagic() {
+		byte[] bytes = write(createCorpus());
+		bytes[0] = 'X';
+		
+		assertRejected(bytes, "Not a binary corpus");
+	}
+	
+	/**
+	 * Validates that versions before the first and after the current one are
+	 * rejected.
+	 */
+	@Test
+	public void testBadVersion() {
+		byte[] bytes = write(createCorpus());
+		
+		ByteBuffer.wrap(bytes).putInt(4, CorpusFile.VERSION + 1);
+		assertRejected(bytes, "Unsupported corpus format version: " + (CorpusFile.VERSION + 1));
+		
+		ByteBuffer.wrap(bytes).putInt(4, 0);
+		assertRejected(bytes, "Unsupported corpus format version: 0");
+	}
+	
+	/**
+	 * Validates that a truncated stream is rejected.
+	 */
+	@Test
+	public void testTruncated() {
+		byte[] bytes = write(createCorpus());
+		byte[] truncated = new byte[bytes.length - 3];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		
+		assertRejected(truncated, null);
+	}
+	
+	/**
+	 * Validates that word and text lengths that do not fit the corpus, or the
+	 * bytes left in the stream, are rejected rather than allocated.
+	 */
+	@Test
+	public void testCorruptLengths() {
+		byte[] bytes = write(createCorpus());
+		int totalWords = 8;
+		
+		for (int length = 1, size = 26; length <= CorpusFile.MAX_LENGTH; length++, size *= 26) {
+			totalWords += 4 + size * 4;
+		}
+		
+		int wordCount = totalWords + 4;
+		int textLength = wordCount + 4 + WORDS.length * 4;
+		
+		assertEquals(WORDS.length, ByteBuffer.wrap(bytes).getInt(wordCount));
+		
+		assertCorrupt(bytes, wordCount, -1, "Corrupt binary corpus");
+		assertCorrupt(bytes, wordCount, ByteBuffer.wrap(bytes).getInt(totalWords) + 1, "Corrupt binary corpus");
+		assertCorrupt(bytes, textLength, -1, "Corrupt binary corpus");
+		assertCorrupt(bytes, textLength, WORDS.length - 1, "Corrupt binary corpus");
+		assertCorrupt(bytes, textLength, Integer.MAX_VALUE, null);
+		
+		// A word count as large as the total, with the total corrupted to match.
+		byte[] large = bytes.clone();
+		ByteBuffer.wrap(large).putInt(totalWords, Integer.MAX_VALUE);
+		assertCorrupt(large, wordCount, Integer.MAX_VALUE, "Corrupt binary corpus");
+		assertCorrupt(large, wordCount, Integer.MAX_VALUE / 4, null);
+	}
+	
+	/**
+	 * Validates that the shipped binary training corpus holds the same counts
+	 * as the serialized training corpus it was converted from.
+	 */
+	@Test
+	public void testTrainingCorpus() throws IOException, ClassNotFoundException {
+		Corpus binary;
+		Corpus serialized;
+		
+		try (InputStream in = CorpusFileTest.class.getResourceAsStream("/training.ngrams")) {
+			assertNotNull("Binary corpus not found", in);
+			binary = CorpusFile.read(in);
+		}
+		
+		try (InputStream in = CorpusFileTest.class.getResourceAsStream("/training.corpus")) {
+			assertNotNull("Serialized corpus not found", in);
+			serialized = (Corpus) new ObjectInputStream(new BufferedInputStream(in)).readObject();
+		}
+		
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			assertEquals(serialized.getTotalGramCount(length), binary.getTotalGramCount(length));
+			assertArrayEquals(serialized.getDenseGramCounts(length), binary.getDenseGramCounts(length));
+		}
+		
+		assertEquals(serialized.getTotalWordCount(), binary.getTotalWordCount());
+		
+		PriorityQueue<String> words = serialized.getWordTestQueue();
+		assertEquals(words.size(), binary.getWordTestQueue().size());
+		
+		for (String word : words) {
+			assertEquals(word, serialized.getWordCount(word), binary.getWordCount(word));
+		}
+	}
+	
+	/**
+	 * @return a corpus of random text, with words and grams holding characters other than A-Z
+	 */
+	private static Corpus createCorpus() {
+		Random random = new Random(21);
+		Corpus corpus = new Corpus();
+		char[] text = new char[2000];
+		
+		for (int index = 0; index < text.length; index++) {
+			text[index] = (char) ('A' + random.nextInt(26));
+		}
+		
+		for (int length = 1; length <= 5; length++) {
+			for (int index = 0; index + length <= text.length; index++) {
+				corpus.addGramCount(new String(text, index, length), 1);
+			}
+		}
+		
+		corpus.addGramCount("E'", 7);
+		corpus.addGramCount("T HE", 3);
+		
+		for (int index = 0; index < WORDS.length; index++) {
+			corpus.addWordCount(WORDS[index], 1 + random.nextInt(100));
+		}
+		
+		return corpus;
+	}
+	
+	/**
+	 * Compares the counts of every A-Z gram of lengths 1 to 4, every word, and
+	 * the totals.
+	 */
+	private static void assertSameCounts(Corpus expected, Corpus actual) {
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			assertEquals(expected.getTotalGramCount(length), actual.getTotalGramCount(length));
+			assertArrayEquals(expected.getDenseGramCounts(length), actual.getDenseGramCounts(length));
+		}
+		
+		assertEquals(expected.getUnigramCount("E"), actual.getUnigramCount("E"));
+		assertEquals(expected.getQuadgramCount("THEN"), actual.getQuadgramCount("THEN"));
+		assertEquals(expected.getTotalWordCount(), actual.getTotalWordCount());
+		assertEquals(expected.getWordTestQueue().size(), actual.getWordTestQueue().size());
+		
+		for (String word : WORDS) {
+			assertEquals(word, expected.getWordCount(word), actual.getWordCount(word));
+		}
+	}
+	
+	private static byte[] write(Corpus corpus) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		try {
+			CorpusFile.write(corpus, out);
+		}
+		catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Replaces an int of a corpus file, then reads it, expecting an IOException with the given message, or any
+	 * message if null.
+	 */
+	private static void assertCorrupt(byte[] bytes, int offset, int value, String message) {
+		byte[] corrupt = bytes.clone();
+		ByteBuffer.wrap(corrupt).putInt(offset, value);
+		
+		assertRejected(corrupt, message);
+	}
+	
+	/**
+	 * Reads a corpus, expecting an IOException with the given message, or any message if null.
+	 */
+	private static void assertRejected(byte[] bytes, String message) {
+		try {
+			CorpusFile.read(new ByteArrayInputStream(bytes));
+			fail("Corpus accepted");
+		}
+		catch (IOException e) {
+			if (message != null) {
+				assertEquals(message, e.getMessage());
+			}
+		}
+	}
+}
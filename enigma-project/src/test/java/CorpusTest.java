@@ -0,0 +1,160 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+
+import org.junit.Test;
+
+/**
+ * Corpus JUnit test. Verifies merging and subtracting corpora read from
+ * binary corpus files, which combines their dense counts in place, and
+ * corpora built from tables.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CorpusTest {
+	
+	/**
+	 * Validates that subtracting a corpus merged in restores the counts.
+	 */
+	@Test
+	public void testMergeAndSubtract() throws IOException {
+		Corpus corpus = dense(createCorpus("THE ENEMY ATTACKS", 3));
+		Corpus other = dense(createCorpus("THE BRIDGE", 2));
+		
+		corpus.merge(other);
+		assertEquals(3 * 15 + 2 * 9, corpus.getTotalGramCount(1));
+		assertEquals(5, corpus.getWordCount("THE"));
+		assertEquals(2, corpus.getWordCount("BRIDGE"));
+		
+		corpus.subtract(other);
+		assertCounts(corpus, "THE ENEMY ATTACKS", 3);
+		assertEquals(0, corpus.getWordCount("BRIDGE"));
+	}
+	
+	/**
+	 * Validates that a subtraction taking a gram or word count below zero is
+	 * rejected, and leaves the corpus unchanged.
+	 */
+	@Test
+	public void testSubtractTooMuch() throws IOException {
+		Corpus corpus = dense(createCorpus("THE ENEMY ATTACKS", 3));
+		
+		// Fewer grams and words in all, but more of the gram Q.
+		assertSubtractRejected(corpus, dense(createCorpus("QQ", 1)));
+		
+		// Grams all held, but a word that is not.
+		Corpus other = new Corpus();
+		other.addGramCount("T", 1);
+		other.addWordCount("ZULU", 1);
+		assertSubtractRejected(corpus, dense(other));
+		
+		assertCounts(corpus, "THE ENEMY ATTACKS", 3);
+	}
+	
+	/**
+	 * Validates that subtracting from a corpus built from tables rejects a
+	 * gram or word count below zero, whether the other corpus holds tables or
+	 * dense counts, leaves the corpus unchanged, and otherwise restores the
+	 * counts of a corpus merged in.
+	 */
+	@Test
+	public void testSubtractFromTables() throws IOException {
+		Corpus corpus = createCorpus("THE ENEMY ATTACKS", 3);
+		
+		assertSubtractRejected(corpus, createCorpus("QQ", 1));
+		assertSubtractRejected(corpus, dense(createCorpus("QQ", 1)));
+		
+		Corpus other = new Corpus();
+		other.addGramCount("T", 1);
+		other.addWordCount("ZULU", 1);
+		assertSubtractRejected(corpus, other);
+		assertSubtractRejected(corpus, dense(other));
+		
+		// Quintgrams are only held in tables.
+		other = new Corpus();
+		other.addGramCount("ENEMY", 1);
+		assertSubtractRejected(corpus, other);
+		
+		assertCounts(corpus, "THE ENEMY ATTACKS", 3);
+		assertEquals(0, corpus.getQuintgramCount("ENEMY"));
+		
+		other = dense(createCorpus("THE BRIDGE", 2));
+		corpus.merge(other);
+		corpus.subtract(other);
+		assertCounts(corpus, "THE ENEMY ATTACKS", 3);
+		assertEquals(0, corpus.getWordCount("BRIDGE"));
+		
+		// A count falling to zero is removed.
+		corpus.subtract(createCorpus("THE ENEMY ATTACKS", 3));
+		assertCounts(corpus, "", 0);
+		assertEquals(0, corpus.getWordCount("THE"));
+	}
+	
+	private static void assertSubtractRejected(Corpus corpus, Corpus other) {
+		try {
+			corpus.subtract(other);
+			fail("Subtraction accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+	
+	/**
+	 * @return a corpus holding the grams and words of a text, added a number of times
+	 */
+	private static Corpus createCorpus(String text, int times) {
+		Corpus corpus = new Corpus();
+		String letters = text.replace(" ", "");
+		
+		for (int length = 1; length <= 4; length++) {
+			for (int index = 0; index + length <= letters.length(); index++) {
+				corpus.addGramCount(letters.substring(index, index + length), times);
+			}
+		}
+		
+		for (String word : text.split(" ")) {
+			corpus.addWordCount(word, times);
+		}
+		
+		return corpus;
+	}
+	
+	/**
+	 * Checks the counts of a corpus are those of createCorpus.
+	 */
+	private static void assertCounts(Corpus corpus, String text, int times) throws IOException {
+		Corpus expected = createCorpus(text, times);
+		
+		for (int length = 1; length <= 4; length++) {
+			assertEquals(expected.getTotalGramCount(length), corpus.getTotalGramCount(length));
+			assertArrayEquals(expected.getDenseGramCounts(length), corpus.getDenseGramCounts(length));
+		}
+		
+		assertEquals(expected.getTotalWordCount(), corpus.getTotalWordCount());
+		
+		for (String word : text.split(" ")) {
+			assertEquals(expected.getWordCount(word), corpus.getWordCount(word));
+		}
+	}
+	
+	/**
+	 * @return the corpus written and read back as a binary corpus, so it holds dense counts
+	 */
+	private static Corpus dense(Corpus corpus) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusFile.write(corpus, out);
+		
+		return CorpusFile.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+}
@@ -0,0 +1,292 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.CorpusUpdater;
+import main.java.cryptanalysis.nlp.NgramTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * CorpusUpdater JUnit test. Verifies that a corpus file is replaced in its own
+ * format once written, that only the table files of gram lengths whose counts
+ * changed are written again, and that merge, subtract and append run as a
+ * program, with and without a table directory.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CorpusUpdaterTest {
+	private static final byte[] MARKER = {1, 2, 3};
+	
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("corpora", "");
+		assertTrue(directory.delete() && directory.mkdir());
+	}
+	
+	@After
+	public void deleteDirectory() {
+		deleteAll(directory);
+	}
+	
+	/**
+	 * Validates that write() replaces a corpus file with the corpus in the
+	 * format asked for, leaving no temporary file behind.
+	 */
+	@Test
+	public void testWrite() throws IOException, ClassNotFoundException {
+		File file = new File(directory, "corpus");
+		Files.write(file.toPath(), MARKER);
+		
+		for (boolean binary : new boolean[] {true, false}) {
+			Corpus corpus = createCorpus("THE ENEMY ATTACKS", binary ? 2 : 3);
+			CorpusUpdater.write(corpus, file, binary);
+			
+			assertEquals(binary, CorpusFile.isBinary(file));
+			assertSameCounts(corpus, CorpusFile.load(file));
+			assertArrayEquals(new String[] {"corpus"}, directory.list());
+		}
+	}
+	
+	/**
+	 * Validates that updateTables() writes again only the table files of gram
+	 * lengths whose total count changed, and deletes the table file of a
+	 * length left with no grams.
+	 */
+	@Test
+	public void testUpdateTables() throws IOException {
+		Corpus corpus = createCorpus("THE ENEMY ATTACKS", 1);
+		corpus.addGramCount("ENEMY", 1);
+		CorpusUpdater.updateTables(corpus, new int[NgramTable.MAX_LENGTH + 1], directory);
+		
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			assertTable(corpus, length);
+		}
+		
+		int[] previousTotals = getTotals(corpus);
+		
+		// Mark every table file, so a file written again no longer holds the marker.
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			Files.write(getTableFile(length).toPath(), MARKER);
+		}
+		
+		// Only the bigram and quintgram totals change, the quintgrams to none.
+		corpus.addGramCount("EN", 2);
+		corpus.subtract(createQuintgram("ENEMY"));
+		CorpusUpdater.updateTables(corpus, previousTotals, directory);
+		
+		assertTable(corpus, 2);
+		assertFalse(getTableFile(5).exists());
+		
+		for (int length : new int[] {1, 3, 4}) {
+			assertArrayEquals(MARKER, Files.readAllBytes(getTableFile(length).toPath()));
+		}
+		
+		assertEquals(4, directory.list().length);
+	}
+	
+	/**
+	 * Validates that merging into a binary corpus file and subtracting again
+	 * restores its counts and keeps it binary, with the table files of the
+	 * changed lengths written from the counts the file keeps.
+	 */
+	@Test
+	public void testMergeAndSubtract() throws IOException, ClassNotFoundException {
+		Corpus original = createCorpus("THE ENEMY ATTACKS", 3);
+		File file = new File(directory, "corpus.bin");
+		CorpusUpdater.write(original, file, true);
+		
+		// The other corpus file is serialized.
+		File otherFile = new File(directory, "other.ser");
+		Corpus other = createCorpus("THE TENT", 2);
+		CorpusUpdater.write(other, otherFile, false);
+		
+		File tables = new File(directory, "tables");
+		assertTrue(tables.mkdir());
+		
+		CorpusUpdater.main(new String[] {"merge", file.getPath(), otherFile.getPath(), "-tables", tables.getPath()});
+		
+		Corpus merged = createCorpus("THE ENEMY ATTACKS", 3);
+		merged.merge(other);
+		Corpus loaded = CorpusFile.load(file);
+		
+		assertTrue(CorpusFile.isBinary(file));
+		assertSameCounts(merged, loaded);
+		
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			assertTable(loaded, length, new File(tables, NgramTable.getFileName(length)));
+		}
+		
+		assertFalse(new File(tables, NgramTable.getFileName(5)).exists());
+		
+		CorpusUpdater.main(new String[] {"subtract", file.getPath(), otherFile.getPath()});
+		
+		assertTrue(CorpusFile.isBinary(file));
+		assertSameCounts(original, CorpusFile.load(file));
+		assertEquals(4, tables.list().length);
+	}
+	
+	/**
+	 * Validates that a serialized corpus file stays serialized, keeping its
+	 * quintgrams, and that a table directory given after several input files
+	 * is not taken for an input file.
+	 */
+	@Test
+	public void testSerializedCorpus() throws IOException, ClassNotFoundException {
+		File file = new File(directory, "corpus.ser");
+		Corpus original = createCorpus("THE ENEMY ATTACKS", 1);
+		original.addGramCount("ENEMY", 1);
+		CorpusUpdater.write(original, file, false);
+		
+		File first = new File(directory, "first.bin");
+		File second = new File(directory, "second.bin");
+		CorpusUpdater.write(createCorpus("THE BRIDGE", 1), first, true);
+		CorpusUpdater.write(createCorpus("AT DAWN", 2), second, true);
+		
+		File tables = new File(directory, "tables");
+		assertTrue(tables.mkdir());
+		
+		CorpusUpdater.main(new String[] {"merge", file.getPath(), first.getPath(), second.getPath(), "-tables", tables.getPath()});
+		
+		Corpus expected = createCorpus("THE ENEMY ATTACKS", 1);
+		expected.addGramCount("ENEMY", 1);
+		expected.merge(createCorpus("THE BRIDGE", 1));
+		expected.merge(createCorpus("AT DAWN", 2));
+		Corpus loaded = CorpusFile.load(file);
+		
+		assertFalse(CorpusFile.isBinary(file));
+		assertSameCounts(expected, loaded);
+		assertEquals(1, loaded.getQuintgramCount("ENEMY"));
+		
+		// The quintgram total is unchanged, so only the other lengths have table files.
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			assertTrue(new File(tables, NgramTable.getFileName(length)).exists());
+		}
+		
+		assertEquals(4, tables.list().length);
+	}
+	
+	/**
+	 * Validates that appending text creates a missing corpus file as a binary
+	 * corpus, and writes no table files without a table directory.
+	 */
+	@Test
+	public void testAppend() throws IOException, ClassNotFoundException {
+		File text = new File(directory, "text.txt");
+		Files.write(text.toPath(), "The enemy attacks.".getBytes(Charset.defaultCharset()));
+		File file = new File(directory, "corpus.bin");
+		
+		CorpusUpdater.main(new String[] {"append", file.getPath(), text.getPath()});
+		
+		Corpus corpus = CorpusFile.load(file);
+		
+		assertTrue(CorpusFile.isBinary(file));
+		assertEquals(15, corpus.getTotalUnigramCount());
+		assertEquals(3, corpus.getTotalWordCount());
+		assertEquals(1, corpus.getWordCount("ENEMY"));
+		assertEquals(2, directory.list().length);
+	}
+	
+	/**
+	 * Checks that the table file of a gram length holds the table of the corpus.
+	 */
+	private void assertTable(Corpus corpus, int length) throws IOException {
+		assertTable(corpus, length, getTableFile(length));
+	}
+	
+	private static void assertTable(Corpus corpus, int length, File file) throws IOException {
+		NgramTable expected = NgramTable.fromCorpus(corpus, length);
+		NgramTable mapped = NgramTable.map(file);
+		
+		assertEquals(length, mapped.getLength());
+		assertEquals(expected.getMaxLogProbability(), mapped.getMaxLogProbability(), 0.0f);
+		
+		for (int index = 0; index < (int) Math.pow(26, length); index++) {
+			assertEquals(expected.getLogProbability(index), mapped.getLogProbability(index), 0.0f);
+		}
+	}
+	
+	private File getTableFile(int length) {
+		return new File(directory, NgramTable.getFileName(length));
+	}
+	
+	/**
+	 * Checks the gram counts of lengths 1 to 4, and the word counts, of two corpora.
+	 */
+	private static void assertSameCounts(Corpus expected, Corpus actual) {
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			assertEquals(expected.getTotalGramCount(length), actual.getTotalGramCount(length));
+			assertArrayEquals(expected.getDenseGramCounts(length), actual.getDenseGramCounts(length));
+		}
+		
+		assertEquals(expected.getTotalWordCount(), actual.getTotalWordCount());
+		
+		for (String word : Arrays.asList("THE", "ENEMY", "ATTACKS", "TENT", "BRIDGE", "AT", "DAWN")) {
+			assertEquals(word, expected.getWordCount(word), actual.getWordCount(word));
+		}
+	}
+	
+	private static int[] getTotals(Corpus corpus) {
+		int[] totals = new int[NgramTable.MAX_LENGTH + 1];
+		
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			totals[length] = corpus.getTotalGramCount(length);
+		}
+		
+		return totals;
+	}
+	
+	/**
+	 * @return a corpus holding the grams of lengths 1 to 4 and the words of a text, added a number of times
+	 */
+	private static Corpus createCorpus(String text, int times) {
+		Corpus corpus = new Corpus();
+		String letters = text.replace(" ", "");
+		
+		for (int length = 1; length <= CorpusFile.MAX_LENGTH; length++) {
+			for (int index = 0; index + length <= letters.length(); index++) {
+				corpus.addGramCount(letters.substring(index, index + length), times);
+			}
+		}
+		
+		for (String word : text.split(" ")) {
+			corpus.addWordCount(word, times);
+		}
+		
+		return corpus;
+	}
+	
+	private static Corpus createQuintgram(String gram) {
+		Corpus corpus = new Corpus();
+		corpus.addGramCount(gram, 1);
+		
+		return corpus;
+	}
+	
+	private static void deleteAll(File file) {
+		File[] files = file.listFiles();
+		
+		if (files != null) {
+			for (File child : files) {
+				deleteAll(child);
+			}
+		}
+		
+		file.delete();
+	}
+}
@@ -0,0 +1,47 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CribDetector;
+
+import org.junit.Test;
+
+/**
+ * CribDetector JUnit test. Verifies the common words picked as cribs.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CribDetectorTest {
+	
+	/**
+	 * Validates that getCommonWords returns the most frequent words of the
+	 * minimum length in descending order, skipping words with characters
+	 * other than A-Z.
+	 */
+	@Test
+	public void testGetCommonWords() {
+		Corpus corpus = new Corpus();
+		corpus.addWordCount("THE", 100);
+		corpus.addWordCount("DON'T", 90);
+		corpus.addWordCount("WETTER", 80);
+		corpus.addWordCount("ATTACK", 70);
+		corpus.addWordCount("NORTH", 60);
+		corpus.addWordCount("BRIDGE", 50);
+		corpus.addWordCount("ZERO-ONE", 40);
+		corpus.addWordCount("ENEMY", 30);
+		
+		CribDetector detector = new CribDetector(corpus);
+		
+		assertEquals(Arrays.asList("WETTER", "ATTACK", "NORTH"), detector.getCommonWords(3, 4));
+		assertEquals(Arrays.asList("WETTER", "ATTACK", "NORTH", "BRIDGE", "ENEMY"), detector.getCommonWords(10, 4));
+		assertEquals(Arrays.asList("THE", "WETTER"), detector.getCommonWords(2, 1));
+		assertEquals(Arrays.asList("WETTER", "ATTACK", "BRIDGE"), detector.getCommonWords(5, 6));
+		assertTrue(detector.getCommonWords(0, 1).isEmpty());
+	}
+}
@@ -0,0 +1,141 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import main.java.cryptanalysis.bombe.CribScanner;
+import main.java.cryptanalysis.bombe.Menu;
+
+import org.junit.Test;
+
+/**
+ * CribScanner JUnit test. Verifies the offsets found for cribs against a
+ * brute force scan of every offset with Menu.isAdmissible.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CribScannerTest {
+	private final Random random = new Random(20);
+	
+	/**
+	 * Validates random cribs against random cipher texts, over lengths either
+	 * side of the 64 positions packed to a word. A small alphabet rules out
+	 * many offsets, and the full one few.
+	 */
+	@Test
+	public void testFindOffsets() {
+		int[] lengths = {1, 2, 63, 64, 65, 127, 128, 129, 300};
+		
+		for (int length : lengths) {
+			for (int letters = 2; letters <= 26; letters += 24) {
+				String cipher = randomText(length, letters);
+				CribScanner scanner = new CribScanner(cipher);
+				
+				assertEquals(length, scanner.getLength());
+				
+				for (int trial = 0; trial < 50; trial++) {
+					String crib = randomText(1 + random.nextInt(Math.min(length + 2, 80)), letters);
+					
+					assertArrayEquals(crib, bruteForce(crib, cipher), scanner.findOffsets(crib));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Validates a crib longer than a word, which shifts whole words of positions.
+	 */
+	@Test
+	public void testLongCrib() {
+		String cipher = randomText(500, 26);
+		CribScanner scanner = new CribScanner(cipher);
+		
+		for (int trial = 0; trial < 20; trial++) {
+			String crib = randomText(64 + random.nextInt(200), 26);
+			
+			assertArrayEquals(crib, bruteForce(crib, cipher), scanner.findOffsets(crib));
+		}
+	}
+	
+	/**
+	 * Validates scanning several cribs at once, which leaves out cribs with no
+	 * admissible offsets, and the empty crib.
+	 */
+	@Test
+	public void testFindOffsetsOfCribs() {
+		String cipher = "AAAAABBBBB";
+		CribScanner scanner = new CribScanner(cipher);
+		List<String> cribs = new ArrayList<String>(Arrays.asList("AB", "BA", "AAAAAA", "CA", "CCCCCCCCCCC"));
+		
+		Map<String, int[]> offsets = scanner.findOffsets(cribs);
+		
+		assertEquals(Arrays.asList("BA", "CA"), new ArrayList<String>(offsets.keySet()));
+		assertArrayEquals(new int[] {4}, offsets.get("BA"));
+		assertArrayEquals(new int[] {4, 5, 6, 7, 8}, offsets.get("CA"));
+		assertEquals(0, scanner.findOffsets("").length);
+	}
+	
+	/**
+	 * Validates that anything but upper case letters is rejected.
+	 */
+	@Test
+	public void testInvalidLetters() {
+		try {
+			new CribScanner("ABc");
+			fail("Lower case cipher text accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		
+		try {
+			new CribScanner("ABCDEF").findOffsets("DON'T");
+			fail("Apostrophe in crib accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+	
+	/**
+	 * @return every offset Menu.isAdmissible accepts, in ascending order
+	 */
+	private static int[] bruteForce(String crib, String cipher) {
+		List<Integer> offsets = new ArrayList<Integer>();
+		
+		for (int offset = 0; offset < cipher.length(); offset++) {
+			if (Menu.isAdmissible(crib, cipher, offset)) {
+				offsets.add(offset);
+			}
+		}
+		
+		int[] result = new int[offsets.size()];
+		
+		for (int index = 0; index < result.length; index++) {
+			result[index] = offsets.get(index);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return random text of the first few letters of the alphabet
+	 */
+	private String randomText(int length, int letters) {
+		char[] text = new char[length];
+		
+		for (int index = 0; index < length; index++) {
+			text[index] = (char) ('A' + random.nextInt(letters));
+		}
+		
+		return new String(text);
+	}
+}
@@ -2,6 +2,7 @@ package test.java;
 
 import static org.junit.Assert.*;
 import main.java.enigma.EnigmaMachine;
+import main.java.enigma.EnigmaSettings;
 
 import org.junit.Test;
 
@@ -235,5 +236,167 @@ public class EnigmaMachineTest {
 			assertEquals(loopName, expectedResults[i], actual);
 		}
 	} // end testEncryptChar method
+	
+	/**
+	 * Validates the index-based encrypt methods against the same test cases.
+	 */
+	@Test
+	public void testEncryptIndices() {
+		int PBStart = nonPBReflectorChoices.length;
+		int fullLength = inputString.length;
+		
+		for (int i = 0; i < fullLength; i++) {
+			EnigmaMachine intMachine;
+			EnigmaMachine byteMachine;
+			
+			if (i < PBStart) {
+				intMachine = new EnigmaMachine(nonPBRotorChoices[i], 
+						nonPBReflectorChoices[i], nonPBRingSettings[i], 
+						nonPBPositions[i]);
+				byteMachine = new EnigmaMachine(nonPBRotorChoices[i], 
+						nonPBReflectorChoices[i], nonPBRingSettings[i], 
+						nonPBPositions[i]);
+			}
+			else {
+				int pbi = i - PBStart;
+				intMachine = new EnigmaMachine(pbRotorChoices[pbi],
+						pbReflectorChoices[pbi], pbRingSettings[pbi],
+						pbPositions[pbi], plugboardMaps[pbi]);
+				byteMachine = new EnigmaMachine(pbRotorChoices[pbi],
+						pbReflectorChoices[pbi], pbRingSettings[pbi],
+						pbPositions[pbi], plugboardMaps[pbi]);
+			}
+			
+			String loopName = "Loop " + String.valueOf(i);
+			
+			// int[] encryption into a separate buffer.
+			int[] input = EnigmaMachine.toIndices(inputString[i]);
+			int[] output = new int[input.length];
+			intMachine.encrypt(input, output);
+			assertEquals(loopName, expectedResults[i], EnigmaMachine.fromIndices(output));
+			
+			// byte[] encryption in place.
+			byte[] bytes = new byte[input.length];
+			for (int j = 0; j < input.length; j++) {
+				bytes[j] = (byte) input[j];
+			}
+			byteMachine.encrypt(bytes, bytes);
+			for (int j = 0; j < input.length; j++) {
+				assertEquals(loopName, expectedResults[i].charAt(j) - 'A', bytes[j]);
+			}
+		}
+	} // end testEncryptIndices method
+	
+	/**
+	 * Validates that a single machine reconfigured in place with configure()
+	 * produces the same results as freshly constructed machines. Cases are
+	 * run twice so every rotor is reused after being swapped out.
+	 */
+	@Test
+	public void testConfigure() {
+		int PBStart = nonPBReflectorChoices.length;
+		int fullLength = inputString.length;
+		EnigmaMachine machine = new EnigmaMachine(new int[] {0, 1, 2}, 0,
+				new char[] {'A', 'A', 'A'}, new char[] {'A', 'A', 'A'});
+		
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < fullLength; i++) {
+				EnigmaSettings settings;
+				
+				if (i < PBStart) {
+					settings = new EnigmaSettings(nonPBRotorChoices[i], 
+							nonPBRingSettings[i], nonPBPositions[i], 
+							nonPBReflectorChoices[i], "");
+				}
+				else {
+					int pbi = i - PBStart;
+					settings = new EnigmaSettings(pbRotorChoices[pbi], 
+							pbRingSettings[pbi], pbPositions[pbi], 
+							pbReflectorChoices[pbi], plugboardMaps[pbi]);
+				}
+				
+				machine.configure(settings);
+				
+				String actual = machine.encryptString(inputString[i]);
+				String loopName = "Pass " + pass + " Loop " + String.valueOf(i);
+				
+				assertEquals(loopName, expectedResults[i], actual);
+			}
+		}
+	} // end testConfigure method
+	
+	/**
+	 * Validates that encrypting with a rotor path table matches stepping the
+	 * rotors, that building the table leaves the rotor positions unchanged,
+	 * and that the table is reused while the settings stay the same.
+	 */
+	@Test
+	public void testPathTable() {
+		int PBStart = nonPBReflectorChoices.length;
+		int fullLength = inputString.length;
+		
+		for (int i = 0; i < fullLength; i++) {
+			EnigmaMachine machine;
+			
+			if (i < PBStart) {
+				machine = new EnigmaMachine(nonPBRotorChoices[i], 
+						nonPBReflectorChoices[i], nonPBRingSettings[i], 
+						nonPBPositions[i]);
+			}
+			else {
+				int pbi = i - PBStart;
+				machine = new EnigmaMachine(pbRotorChoices[pbi],
+						pbReflectorChoices[pbi], pbRingSettings[pbi],
+						pbPositions[pbi], plugboardMaps[pbi]);
+			}
+			
+			String loopName = "Loop " + String.valueOf(i);
+			char[] start = machine.getPositions();
+			
+			int[] input = EnigmaMachine.toIndices(inputString[i]);
+			int[] output = new int[input.length];
+			byte[][] pathTable = machine.getPathTable(input.length);
+			
+			assertArrayEquals(loopName, start, machine.getPositions());
+			assertSame(loopName, pathTable, machine.getPathTable(input.length));
+			
+			machine.encrypt(input, output, pathTable);
+			assertEquals(loopName, expectedResults[i], EnigmaMachine.fromIndices(output));
+		}
+	} // end testPathTable method
+	
+	/**
+	 * Test method for encrypting a message in consecutive parts.
+	 */
+	@Test
+	public void testEncryptRange() {
+		int PBStart = nonPBReflectorChoices.length;
+		int fullLength = inputString.length;
+		
+		for (int i = 0; i < fullLength; i++) {
+			EnigmaMachine machine;
+			
+			if (i < PBStart) {
+				machine = new EnigmaMachine(nonPBRotorChoices[i], 
+						nonPBReflectorChoices[i], nonPBRingSettings[i], 
+						nonPBPositions[i]);
+			}
+			else {
+				int pbi = i - PBStart;
+				machine = new EnigmaMachine(pbRotorChoices[pbi],
+						pbReflectorChoices[pbi], pbRingSettings[pbi],
+						pbPositions[pbi], plugboardMaps[pbi]);
+			}
+			
+			String loopName = "Loop " + String.valueOf(i);
+			int[] input = EnigmaMachine.toIndices(inputString[i]);
+			int[] output = new int[input.length];
+			
+			for (int start = 0; start < input.length; start += 7) {
+				machine.encrypt(input, output, start, Math.min(input.length, start + 7));
+			}
+			assertEquals(loopName, expectedResults[i], EnigmaMachine.fromIndices(output));
+		}
+	} // end testEncryptRange method
 
 } // end EnigmaMachineTest class
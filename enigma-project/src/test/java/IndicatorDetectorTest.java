@@ -0,0 +1,128 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.cryptanalysis.quadbomb.CandidateCollector;
+import main.java.cryptanalysis.quadbomb.IndicatorDetector;
+import main.java.cryptanalysis.quadbomb.PackedCandidate;
+import main.java.cryptanalysis.quadbomb.QuadBombSettings;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * IndicatorDetector JUnit test. Verifies that the two-tier indicator search
+ * keeps the key's indicators on a long message, and that a prefix too short
+ * or too long to use gives the same results as the plain search.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class IndicatorDetectorTest {
+	private static final String PLAIN = "ATDAWNTHEENEMYWILLATTACKTHENORTHERNBRIDGEWITHTWODIVISIONSOFINFANTRY"
+			+ "SUPPORTEDBYARTILLERYHOLDTHELINEUNTILREINFORCEMENTSARRIVEFROMTHESOUTHANDREPORTANYMOVEMENT"
+			+ "OFARMOUREDVEHICLESONTHECOASTROADTOHEADQUARTERSATONCEWEATHERFORTHENEXTTHREEDAYSISEXPECTED"
+			+ "TOBECLEARWITHLIGHTWINDSFROMTHEWESTSUPPLIESOFFUELANDAMMUNITIONWILLBEDELIVEREDBYNIGHT";
+	private static final char[] KEY_INDICATORS = {'Q', 'E', 'X'};
+	private static final int CANDIDATES = 10;
+	
+	private static FitnessFunction fitness;
+	private static long baseCandidate;
+	private static byte[] plugboard;
+	private static String cipher;
+	
+	@BeforeClass
+	public static void setUp() throws IOException {
+		InputStream in = IndicatorDetectorTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			fitness = new StatisticsGenerator(CorpusFile.read(in), 3).getFitnessFunction(3);	// Sinkov quadgrams.
+		} finally {
+			in.close();
+		}
+		
+		char[] rings = {'A', 'A', 'A'};
+		EnigmaSettings key = new EnigmaSettings(new int[] {0, 1, 2}, rings, KEY_INDICATORS, 0, "BQCXFJ");
+		cipher = key.createEnigmaMachine().encryptString(PLAIN);
+		
+		// The indicator step searches with the plugboard given, none here.
+		baseCandidate = PackedCandidate.pack(new EnigmaSettings(new int[] {0, 1, 2}, rings, new char[] {'A', 'A', 'A'}, 0));
+		plugboard = PackedCandidate.packPlugboard("");
+	}
+	
+	/**
+	 * Validates that a coarse pass on a prefix of the message keeps the key's
+	 * indicators among the best results, as the plain search does.
+	 */
+	@Test
+	public void testCoarseSearchKeepsKey() {
+		long key = PackedCandidate.withIndicators(baseCandidate, KEY_INDICATORS);
+		
+		assertTrue(search(0, QuadBombSettings.COARSE_SHORTLIST_FACTOR).contains(key));
+		
+		for (int prefixLength : new int[] {100, 150}) {
+			CandidateCollector results = search(prefixLength, QuadBombSettings.COARSE_SHORTLIST_FACTOR);
+			
+			assertTrue("Prefix " + prefixLength, results.contains(key));
+		}
+	}
+	
+	/**
+	 * Validates that a prefix of 0, or at least the message length, searches
+	 * as the plain search does.
+	 */
+	@Test
+	public void testUnusedPrefix() {
+		CandidateCollector plain = search(0, QuadBombSettings.COARSE_SHORTLIST_FACTOR);
+		
+		for (int prefixLength : new int[] {PLAIN.length(), PLAIN.length() + 50}) {
+			CandidateCollector results = search(prefixLength, 1);
+			
+			assertSameResults(plain, results);
+		}
+	}
+	
+	/**
+	 * Runs the indicator search of the key's wheel order.
+	 *
+	 * @param prefixLength
+	 * 				Letters scored in the coarse pass, or 0 for the plain search
+	 * @param shortlistFactor
+	 * 				Shortlist size as a multiple of the candidate size
+	 * @return the best results
+	 */
+	private static CandidateCollector search(int prefixLength, int shortlistFactor) {
+		QuadBombSettings settings = new QuadBombSettings(new int[] {0, 1, 2, 3}, 1, new int[4], new int[4], "", 1, CANDIDATES);
+		settings.setCoarseIndicatorSearch(prefixLength, shortlistFactor);
+		
+		CandidateCollector results = new CandidateCollector(CANDIDATES);
+		ConcurrentLinkedQueue<Long> found = new ConcurrentLinkedQueue<Long>();
+		
+		assertTrue(new IndicatorDetector(fitness, baseCandidate, plugboard, settings, results, found, cipher).call());
+		
+		return results;
+	}
+	
+	private static void assertSameResults(CandidateCollector expected, CandidateCollector actual) {
+		long[] expectedCandidates = expected.getCandidates();
+		long[] actualCandidates = actual.getCandidates();
+		Arrays.sort(expectedCandidates);
+		Arrays.sort(actualCandidates);
+		
+		assertArrayEquals(expectedCandidates, actualCandidates);
+		assertEquals(expected.getThreshold(), actual.getThreshold(), 0.0);
+		assertEquals(expected.getBest().getFitnessScore(), actual.getBest().getFitnessScore(), 0.0);
+	}
+}
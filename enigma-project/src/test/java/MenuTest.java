@@ -0,0 +1,73 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import main.java.cryptanalysis.bombe.Menu;
+
+import org.junit.Test;
+
+/**
+ * Menu JUnit test. Verifies the edges, test letter and loop count of menus
+ * built by hand, and the rejection of impossible crib alignments.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class MenuTest {
+	
+	/**
+	 * Validates a menu with edges K-A, K-B, K-C, A-K and B-C. K has the most
+	 * edges, and the edges join four letters in one component, so there are
+	 * 5 - 4 + 1 = 2 loops: K-A-K and K-B-C-K.
+	 */
+	@Test
+	public void testLoops() {
+		Menu menu = new Menu("KKKAB", "ZZABCKCZ", 2);
+		
+		assertEquals("KKKAB", menu.getCrib());
+		assertEquals(2, menu.getOffset());
+		assertEquals(5, menu.getEdgeCount());
+		assertEquals('K' - 'A', menu.getTestLetter());
+		assertEquals(2, menu.getLoopCount());
+	}
+	
+	/**
+	 * Validates loop counts of menus with several components: two triangles
+	 * have a loop each, and two separate edges have none. Ties for the test
+	 * letter go to the first letter of the alphabet.
+	 */
+	@Test
+	public void testComponents() {
+		Menu triangles = new Menu("ABCDEF", "BCAEFD", 0);
+		
+		assertEquals(2, triangles.getLoopCount());
+		assertEquals(0, triangles.getTestLetter());
+		
+		Menu edges = new Menu("XB", "YD", 0);
+		
+		assertEquals(0, edges.getLoopCount());
+		assertEquals('B' - 'A', edges.getTestLetter());
+	}
+	
+	/**
+	 * Validates isAdmissible, and that the constructor rejects what it rejects.
+	 */
+	@Test
+	public void testAdmissible() {
+		assertTrue(Menu.isAdmissible("ABC", "XABCX", 2));
+		assertFalse(Menu.isAdmissible("ABC", "XABCX", 1));	// Every letter encrypts to itself.
+		assertFalse(Menu.isAdmissible("ABC", "XYZXY", 3));	// Runs past the end.
+		assertFalse(Menu.isAdmissible("ABC", "XYZXY", -1));
+		assertFalse(Menu.isAdmissible("", "XYZXY", 0));
+		
+		try {
+			new Menu("ABC", "XABCX", 1);
+			fail("Inadmissible offset accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.NgramTable;
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * NgramTable JUnit test. Verifies that a table written to a table file and
+ * memory mapped back holds the same log probabilities, and scores messages
+ * the same, as the table built in memory.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class NgramTableTest {
+	private final Random random = new Random(22);
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("tables", "");
+		assertTrue(directory.delete() && directory.mkdir());
+	}
+	
+	@After
+	public void deleteDirectory() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		
+		directory.delete();
+	}
+	
+	/**
+	 * Validates the unigram through quadgram tables of the training corpus.
+	 */
+	@Test
+	public void testMapTrainingTables() throws IOException {
+		Corpus corpus = loadCorpus();
+		
+		for (int length = 1; length <= 4; length++) {
+			assertMapped(corpus, length);
+		}
+	}
+	
+	/**
+	 * Validates a quintgram table, the largest, of a small corpus.
+	 */
+	@Test
+	public void testMapQuintgramTable() throws IOException {
+		Corpus corpus = new Corpus();
+		int[] text = randomMessage(5000);
+		
+		for (int index = 0; index + 5 <= text.length; index++) {
+			corpus.addGramCount(toGram(text, index, 5), 1);
+		}
+		
+		assertMapped(corpus, 5);
+	}
+	
+	/**
+	 * Validates that StatisticsGenerator uses mapped tables in place of the
+	 * corpus, and that a corpus without quintgrams writes no quintgram table.
+	 */
+	@Test
+	public void testMapNgramTables() throws IOException {
+		Corpus corpus = loadCorpus();
+		
+		for (int length = 1; length <= NgramTable.MAX_LENGTH; length++) {
+			assertEquals(length < 5, NgramTable.writeFile(corpus, length, directory));
+		}
+		
+		StatisticsGenerator generator = new StatisticsGenerator(corpus, 3);
+		assertEquals(4, generator.mapNgramTables(directory));
+		
+		NgramTable expected = NgramTable.fromCorpus(corpus, 4);
+		NgramTable mapped = generator.getNgramTable(4);
+		int[] message = randomMessage(250);
+		
+		assertNotSame(expected, mapped);
+		assertEquals(expected.score(message, message.length), generator.getFitnessFunction(3).score(message, message.length), 0);
+	}
+	
+	/**
+	 * Validates that files that are not table files, or are truncated, are
+	 * rejected.
+	 */
+	@Test
+	public void testBadFiles() throws IOException {
+		assertTrue(NgramTable.writeFile(loadCorpus(), 2, directory));
+		File file = new File(directory, NgramTable.getFileName(2));
+		
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(output.length() - 4);
+		}
+		
+		assertRejected(file);
+		
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.writeInt(CorpusFile.MAGIC);
+		}
+		
+		assertRejected(file);
+	}
+	
+	/**
+	 * Writes the table file of a gram length, maps it, and compares it with the
+	 * table built in memory: every log probability, and random messages scored
+	 * whole and in parts.
+	 */
+	private void assertMapped(Corpus corpus, int length) throws IOException {
+		NgramTable expected = NgramTable.fromCorpus(corpus, length);
+		
+		assertTrue(NgramTable.writeFile(corpus, length, directory));
+		NgramTable mapped = NgramTable.map(new File(directory, NgramTable.getFileName(length)));
+		
+		assertEquals(length, mapped.getLength());
+		assertEquals(expected.getMaxLogProbability(), mapped.getMaxLogProbability(), 0);
+		
+		int size = 1;
+		
+		for (int i = 0; i < length; i++) {
+			size *= 26;
+		}
+		
+		for (int index = 0; index < size; index++) {
+			assertEquals(expected.getLogProbability(index), mapped.getLogProbability(index), 0);
+		}
+		
+		for (int trial = 0; trial < 100; trial++) {
+			int[] message = randomMessage(1 + random.nextInt(400));
+			int split = random.nextInt(message.length + 1);
+			double score = expected.score(message, message.length);
+			
+			assertEquals(score, mapped.score(message, message.length), 0);
+			assertEquals(score, mapped.score(message, split, message.length, mapped.score(message, 0, split, 0.0)), 1e-9);
+		}
+	}
+	
+	private static void assertRejected(File file) {
+		try {
+			NgramTable.map(file);
+			fail("Table file accepted");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+	}
+	
+	/**
+	 * Loads the binary training corpus shipped with the GUI.
+	 */
+	private static Corpus loadCorpus() throws IOException {
+		InputStream in = NgramTableTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			return CorpusFile.read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private int[] randomMessage(int length) {
+		int[] message = new int[length];
+		
+		for (int index = 0; index < length; index++) {
+			message[index] = random.nextInt(26);
+		}
+		
+		return message;
+	}
+	
+	private static String toGram(int[] text, int start, int length) {
+		char[] gram = new char[length];
+		
+		for (int index = 0; index < length; index++) {
+			gram[index] = (char) ('A' + text[start + index]);
+		}
+		
+		return new String(gram);
+	}
+}
@@ -0,0 +1,167 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import main.java.cryptanalysis.quadbomb.PackedCandidate;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * PackedCandidate JUnit test. Verifies that every field of a candidate
+ * survives packing and unpacking, for 3-rotor and 4-rotor machines.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class PackedCandidateTest {
+	private final Random random = new Random(14);
+	
+	/**
+	 * Validates pack and toSettings on random settings and on the lowest and
+	 * highest value of every field.
+	 */
+	@Test
+	public void testPack() {
+		for (int trial = 0; trial < 1000; trial++) {
+			assertRoundTrip(randomSettings(true));
+			assertRoundTrip(randomSettings(false));
+		}
+		
+		assertRoundTrip(new EnigmaSettings(new int[] {0, 1, 2}, new char[] {'A', 'A', 'A'}, new char[] {'A', 'A', 'A'}, 0));
+		assertRoundTrip(new EnigmaSettings(new int[] {7, 6, 5}, new char[] {'Z', 'Z', 'Z'}, new char[] {'Z', 'Z', 'Z'}, 1));
+		assertRoundTrip(new EnigmaSettings(new int[] {8, 0, 1, 2}, new char[] {'A', 'A', 'A', 'A'}, new char[] {'A', 'A', 'A', 'A'}, 2));
+		assertRoundTrip(new EnigmaSettings(new int[] {9, 7, 6, 5}, new char[] {'Z', 'Z', 'Z', 'Z'}, new char[] {'Z', 'Z', 'Z', 'Z'}, 3));
+	}
+	
+	/**
+	 * Validates that withRings and withIndicators replace only their own field.
+	 */
+	@Test
+	public void testWithRingsAndIndicators() {
+		for (int trial = 0; trial < 1000; trial++) {
+			boolean threeRotor = (trial % 2 == 0);
+			EnigmaSettings settings = randomSettings(threeRotor);
+			char[] rings = randomLetters(threeRotor ? 3 : 4);
+			char[] indicators = randomLetters(threeRotor ? 3 : 4);
+			
+			long candidate = PackedCandidate.withRings(PackedCandidate.pack(settings), rings);
+			assertArrayEquals(rings, PackedCandidate.getRingSettings(candidate));
+			assertArrayEquals(settings.getIndicatorSettings(), PackedCandidate.getIndicatorSettings(candidate));
+			
+			candidate = PackedCandidate.withIndicators(candidate, indicators);
+			assertArrayEquals(rings, PackedCandidate.getRingSettings(candidate));
+			assertArrayEquals(indicators, PackedCandidate.getIndicatorSettings(candidate));
+			assertEquals(threeRotor, PackedCandidate.isThreeRotor(candidate));
+			
+			EnigmaSettings unpacked = PackedCandidate.toSettings(candidate, null, 0);
+			assertArrayEquals(settings.getRotors(), unpacked.getRotors());
+			assertEquals(settings.getReflector(), unpacked.getReflector());
+		}
+	}
+	
+	/**
+	 * Validates packPlugboard and unpackPlugboard, which orders the pairs by
+	 * their first letter.
+	 */
+	@Test
+	public void testPlugboard() {
+		assertEquals("", PackedCandidate.unpackPlugboard(null));
+		assertEquals("", PackedCandidate.unpackPlugboard(PackedCandidate.packPlugboard("")));
+		assertEquals("AZBYMN", PackedCandidate.unpackPlugboard(PackedCandidate.packPlugboard("ZAMNYB")));
+		
+		for (int trial = 0; trial < 1000; trial++) {
+			String map = randomPlugboard(random.nextInt(14));
+			byte[] plugboard = PackedCandidate.packPlugboard(map);
+			
+			// Each letter maps to its partner, or to itself if unpaired.
+			for (int letter = 0; letter < 26; letter++) {
+				int index = map.indexOf('A' + letter);
+				int partner = (index < 0) ? letter : map.charAt(index ^ 1) - 'A';
+				
+				assertEquals(partner, plugboard[letter]);
+			}
+			
+			assertArrayEquals(plugboard, PackedCandidate.packPlugboard(PackedCandidate.unpackPlugboard(plugboard)));
+		}
+	}
+	
+	/**
+	 * Packs and unpacks settings with a plugboard, comparing every field.
+	 */
+	private void assertRoundTrip(EnigmaSettings settings) {
+		String map = randomPlugboard(random.nextInt(14));
+		double score = -1000 * random.nextDouble();
+		long candidate = PackedCandidate.pack(settings);
+		EnigmaSettings unpacked = PackedCandidate.toSettings(candidate, PackedCandidate.packPlugboard(map), score);
+		
+		assertEquals(settings.getRotors().length == 3, PackedCandidate.isThreeRotor(candidate));
+		assertArrayEquals(settings.getRotors(), unpacked.getRotors());
+		assertArrayEquals(settings.getRingSettings(), unpacked.getRingSettings());
+		assertArrayEquals(settings.getIndicatorSettings(), unpacked.getIndicatorSettings());
+		assertArrayEquals(settings.getRingSettings(), PackedCandidate.getRingSettings(candidate));
+		assertArrayEquals(settings.getIndicatorSettings(), PackedCandidate.getIndicatorSettings(candidate));
+		assertEquals(settings.getReflector(), unpacked.getReflector());
+		assertEquals(PackedCandidate.unpackPlugboard(PackedCandidate.packPlugboard(map)), unpacked.getPlugboardMap());
+		assertEquals(score, unpacked.getFitnessScore(), 0);
+	}
+	
+	/**
+	 * @return random settings of a 3-rotor machine (rotors 0-7, reflector 0-1)
+	 * or a 4-rotor machine (fourth rotor 8-9, reflector 2-3)
+	 */
+	private EnigmaSettings randomSettings(boolean threeRotor) {
+		int wheels = threeRotor ? 3 : 4;
+		int[] rotors = new int[wheels];
+		
+		if (!threeRotor) {
+			rotors[0] = 8 + random.nextInt(2);
+		}
+		
+		for (int index = wheels - 3; index < wheels; index++) {
+			boolean repeated;
+			
+			do {
+				rotors[index] = random.nextInt(8);
+				repeated = false;
+				
+				for (int other = wheels - 3; other < index; other++) {
+					repeated |= rotors[other] == rotors[index];
+				}
+			} while (repeated);
+		}
+		
+		return new EnigmaSettings(rotors, randomLetters(wheels), randomLetters(wheels), threeRotor ? random.nextInt(2) : 2 + random.nextInt(2));
+	}
+	
+	private char[] randomLetters(int count) {
+		char[] letters = new char[count];
+		
+		for (int index = 0; index < count; index++) {
+			letters[index] = (char) ('A' + random.nextInt(26));
+		}
+		
+		return letters;
+	}
+	
+	/**
+	 * @return a plugboard map of distinct letter pairs, in random order
+	 */
+	private String randomPlugboard(int pairs) {
+		StringBuilder map = new StringBuilder();
+		
+		while (map.length() < 2 * pairs) {
+			char letter = (char) ('A' + random.nextInt(26));
+			
+			if (map.indexOf("" + letter) < 0) {
+				map.append(letter);
+			}
+		}
+		
+		return map.toString();
+	}
+}
@@ -88,4 +88,49 @@ public class PlugboardTest {
 			assertEquals(plugName, expectedResult[i], actualResult);			
 		} // end testcase loop
 	} // end testMatchChar method
+	
+	/**
+	 * Verifies incremental addPair and removePair operations, and that the
+	 * plugboard map reflects them. 
+	 */
+	@Test
+	public void testAddRemovePair(){
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+		Plugboard plugboard = new Plugboard("RWOA");
+		
+		// Add a pair, check the substitution both ways.
+		plugboard.addPair('S', 'L');
+		assertEquals("RWOASL", plugboard.getPlugboardMap());
+		assertEquals('L', plugboard.matchChar('S'));
+		assertEquals('S', plugboard.matchChar('L'));
+		assertEquals('L' - 'A', plugboard.matchIndex('S' - 'A'));
+		
+		// Remove the last pair.
+		plugboard.removePair('L');
+		assertEquals("RWOA", plugboard.getPlugboardMap());
+		assertEquals('S', plugboard.matchChar('S'));
+		assertEquals('L', plugboard.matchChar('L'));
+		
+		// Remove a pair from the middle, then an unplugged letter.
+		plugboard.addPair(2, 3);
+		plugboard.removePair('W');
+		plugboard.removePair('Z');
+		assertEquals("OACD", plugboard.getPlugboardMap());
+		assertEquals(2, plugboard.getPairCount());
+		
+		char[] outArray = new char[alphabet.length()];
+		for (int j = 0; j < alphabet.length(); j++) {
+			outArray[j] = plugboard.matchChar(alphabet.charAt(j));
+		}
+		assertEquals("OBDCEFGHIJKLMNAPQRSTUVWXYZ", String.valueOf(outArray));
+		
+		// Removing a duplicate mapping restores the earlier pair's precedence.
+		plugboard = new Plugboard("AAAB");
+		plugboard.removePair('B');
+		assertEquals('A', plugboard.matchChar('A'));
+		assertEquals('B', plugboard.matchChar('B'));
+		plugboard.setMapping("ab");
+		assertEquals("AB", plugboard.getPlugboardMap());
+		assertEquals('A', plugboard.matchChar('B'));
+	} // end testAddRemovePair method
 } // end Plugboard Test class. 
@@ -0,0 +1,84 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.cryptanalysis.quadbomb.QuadBombSettings;
+
+import org.junit.Test;
+
+/**
+ * QuadBombSettings JUnit test. Verifies that settings out of range are
+ * rejected when set, rather than failing once the search runs.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class QuadBombSettingsTest {
+	
+	/**
+	 * Validates that every statistic StatisticsGenerator provides is accepted,
+	 * and that others are rejected, leaving the settings unchanged.
+	 */
+	@Test
+	public void testStageStatistics() {
+		QuadBombSettings settings = createSettings();
+		
+		for (int statistic = 0; statistic < StatisticsGenerator.NUM_STATISTICS; statistic++) {
+			settings.setStageStatistics(statistic, statistic, statistic);
+			assertEquals(statistic, settings.getIndicatorStatistic());
+			assertEquals(statistic, settings.getRingStatistic());
+			assertEquals(statistic, settings.getPlugboardStatistic());
+		}
+		
+		settings.setStageStatistics(3, 3, 3);
+		
+		assertStatisticsRejected(settings, -1, 3, 3);
+		assertStatisticsRejected(settings, 3, StatisticsGenerator.NUM_STATISTICS, 3);
+		assertStatisticsRejected(settings, 3, 3, 100);
+	}
+	
+	private static void assertStatisticsRejected(QuadBombSettings settings, int indicators, int rings, int plugboard) {
+		try {
+			settings.setStageStatistics(indicators, rings, plugboard);
+			fail("Unsupported statistic accepted");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals(3, settings.getIndicatorStatistic());
+			assertEquals(3, settings.getRingStatistic());
+			assertEquals(3, settings.getPlugboardStatistic());
+		}
+	}
+	
+	/**
+	 * Validates that a coarse shortlist factor below 1 is rejected, leaving the
+	 * settings unchanged.
+	 */
+	@Test
+	public void testCoarseIndicatorSearch() {
+		QuadBombSettings settings = createSettings();
+		settings.setCoarseIndicatorSearch(150, 1);
+		assertEquals(150, settings.getCoarsePrefixLength());
+		assertEquals(10, settings.getCoarseShortlistSize(1));
+		
+		for (int factor : new int[] {0, -1}) {
+			try {
+				settings.setCoarseIndicatorSearch(200, factor);
+				fail("Shortlist factor " + factor + " accepted");
+			}
+			catch (IllegalArgumentException e) {
+				assertEquals(150, settings.getCoarsePrefixLength());
+				assertEquals(10, settings.getCoarseShortlistSize(1));
+			}
+		}
+	}
+	
+	/**
+	 * @return settings of a 3-rotor search with no constraints
+	 */
+	private static QuadBombSettings createSettings() {
+		return new QuadBombSettings(new int[4], 0, new int[4], new int[4], "", 1, 10);
+	}
+}
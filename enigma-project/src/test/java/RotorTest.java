@@ -183,4 +183,37 @@ public class RotorTest {
 			assertTrue(rotor.reverseEncrypt(encrypt2[i]) == expected[i]);
 		}
 	} // end reverseEncrypt method
+	
+	/**
+	 * Verify the index-based encryption methods agree with the character
+	 * methods for every ring setting and position.
+	 */
+	@Test
+	public void testIndexEncrypt() {
+		for (int i = 0; i < rotorWirings.length; i++) {
+			Rotor rotor = new Rotor(rotorWirings[i], rotorNotches[i]);
+			
+			for (int ring = 0; ring < 26; ring++) {
+				rotor.setRingPosition((char) ('A' + ring));
+				rotor.setStartPosition('A');
+				
+				// Check every position, including wrap-around.
+				for (int position = 0; position < 27; position++) {
+					for (int letter = 0; letter < 26; letter++) {
+						char c = (char) ('A' + letter);
+						
+						assertEquals(rotor.forwardEncrypt(c) - 'A', rotor.forwardEncrypt(letter));
+						assertEquals(rotor.reverseEncrypt(c) - 'A', rotor.reverseEncrypt(letter));
+						assertEquals(letter, rotor.reverseEncrypt(rotor.forwardEncrypt(letter)));
+					}
+					
+					// Turnover position matches the reported notch position.
+					char[] notches = rotor.getNotchPosition();
+					assertEquals(rotor.getPosition() == notches[0] || rotor.getPosition() == notches[1], rotor.isAtTurnover());
+					
+					rotor.cycleRotor();
+				}
+			}
+		}
+	} // end testIndexEncrypt
 } //end RotorTest class
@@ -0,0 +1,326 @@
+package test.java;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.TrimSettings;
+
+import org.junit.Test;
+
+/**
+ * TrimSettings JUnit test. Verifies that Corpus.trimCorpus keeps the grams
+ * and words each threshold should, in gram tables and in the dense counts of
+ * a corpus read from a binary corpus file. The default settings are checked
+ * against the original trim, which is kept here as a reference.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class TrimSettingsTest {
+	private static final String[] WORDS = {"ALPHA", "BRAVO", "CHARLIE", "DELTA", "ECHO", "FOXTROT"};
+	private static final int[] WORD_COUNTS = {10, 8, 8, 5, 3, 1};
+	
+	/**
+	 * Validates that the default settings trim as the original trim did, with
+	 * totals in the millions so the relative threshold removes the rarest
+	 * grams and words.
+	 */
+	@Test
+	public void testDefaultSettings() throws IOException {
+		Random random = new Random(25);
+		
+		for (int trial = 0; trial < 5; trial++) {
+			Map<String, Integer>[] tables = createTables(random);
+			Map<String, Integer>[] expected = copy(tables);
+			trimReference(expected);
+			
+			Corpus corpus = createCorpus(tables);
+			corpus.trimCorpus();
+			assertCounts(expected, corpus, 5);
+			
+			corpus = createCorpus(tables);
+			corpus.trimCorpus(new TrimSettings());
+			assertCounts(expected, corpus, 5);
+			
+			// A dense corpus holds no quintgrams.
+			corpus = dense(createCorpus(tables));
+			corpus.trimCorpus();
+			assertCounts(expected, corpus, 4);
+		}
+	}
+	
+	/**
+	 * Validates the minimum count, maximum size and cumulative mass on the
+	 * word counts 10, 8, 8, 5, 3 and 1, alone and together, with the relative
+	 * threshold disabled. Words tied with the last kept are kept too.
+	 */
+	@Test
+	public void testThresholds() throws IOException {
+		assertKept(settings(5, 0, 1.0), 4);
+		assertKept(settings(11, 0, 1.0), 0);
+		assertKept(settings(0, 2, 1.0), 3);			// CHARLIE ties with BRAVO.
+		assertKept(settings(0, 6, 1.0), 6);
+		assertKept(settings(0, 0, 0.25), 1);		// 10 of 35.
+		assertKept(settings(0, 0, 0.5), 3);			// 10 + 8 of 35, and the tie.
+		assertKept(settings(0, 0, 0.9), 5);			// 10 + 8 + 8 + 5 + 3 of 35.
+		assertKept(settings(4, 0, 0.9), 4);			// The minimum count is higher.
+		assertKept(settings(4, 1, 0.9), 1);			// The maximum size is lower.
+		assertKept(settings(0, 0, 1.0), 6);
+	}
+	
+	/**
+	 * Validates that the unigram table is only trimmed if set to be.
+	 */
+	@Test
+	public void testTrimUnigrams() {
+		TrimSettings settings = settings(5, 0, 1.0);
+		Corpus corpus = new Corpus();
+		corpus.addGramCount("E", 10);
+		corpus.addGramCount("Q", 1);
+		
+		corpus.trimCorpus(settings);
+		assertEquals(1, corpus.getUnigramCount("Q"));
+		assertEquals(11, corpus.getTotalGramCount(1));
+		
+		settings.setTrimUnigrams(true);
+		corpus.trimCorpus(settings);
+		assertEquals(0, corpus.getUnigramCount("Q"));
+		assertEquals(10, corpus.getTotalGramCount(1));
+	}
+	
+	/**
+	 * Validates that invalid thresholds are rejected.
+	 */
+	@Test
+	public void testInvalidSettings() {
+		TrimSettings settings = new TrimSettings();
+		
+		try {
+			settings.setMinimumCount(-1);
+			fail("Negative minimum count accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		
+		try {
+			settings.setMaximumSize(-1);
+			fail("Negative maximum size accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		
+		try {
+			settings.setCumulativeMass(0.0);
+			fail("Zero cumulative mass accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		
+		try {
+			settings.setCumulativeMass(1.5);
+			fail("Cumulative mass above 1 accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		
+		try {
+			settings.setRelativeThreshold(-1);
+			fail("Negative relative threshold accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+	
+	private static TrimSettings settings(int minimumCount, int maximumSize, double cumulativeMass) {
+		TrimSettings settings = new TrimSettings();
+		settings.setRelativeThreshold(0);
+		settings.setMinimumCount(minimumCount);
+		settings.setMaximumSize(maximumSize);
+		settings.setCumulativeMass(cumulativeMass);
+		
+		return settings;
+	}
+	
+	/**
+	 * Trims the words, and bigrams with the same counts, in a table corpus and
+	 * a dense corpus, and checks that the most frequent words are kept.
+	 */
+	private static void assertKept(TrimSettings settings, int kept) throws IOException {
+		Corpus corpus = new Corpus();
+		int total = 0;
+		
+		for (int index = 0; index < WORDS.length; index++) {
+			corpus.addWordCount(WORDS[index], WORD_COUNTS[index]);
+			corpus.addGramCount(WORDS[index].substring(0, 2), WORD_COUNTS[index]);
+			
+			if (index < kept) {
+				total += WORD_COUNTS[index];
+			}
+		}
+		
+		Corpus denseCorpus = dense(corpus);
+		
+		for (Corpus trimmed : new Corpus[] {corpus, denseCorpus}) {
+			trimmed.trimCorpus(settings);
+			
+			for (int index = 0; index < WORDS.length; index++) {
+				int count = (index < kept) ? WORD_COUNTS[index] : 0;
+				
+				assertEquals(WORDS[index], count, trimmed.getWordCount(WORDS[index]));
+				assertEquals(WORDS[index], count, trimmed.getBigramCount(WORDS[index].substring(0, 2)));
+			}
+			
+			assertEquals(total, trimmed.getTotalWordCount());
+			assertEquals(total, trimmed.getTotalGramCount(2));
+		}
+	}
+	
+	/**
+	 * Trims tables as the original trim did: grams of lengths 2 to 5 and words of
+	 * a count less than the table total over a million, plus one.
+	 */
+	private static void trimReference(Map<String, Integer>[] tables) {
+		for (int length = 2; length <= 6; length++) {
+			int total = 0;
+			
+			for (int count : tables[length].values()) {
+				total += count;
+			}
+			
+			int countThreshold = total / TrimSettings.DEFAULT_RELATIVE_THRESHOLD + 1;
+			
+			for (Iterator<Integer> counts = tables[length].values().iterator(); counts.hasNext();) {
+				if (counts.next() < countThreshold) {
+					counts.remove();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return random gram tables indexed by length, 1 to 5, then words at 6, with totals of a few million
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Integer>[] createTables(Random random) {
+		Map<String, Integer>[] tables = new Map[7];
+		
+		for (int length = 1; length <= 6; length++) {
+			tables[length] = new HashMap<String, Integer>();
+			
+			for (int entry = 0; entry < 2000; entry++) {
+				char[] gram = new char[(length <= 5) ? length : 2 + random.nextInt(6)];
+				
+				for (int index = 0; index < gram.length; index++) {
+					gram[index] = (char) ('A' + random.nextInt(26));
+				}
+				
+				// Mostly rare, with a few common enough to put the total in the millions.
+				int count = (random.nextInt(100) == 0) ? 50000 + random.nextInt(100000) : 1 + random.nextInt(8);
+				tables[length].put(new String(gram), count);
+			}
+		}
+		
+		return tables;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Integer>[] copy(Map<String, Integer>[] tables) {
+		Map<String, Integer>[] copies = new Map[tables.length];
+		
+		for (int length = 1; length < tables.length; length++) {
+			copies[length] = new HashMap<String, Integer>(tables[length]);
+		}
+		
+		return copies;
+	}
+	
+	private static Corpus createCorpus(Map<String, Integer>[] tables) {
+		Corpus corpus = new Corpus();
+		
+		for (int length = 1; length <= 5; length++) {
+			for (Map.Entry<String, Integer> entry : tables[length].entrySet()) {
+				corpus.addGramCount(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		for (Map.Entry<String, Integer> entry : tables[6].entrySet()) {
+			corpus.addWordCount(entry.getKey(), entry.getValue());
+		}
+		
+		return corpus;
+	}
+	
+	/**
+	 * Compares the counts and totals of a corpus with tables, up to a gram length.
+	 */
+	private static void assertCounts(Map<String, Integer>[] expected, Corpus corpus, int maxLength) {
+		PriorityQueue<?>[] queues = {null, corpus.getUnigramTestQueue(), corpus.getBigramTestQueue(),
+				corpus.getTrigramTestQueue(), corpus.getQuadgramTestQueue(), corpus.getQuintgramTestQueue(),
+				corpus.getWordTestQueue()};
+		
+		for (int length = 1; length <= 6; length++) {
+			if (length > maxLength && length < 6) {
+				continue;
+			}
+			
+			Map<String, Integer> actual = new HashMap<String, Integer>();
+			int total = 0;
+			
+			for (Object key : queues[length]) {
+				String gram = (String) key;
+				actual.put(gram, getCount(corpus, gram, length));
+			}
+			
+			for (int count : expected[length].values()) {
+				total += count;
+			}
+			
+			assertEquals(expected[length], actual);
+			assertEquals(total, (length <= 5) ? corpus.getTotalGramCount(length) : corpus.getTotalWordCount());
+		}
+	}
+	
+	private static int getCount(Corpus corpus, String gram, int length) {
+		switch (length) {
+			case 1:
+				return corpus.getUnigramCount(gram);
+			case 2:
+				return corpus.getBigramCount(gram);
+			case 3:
+				return corpus.getTrigramCount(gram);
+			case 4:
+				return corpus.getQuadgramCount(gram);
+			case 5:
+				return corpus.getQuintgramCount(gram);
+			default:
+				return corpus.getWordCount(gram);
+		}
+	}
+	
+	/**
+	 * @return the corpus written and read back as a binary corpus, so it holds dense counts
+	 */
+	private static Corpus dense(Corpus corpus) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CorpusFile.write(corpus, out);
+		
+		return CorpusFile.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+}
@@ -0,0 +1,284 @@
+package main.java.cryptanalysis.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * CorpusBuilder JUnit test. Verifies that CorpusBuilder counts the same grams
+ * and words as the original, sequential TextParser, which is kept here as a
+ * reference, however the text is cut into chunks and shared among workers,
+ * and that it fails rather than letting a count or total overflow.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class CorpusBuilderTest {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	// Punctuation, hyphens, numbers, mixed words, single letters, line breaks of both kinds, and characters
+	// that upper case to several letters or to none.
+	private static final String FIXTURE = "It was the best of times, it was the worst of times;\r\n"
+			+ "it was the age of wisdom -- it was the age of foolishness...\n"
+			+ "\"Don't,\" said I. A well-known B2B firm paid $1,250 in 1859-60 to Mr. O'Neill_Smith.\n"
+			+ "\tStra\u00DFe, caf\u00E9, na\u00EFve \u00C9cole; x y z -- a - i -\n"
+			+ "\n"
+			+ "THE END. (c) 2013 e-mail: team@enigma.example, re-re-entry well--known-";
+	
+	/**
+	 * Validates the fixture counted whole, by a single worker.
+	 */
+	@Test
+	public void testFixture() throws IOException {
+		assertSameCounts(parseReference(FIXTURE), parse(FIXTURE, 1, 1 << 20));
+	}
+	
+	/**
+	 * Validates the fixture cut into chunks of every size up to its length, so
+	 * every boundary falls between chunks, counted by several workers.
+	 */
+	@Test
+	public void testChunkBoundaries() throws IOException {
+		Corpus expected = parseReference(FIXTURE);
+		
+		for (int chunkSize = 1; chunkSize <= FIXTURE.length(); chunkSize++) {
+			assertSameCounts(expected, parse(FIXTURE, 1 + chunkSize % 4, chunkSize));
+		}
+	}
+	
+	/**
+	 * Validates random texts of letters, digits, punctuation and whitespace,
+	 * cut into small chunks.
+	 */
+	@Test
+	public void testRandomText() throws IOException {
+		Random random = new Random(23);
+		String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789"
+				+ "       \n\r\t--'.,;_\u00DF\u00E9";
+		
+		for (int trial = 0; trial < 20; trial++) {
+			char[] text = new char[1 + random.nextInt(2000)];
+			
+			for (int index = 0; index < text.length; index++) {
+				text[index] = characters.charAt(random.nextInt(characters.length()));
+			}
+			
+			String input = new String(text);
+			
+			assertSameCounts(parseReference(input), parse(input, 1 + random.nextInt(4), 1 + random.nextInt(200)));
+		}
+	}
+	
+	/**
+	 * Validates that counting stops with an error as soon as the unigram total
+	 * would pass the largest int, leaving the corpus unchanged, rather than
+	 * wrapping a count or reading on to the end of the text. The text here
+	 * never ends.
+	 */
+	@Test(timeout = 60000)
+	public void testOverflow() throws IOException {
+		for (int threadCount : new int[] {1, 3}) {
+			Corpus corpus = new Corpus();
+			corpus.addGramCount("E", Integer.MAX_VALUE - 100);
+			
+			try {
+				new CorpusBuilder(threadCount, 16).parse(new RepeatingChannel("ATTACK AT DAWN "), UTF_8, corpus);
+				fail("Overflow not detected");
+			}
+			catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("Too many 1-grams for a corpus"));
+			}
+			
+			assertEquals(Integer.MAX_VALUE - 100, corpus.getTotalUnigramCount());
+			assertEquals(0, corpus.getTotalBigramCount());
+			assertEquals(0, corpus.getTotalWordCount());
+		}
+	}
+	
+	/**
+	 * Counts a text with CorpusBuilder.
+	 */
+	private static Corpus parse(String text, int threadCount, int chunkSize) throws IOException {
+		Corpus corpus = new Corpus();
+		ByteArrayInputStream in = new ByteArrayInputStream(text.getBytes(UTF_8));
+		
+		new CorpusBuilder(threadCount, chunkSize).parse(Channels.newChannel(in), UTF_8, corpus);
+		
+		return corpus;
+	}
+	
+	/**
+	 * Compares the count of every gram of lengths 1 to 5, every word, and the
+	 * totals.
+	 */
+	private static void assertSameCounts(Corpus expected, Corpus actual) {
+		assertEquals(toMap(expected.getUnigramTestQueue(), expected, 1), toMap(actual.getUnigramTestQueue(), actual, 1));
+		assertEquals(toMap(expected.getBigramTestQueue(), expected, 2), toMap(actual.getBigramTestQueue(), actual, 2));
+		assertEquals(toMap(expected.getTrigramTestQueue(), expected, 3), toMap(actual.getTrigramTestQueue(), actual, 3));
+		assertEquals(toMap(expected.getQuadgramTestQueue(), expected, 4), toMap(actual.getQuadgramTestQueue(), actual, 4));
+		assertEquals(toMap(expected.getQuintgramTestQueue(), expected, 5), toMap(actual.getQuintgramTestQueue(), actual, 5));
+		assertEquals(expected.getWordTable(), actual.getWordTable());
+		
+		for (int length = 1; length <= 5; length++) {
+			assertEquals(expected.getTotalGramCount(length), actual.getTotalGramCount(length));
+		}
+		
+		assertEquals(expected.getTotalWordCount(), actual.getTotalWordCount());
+	}
+	
+	private static Map<String, Integer> toMap(PriorityQueue<String> grams, Corpus corpus, int length) {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		
+		for (String gram : grams) {
+			switch (length) {
+				case 1:
+					counts.put(gram, corpus.getUnigramCount(gram));
+					break;
+				case 2:
+					counts.put(gram, corpus.getBigramCount(gram));
+					break;
+				case 3:
+					counts.put(gram, corpus.getTrigramCount(gram));
+					break;
+				case 4:
+					counts.put(gram, corpus.getQuadgramCount(gram));
+					break;
+				default:
+					counts.put(gram, corpus.getQuintgramCount(gram));
+					break;
+			}
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Counts a text as the original TextParser did, a word at a time.
+	 */
+	private static Corpus parseReference(String text) {
+		Corpus database = new Corpus();
+		Scanner scanner = new Scanner(text);
+		Pattern nonalphanumeric = Pattern.compile("[^\\w&&[^_]]");
+		
+		char firstgram = '\0';
+		char secondgram = '\0';
+		char thirdgram = '\0';
+		char fourthgram = '\0';
+		char fifthgram = '\0';
+		
+		while (scanner.hasNext()) {
+			String word = scanner.next().trim().toUpperCase();
+			
+			for (char character : word.toCharArray()) {
+				if (!nonalphanumeric.matcher("" + character).find() && character != '_') {
+					fifthgram = fourthgram;
+					fourthgram = thirdgram;
+					thirdgram = secondgram;
+					secondgram = firstgram;
+					firstgram = character;
+					
+					database.addUnigram(String.valueOf(firstgram));
+					
+					if (secondgram != '\0') {
+						database.addBigram("" + secondgram + firstgram);
+						
+						if (thirdgram != '\0') {
+							database.addTrigram("" + thirdgram + secondgram + firstgram);
+							
+							if (fourthgram != '\0') {
+								database.addQuadgram("" + fourthgram + thirdgram + secondgram + firstgram);
+								
+								if (fifthgram != '\0') {
+									database.addQuintgram("" + fifthgram + fourthgram + thirdgram + secondgram + firstgram);
+								}
+							}
+						}
+					}
+				}
+			}
+			
+			addReferenceWord(database, word, nonalphanumeric);
+		}
+		
+		scanner.close();
+		
+		return database;
+	}
+	
+	/**
+	 * Adds a word as the original TextParser did.
+	 */
+	private static void addReferenceWord(Corpus database, String word, Pattern nonalphanumeric) {
+		boolean isAlphabetic = Pattern.compile("[A-Z]").matcher(word).find();
+		boolean isNumeric = Pattern.compile("\\d").matcher(word).find();
+		
+		if ((!isAlphabetic || !isNumeric) && (isAlphabetic || isNumeric)) {
+			for (String part : word.split("-")) {
+				Matcher invalidCharacterMatcher = nonalphanumeric.matcher(part);
+				String formattedWord = invalidCharacterMatcher.replaceAll("");
+				
+				if (formattedWord.length() == 1 && (!formattedWord.equals("A") && !formattedWord.equals("I") && !Character.isDigit(formattedWord.charAt(0)))) {
+					formattedWord = "";
+				}
+				
+				if (isNumeric) {
+					for (int index = 0; index < formattedWord.length(); index++) {
+						database.addWord("" + formattedWord.charAt(index));
+					}
+					
+					formattedWord = "";
+				}
+				
+				if (!formattedWord.equals("")) {
+					database.addWord(formattedWord);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Channel repeating a text without end.
+	 */
+	private static class RepeatingChannel implements ReadableByteChannel {
+		private final byte[] text;
+		private int position = 0;
+		
+		RepeatingChannel(String text) {
+			this.text = text.getBytes(UTF_8);
+		}
+		
+		public int read(ByteBuffer buffer) {
+			int count = buffer.remaining();
+			
+			for (int index = 0; index < count; index++) {
+				buffer.put(text[position]);
+				position = (position + 1) % text.length;
+			}
+			
+			return count;
+		}
+		
+		public boolean isOpen() {
+			return true;
+		}
+		
+		public void close() {
+		}
+	}
+}
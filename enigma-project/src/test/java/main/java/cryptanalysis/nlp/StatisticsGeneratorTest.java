@@ -0,0 +1,246 @@
+package main.java.cryptanalysis.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * StatisticsGenerator JUnit test. Verifies that the fitness functions of
+ * statistics 0 to 9, scoring letter indices, match the original String
+ * formulas kept below as a reference, and that the shared gram counts are
+ * cleared after scoring.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class StatisticsGeneratorTest {
+	private static final String[] MESSAGES = {
+		"ATDAWNTHEENEMYWILLATTACKTHENORTHERNBRIDGEWITHTWODIVISIONSOFINFANTRY",
+		"QXZJQXZJKQVWPYQQ",
+		"WETTERVORHERSAGEBISKAYA",
+		"EEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEE",
+		"ZZABCKCZ"
+	};
+	
+	private static Corpus corpus;
+	
+	@BeforeClass
+	public static void loadCorpus() throws IOException {
+		InputStream in = StatisticsGeneratorTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			corpus = CorpusFile.read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Validates each fitness function against the original formula of its
+	 * statistic.
+	 */
+	@Test
+	public void testMatchesStringFormulas() {
+		StatisticsGenerator generator = new StatisticsGenerator(corpus, 0);
+		
+		for (String message : MESSAGES) {
+			int[] indices = toIndices(message);
+			
+			for (int statistic = 0; statistic < 10; statistic++) {
+				double expected = computeOriginal(statistic, message);
+				double actual = generator.getFitnessFunction(statistic).score(indices, indices.length);
+				
+				// Sinkov tables hold float log probabilities, so allow float rounding per gram.
+				double delta = (statistic < 4) ? 1e-6 * indices.length : 1e-9 * Math.max(1.0, Math.abs(expected));
+				
+				assertEquals("Statistic " + statistic + ": " + message, expected, actual, delta);
+			}
+		}
+	}
+	
+	/**
+	 * Validates that scoring leaves the calling thread's gram counts of
+	 * lengths 1, 2 and 5 zeroed, so the next message starts from empty counts.
+	 */
+	@Test
+	public void testCountsCleared() {
+		StatisticsGenerator generator = new StatisticsGenerator(corpus, 0);
+		FitnessFunction quintgramIoc = new IocStatistic(5);
+		
+		for (String message : MESSAGES) {
+			int[] indices = toIndices(message);
+			
+			for (int statistic = 4; statistic < 10; statistic++) {
+				generator.getFitnessFunction(statistic).score(indices, indices.length);
+			}
+			
+			quintgramIoc.score(indices, indices.length);
+			
+			for (int gramLength : new int[] {1, 2, 5}) {
+				int[] counts = GramCounter.get().count(indices, 0, gramLength);
+				
+				for (int gram = 0; gram < counts.length; gram++) {
+					assertEquals("Length " + gramLength + ", gram " + gram, 0, counts[gram]);
+				}
+			}
+		}
+		
+		// Scoring twice gives the same result once the counts are cleared.
+		int[] indices = toIndices(MESSAGES[0]);
+		
+		for (int statistic = 4; statistic < 10; statistic++) {
+			FitnessFunction function = generator.getFitnessFunction(statistic);
+			
+			assertEquals(function.score(indices, indices.length), function.score(indices, indices.length), 0.0);
+		}
+	}
+	
+	/**
+	 * The original String formula of statistics 0 to 9.
+	 */
+	private static double computeOriginal(int statistic, String message) {
+		if (statistic < 4) {
+			return computeSinkov(message, statistic + 1);
+		} else if (statistic < 8) {
+			return computeIoc(message, statistic - 3);
+		} else if (statistic == 8) {
+			return computeChiSquaredUnigram(message);
+		} else {
+			return computeChiSquaredBigram(message);
+		}
+	}
+	
+	private static double computeSinkov(String message, int gramLength) {
+		double result = 0.0;
+		
+		long totalCount = corpus.getTotalGramCount(gramLength);
+		
+		// Set floor value to 1 / 1000 of single instance of gram.
+		double floorLog = -3.0 + Math.log10(1.0 / totalCount);
+		
+		for (int index = 0; index < message.length() - gramLength + 1; index++) {
+			long count = getCount(corpus, message.substring(index, index + gramLength));
+			double logProb = Math.log10((double)count / totalCount);
+			
+			if (count > 0)
+				result += logProb;
+			else
+				result += floorLog;
+		}
+		
+		return result;
+	}
+	
+	private static double computeIoc(String message, int gramLength) {
+		Map<String, Integer> counter = countGrams(message, gramLength);
+		
+		double result = 0.0;
+		
+		for (int count : counter.values()) {
+			result += count * (count - 1);
+		}
+		
+		result /= message.length() * (message.length() - 1);
+		
+		return result;
+	}
+	
+	private static double computeChiSquaredUnigram(String message) {
+		Map<String, Integer> counter = countGrams(message, 1);
+		
+		double result = 0.0;
+		
+		for (String gram : counter.keySet()) {
+			double count = counter.get(gram);
+			double unigramCount = corpus.getUnigramCount(gram);
+			long totalCount = corpus.getTotalUnigramCount();
+			
+			double relativeFreq = count / message.length();
+			double absoluteFreq = unigramCount / totalCount;
+			
+			result += -(relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
+		}
+		
+		return result;
+	}
+	
+	private static double computeChiSquaredBigram(String message) {
+		Map<String, Integer> unigrams = countGrams(message, 1);
+		Map<String, Integer> bigrams = countGrams(message, 2);
+		Map<String, Integer> bigramFirstLetterCount = countGrams(message.substring(0, message.length() - 1), 1);
+		
+		double result = 0.0;
+		
+		for (int i = 0; i < 26; i++) {
+			for (int j = 0; j < 26; j++) {
+				char first = (char)(i + 'A');
+				char second = (char)(j + 'A');
+				String gram = "" + first + second;
+				
+				int unigramCount = getOrZero(unigrams, "" + first);
+				int bigramCount = getOrZero(bigrams, gram);
+				double bigramLetterCount = getOrZero(bigramFirstLetterCount, "" + first);
+				double bigramTotalCount = corpus.getBigramCount(gram);
+				int totalCount = corpus.getTotalBigramCount();
+				
+				if (bigramLetterCount > 0 && bigramTotalCount > 0) {
+					double relativeFreq = bigramCount / bigramLetterCount;
+					double absoluteFreq = bigramTotalCount / totalCount;
+					
+					result += -unigramCount * (relativeFreq - absoluteFreq) * (relativeFreq - absoluteFreq) / absoluteFreq;
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private static Map<String, Integer> countGrams(String message, int gramLength) {
+		Map<String, Integer> counter = new HashMap<String, Integer>();
+		
+		for (int index = 0; index < message.length() - gramLength + 1; index++) {
+			String gram = message.substring(index, index + gramLength);
+			counter.put(gram, getOrZero(counter, gram) + 1);
+		}
+		
+		return counter;
+	}
+	
+	private static int getOrZero(Map<String, Integer> counter, String gram) {
+		Integer count = counter.get(gram);
+		
+		return (count != null) ? count : 0;
+	}
+	
+	private static long getCount(Corpus database, String gram) {
+		switch (gram.length()) {
+			case 1:
+				return database.getUnigramCount(gram);
+			case 2:
+				return database.getBigramCount(gram);
+			case 3:
+				return database.getTrigramCount(gram);
+			default:
+				return database.getQuadgramCount(gram);
+		}
+	}
+	
+	private static int[] toIndices(String message) {
+		int[] indices = new int[message.length()];
+		
+		for (int index = 0; index < indices.length; index++) {
+			indices[index] = message.charAt(index) - 'A';
+		}
+		
+		return indices;
+	}
+}
@@ -0,0 +1,192 @@
+package main.java.cryptanalysis.quadbomb;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * AnnealingDetector JUnit test. Verifies that the chains of a candidate
+ * recover a known plugboard of eleven pairs, given the candidate's rotor, ring
+ * and indicator settings, whether run one after the other or concurrently,
+ * and that the last chain to finish offers the best result of all chains.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class AnnealingDetectorTest {
+	private static final String PLAIN = "ATDAWNTHEENEMYWILLATTACKTHENORTHERNBRIDGEWITHTWODIVISIONSOFINFANTRY"
+			+ "SUPPORTEDBYARTILLERYHOLDTHELINEUNTILREINFORCEMENTSARRIVEFROMTHESOUTHANDREPORTANYMOVEMENT"
+			+ "OFARMOUREDVEHICLESONTHECOASTROADTOHEADQUARTERSATONCEWEATHERFORTHENEXTTHREEDAYSISEXPECTED"
+			+ "TOBECLEARWITHLIGHTWINDSFROMTHEWESTSUPPLIESOFFUELANDAMMUNITIONWILLBEDELIVEREDBYNIGHT";
+	private static final String MAP = "AQBWCEDRTZFKGMHXJLNSOP";
+	private static final EnigmaSettings KEY = new EnigmaSettings(new int[] {1, 3, 4}, new char[] {'B', 'U', 'L'}, new char[] {'W', 'D', 'Q'}, 0, MAP);
+	private static final String CIPHER = KEY.createEnigmaMachine().encryptString(PLAIN);
+	private static final int[] IDENTITY = new int[26];
+	
+	static {
+		for (int letter = 0; letter < 26; letter++) {
+			IDENTITY[letter] = letter;
+		}
+	}
+	
+	// Collector and kept results of the chains created last.
+	private static CandidateCollector results;
+	private static ConcurrentLinkedQueue<Long> found;
+	
+	/**
+	 * Validates that the default number of chains, run one after the other and
+	 * sharing their best result, recover the plugboard and decryption of a
+	 * known key.
+	 */
+	@Test
+	public void testRecoverPlugboard() throws IOException {
+		List<AnnealingDetector> chains = createChains();
+		
+		for (AnnealingDetector chain : chains) {
+			assertTrue(chain.call());
+		}
+		
+		assertRecovered();
+	}
+	
+	/**
+	 * Validates that the chains recover the plugboard when run concurrently
+	 * on a pool, and that only the last chain to finish offers the result.
+	 */
+	@Test
+	public void testConcurrentChains() throws Exception {
+		List<AnnealingDetector> chains = createChains();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		try {
+			for (Future<Boolean> future : pool.invokeAll(chains)) {
+				assertTrue(future.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+		
+		assertRecovered();
+	}
+	
+	/**
+	 * Validates that when chains finish at the same time, the result offered
+	 * is the best of all of them, not one read before the others had offered
+	 * theirs.
+	 */
+	@Test
+	public void testSharedBestOffersBest() throws Exception {
+		final int chains = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(chains);
+		
+		try {
+			for (int round = 0; round < 200; round++) {
+				final AnnealingDetector.SharedBest shared = new AnnealingDetector.SharedBest(chains);
+				final CandidateCollector collector = new CandidateCollector(1);
+				final ConcurrentLinkedQueue<Long> kept = new ConcurrentLinkedQueue<Long>();
+				final CountDownLatch start = new CountDownLatch(1);
+				List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+				
+				for (int chain = 0; chain < chains; chain++) {
+					final double score = -1000.0 + ((chain + round) % chains);
+					
+					tasks.add(new Callable<Boolean>() {
+						public Boolean call() throws InterruptedException {
+							start.await();
+							shared.offer(new AnnealingDetector.Result(0L, IDENTITY, score));
+							shared.chainFinished(collector, kept);
+							return true;
+						}
+					});
+				}
+				
+				List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+				
+				for (Callable<Boolean> task : tasks) {
+					futures.add(pool.submit(task));
+				}
+				
+				start.countDown();
+				
+				for (Future<Boolean> future : futures) {
+					assertTrue(future.get());
+				}
+				
+				assertEquals(1, kept.size());
+				assertEquals(-1000.0 + chains - 1, collector.getBest().getFitnessScore(), 0.0);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Creates the default number of chains searching the key's candidate, sharing their best result.
+	 */
+	private static List<AnnealingDetector> createChains() throws IOException {
+		FitnessFunction fitness = new StatisticsGenerator(loadCorpus(), 3).getFitnessFunction(3);	// Sinkov quadgrams.
+		
+		// No constraints, so the middle and right rings may move in tandem with their indicators.
+		QuadBombSettings settings = new QuadBombSettings(new int[4], 0, new int[4], new int[4], "", 1, 1);
+		settings.setAnnealingSolver(QuadBombSettings.ANNEALING_CHAINS, QuadBombSettings.ANNEALING_RESTARTS);
+		
+		results = new CandidateCollector(1);
+		found = new ConcurrentLinkedQueue<Long>();
+		long candidate = PackedCandidate.pack(KEY);
+		AnnealingDetector.SharedBest shared = new AnnealingDetector.SharedBest(QuadBombSettings.ANNEALING_CHAINS);
+		List<AnnealingDetector> chains = new ArrayList<AnnealingDetector>();
+		
+		for (int chain = 0; chain < QuadBombSettings.ANNEALING_CHAINS; chain++) {
+			chains.add(new AnnealingDetector(fitness, candidate, null, settings, results, found, CIPHER, shared, chain));
+		}
+		
+		return chains;
+	}
+	
+	/**
+	 * Checks that a single result was offered, with the key's plugboard.
+	 */
+	private static void assertRecovered() {
+		// Only the last chain to finish offers the result.
+		assertEquals(1, found.size());
+		
+		EnigmaSettings best = results.getBest();
+		
+		assertEquals(PackedCandidate.unpackPlugboard(PackedCandidate.packPlugboard(MAP)), best.getPlugboardMap());
+		assertEquals(PLAIN, best.createEnigmaMachine().encryptString(CIPHER));
+	}
+	
+	/**
+	 * Loads the binary training corpus shipped with the GUI.
+	 */
+	private static Corpus loadCorpus() throws IOException {
+		InputStream in = AnnealingDetectorTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			return CorpusFile.read(in);
+		} finally {
+			in.close();
+		}
+	}
+}
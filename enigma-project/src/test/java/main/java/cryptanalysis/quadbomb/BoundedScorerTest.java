@@ -0,0 +1,195 @@
+package main.java.cryptanalysis.quadbomb;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.IocStatistic;
+import main.java.cryptanalysis.nlp.NgramTable;
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * BoundedScorer JUnit test. Verifies that a trial able to beat the threshold
+ * gets its exact full score, and that a trial is only given up on once its
+ * partial score plus the best log probability of every remaining gram cannot
+ * reach the threshold.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class BoundedScorerTest {
+	private static final String PLAIN = "ATDAWNTHEENEMYWILLATTACKTHENORTHERNBRIDGEWITHTWODIVISIONSOFINFANTRY"
+			+ "SUPPORTEDBYARTILLERYHOLDTHELINEUNTILREINFORCEMENTSARRIVEFROMTHESOUTHANDREPORTANYMOVEMENT"
+			+ "OFARMOUREDVEHICLESONTHECOASTROADTOHEADQUARTERSATONCEWEATHERFORTHENEXTTHREEDAYSISEXPECTED";
+	
+	private static NgramTable table;
+	
+	@BeforeClass
+	public static void loadTable() throws IOException {
+		InputStream in = BoundedScorerTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			table = new StatisticsGenerator(CorpusFile.read(in), 3).getNgramTable(4);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Validates that every threshold below the full score gives the exact full
+	 * score, as does a threshold of negative infinity.
+	 */
+	@Test
+	public void testExactScore() {
+		for (int[] message : createMessages()) {
+			for (int length : new int[] {1, 3, 4, 63, 64, 65, 128, message.length}) {
+				BoundedScorer scorer = new BoundedScorer(table, length);
+				double full = table.score(message, length);
+				
+				assertEquals(full, scorer.score(new FixedDecryptor(message), Double.NEGATIVE_INFINITY), 0.0);
+				
+				for (double below : new double[] {1e-6, 1.0, 10.0, 1000.0}) {
+					assertEquals(full, scorer.score(new FixedDecryptor(message), full - below), 0.0);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Validates that negative infinity is returned only when some prefix's
+	 * score plus the bound of the remaining grams is no better than the
+	 * threshold, and that any other result is the exact full score.
+	 */
+	@Test
+	public void testBound() {
+		double maxLog = table.getMaxLogProbability();
+		
+		for (int[] message : createMessages()) {
+			int length = message.length;
+			BoundedScorer scorer = new BoundedScorer(table, length);
+			double full = table.score(message, length);
+			
+			for (double threshold = full - 50.0; threshold <= length * maxLog; threshold += 5.0) {
+				double score = scorer.score(new FixedDecryptor(message), threshold);
+				
+				if (score == Double.NEGATIVE_INFINITY) {
+					assertTrue("Gave up on a trial beating " + threshold, full <= threshold);
+					assertTrue("Gave up while the bound could reach " + threshold, isUnreachable(message, threshold, maxLog));
+				} else {
+					assertEquals(full, score, 0.0);
+				}
+			}
+			
+			// No message beats a threshold of the best log probability for every gram, so it is given up on.
+			assertEquals(Double.NEGATIVE_INFINITY, scorer.score(new FixedDecryptor(message), (length - 3) * maxLog), 0.0);
+		}
+	}
+	
+	/**
+	 * Validates the bound on a message whose every gram has the best log
+	 * probability, where the bound is the full score at every step, so a
+	 * threshold just below the full score must not be given up on.
+	 */
+	@Test
+	public void testTightBound() {
+		Corpus corpus = new Corpus();
+		corpus.addGramCount("AAAA", 999);
+		corpus.addGramCount("BBBB", 1);
+		NgramTable tight = NgramTable.fromCorpus(corpus, 4);
+		
+		int[] message = new int[300];	// All A.
+		BoundedScorer scorer = new BoundedScorer(tight, message.length);
+		double full = tight.score(message, message.length);
+		
+		assertEquals((message.length - 3) * (double) tight.getMaxLogProbability(), full, 1e-9);
+		assertEquals(full, scorer.score(new FixedDecryptor(message), full - 1e-9), 0.0);
+		assertEquals(Double.NEGATIVE_INFINITY, scorer.score(new FixedDecryptor(message), full + 1e-9), 0.0);
+	}
+	
+	/**
+	 * Validates that statistics other than n-gram tables are always scored in
+	 * full.
+	 */
+	@Test
+	public void testOtherStatistic() {
+		FitnessFunction ioc = new IocStatistic(1);
+		int[] message = toIndices(PLAIN);
+		BoundedScorer scorer = new BoundedScorer(ioc, message.length);
+		double full = ioc.score(message, message.length);
+		
+		assertEquals(full, scorer.score(new FixedDecryptor(message), full + 1.0), 0.0);
+	}
+	
+	/**
+	 * @return true if the score of some prefix plus the best log probability of each remaining gram is no better
+	 * than the threshold
+	 */
+	private static boolean isUnreachable(int[] message, double threshold, double maxLog) {
+		int lastGramStart = table.getLength() - 1;
+		
+		for (int end = 1; end < message.length; end++) {
+			double partial = table.score(message, 0, end, 0.0);
+			int remaining = message.length - Math.max(end, lastGramStart);
+			
+			if (remaining > 0 && partial + remaining * maxLog <= threshold) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @return the English message and a random message of the same length, as letter indices
+	 */
+	private static int[][] createMessages() {
+		int[] english = toIndices(PLAIN);
+		int[] random = new int[english.length];
+		Random generator = new Random(1);
+		
+		for (int index = 0; index < random.length; index++) {
+			random[index] = generator.nextInt(26);
+		}
+		
+		return new int[][] {english, random};
+	}
+	
+	private static int[] toIndices(String message) {
+		int[] indices = new int[message.length()];
+		
+		for (int index = 0; index < indices.length; index++) {
+			indices[index] = message.charAt(index) - 'A';
+		}
+		
+		return indices;
+	}
+	
+	/**
+	 * Decryptor giving a fixed message, checking that letters are asked for in order.
+	 */
+	private static class FixedDecryptor implements Decryptor {
+		private final int[] message;
+		private int next = 0;
+		
+		FixedDecryptor(int[] message) {
+			this.message = message;
+		}
+		
+		public void decrypt(int[] plain, int start, int end) {
+			assertEquals(next, start);
+			System.arraycopy(message, start, plain, start, end - start);
+			next = end;
+		}
+	}
+}
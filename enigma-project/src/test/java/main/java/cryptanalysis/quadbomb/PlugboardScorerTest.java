@@ -0,0 +1,268 @@
+package main.java.cryptanalysis.quadbomb;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.IocStatistic;
+import main.java.cryptanalysis.nlp.NgramTable;
+import main.java.enigma.EnigmaMachine;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * PlugboardScorer JUnit test. Verifies that the incremental pair and plugboard
+ * scores, and committed plugboards, equal the score of a full re-encryption
+ * with the same plugboard.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class PlugboardScorerTest {
+	private static final double TOLERANCE = 1e-6;
+	
+	private final Random random = new Random(9);
+	
+	/**
+	 * Validates scorePair and addPair against full re-encryptions, with an
+	 * n-gram table (rescored incrementally) and with IoC (rescored in full).
+	 */
+	@Test
+	public void testScorePair() {
+		FitnessFunction[] functions = { randomTable(3), new IocStatistic(1) };
+		
+		for (FitnessFunction fitness : functions) {
+			for (int trial = 0; trial < 5; trial++) {
+				EnigmaSettings candidate = randomSettings();
+				int[] cipher = randomMessage(150);
+				PlugboardScorer scorer = new PlugboardScorer(fitness, candidate, cipher);
+				int[] wiring = identity();
+				
+				assertEquals(fullScore(fitness, candidate, cipher, wiring), scorer.getScore(), TOLERANCE);
+				
+				// Pair off letters one at a time, checking every pair of unpaired letters first.
+				for (int step = 0; step < 5; step++) {
+					for (int first = 0; first < 26; first++) {
+						for (int second = first + 1; second < 26; second++) {
+							if (wiring[first] == first && wiring[second] == second) {
+								int[] trialWiring = wiring.clone();
+								trialWiring[first] = second;
+								trialWiring[second] = first;
+								
+								assertEquals(fullScore(fitness, candidate, cipher, trialWiring), scorer.scorePair(first, second), TOLERANCE);
+							}
+						}
+					}
+					
+					int[] pair = randomUnpaired(wiring);
+					wiring[pair[0]] = pair[1];
+					wiring[pair[1]] = pair[0];
+					scorer.addPair(pair[0], pair[1]);
+					
+					assertEquals(fullScore(fitness, candidate, cipher, wiring), scorer.getScore(), TOLERANCE);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Validates scorePlugboard against full re-encryptions for plugboards that
+	 * move, swap and remove pairs of the current plugboard.
+	 */
+	@Test
+	public void testScorePlugboard() {
+		FitnessFunction[] functions = { randomTable(4), new IocStatistic(2) };
+		
+		for (FitnessFunction fitness : functions) {
+			for (int trial = 0; trial < 5; trial++) {
+				EnigmaSettings candidate = randomSettings();
+				int[] cipher = randomMessage(200);
+				int[] wiring = randomWiring(8);
+				PlugboardScorer scorer = new PlugboardScorer(fitness, candidate, cipher);
+				scorer.setPlugboard(wiring);
+				
+				assertEquals(fullScore(fitness, candidate, cipher, wiring), scorer.getScore(), TOLERANCE);
+				
+				for (int move = 0; move < 200; move++) {
+					int[] trialWiring = randomWiring(random.nextInt(11));
+					int[] letters = new int[26];
+					int count = 0;
+					
+					for (int letter = 0; letter < 26; letter++) {
+						if (trialWiring[letter] != wiring[letter]) {
+							letters[count++] = letter;
+						}
+					}
+					
+					assertEquals(fullScore(fitness, candidate, cipher, trialWiring), scorer.scorePlugboard(trialWiring, letters, count), TOLERANCE);
+				}
+				
+				// Scoring trials must leave the current score unchanged.
+				assertEquals(fullScore(fitness, candidate, cipher, wiring), scorer.getScore(), TOLERANCE);
+			}
+		}
+	}
+	
+	/**
+	 * Validates commitPlugboard against full re-encryptions, and that pairs and
+	 * plugboards scored after a series of commits still score correctly.
+	 */
+	@Test
+	public void testCommitPlugboard() {
+		FitnessFunction[] functions = { randomTable(4), new IocStatistic(1) };
+		
+		for (FitnessFunction fitness : functions) {
+			for (int trial = 0; trial < 5; trial++) {
+				EnigmaSettings candidate = randomSettings();
+				int[] cipher = randomMessage(200);
+				int[] wiring = randomWiring(random.nextInt(11));
+				PlugboardScorer scorer = new PlugboardScorer(fitness, candidate, cipher);
+				scorer.setPlugboard(wiring);
+				
+				for (int move = 0; move < 200; move++) {
+					int[] nextWiring = randomWiring(random.nextInt(11));
+					int[] letters = new int[26];
+					int count = 0;
+					
+					for (int letter = 0; letter < 26; letter++) {
+						if (nextWiring[letter] != wiring[letter]) {
+							letters[count++] = letter;
+						}
+					}
+					
+					scorer.commitPlugboard(nextWiring, letters, count);
+					wiring = nextWiring;
+					
+					assertEquals(fullScore(fitness, candidate, cipher, wiring), scorer.getScore(), TOLERANCE);
+				}
+				
+				// The rotor stack output lists must follow the commits.
+				int[] pair = randomUnpaired(wiring);
+				int[] trialWiring = wiring.clone();
+				trialWiring[pair[0]] = pair[1];
+				trialWiring[pair[1]] = pair[0];
+				
+				assertEquals(fullScore(fitness, candidate, cipher, trialWiring), scorer.scorePair(pair[0], pair[1]), TOLERANCE);
+				
+				int[] letters = new int[26];
+				int count = 0;
+				trialWiring = randomWiring(8);
+				
+				for (int letter = 0; letter < 26; letter++) {
+					if (trialWiring[letter] != wiring[letter]) {
+						letters[count++] = letter;
+					}
+				}
+				
+				assertEquals(fullScore(fitness, candidate, cipher, trialWiring), scorer.scorePlugboard(trialWiring, letters, count), TOLERANCE);
+			}
+		}
+	}
+	
+	/**
+	 * Scores a decryption made by a freshly built machine.
+	 */
+	static double fullScore(FitnessFunction fitness, EnigmaSettings candidate, int[] cipher, int[] wiring) {
+		EnigmaMachine machine = new EnigmaMachine(candidate.getRotors(), candidate.getReflector(),
+				candidate.getRingSettings(), candidate.getIndicatorSettings(), toMapping(wiring));
+		int[] plain = new int[cipher.length];
+		machine.encrypt(cipher, plain);
+		
+		return fitness.score(plain, plain.length);
+	}
+	
+	/**
+	 * Converts a wiring table to a plugboard mapping string.
+	 */
+	static String toMapping(int[] wiring) {
+		StringBuilder mapping = new StringBuilder();
+		
+		for (int letter = 0; letter < 26; letter++) {
+			if (wiring[letter] > letter) {
+				mapping.append((char) ('A' + letter)).append((char) ('A' + wiring[letter]));
+			}
+		}
+		
+		return mapping.toString();
+	}
+	
+	/**
+	 * @return the identity wiring table
+	 */
+	static int[] identity() {
+		int[] wiring = new int[26];
+		
+		for (int letter = 0; letter < 26; letter++) {
+			wiring[letter] = letter;
+		}
+		
+		return wiring;
+	}
+	
+	private int[] randomWiring(int pairs) {
+		int[] wiring = identity();
+		
+		for (int pair = 0; pair < pairs; pair++) {
+			int[] letters = randomUnpaired(wiring);
+			wiring[letters[0]] = letters[1];
+			wiring[letters[1]] = letters[0];
+		}
+		
+		return wiring;
+	}
+	
+	private int[] randomUnpaired(int[] wiring) {
+		int first;
+		int second;
+		
+		do {
+			first = random.nextInt(26);
+			second = random.nextInt(26);
+		} while (first == second || wiring[first] != first || wiring[second] != second);
+		
+		return new int[] {first, second};
+	}
+	
+	private EnigmaSettings randomSettings() {
+		int[] rotors = new int[3];
+		char[] rings = new char[3];
+		char[] indicators = new char[3];
+		
+		for (int index = 0; index < 3; index++) {
+			do {
+				rotors[index] = random.nextInt(8);
+			} while ((index > 0 && rotors[index] == rotors[0]) || (index > 1 && rotors[index] == rotors[1]));
+			
+			rings[index] = (char) ('A' + random.nextInt(26));
+			indicators[index] = (char) ('A' + random.nextInt(26));
+		}
+		
+		return new EnigmaSettings(rotors, rings, indicators, random.nextInt(2));
+	}
+	
+	private int[] randomMessage(int length) {
+		int[] message = new int[length];
+		
+		for (int index = 0; index < length; index++) {
+			message[index] = random.nextInt(26);
+		}
+		
+		return message;
+	}
+	
+	private NgramTable randomTable(int length) {
+		int[] counts = new int[(int) Math.pow(26, length)];
+		long total = 0;
+		
+		for (int index = 0; index < counts.length; index++) {
+			counts[index] = (random.nextInt(4) == 0) ? 0 : random.nextInt(1000);
+			total += counts[index];
+		}
+		
+		return new NgramTable(counts, total, length);
+	}
+}
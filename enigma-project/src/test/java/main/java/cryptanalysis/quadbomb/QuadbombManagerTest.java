@@ -0,0 +1,173 @@
+package main.java.cryptanalysis.quadbomb;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import javax.swing.JButton;
+import javax.swing.JTextField;
+
+import main.java.GUINew.ResultsPanel;
+import main.java.cryptanalysis.nlp.Corpus;
+import main.java.cryptanalysis.nlp.CorpusFile;
+import main.java.cryptanalysis.nlp.FitnessFunction;
+import main.java.cryptanalysis.nlp.StatisticsGenerator;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * QuadbombManager JUnit test. Verifies that the pipelined steps, run on the
+ * calling thread without showing the GUI, find the same result as the steps
+ * run one after the other with a barrier between them, and that a failed task
+ * is reported as an error rather than as an abort.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class QuadbombManagerTest {
+	private static final String PLAIN = "ATDAWNTHEENEMYWILLATTACKTHENORTHERNBRIDGEWITHTWODIVISIONSOFINFANTRY"
+			+ "SUPPORTEDBYARTILLERYHOLDTHELINEUNTILREINFORCEMENTSARRIVEFROMTHESOUTHANDREPORTANYMOVEMENT"
+			+ "OFARMOUREDVEHICLESONTHECOASTROADTOHEADQUARTERSATONCEWEATHERFORTHENEXTTHREEDAYSISEXPECTED";
+	private static final String MAP = "BQCXFJKVGZ";
+	
+	private static Corpus corpus;
+	private static String cipher;
+	
+	@BeforeClass
+	public static void setUp() throws IOException {
+		InputStream in = QuadbombManagerTest.class.getResourceAsStream("/training.ngrams");
+		assertNotNull("Corpus not found", in);
+		
+		try {
+			corpus = CorpusFile.read(in);
+		} finally {
+			in.close();
+		}
+		
+		EnigmaSettings key = new EnigmaSettings(new int[] {0, 1, 2}, new char[] {'A', 'A', 'A'}, new char[] {'Q', 'E', 'X'}, 0, MAP);
+		cipher = key.createEnigmaMachine().encryptString(PLAIN);
+	}
+	
+	/**
+	 * Validates that the pipelined search of the key's wheel order recovers the
+	 * message, with the same result as a search separating the steps by
+	 * barriers.
+	 */
+	@Test
+	public void testPipelineMatchesBarrier() {
+		QuadBombSettings settings = createSettings();
+		QuadbombManager manager = new QuadbombManager(corpus, cipher, settings, new JTextField(), new JButton(), new ResultsPanel());
+		
+		assertTrue(manager.doInBackground());
+		
+		EnigmaSettings pipelined = manager.getResult();
+		EnigmaSettings barrier = searchWithBarriers(settings);
+		
+		// Settings equivalent to the key up to the middle rotor's stepping may score best, so most letters are enough.
+		String decrypted = pipelined.createEnigmaMachine().encryptString(cipher);
+		int matches = 0;
+		
+		for (int index = 0; index < PLAIN.length(); index++) {
+			if (decrypted.charAt(index) == PLAIN.charAt(index)) {
+				matches++;
+			}
+		}
+		
+		assertTrue(decrypted, matches >= PLAIN.length() * 9 / 10);
+		
+		// Ties between equivalent ring and indicator settings may be broken either way.
+		assertEquals(barrier.getFitnessScore(), pipelined.getFitnessScore(), 0.0);
+		assertEquals(barrier.getPlugboardMap(), pipelined.getPlugboardMap());
+		assertEquals(barrier.createEnigmaMachine().encryptString(cipher), decrypted);
+	}
+	
+	/**
+	 * Validates that a task throwing an exception fails the search, and that
+	 * done() then reports the error rather than an abort.
+	 */
+	@Test
+	public void testTaskFailure() {
+		// Ring settings are only requested on worker threads once the indicator step finds a candidate.
+		QuadBombSettings settings = new QuadBombSettings(new int[] {0, 1, 2, 3}, 1, new int[4], new int[4], "", 2, 5) {
+			public int[] getTestingRings(boolean threeRotorOnly) {
+				if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+					throw new IllegalStateException("Test failure");
+				}
+				
+				return super.getTestingRings(threeRotorOnly);
+			}
+		};
+		
+		JTextField label = new JTextField();
+		JButton button = new JButton();
+		button.setEnabled(false);
+		QuadbombManager manager = new QuadbombManager(corpus, cipher, settings, label, button, new ResultsPanel());
+		
+		try {
+			manager.doInBackground();
+			fail("Task failure not thrown");
+		} catch (IllegalStateException e) {
+			assertEquals("Test failure", e.getMessage());
+		}
+		
+		manager.done();
+		
+		assertTrue(button.isEnabled());
+		assertTrue(label.getText(), label.getText().startsWith("Error"));
+		assertTrue(label.getText(), label.getText().contains("Test failure"));
+	}
+	
+	/**
+	 * @return settings searching the key's wheel order and reflector, keeping ten candidates per step
+	 */
+	private static QuadBombSettings createSettings() {
+		// Settings are numbered from 1, with 0 for any value; the fourth rotor 0 means a 3-rotor machine.
+		return new QuadBombSettings(new int[] {0, 1, 2, 3}, 1, new int[4], new int[4], "", 2, 10);
+	}
+	
+	/**
+	 * Runs each step to completion on the calling thread before starting the
+	 * next, as the manager did before its steps were pipelined.
+	 *
+	 * @return the best result of the plugboard step
+	 */
+	private static EnigmaSettings searchWithBarriers(QuadBombSettings settings) {
+		StatisticsGenerator generator = new StatisticsGenerator(corpus, 3);
+		FitnessFunction indicatorFitness = generator.getFitnessFunction(settings.getIndicatorStatistic());
+		FitnessFunction ringFitness = generator.getFitnessFunction(settings.getRingStatistic());
+		FitnessFunction plugboardFitness = generator.getFitnessFunction(settings.getPlugboardStatistic());
+		
+		byte[] plugboard = PackedCandidate.packPlugboard(settings.getPlugboardSetting());
+		ConcurrentLinkedQueue<Long> found = new ConcurrentLinkedQueue<Long>();
+		
+		CandidateCollector indicatorResults = new CandidateCollector(settings.getCandidateSize());
+		Queue<EnigmaSettings> testList = settings.getRotorReflectorCandidateList();
+		
+		while (!testList.isEmpty()) {
+			long candidate = PackedCandidate.pack(testList.poll());
+			assertTrue(new IndicatorDetector(indicatorFitness, candidate, plugboard, settings, indicatorResults, found, cipher).call());
+		}
+		
+		CandidateCollector ringResults = new CandidateCollector(settings.getCandidateSize());
+		
+		for (long candidate : indicatorResults.getCandidates()) {
+			assertTrue(new RingDetector(ringFitness, candidate, plugboard, settings, ringResults, found, cipher).call());
+		}
+		
+		CandidateCollector plugboardResults = new CandidateCollector(settings.getCandidateSize());
+		
+		for (long candidate : ringResults.getCandidates()) {
+			assertTrue(new PlugboardDetector(plugboardFitness, candidate, plugboard, settings, plugboardResults, found, cipher).call());
+		}
+		
+		return plugboardResults.getBest();
+	}
+}
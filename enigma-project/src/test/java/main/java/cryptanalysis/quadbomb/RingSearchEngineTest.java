@@ -0,0 +1,204 @@
+package main.java.cryptanalysis.quadbomb;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import main.java.enigma.EnigmaMachine;
+import main.java.enigma.EnigmaSettings;
+
+import org.junit.Test;
+
+/**
+ * RingSearchEngine JUnit test. Verifies that every trial decrypts the message
+ * exactly as an EnigmaMachine with the same settings does, however the trials
+ * reuse earlier decryptions.
+ *
+ * @author Walter Adolph
+ * @author Team Enigma
+ * @version 0.9
+ * Dec 12, 2013
+ */
+public class RingSearchEngineTest {
+	private final Random random = new Random(17);
+	
+	/**
+	 * Validates trials run as the ring step runs them, each ring moved
+	 * together with its indicator, so later trials reuse the cache.
+	 */
+	@Test
+	public void testTandemTrials() {
+		for (int candidate = 0; candidate < 20; candidate++) {
+			boolean threeRotor = (candidate % 2 == 0);
+			EnigmaSettings settings = randomSettings(threeRotor);
+			String map = PlugboardScorerTest.toMapping(randomWiring(random.nextInt(11)));
+			int[] message = randomMessage(250 + random.nextInt(500));
+			RingSearchEngine engine = new RingSearchEngine(settings, PackedCandidate.packPlugboard(map), message);
+			
+			char[] baseIndicators = settings.getIndicatorSettings();
+			
+			for (int trial = 0; trial < 100; trial++) {
+				char[] rings = randomLetters(baseIndicators.length);
+				char[] indicators = new char[baseIndicators.length];
+				
+				// The fourth and left rings stay put, as in the ring step.
+				for (int wheel = 0; wheel < rings.length; wheel++) {
+					if (wheel < rings.length - 2) {
+						rings[wheel] = 'A';
+					}
+					
+					indicators[wheel] = (char) ('A' + (baseIndicators[wheel] - 'A' + rings[wheel] - 'A') % 26);
+				}
+				
+				assertTrial(engine, settings, map, message, rings, indicators);
+			}
+		}
+	}
+	
+	/**
+	 * Validates trials with unrelated rings and indicators, which clear the
+	 * cache when the right or fourth rotor's starting shift changes.
+	 */
+	@Test
+	public void testRandomTrials() {
+		for (int candidate = 0; candidate < 20; candidate++) {
+			boolean threeRotor = (candidate % 2 == 0);
+			EnigmaSettings settings = randomSettings(threeRotor);
+			String map = PlugboardScorerTest.toMapping(randomWiring(random.nextInt(11)));
+			int[] message = randomMessage(1 + random.nextInt(700));
+			RingSearchEngine engine = new RingSearchEngine(settings, PackedCandidate.packPlugboard(map), message);
+			
+			for (int trial = 0; trial < 50; trial++) {
+				int wheels = threeRotor ? 3 : 4;
+				
+				assertTrial(engine, settings, map, message, randomLetters(wheels), randomLetters(wheels));
+			}
+		}
+	}
+	
+	/**
+	 * Validates the middle rotor's double step. Rotors I, II and III starting at
+	 * ADU step to ADV, AEW, then BFX: the middle rotor steps twice in a row.
+	 * The middle rotors with two notches (VI-VIII) are also tried at every
+	 * starting position, under several ring settings.
+	 */
+	@Test
+	public void testDoubleStep() {
+		int[] message = randomMessage(60);
+		EnigmaSettings settings = new EnigmaSettings(new int[] {0, 1, 2}, new char[] {'A', 'A', 'A'}, new char[] {'A', 'D', 'U'}, 0);
+		RingSearchEngine engine = new RingSearchEngine(settings, null, message);
+		
+		assertTrial(engine, settings, "", message, new char[] {'A', 'A', 'A'}, new char[] {'A', 'D', 'U'});
+		
+		for (int middle = 5; middle < 8; middle++) {
+			for (int right = 0; right < 8; right++) {
+				int left = (middle + 1) % 5;
+				
+				if (right == middle || right == left) {
+					continue;
+				}
+				
+				settings = new EnigmaSettings(new int[] {left, middle, right}, new char[] {'A', 'A', 'A'}, new char[] {'A', 'A', 'A'}, 1);
+				engine = new RingSearchEngine(settings, null, message);
+				
+				for (int position = 0; position < 26; position++) {
+					for (int ring = 0; ring < 26; ring += 5) {
+						char[] rings = {'A', (char) ('A' + ring), (char) ('A' + ring)};
+						char[] indicators = {'A', (char) ('A' + position), (char) ('A' + (position + ring) % 26)};
+						
+						assertTrial(engine, settings, "", message, rings, indicators);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs a trial, decrypting the message a few random ranges at a time, and
+	 * compares it with an EnigmaMachine's decryption.
+	 */
+	private void assertTrial(RingSearchEngine engine, EnigmaSettings settings, String map, int[] message, char[] rings, char[] indicators) {
+		EnigmaMachine machine = new EnigmaMachine(settings.getRotors(), settings.getReflector(), rings, indicators, map);
+		int[] expected = new int[message.length];
+		machine.encrypt(message, expected);
+		
+		int[] plain = new int[message.length];
+		int start = 0;
+		engine.setTrial(rings, indicators);
+		
+		while (start < message.length) {
+			int end = Math.min(message.length, start + 1 + random.nextInt(100));
+			engine.decrypt(plain, start, end);
+			start = end;
+		}
+		
+		assertArrayEquals(expected, plain);
+	}
+	
+	/**
+	 * @return random settings of a 3-rotor machine (rotors 0-7, reflector 0-1)
+	 * or a 4-rotor machine (fourth rotor 8-9, reflector 2-3)
+	 */
+	private EnigmaSettings randomSettings(boolean threeRotor) {
+		int wheels = threeRotor ? 3 : 4;
+		int[] rotors = new int[wheels];
+		
+		if (!threeRotor) {
+			rotors[0] = 8 + random.nextInt(2);
+		}
+		
+		for (int index = wheels - 3; index < wheels; index++) {
+			boolean repeated;
+			
+			do {
+				rotors[index] = random.nextInt(8);
+				repeated = false;
+				
+				for (int other = wheels - 3; other < index; other++) {
+					repeated |= rotors[other] == rotors[index];
+				}
+			} while (repeated);
+		}
+		
+		return new EnigmaSettings(rotors, randomLetters(wheels), randomLetters(wheels), threeRotor ? random.nextInt(2) : 2 + random.nextInt(2));
+	}
+	
+	private int[] randomWiring(int pairs) {
+		int[] wiring = PlugboardScorerTest.identity();
+		
+		for (int pair = 0; pair < pairs; pair++) {
+			int first;
+			int second;
+			
+			do {
+				first = random.nextInt(26);
+				second = random.nextInt(26);
+			} while (first == second || wiring[first] != first || wiring[second] != second);
+			
+			wiring[first] = second;
+			wiring[second] = first;
+		}
+		
+		return wiring;
+	}
+	
+	private char[] randomLetters(int count) {
+		char[] letters = new char[count];
+		
+		for (int index = 0; index < count; index++) {
+			letters[index] = (char) ('A' + random.nextInt(26));
+		}
+		
+		return letters;
+	}
+	
+	private int[] randomMessage(int length) {
+		int[] message = new int[length];
+		
+		for (int index = 0; index < length; index++) {
+			message[index] = random.nextInt(26);
+		}
+		
+		return message;
+	}
+}